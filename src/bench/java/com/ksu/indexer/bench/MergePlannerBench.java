@@ -0,0 +1,122 @@
+package com.ksu.indexer.bench;
+
+import com.ksu.indexer.planner.DPMergePlanner;
+import java.util.Random;
+
+/**
+ * Plan quality and planning time of the merge planners on synthetic segment sets:
+ * the original two-table DP (only where its tables fit in memory), the exact rolling
+ * DP, the scaled DP used past {@link DPMergePlanner#DEFAULT_MAX_CELLS}, and a greedy
+ * fill. Quality is total benefit relative to the best plan found for the instance.
+ *
+ * Run with {@code ./gradlew benchMergePlanner}.
+ */
+public final class MergePlannerBench {
+    // the original planner allocated int[n+1][B+1] plus boolean[n+1][B+1]
+    private static final long LEGACY_MAX_BYTES = 1L << 30;
+    // the exact rolling DP is O(n * budget) time; past this it would take minutes
+    private static final long EXACT_MAX_BITS = 1L << 30;
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) {
+        int[] counts = {100, 1_000, 5_000};
+        int[] budgets = {50_000, 5_000_000, 50_000_000};
+        System.out.printf("%6s %11s  %-8s %16s %8s %10s %12s%n",
+                "n", "budget", "planner", "benefit", "quality", "ms", "table");
+        for (int n : counts) {
+            for (int budget : budgets) {
+                run(n, budget, new Random(31L * n + budget));
+            }
+        }
+    }
+
+    private static void run(int n, int budget, Random rnd) {
+        int[] cost = new int[n];
+        int[] benefit = new int[n];
+        for (int i = 0; i < n; i++) {
+            // log-uniform sizes from 1 KB to 16 MB, like flushed deltas next to merged segments
+            cost[i] = (int) Math.pow(2, 10 + rnd.nextDouble() * 14);
+            double deleted = rnd.nextDouble() < 0.3 ? rnd.nextDouble() * 0.6 : 0;
+            benefit[i] = (int) (cost[i] * (1 + deleted * 10));
+        }
+
+        long legacyBytes = (long) (n + 1) * (budget + 1) * 5;
+        long exactBits = (long) n * (budget + 1);
+        Result legacy = legacyBytes <= LEGACY_MAX_BYTES ? time(() -> legacy(cost, benefit, budget), benefit) : null;
+        Result exact = exactBits <= EXACT_MAX_BITS ? time(() -> DPMergePlanner.select(cost, benefit, budget, Long.MAX_VALUE), benefit) : null;
+        Result scaled = time(() -> DPMergePlanner.select(cost, benefit, budget, DPMergePlanner.DEFAULT_MAX_CELLS), benefit);
+        Result greedy = time(() -> DPMergePlanner.greedy(cost, benefit, budget), benefit);
+
+        long best = Math.max(scaled.benefit, greedy.benefit);
+        if (exact != null) best = Math.max(best, exact.benefit);
+        if (legacy != null) best = Math.max(best, legacy.benefit);
+        print(n, budget, "legacy", legacy, best, legacyBytes);
+        print(n, budget, "exact", exact, best, exactBits / 8 + (budget + 1L) * 8);
+        print(n, budget, "scaled", scaled, best, Math.min(exactBits, DPMergePlanner.DEFAULT_MAX_CELLS) / 8);
+        print(n, budget, "greedy", greedy, best, 0);
+    }
+
+    private static void print(int n, int budget, String name, Result r, long best, long tableBytes) {
+        if (r == null) {
+            System.out.printf("%6d %11d  %-8s %16s %8s %10s %12s%n", n, budget, name, "skipped", "-", "-", human(tableBytes));
+            return;
+        }
+        System.out.printf("%6d %11d  %-8s %16d %8.4f %10.2f %12s%n",
+                n, budget, name, r.benefit, best == 0 ? 1.0 : (double) r.benefit / best, r.millis, human(tableBytes));
+    }
+
+    private static String human(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1L << 20) return String.format("%.1f KB", bytes / 1024.0);
+        if (bytes < 1L << 30) return String.format("%.1f MB", bytes / (double) (1 << 20));
+        return String.format("%.1f GB", bytes / (double) (1L << 30));
+    }
+
+    private record Result(long benefit, double millis) {}
+
+    private interface Planner {
+        boolean[] plan();
+    }
+
+    // best of a few runs after one warm-up
+    private static Result time(Planner p, int[] benefit) {
+        boolean[] take = p.plan();
+        double best = Double.MAX_VALUE;
+        for (int r = 0; r < RUNS; r++) {
+            long start = System.nanoTime();
+            take = p.plan();
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        long sum = 0;
+        for (int i = 0; i < take.length; i++) if (take[i]) sum += benefit[i];
+        return new Result(sum, best);
+    }
+
+    /** The planner as it was: full int and boolean tables of (n+1) x (budget+1). */
+    private static boolean[] legacy(int[] cost, int[] benefit, int budget) {
+        int n = cost.length;
+        int[][] dp = new int[n + 1][budget + 1];
+        boolean[][] take = new boolean[n + 1][budget + 1];
+        for (int i = 1; i <= n; i++) {
+            for (int w = 0; w <= budget; w++) {
+                dp[i][w] = dp[i - 1][w];
+                if (cost[i - 1] <= w) {
+                    int v = dp[i - 1][w - cost[i - 1]] + benefit[i - 1];
+                    if (v > dp[i][w]) {
+                        dp[i][w] = v;
+                        take[i][w] = true;
+                    }
+                }
+            }
+        }
+        boolean[] out = new boolean[n];
+        int w = budget;
+        for (int i = n; i >= 1; i--) {
+            if (take[i][w]) {
+                out[i - 1] = true;
+                w -= cost[i - 1];
+            }
+        }
+        return out;
+    }
+}
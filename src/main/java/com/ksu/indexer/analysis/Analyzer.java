@@ -0,0 +1,139 @@
+package com.ksu.indexer.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Text analysis shared by ingest and search, so documents and queries always produce
+ * the same terms: a {@link LetterDigitTokenizer} followed by the configured filters,
+ * applied in order. Names are {@code lowercase}, {@code asciifolding}, {@code stop}
+ * (drops the configured stop words) and {@code stem} ({@link EnglishMinimalStemFilter}).
+ *
+ * Each thread reuses one chain and its term buffer, so analysis allocates nothing per
+ * token beyond what the caller keeps.
+ */
+public final class Analyzer {
+    public static final List<String> DEFAULT_FILTERS = List.of("lowercase", "asciifolding");
+    /**
+     * Revision of the tokenizer and filter implementations; bump it whenever one of them
+     * produces different terms for the same text, so {@link #signature()} changes too.
+     */
+    static final int CHAIN_VERSION = 2;
+
+    private final List<String> filters;
+    private final CharArrayMap<Boolean> stopWords = new CharArrayMap<>();
+    private final String signature;
+    private final ThreadLocal<TokenStream> chains = ThreadLocal.withInitial(this::newChain);
+    private final ThreadLocal<TokenStream> normalizers = ThreadLocal.withInitial(this::newNormalizer);
+
+    public Analyzer(List<String> filters, Collection<String> stopWords) {
+        List<String> names = new ArrayList<>();
+        for (String f : filters) {
+            String name = f.trim().toLowerCase(Locale.ROOT);
+            if (!name.isEmpty()) names.add(name);
+        }
+        this.filters = List.copyOf(names);
+        Set<String> words = new TreeSet<>();
+        for (String w : stopWords) {
+            String word = w.trim().toLowerCase(Locale.ROOT);
+            if (!word.isEmpty() && words.add(word)) this.stopWords.put(word, Boolean.TRUE);
+        }
+        String sig = "chain=" + CHAIN_VERSION + ";filters=" + String.join(",", this.filters);
+        this.signature = this.filters.contains("stop") ? sig + ";stop=" + String.join(",", words) : sig;
+        newChain(); // fail on unknown filter names at startup, not on the first doc
+    }
+
+    /** Lowercase plus ASCII folding, no stop words or stemming. */
+    public static Analyzer standard() {
+        return new Analyzer(DEFAULT_FILTERS, List.of());
+    }
+
+    public List<String> filters() { return filters; }
+
+    /**
+     * Everything that decides which terms a text becomes: the chain revision, the
+     * filters in order and, when {@code stop} is among them, the sorted stop words.
+     * Two analyzers with the same signature index text identically.
+     */
+    public String signature() { return signature; }
+
+    private TokenStream newChain() {
+        TokenStream ts = new LetterDigitTokenizer();
+        for (String f : filters) {
+            ts = switch (f) {
+                case "lowercase" -> new LowerCaseFilter(ts);
+                case "asciifolding" -> new AsciiFoldingFilter(ts);
+                case "stop" -> new StopFilter(ts, stopWords);
+                case "stem" -> new EnglishMinimalStemFilter(ts);
+                default -> throw new IllegalArgumentException("unknown analysis filter: " + f);
+            };
+        }
+        return ts;
+    }
+
+    // the character-level filters only: they map a pattern's literal chars the way they
+    // map indexed terms, where tokenizing, stop words and stemming would break the pattern
+    private TokenStream newNormalizer() {
+        TokenStream ts = new KeywordTokenizer();
+        for (String f : filters) {
+            if (f.equals("lowercase")) ts = new LowerCaseFilter(ts);
+            else if (f.equals("asciifolding")) ts = new AsciiFoldingFilter(ts);
+        }
+        return ts;
+    }
+
+    /**
+     * This thread's chain reset onto {@code text}; consume it before analyzing anything
+     * else on the same thread.
+     */
+    public TokenStream tokenStream(String text) {
+        TokenStream ts = chains.get();
+        ts.reset(text);
+        return ts;
+    }
+
+    /** Analyze a whole text into packed tokens that may be handed to another thread. */
+    public Tokens analyze(String text) {
+        if (text == null || text.isEmpty()) return Tokens.EMPTY;
+        TokenStream ts = tokenStream(text);
+        CharTerm term = ts.term();
+        char[] chars = new char[text.length()];
+        int[] ends = new int[Math.max(4, text.length() / 4)];
+        int pos = 0;
+        int n = 0;
+        while (ts.incrementToken()) {
+            int len = term.length();
+            // folding can make a token longer than its source text
+            if (pos + len > chars.length) chars = Arrays.copyOf(chars, Math.max(pos + len, chars.length * 2));
+            if (n == ends.length) ends = Arrays.copyOf(ends, n * 2);
+            System.arraycopy(term.buffer(), 0, chars, pos, len);
+            pos += len;
+            ends[n++] = pos;
+        }
+        return n == 0 ? Tokens.EMPTY : new Tokens(chars, ends, n);
+    }
+
+    /**
+     * {@code text} as one term with only case and accent normalization applied, for the
+     * literal parts of wildcard and fuzzy query terms.
+     */
+    public String normalize(String text) {
+        TokenStream ts = normalizers.get();
+        ts.reset(text);
+        return ts.incrementToken() ? ts.term().toString() : "";
+    }
+
+    /** Terms of a short text such as a query, in order, duplicates kept. */
+    public List<String> terms(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null) return out;
+        TokenStream ts = tokenStream(text);
+        while (ts.incrementToken()) out.add(ts.term().toString());
+        return out;
+    }
+}
@@ -0,0 +1,71 @@
+package com.ksu.indexer.analysis;
+
+/**
+ * Folds Latin letters with diacritics (Latin-1 Supplement and Latin Extended-A) to
+ * their ASCII base letters, e.g. {@code café -> cafe}; ligatures and a few others
+ * expand ({@code æ -> ae}, {@code ß -> ss}). Pure-ASCII tokens pass through untouched.
+ */
+public final class AsciiFoldingFilter extends TokenFilter {
+    private static final char FIRST = 'À';
+    // U+00C0..U+017F; \0 means no single-letter folding (expansions are in expand())
+    private static final String FOLD =
+            "AAAAAA\0CEEEEIIIIDNOOOOO\0OUUUUY\0\0" +
+            "aaaaaa\0ceeeeiiiidnooooo\0ouuuuy\0y" +
+            "AaAaAaCcCcCcCcDdDdEeEeEeEeEeGgGg" +
+            "GgGgHhHhIiIiIiIiIi\0\0JjKkqLlLlLlL" +
+            "lLlNnNnNnnNnOoOoOo\0\0RrRrRrSsSsSs" +
+            "SsTtTtTtUuUuUuUuUuUuWwYyYZzZzZzs";
+
+    private char[] scratch = new char[32];
+
+    public AsciiFoldingFilter(TokenStream input) {
+        super(input);
+    }
+
+    @Override
+    public boolean incrementToken() {
+        if (!input.incrementToken()) return false;
+        char[] b = term.buffer();
+        int n = term.length();
+        int i = 0;
+        while (i < n && b[i] < FIRST) i++;
+        if (i == n) return true;
+        // at most two chars out per char in
+        if (scratch.length < n * 2) scratch = new char[n * 2];
+        char[] out = scratch;
+        System.arraycopy(b, 0, out, 0, i);
+        int o = i;
+        for (; i < n; i++) {
+            char c = b[i];
+            char f = c >= FIRST && c - FIRST < FOLD.length() ? FOLD.charAt(c - FIRST) : 0;
+            if (f != 0) {
+                out[o++] = f;
+            } else {
+                String x = c >= FIRST ? expand(c) : null;
+                if (x == null) {
+                    out[o++] = c;
+                } else {
+                    out[o++] = x.charAt(0);
+                    out[o++] = x.charAt(1);
+                }
+            }
+        }
+        term.copy(out, 0, o);
+        return true;
+    }
+
+    private static String expand(char c) {
+        return switch (c) {
+            case 'Æ' -> "AE";
+            case 'æ' -> "ae";
+            case 'Þ' -> "TH";
+            case 'þ' -> "th";
+            case 'ß' -> "ss";
+            case 'Ĳ' -> "IJ";
+            case 'ĳ' -> "ij";
+            case 'Œ' -> "OE";
+            case 'œ' -> "oe";
+            default -> null;
+        };
+    }
+}
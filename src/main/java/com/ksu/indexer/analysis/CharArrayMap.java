@@ -0,0 +1,96 @@
+package com.ksu.indexer.analysis;
+
+/**
+ * Open-addressing map from string keys to values that is probed with a char range,
+ * so a token in a {@link CharTerm} buffer is looked up without building a String.
+ * Hashes match {@link String#hashCode()}, so inserting a String reuses its cached hash.
+ * Not thread-safe; no removal.
+ */
+public final class CharArrayMap<V> {
+    private String[] keys;
+    private Object[] values;
+    private int size;
+
+    public CharArrayMap() {
+        this(16);
+    }
+
+    public CharArrayMap(int expected) {
+        int cap = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new String[cap];
+        values = new Object[cap];
+    }
+
+    public int size() { return size; }
+
+    @SuppressWarnings("unchecked")
+    public V get(char[] chars, int len) {
+        int mask = keys.length - 1;
+        for (int i = mix(hash(chars, len)) & mask; ; i = (i + 1) & mask) {
+            String k = keys[i];
+            if (k == null) return null;
+            if (equals(k, chars, len)) return (V) values[i];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(String key) {
+        int mask = keys.length - 1;
+        for (int i = mix(key.hashCode()) & mask; ; i = (i + 1) & mask) {
+            String k = keys[i];
+            if (k == null) return null;
+            if (k.equals(key)) return (V) values[i];
+        }
+    }
+
+    /** Insert or replace; returns the previous value. */
+    @SuppressWarnings("unchecked")
+    public V put(String key, V value) {
+        int mask = keys.length - 1;
+        int i = mix(key.hashCode()) & mask;
+        for (; keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(key)) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        // keep the load factor under 1/2 so probe runs stay short
+        if (++size * 2 > keys.length) rehash();
+        return null;
+    }
+
+    private void rehash() {
+        String[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new String[oldKeys.length * 2];
+        values = new Object[keys.length];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == null) continue;
+            int i = mix(oldKeys[j].hashCode()) & mask;
+            while (keys[i] != null) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    private static int hash(char[] chars, int len) {
+        int h = 0;
+        for (int i = 0; i < len; i++) h = 31 * h + chars[i];
+        return h;
+    }
+
+    // String hashes of short keys cluster in the low bits
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equals(String k, char[] chars, int len) {
+        if (k.length() != len) return false;
+        for (int i = 0; i < len; i++) if (k.charAt(i) != chars[i]) return false;
+        return true;
+    }
+}
@@ -0,0 +1,37 @@
+package com.ksu.indexer.analysis;
+
+import java.util.Arrays;
+
+/**
+ * The current token of a {@link TokenStream} chain: one growable char buffer shared by
+ * the tokenizer and every filter after it, rewritten in place for each token.
+ */
+public final class CharTerm {
+    private char[] buffer = new char[32];
+    private int length;
+
+    /** Chars of the current token; only the first {@link #length()} are valid. */
+    public char[] buffer() { return buffer; }
+
+    public int length() { return length; }
+
+    public void setLength(int length) {
+        if (length > buffer.length) throw new IllegalArgumentException("length " + length + " > capacity " + buffer.length);
+        this.length = length;
+    }
+
+    /** Make room for {@code capacity} chars, keeping the current ones; returns the (new) buffer. */
+    public char[] resize(int capacity) {
+        if (capacity > buffer.length) buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        return buffer;
+    }
+
+    /** Replace the current token with {@code len} chars of {@code src}. */
+    public void copy(char[] src, int off, int len) {
+        System.arraycopy(src, off, resize(len), 0, len);
+        length = len;
+    }
+
+    @Override
+    public String toString() { return new String(buffer, 0, length); }
+}
@@ -0,0 +1,38 @@
+package com.ksu.indexer.analysis;
+
+/**
+ * Light English stemming that only strips plurals ({@code queries -> query},
+ * {@code files -> file}), leaving words like {@code status} or {@code glass} alone.
+ * Conservative on purpose: it never conflates different words the way suffix
+ * strippers do, so it can be switched on without hurting precision much.
+ */
+public final class EnglishMinimalStemFilter extends TokenFilter {
+    public EnglishMinimalStemFilter(TokenStream input) {
+        super(input);
+    }
+
+    @Override
+    public boolean incrementToken() {
+        if (!input.incrementToken()) return false;
+        term.setLength(stem(term.buffer(), term.length()));
+        return true;
+    }
+
+    static int stem(char[] s, int len) {
+        if (len < 3 || s[len - 1] != 's') return len;
+        switch (s[len - 2]) {
+            case 'u':
+            case 's':
+                return len;
+            case 'e':
+                if (len > 3 && s[len - 3] == 'i' && s[len - 4] != 'a' && s[len - 4] != 'e') {
+                    s[len - 3] = 'y';
+                    return len - 2;
+                }
+                if (s[len - 3] == 'i' || s[len - 3] == 'a' || s[len - 3] == 'o' || s[len - 3] == 'e') return len;
+                return len - 1;
+            default:
+                return len - 1;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.ksu.indexer.analysis;
+
+/** Emits its whole input as one token (none for empty input), for normalizing query patterns. */
+public final class KeywordTokenizer extends TokenStream {
+    private String text = "";
+    private boolean done;
+
+    public KeywordTokenizer() {
+        super(new CharTerm());
+    }
+
+    @Override
+    public void reset(String text) {
+        this.text = text == null ? "" : text;
+        this.done = false;
+    }
+
+    @Override
+    public boolean incrementToken() {
+        if (done || text.isEmpty()) return false;
+        done = true;
+        text.getChars(0, text.length(), term.resize(text.length()), 0);
+        term.setLength(text.length());
+        return true;
+    }
+}
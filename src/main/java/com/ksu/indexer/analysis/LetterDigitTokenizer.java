@@ -0,0 +1,46 @@
+package com.ksu.indexer.analysis;
+
+/**
+ * Splits text into maximal runs of letters and digits (any script); everything else
+ * separates tokens. Walks the input once, copying each run straight into the term buffer.
+ */
+public final class LetterDigitTokenizer extends TokenStream {
+    private String text = "";
+    private int pos;
+
+    public LetterDigitTokenizer() {
+        super(new CharTerm());
+    }
+
+    @Override
+    public void reset(String text) {
+        this.text = text == null ? "" : text;
+        this.pos = 0;
+    }
+
+    @Override
+    public boolean incrementToken() {
+        String s = text;
+        int n = s.length();
+        int i = pos;
+        while (i < n) {
+            int cp = s.codePointAt(i);
+            if (Character.isLetterOrDigit(cp)) break;
+            i += Character.charCount(cp);
+        }
+        if (i >= n) {
+            pos = n;
+            return false;
+        }
+        int start = i;
+        while (i < n) {
+            int cp = s.codePointAt(i);
+            if (!Character.isLetterOrDigit(cp)) break;
+            i += Character.charCount(cp);
+        }
+        s.getChars(start, i, term.resize(i - start), 0);
+        term.setLength(i - start);
+        pos = i;
+        return true;
+    }
+}
@@ -0,0 +1,29 @@
+package com.ksu.indexer.analysis;
+
+/** Lowercases each token in place, one code point at a time (no locale rules). */
+public final class LowerCaseFilter extends TokenFilter {
+    public LowerCaseFilter(TokenStream input) {
+        super(input);
+    }
+
+    @Override
+    public boolean incrementToken() {
+        if (!input.incrementToken()) return false;
+        char[] b = term.buffer();
+        int n = term.length();
+        for (int i = 0; i < n; ) {
+            char c = b[i];
+            if (c < 0x80) {
+                if (c >= 'A' && c <= 'Z') b[i] = (char) (c + ('a' - 'A'));
+                i++;
+            } else {
+                int cp = Character.codePointAt(b, i, n);
+                int lower = Character.toLowerCase(cp);
+                // only same-width mappings, so the token is rewritten without moving chars
+                if (Character.charCount(lower) == Character.charCount(cp)) Character.toChars(lower, b, i);
+                i += Character.charCount(cp);
+            }
+        }
+        return true;
+    }
+}
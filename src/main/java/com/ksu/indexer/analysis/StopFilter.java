@@ -0,0 +1,19 @@
+package com.ksu.indexer.analysis;
+
+/** Drops tokens found in a stop set, compared against the term buffer without copying it. */
+public final class StopFilter extends TokenFilter {
+    private final CharArrayMap<Boolean> stopWords;
+
+    public StopFilter(TokenStream input, CharArrayMap<Boolean> stopWords) {
+        super(input);
+        this.stopWords = stopWords;
+    }
+
+    @Override
+    public boolean incrementToken() {
+        while (input.incrementToken()) {
+            if (stopWords.get(term.buffer(), term.length()) == null) return true;
+        }
+        return false;
+    }
+}
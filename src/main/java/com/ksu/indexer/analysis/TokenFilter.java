@@ -0,0 +1,16 @@
+package com.ksu.indexer.analysis;
+
+/** A stage that rewrites or drops the tokens of the stream it wraps, sharing its term buffer. */
+public abstract class TokenFilter extends TokenStream {
+    protected final TokenStream input;
+
+    protected TokenFilter(TokenStream input) {
+        super(input.term);
+        this.input = input;
+    }
+
+    @Override
+    public void reset(String text) {
+        input.reset(text);
+    }
+}
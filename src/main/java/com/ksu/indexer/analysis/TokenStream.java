@@ -0,0 +1,22 @@
+package com.ksu.indexer.analysis;
+
+/**
+ * Pull-based token source. Each {@link #incrementToken()} leaves the next token in
+ * {@link #term()}, whose buffer is reused from token to token: consumers that keep a
+ * token copy its chars out before advancing.
+ */
+public abstract class TokenStream {
+    protected final CharTerm term;
+
+    protected TokenStream(CharTerm term) {
+        this.term = term;
+    }
+
+    public final CharTerm term() { return term; }
+
+    /** Advance to the next token; false once the input is exhausted. */
+    public abstract boolean incrementToken();
+
+    /** Start over on new input, so a chain can be reused across texts. */
+    public abstract void reset(String text);
+}
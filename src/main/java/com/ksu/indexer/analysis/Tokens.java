@@ -0,0 +1,75 @@
+package com.ksu.indexer.analysis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The analyzed tokens of one text, packed into a single char array plus end offsets
+ * instead of a String per token. Analysis runs off the index lock (ingest threads,
+ * bulk workers); {@link #stream()} replays the tokens into the segment under it.
+ */
+public final class Tokens {
+    public static final Tokens EMPTY = new Tokens(new char[0], new int[0], 0);
+
+    private final char[] chars;
+    private final int[] ends;
+    private final int size;
+
+    Tokens(char[] chars, int[] ends, int size) {
+        this.chars = chars;
+        this.ends = ends;
+        this.size = size;
+    }
+
+    /** Already-analyzed terms, taken as they are. */
+    public static Tokens of(Collection<String> terms) {
+        int total = 0;
+        for (String t : terms) total += t.length();
+        char[] chars = new char[total];
+        int[] ends = new int[terms.size()];
+        int pos = 0;
+        int n = 0;
+        for (String t : terms) {
+            t.getChars(0, t.length(), chars, pos);
+            pos += t.length();
+            ends[n++] = pos;
+        }
+        return new Tokens(chars, ends, n);
+    }
+
+    /** Token count, i.e. the doc length used for scoring. */
+    public int size() { return size; }
+
+    public String get(int i) {
+        int start = i == 0 ? 0 : ends[i - 1];
+        return new String(chars, start, ends[i] - start);
+    }
+
+    public List<String> toList() {
+        List<String> out = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) out.add(get(i));
+        return out;
+    }
+
+    /** A fresh stream over these tokens; {@code reset} rewinds it (its text argument is ignored). */
+    public TokenStream stream() {
+        return new TokenStream(new CharTerm()) {
+            private int i;
+
+            @Override
+            public boolean incrementToken() {
+                if (i >= size) return false;
+                int start = i == 0 ? 0 : ends[i - 1];
+                term.copy(chars, start, ends[i] - start);
+                i++;
+                return true;
+            }
+
+            @Override
+            public void reset(String text) {
+                i = 0;
+            }
+        };
+    }
+}
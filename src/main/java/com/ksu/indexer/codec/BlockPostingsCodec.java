@@ -0,0 +1,459 @@
+package com.ksu.indexer.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Postings format for sorted doc ids: gaps are packed in blocks of {@link #BLOCK_SIZE}
+ * with a per-block bit width (frame of reference), the remainder is VarByte encoded,
+ * and a skip table lets readers jump straight to the block holding a target doc.
+ *
+ * Layout:
+ * <pre>
+ *   vint count
+ *   vint fullBlocks
+ *   [vint maxFreq, vint minLength, vint tailMaxFreq, vint tailMinLength]   impacts only
+ *   fullBlocks x (int lastDocId, int blockOffset [, int maxFreq, int minLength])
+ *                                                   skip table, offsets relative to data start
+ *   data: fullBlocks x (byte bitWidth, packed gaps [, byte freqBitWidth, packed freqs]),
+ *         then VarByte gaps of the tail [, then VarByte freqs of the tail]
+ * </pre>
+ * Gaps are stored as {@code doc - prev - 1} with {@code prev = -1} before the first doc,
+ * so doc id 0 and consecutive ids both cost zero bits. Term frequencies are optional and
+ * stored as {@code freq - 1}. Impacts are optional too: the highest freq and the shortest
+ * doc length of the whole list and of each block, which bound any relevance score
+ * computed from them. Whether a list carries freqs or impacts is known from the section
+ * it lives in, not from the list itself.
+ */
+public final class BlockPostingsCodec {
+    public static final int BLOCK_SIZE = 128;
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private BlockPostingsCodec() {}
+
+    /** Encode the first {@code len} ids of {@code docs}, which must be strictly ascending. */
+    public static byte[] encode(int[] docs, int len) {
+        return encode(docs, null, len);
+    }
+
+    /**
+     * Encode doc ids with their term frequencies ({@code >= 1}); {@code freqs == null}
+     * writes the doc-only format.
+     */
+    public static byte[] encode(int[] docs, int[] freqs, int len) {
+        return encode(docs, freqs, null, len);
+    }
+
+    /**
+     * Encode doc ids, frequencies and impacts; {@code lengths[i]} is the length of doc
+     * {@code docs[i]}, or 0 if unknown. {@code lengths == null} writes no impacts.
+     */
+    public static byte[] encode(int[] docs, int[] freqs, int[] lengths, int len) {
+        if (lengths != null && freqs == null) throw new IllegalArgumentException("impacts need frequencies");
+        Writer w = new Writer(freqs != null, lengths != null);
+        for (int i = 0; i < len; i++) w.add(docs[i], freqs == null ? 1 : freqs[i], lengths == null ? 0 : lengths[i]);
+        return w.toByteArray();
+    }
+
+    /**
+     * Incremental encoder for one list at a time. Only the current block is kept as
+     * ints; full blocks are packed as they complete, so the heap cost of a list is its
+     * encoded size plus one block, however the docs arrive. The header and skip table
+     * go in front of the data, which is why a list is buffered until it is finished.
+     */
+    public static final class Writer {
+        private final boolean hasFreqs;
+        private final boolean hasImpacts;
+        private final int skipStride;
+        private final int[] docs = new int[BLOCK_SIZE];
+        private final int[] freqs = new int[BLOCK_SIZE];
+        private final int[] lengths = new int[BLOCK_SIZE];
+        private final int[] scratch = new int[BLOCK_SIZE];
+        private int inBlock;
+        private int count;
+        private int fullBlocks;
+        private int lastDoc = -1;
+        private int blockPrev = -1;     // last doc of the previous full block
+        private int maxFreq;
+        private int minLength;
+        private byte[] skip = new byte[64];
+        private byte[] data = new byte[256];
+        private int dataLen;
+
+        /** {@code hasImpacts} requires {@code hasFreqs}. */
+        public Writer(boolean hasFreqs, boolean hasImpacts) {
+            if (hasImpacts && !hasFreqs) throw new IllegalArgumentException("impacts need frequencies");
+            this.hasFreqs = hasFreqs;
+            this.hasImpacts = hasImpacts;
+            this.skipStride = hasImpacts ? 16 : 8;
+        }
+
+        /** Append a doc, strictly above the previous one; freq and length are ignored when not kept. */
+        public void add(int doc, int freq, int length) {
+            if (doc <= lastDoc) throw new IllegalArgumentException("doc ids must be strictly ascending");
+            lastDoc = doc;
+            docs[inBlock] = doc;
+            freqs[inBlock] = freq;
+            lengths[inBlock] = length;
+            inBlock++;
+            count++;
+            maxFreq = Math.max(maxFreq, freq);
+            minLength = minLength(minLength, length);
+            if (inBlock == BLOCK_SIZE) packBlock();
+        }
+
+        /** Docs added since the last reset. */
+        public int size() { return count; }
+
+        private void packBlock() {
+            int need = skipStride * (fullBlocks + 1);
+            if (skip.length < need) skip = Arrays.copyOf(skip, Math.max(need, skip.length * 2));
+            need = dataLen + 2 * (1 + BLOCK_SIZE * 33 / 8 + 1);
+            if (data.length < need) data = Arrays.copyOf(data, Math.max(need, data.length * 2));
+
+            int or = 0;
+            int prev = blockPrev;
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                scratch[i] = docs[i] - prev - 1;
+                or |= scratch[i];
+                prev = docs[i];
+            }
+            int bits = 32 - Integer.numberOfLeadingZeros(or);
+            int at = fullBlocks * skipStride;
+            writeInt(skip, at, prev);
+            writeInt(skip, at + 4, dataLen);
+            if (hasImpacts) {
+                writeInt(skip, at + 8, blockMaxFreq(BLOCK_SIZE));
+                writeInt(skip, at + 12, blockMinLength(BLOCK_SIZE));
+            }
+            data[dataLen++] = (byte) bits;
+            dataLen = pack(scratch, BLOCK_SIZE, bits, data, dataLen);
+            if (hasFreqs) {
+                or = 0;
+                for (int i = 0; i < BLOCK_SIZE; i++) {
+                    scratch[i] = freqs[i] - 1;
+                    or |= scratch[i];
+                }
+                bits = 32 - Integer.numberOfLeadingZeros(or);
+                data[dataLen++] = (byte) bits;
+                dataLen = pack(scratch, BLOCK_SIZE, bits, data, dataLen);
+            }
+            blockPrev = prev;
+            fullBlocks++;
+            inBlock = 0;
+        }
+
+        private int blockMaxFreq(int n) {
+            int max = 0;
+            for (int i = 0; i < n; i++) max = Math.max(max, freqs[i]);
+            return max;
+        }
+
+        private int blockMinLength(int n) {
+            int min = 0;
+            for (int i = 0; i < n; i++) min = minLength(min, lengths[i]);
+            return min;
+        }
+
+        /** The finished list; the writer is reset for the next one. */
+        public byte[] toByteArray() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(dataLen + fullBlocks * skipStride + 32 + inBlock * 10);
+            try {
+                writeTo(out);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return out.toByteArray();
+        }
+
+        /** Write the finished list to {@code out} and reset for the next one; returns its size in bytes. */
+        public int writeTo(OutputStream out) throws IOException {
+            byte[] head = new byte[30];
+            int headLen = writeVInt(head, 0, count);
+            headLen = writeVInt(head, headLen, fullBlocks);
+            if (hasImpacts) {
+                headLen = writeVInt(head, headLen, maxFreq);
+                headLen = writeVInt(head, headLen, minLength);
+                headLen = writeVInt(head, headLen, blockMaxFreq(inBlock));
+                headLen = writeVInt(head, headLen, blockMinLength(inBlock));
+            }
+            byte[] tail = new byte[inBlock * 5 * (hasFreqs ? 2 : 1)];
+            int tailLen = 0;
+            int prev = blockPrev;
+            for (int i = 0; i < inBlock; i++) {
+                tailLen = writeVInt(tail, tailLen, docs[i] - prev - 1);
+                prev = docs[i];
+            }
+            if (hasFreqs) {
+                for (int i = 0; i < inBlock; i++) tailLen = writeVInt(tail, tailLen, freqs[i] - 1);
+            }
+            int skipLen = fullBlocks * skipStride;
+            out.write(head, 0, headLen);
+            out.write(skip, 0, skipLen);
+            out.write(data, 0, dataLen);
+            out.write(tail, 0, tailLen);
+            reset();
+            return headLen + skipLen + dataLen + tailLen;
+        }
+
+        private void reset() {
+            inBlock = count = fullBlocks = dataLen = 0;
+            lastDoc = blockPrev = -1;
+            maxFreq = minLength = 0;
+        }
+    }
+
+    // 0 (unknown) only if every doc's length is unknown
+    private static int minLength(int min, int length) {
+        return length > 0 && (min == 0 || length < min) ? length : min;
+    }
+
+    /** Doc count of the list at {@code offset}, read from its header alone. */
+    public static int size(ByteBuffer buf, int offset) {
+        return VarByteCodec.readVInt(buf, new int[]{offset});
+    }
+
+    /**
+     * Forward-only cursor over one encoded list. Blocks are decoded on demand into a
+     * reusable buffer, and {@link #advance(int)} consults the skip table so blocks that
+     * end before the target are never decoded. Frequencies of a block are only unpacked
+     * the first time {@link #freq()} is called on one of its docs.
+     */
+    public static final class Reader {
+        private final ByteBuffer buf;
+        private final boolean hasFreqs;
+        private final boolean hasImpacts;
+        private final int count;
+        private final int fullBlocks;
+        private final int skipStride;
+        private final int[] impacts;   // maxFreq, minLength, tailMaxFreq, tailMinLength
+        private final int skipStart;
+        private final int dataStart;
+        private final int[] block = new int[BLOCK_SIZE];
+        private final int[] freqBlock;
+
+        private int blockIndex = -1;   // block currently in `block`; fullBlocks = tail
+        private int blockLen = 0;
+        private int pos = -1;          // position within `block`
+        private int doc = -1;
+        private int freqsAt = -1;      // packed freqs of the current block, or -1 once unpacked
+        private int impactBlock = 0;   // block located by the last shallowAdvance
+
+        /** {@code offset} is the absolute index of the list's first byte in {@code buf}. */
+        public Reader(ByteBuffer buf, int offset) {
+            this(buf, offset, false);
+        }
+
+        /** A reader over a list written with frequencies when {@code hasFreqs} is set. */
+        public Reader(ByteBuffer buf, int offset, boolean hasFreqs) {
+            this(buf, offset, hasFreqs, false);
+        }
+
+        /** A reader over a list written with frequencies and impacts. */
+        public Reader(ByteBuffer buf, int offset, boolean hasFreqs, boolean hasImpacts) {
+            this.buf = buf;
+            this.hasFreqs = hasFreqs;
+            this.hasImpacts = hasImpacts;
+            this.freqBlock = hasFreqs ? new int[BLOCK_SIZE] : null;
+            int[] p = {offset};
+            this.count = VarByteCodec.readVInt(buf, p);
+            this.fullBlocks = VarByteCodec.readVInt(buf, p);
+            if (hasImpacts) {
+                impacts = new int[4];
+                for (int i = 0; i < 4; i++) impacts[i] = VarByteCodec.readVInt(buf, p);
+            } else {
+                impacts = null;
+            }
+            this.skipStride = hasImpacts ? 16 : 8;
+            this.skipStart = p[0];
+            this.dataStart = skipStart + fullBlocks * skipStride;
+        }
+
+        public int size() { return count; }
+
+        public int docID() { return doc; }
+
+        /** Index of the current doc within the list (0 for the first), e.g. to find its positions. */
+        public int index() { return blockIndex * BLOCK_SIZE + pos; }
+
+        /** Term frequency of the current doc; 1 for lists written without frequencies. */
+        public int freq() {
+            if (!hasFreqs) return 1;
+            if (freqsAt >= 0) {
+                unpack(buf, freqsAt + 1, buf.get(freqsAt), freqBlock, BLOCK_SIZE);
+                for (int i = 0; i < BLOCK_SIZE; i++) freqBlock[i]++;
+                freqsAt = -1;
+            }
+            return freqBlock[pos];
+        }
+
+        /** Highest freq in the list; {@code Integer.MAX_VALUE} when the list has no impacts. */
+        public int maxFreq() {
+            return hasImpacts ? impacts[0] : Integer.MAX_VALUE;
+        }
+
+        /** Shortest doc length in the list; 0 when unknown. */
+        public int minLength() {
+            return hasImpacts ? impacts[1] : 0;
+        }
+
+        /**
+         * Locate the block holding the first doc {@code >= target} without decoding it,
+         * and return that block's last doc ({@link #NO_MORE_DOCS} for the final block).
+         * {@link #blockMaxFreq()} and {@link #blockMinLength()} then describe that block.
+         */
+        public int shallowAdvance(int target) {
+            impactBlock = findBlock(Math.max(blockIndex, 0), target);
+            return impactBlock < fullBlocks ? lastDoc(impactBlock) : NO_MORE_DOCS;
+        }
+
+        public int blockMaxFreq() {
+            if (!hasImpacts) return Integer.MAX_VALUE;
+            return impactBlock < fullBlocks ? buf.getInt(skipStart + impactBlock * skipStride + 8) : impacts[2];
+        }
+
+        public int blockMinLength() {
+            if (!hasImpacts) return 0;
+            return impactBlock < fullBlocks ? buf.getInt(skipStart + impactBlock * skipStride + 12) : impacts[3];
+        }
+
+        public int nextDoc() {
+            if (++pos >= blockLen) {
+                if (!loadBlock(blockIndex + 1)) return doc = NO_MORE_DOCS;
+                pos = 0;
+            }
+            return doc = block[pos];
+        }
+
+        /** First doc {@code >= target}, or {@link #NO_MORE_DOCS}. */
+        public int advance(int target) {
+            if (doc >= target) return doc;
+            if (blockIndex < 0 || (blockIndex < fullBlocks && lastDoc(blockIndex) < target)) {
+                int b = findBlock(Math.max(blockIndex, 0), target);
+                if (b != blockIndex) {
+                    if (!loadBlock(b)) return doc = NO_MORE_DOCS;
+                    pos = -1;
+                }
+            }
+            while (++pos < blockLen) {
+                if (block[pos] >= target) return doc = block[pos];
+            }
+            // the tail, or a block we already exhausted
+            if (!loadBlock(blockIndex + 1)) return doc = NO_MORE_DOCS;
+            pos = -1;
+            return advance(target);
+        }
+
+        /** First block at or after {@code from} whose last doc is {@code >= target}; fullBlocks means the tail. */
+        private int findBlock(int from, int target) {
+            int lo = from, hi = fullBlocks;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (lastDoc(mid) < target) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        private int lastDoc(int b) {
+            return buf.getInt(skipStart + b * skipStride);
+        }
+
+        private boolean loadBlock(int b) {
+            if (b > fullBlocks) return false;
+            blockIndex = b;
+            int prev = b == 0 ? -1 : lastDoc(b - 1);
+            if (b < fullBlocks) {
+                int at = dataStart + buf.getInt(skipStart + b * skipStride + 4);
+                int bits = buf.get(at);
+                unpack(buf, at + 1, bits, block, BLOCK_SIZE);
+                blockLen = BLOCK_SIZE;
+                if (hasFreqs) freqsAt = at + 1 + packedBytes(bits);
+            } else {
+                int tail = count - fullBlocks * BLOCK_SIZE;
+                if (tail == 0) return false;
+                int[] p = {tailStart()};
+                for (int i = 0; i < tail; i++) block[i] = VarByteCodec.readVInt(buf, p);
+                if (hasFreqs) {
+                    for (int i = 0; i < tail; i++) freqBlock[i] = VarByteCodec.readVInt(buf, p) + 1;
+                    freqsAt = -1;
+                }
+                blockLen = tail;
+            }
+            for (int i = 0; i < blockLen; i++) {
+                prev += block[i] + 1;
+                block[i] = prev;
+            }
+            return true;
+        }
+
+        private int tailStart() {
+            if (fullBlocks == 0) return dataStart;
+            int at = dataStart + buf.getInt(skipStart + (fullBlocks - 1) * skipStride + 4);
+            int end = at + 1 + packedBytes(buf.get(at));
+            return hasFreqs ? end + 1 + packedBytes(buf.get(end)) : end;
+        }
+    }
+
+    private static int packedBytes(int bits) {
+        return (BLOCK_SIZE * bits + 7) / 8;
+    }
+
+    private static int pack(int[] vals, int n, int bits, byte[] out, int pos) {
+        if (bits == 0) return pos;
+        long acc = 0;
+        int accBits = 0;
+        long mask = (1L << bits) - 1;
+        for (int i = 0; i < n; i++) {
+            acc |= (vals[i] & mask) << accBits;
+            accBits += bits;
+            while (accBits >= 8) {
+                out[pos++] = (byte) acc;
+                acc >>>= 8;
+                accBits -= 8;
+            }
+        }
+        if (accBits > 0) out[pos++] = (byte) acc;
+        return pos;
+    }
+
+    private static void unpack(ByteBuffer in, int pos, int bits, int[] out, int n) {
+        if (bits == 0) {
+            Arrays.fill(out, 0, n, 0);
+            return;
+        }
+        long acc = 0;
+        int accBits = 0;
+        long mask = (1L << bits) - 1;
+        for (int i = 0; i < n; i++) {
+            while (accBits < bits) {
+                acc |= (in.get(pos++) & 0xFFL) << accBits;
+                accBits += 8;
+            }
+            out[i] = (int) (acc & mask);
+            acc >>>= bits;
+            accBits -= bits;
+        }
+    }
+
+    private static void writeInt(byte[] out, int pos, int v) {
+        out[pos] = (byte) (v >>> 24);
+        out[pos + 1] = (byte) (v >>> 16);
+        out[pos + 2] = (byte) (v >>> 8);
+        out[pos + 3] = (byte) v;
+    }
+
+    // same continuation scheme as VarByteCodec: high bit marks the last byte
+    private static int writeVInt(byte[] out, int pos, int n) {
+        while ((n & ~0x7F) != 0) {
+            out[pos++] = (byte) (n & 0x7F);
+            n >>>= 7;
+        }
+        out[pos++] = (byte) (n | 0x80);
+        return pos;
+    }
+}
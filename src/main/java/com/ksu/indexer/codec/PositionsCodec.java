@@ -0,0 +1,168 @@
+package com.ksu.indexer.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Positions of one term, stored apart from its {@link BlockPostingsCodec} list so that
+ * queries without phrases never read them. Entries follow the postings' doc order;
+ * a doc's positions are located by its index in that list.
+ *
+ * Layout:
+ * <pre>
+ *   vint blocks                       ceil(docs / BLOCK_SIZE)
+ *   blocks x int blockOffset          relative to data start
+ *   data: per doc, vint entryBytes, then freq x vint position gap
+ * </pre>
+ * Blocks line up with the postings blocks, so a reader that skipped postings blocks
+ * jumps straight to the matching positions block and walks at most
+ * {@code BLOCK_SIZE - 1} entries, using their byte lengths, to reach a doc. Gaps are
+ * taken from the previous position in the same doc, starting at 0; the count is the
+ * freq stored with the postings.
+ */
+public final class PositionsCodec {
+    public static final int BLOCK_SIZE = BlockPostingsCodec.BLOCK_SIZE;
+
+    private PositionsCodec() {}
+
+    /** Buffers one list at a time: positions are added doc by doc, then {@link #writeTo} emits it. */
+    public static final class Writer {
+        private byte[] data = new byte[256];
+        private int dataLen;
+        private int[] blockOffsets = new int[8];
+        private int docs;
+        private final byte[] entry = new byte[5];
+        private byte[] doc = new byte[64];
+        private int docLen;
+        private int prev;
+        private boolean inDoc;
+
+        /** Begin the next doc of the list, in postings order. */
+        public void startDoc() {
+            if (inDoc) endDoc();
+            if (docs % BLOCK_SIZE == 0) {
+                int b = docs / BLOCK_SIZE;
+                if (b == blockOffsets.length) blockOffsets = Arrays.copyOf(blockOffsets, b * 2);
+                blockOffsets[b] = dataLen;
+            }
+            docs++;
+            docLen = 0;
+            prev = 0;
+            inDoc = true;
+        }
+
+        /** Add a position of the current doc, not below the previous one. */
+        public void addPosition(int position) {
+            if (position < prev) throw new IllegalArgumentException("positions must be ascending");
+            if (docLen + 5 > doc.length) doc = Arrays.copyOf(doc, doc.length * 2);
+            docLen = writeVInt(doc, docLen, position - prev);
+            prev = position;
+        }
+
+        private void endDoc() {
+            int n = writeVInt(entry, 0, docLen);
+            if (dataLen + n + docLen > data.length) data = Arrays.copyOf(data, Math.max(dataLen + n + docLen, data.length * 2));
+            System.arraycopy(entry, 0, data, dataLen, n);
+            System.arraycopy(doc, 0, data, dataLen + n, docLen);
+            dataLen += n + docLen;
+            inDoc = false;
+        }
+
+        /** Docs started since the last reset. */
+        public int size() { return docs; }
+
+        /** Write the finished list to {@code out} and reset for the next one; returns its size in bytes. */
+        public int writeTo(OutputStream out) throws IOException {
+            if (inDoc) endDoc();
+            int blocks = (docs + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            byte[] head = new byte[5 + blocks * 4];
+            int headLen = writeVInt(head, 0, blocks);
+            for (int b = 0; b < blocks; b++) {
+                writeInt(head, headLen, blockOffsets[b]);
+                headLen += 4;
+            }
+            out.write(head, 0, headLen);
+            out.write(data, 0, dataLen);
+            int size = headLen + dataLen;
+            reset();
+            return size;
+        }
+
+        /** Drop the list being built. */
+        public void reset() {
+            dataLen = docs = docLen = prev = 0;
+            inDoc = false;
+        }
+    }
+
+    /**
+     * Reads the positions of one doc at a time, seeking by the doc's index in the
+     * postings list; seeks are cheapest in ascending order, as a postings cursor makes them.
+     */
+    public static final class Reader {
+        private final ByteBuffer buf;
+        private final int blocks;
+        private final int offsetsStart;
+        private final int dataStart;
+        private final int[] p = new int[1];
+        private int index = -1;      // doc whose entry starts at entryStart
+        private int entryStart;
+        private int prev;
+
+        /** {@code offset} is the absolute index of the list's first byte in {@code buf}. */
+        public Reader(ByteBuffer buf, int offset) {
+            this.buf = buf;
+            p[0] = offset;
+            this.blocks = VarByteCodec.readVInt(buf, p);
+            this.offsetsStart = p[0];
+            this.dataStart = offsetsStart + blocks * 4;
+        }
+
+        /** Position on the doc at {@code index} in the postings list; {@link #nextPosition()} then reads its positions. */
+        public void seek(int index) {
+            int block = index / BLOCK_SIZE;
+            if (block >= blocks) throw new IllegalArgumentException("doc index " + index + " beyond the list");
+            int at;
+            int i;
+            if (this.index >= 0 && this.index <= index && this.index / BLOCK_SIZE == block) {
+                at = entryStart;
+                i = this.index;
+            } else {
+                at = dataStart + buf.getInt(offsetsStart + block * 4);
+                i = block * BLOCK_SIZE;
+            }
+            p[0] = at;
+            for (; i < index; i++) {
+                int len = VarByteCodec.readVInt(buf, p);
+                p[0] += len;
+            }
+            this.index = index;
+            this.entryStart = p[0];
+            VarByteCodec.readVInt(buf, p); // entry length
+            prev = 0;
+        }
+
+        /** Next position of the current doc; call at most freq times after a {@link #seek}. */
+        public int nextPosition() {
+            return prev += VarByteCodec.readVInt(buf, p);
+        }
+    }
+
+    private static void writeInt(byte[] out, int pos, int v) {
+        out[pos] = (byte) (v >>> 24);
+        out[pos + 1] = (byte) (v >>> 16);
+        out[pos + 2] = (byte) (v >>> 8);
+        out[pos + 3] = (byte) v;
+    }
+
+    private static int writeVInt(byte[] out, int pos, int n) {
+        while ((n & ~0x7F) != 0) {
+            out[pos++] = (byte) (n & 0x7F);
+            n >>>= 7;
+        }
+        out[pos++] = (byte) (n | 0x80);
+        return pos;
+    }
+}
@@ -2,6 +2,8 @@
 package com.ksu.indexer.codec;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -51,4 +53,25 @@ public class VarByteCodec {
     public static List<Integer> bytesToInts(byte[] bytes) {
         return decode(bytes);
     }
+
+    /** Write one VarByte int (high bit marks the last byte). */
+    public static void writeVInt(DataOutput out, int n) throws IOException {
+        while ((n & ~0x7F) != 0) {
+            out.writeByte(n & 0x7F);
+            n >>>= 7;
+        }
+        out.writeByte(n | 0x80);
+    }
+
+    /** Read one VarByte int at {@code pos[0]} with absolute gets, advancing {@code pos[0]}. */
+    public static int readVInt(ByteBuffer in, int[] pos) {
+        int n = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.get(pos[0]++) & 0xFF;
+            if ((b & 0x80) != 0) return n | ((b & 0x7F) << shift);
+            n |= b << shift;
+            shift += 7;
+        }
+    }
 }
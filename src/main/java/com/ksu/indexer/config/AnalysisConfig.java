@@ -0,0 +1,17 @@
+package com.ksu.indexer.config;
+
+import com.ksu.indexer.analysis.Analyzer;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class AnalysisConfig {
+    /** One analyzer for indexing and querying; changing the chain requires a reindex. */
+    @Bean
+    public Analyzer analyzer(@Value("${index.analysis.filters:lowercase,asciifolding}") List<String> filters,
+                             @Value("${index.analysis.stop-words:}") List<String> stopWords) {
+        return new Analyzer(filters, stopWords);
+    }
+}
@@ -0,0 +1,42 @@
+package com.ksu.indexer.core;
+
+import com.ksu.indexer.codec.BlockPostingsCodec;
+
+/** {@link PostingsIterator} over a block-encoded list read in place from a mapped segment. */
+final class BlockPostingsIterator implements PostingsIterator {
+    private final BlockPostingsCodec.Reader reader;
+
+    BlockPostingsIterator(BlockPostingsCodec.Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public int docID() { return reader.docID(); }
+
+    @Override
+    public int nextDoc() { return reader.nextDoc(); }
+
+    @Override
+    public int advance(int target) { return reader.advance(target); }
+
+    @Override
+    public int cost() { return reader.size(); }
+
+    @Override
+    public int freq() { return reader.freq(); }
+
+    @Override
+    public int maxFreq() { return reader.maxFreq(); }
+
+    @Override
+    public int minLength() { return reader.minLength(); }
+
+    @Override
+    public int shallowAdvance(int target) { return reader.shallowAdvance(target); }
+
+    @Override
+    public int blockMaxFreq() { return reader.blockMaxFreq(); }
+
+    @Override
+    public int blockMinLength() { return reader.blockMinLength(); }
+}
@@ -0,0 +1,54 @@
+package com.ksu.indexer.core;
+
+/** Skips deleted docs of the wrapped iterator with one bit test per candidate. */
+final class DeletedDocsFilter implements PostingsIterator {
+    private final PostingsIterator in;
+    private final LiveDocs live;
+
+    DeletedDocsFilter(PostingsIterator in, LiveDocs live) {
+        this.in = in;
+        this.live = live;
+    }
+
+    @Override
+    public int docID() { return in.docID(); }
+
+    @Override
+    public int nextDoc() {
+        return skipDeleted(in.nextDoc());
+    }
+
+    @Override
+    public int advance(int target) {
+        return skipDeleted(in.advance(target));
+    }
+
+    private int skipDeleted(int doc) {
+        while (doc != NO_MORE_DOCS && live.isDeleted(doc)) doc = in.nextDoc();
+        return doc;
+    }
+
+    @Override
+    public int cost() { return in.cost(); }
+
+    @Override
+    public int freq() { return in.freq(); }
+
+    @Override
+    public int nextPosition() { return in.nextPosition(); }
+
+    @Override
+    public int maxFreq() { return in.maxFreq(); }
+
+    @Override
+    public int minLength() { return in.minLength(); }
+
+    @Override
+    public int shallowAdvance(int target) { return in.shallowAdvance(target); }
+
+    @Override
+    public int blockMaxFreq() { return in.blockMaxFreq(); }
+
+    @Override
+    public int blockMinLength() { return in.blockMinLength(); }
+}
@@ -0,0 +1,121 @@
+package com.ksu.indexer.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, ascending set of doc ids of one segment: a sorted {@code int[]} while
+ * sparse, a bitset over the segment's doc range once that is smaller.
+ */
+public final class DocIdSet {
+    public static final DocIdSet EMPTY = new DocIdSet(new int[0], null, 0);
+
+    private final int[] docs;   // sparse form, or null
+    private final long[] bits;  // dense form, or null
+    private final int size;
+
+    private DocIdSet(int[] docs, long[] bits, int size) {
+        this.docs = docs;
+        this.bits = bits;
+        this.size = size;
+    }
+
+    /** Drain {@code it} into a set; {@code maxDocId} bounds the doc ids it can return. */
+    public static DocIdSet of(PostingsIterator it, int maxDocId) {
+        int[] docs = new int[Math.max(1, Math.min(it.cost(), 1024))];
+        int n = 0;
+        for (int d = it.nextDoc(); d != PostingsIterator.NO_MORE_DOCS; d = it.nextDoc()) {
+            if (n == docs.length) docs = Arrays.copyOf(docs, n * 2);
+            docs[n++] = d;
+        }
+        if (n == 0) return EMPTY;
+        long[] bits = new long[(maxDocId + 64) >>> 6];
+        if ((long) n * 32 <= (long) bits.length * 64) return new DocIdSet(Arrays.copyOf(docs, n), null, n);
+        for (int i = 0; i < n; i++) bits[docs[i] >>> 6] |= 1L << docs[i];
+        return new DocIdSet(null, bits, n);
+    }
+
+    /**
+     * Union of {@code its} (OR), each drained once into a bitset over the segment, so the
+     * cost is the sum of the lists however many there are; no frequencies are kept.
+     */
+    public static DocIdSet union(List<PostingsIterator> its, int maxDocId) {
+        long[] bits = new long[(maxDocId + 64) >>> 6];
+        for (PostingsIterator it : its) {
+            for (int d = it.nextDoc(); d != PostingsIterator.NO_MORE_DOCS; d = it.nextDoc()) bits[d >>> 6] |= 1L << d;
+        }
+        int n = 0;
+        for (long w : bits) n += Long.bitCount(w);
+        if (n == 0) return EMPTY;
+        if ((long) n * 32 > (long) bits.length * 64) return new DocIdSet(null, bits, n);
+        int[] docs = new int[n];
+        int i = 0;
+        for (int w = 0; w < bits.length; w++) {
+            for (long word = bits[w]; word != 0; word &= word - 1) docs[i++] = (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+        return new DocIdSet(docs, null, n);
+    }
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    /** Approximate heap footprint, for cache accounting. */
+    public long ramBytes() {
+        return 32 + (docs != null ? 16 + 4L * docs.length : 16 + 8L * bits.length);
+    }
+
+    public PostingsIterator iterator() {
+        return docs != null ? new SparseIterator() : new DenseIterator();
+    }
+
+    private final class SparseIterator implements PostingsIterator {
+        private int i = -1;
+        private int doc = -1;
+
+        @Override
+        public int docID() { return doc; }
+
+        @Override
+        public int nextDoc() {
+            return doc = ++i < docs.length ? docs[i] : NO_MORE_DOCS;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (doc >= target) return doc;
+            int at = Arrays.binarySearch(docs, Math.max(i, 0), docs.length, target);
+            i = at >= 0 ? at : -at - 1;
+            return doc = i < docs.length ? docs[i] : NO_MORE_DOCS;
+        }
+
+        @Override
+        public int cost() { return size; }
+    }
+
+    private final class DenseIterator implements PostingsIterator {
+        private int doc = -1;
+
+        @Override
+        public int docID() { return doc; }
+
+        @Override
+        public int nextDoc() { return advance(doc + 1); }
+
+        @Override
+        public int advance(int target) {
+            if (doc >= target) return doc;
+            int w = target >>> 6;
+            if (w >= bits.length) return doc = NO_MORE_DOCS;
+            long word = bits[w] & (-1L << target);
+            while (word == 0) {
+                if (++w == bits.length) return doc = NO_MORE_DOCS;
+                word = bits[w];
+            }
+            return doc = (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        public int cost() { return size; }
+    }
+}
@@ -0,0 +1,205 @@
+package com.ksu.indexer.core;
+
+import com.ksu.indexer.codec.VarByteCodec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Front-coded term dictionary. Terms are cut into blocks of {@link #BLOCK_SIZE}; the
+ * first term of a block is stored whole and the rest as (shared prefix length, suffix)
+ * against their predecessor. A table of block offsets is the sparse index: lookups
+ * binary-search block heads, then scan at most one block. Nothing is copied to the heap.
+ *
+ * Section layout:
+ * <pre>
+ *   int termCount, int blockCount
+ *   blockCount x int blockOffset          relative to the first block
+ *   blocks: head  = vint len, bytes, vint postingsOffset
+ *           other = vint shared, vint suffixLen, suffix bytes, vint postingsDelta
+ * </pre>
+ */
+final class FrontCodedTermDictionary implements TermDictionary {
+    static final int BLOCK_SIZE = 16;
+
+    private final ByteBuffer buf;
+    private final int termCount;
+    private final int blockCount;
+    private final int indexStart;
+    private final int blocksStart;
+
+    FrontCodedTermDictionary(ByteBuffer buf, int sectionStart) {
+        this.buf = buf;
+        this.termCount = buf.getInt(sectionStart);
+        this.blockCount = buf.getInt(sectionStart + 4);
+        this.indexStart = sectionStart + 8;
+        this.blocksStart = indexStart + blockCount * 4;
+    }
+
+    /** Write the section body; {@code terms} must be sorted by unsigned bytes. */
+    static void write(DataOutputStream out, byte[][] terms, int[] postingsOffsets) throws IOException {
+        Writer w = new Writer();
+        for (int i = 0; i < terms.length; i++) w.add(terms[i], postingsOffsets[i]);
+        w.finish(out);
+    }
+
+    /**
+     * Builds the section one term at a time, in unsigned byte order. Only the encoded
+     * blocks are buffered (the block offset table precedes them), never the terms.
+     */
+    static final class Writer {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final DataOutputStream b = new DataOutputStream(body);
+        private int[] blockOffsets = new int[16];
+        private int count;
+        private byte[] prev = new byte[0];
+        private int prevPostings;
+
+        void add(byte[] term, int postingsOffset) throws IOException {
+            if (count % BLOCK_SIZE == 0) {
+                int block = count / BLOCK_SIZE;
+                if (block == blockOffsets.length) blockOffsets = Arrays.copyOf(blockOffsets, block * 2);
+                blockOffsets[block] = b.size();
+                VarByteCodec.writeVInt(b, term.length);
+                b.write(term);
+                VarByteCodec.writeVInt(b, postingsOffset);
+            } else {
+                int shared = 0;
+                int max = Math.min(prev.length, term.length);
+                while (shared < max && prev[shared] == term[shared]) shared++;
+                VarByteCodec.writeVInt(b, shared);
+                VarByteCodec.writeVInt(b, term.length - shared);
+                b.write(term, shared, term.length - shared);
+                VarByteCodec.writeVInt(b, postingsOffset - prevPostings);
+            }
+            prev = term;
+            prevPostings = postingsOffset;
+            count++;
+        }
+
+        int size() { return count; }
+
+        void finish(DataOutputStream out) throws IOException {
+            int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            out.writeInt(count);
+            out.writeInt(blocks);
+            for (int i = 0; i < blocks; i++) out.writeInt(blockOffsets[i]);
+            body.writeTo(out);
+        }
+    }
+
+    @Override
+    public int size() { return termCount; }
+
+    @Override
+    public int find(byte[] term) {
+        BlockCursor c = new BlockCursor(headBlockFor(term));
+        while (c.next()) {
+            int cmp = TermDictionary.compare(c.term, c.termLen, term, term.length);
+            if (cmp == 0) return c.postings;
+            if (cmp > 0) return -1;
+        }
+        return -1;
+    }
+
+    @Override
+    public Cursor seek(byte[] from) {
+        BlockCursor c = new BlockCursor(from == null ? 0 : headBlockFor(from));
+        if (from != null) c.skipBelow(from);
+        return c;
+    }
+
+    /** Last block whose head term is {@code <= term} (0 if term sorts first). */
+    private int headBlockFor(byte[] term) {
+        int lo = 0, hi = blockCount - 1, found = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareHead(mid, term) <= 0) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private int compareHead(int block, byte[] term) {
+        int[] p = {blocksStart + buf.getInt(indexStart + block * 4)};
+        int len = VarByteCodec.readVInt(buf, p);
+        int n = Math.min(len, term.length);
+        for (int i = 0; i < n; i++) {
+            int c = (buf.get(p[0] + i) & 0xFF) - (term[i] & 0xFF);
+            if (c != 0) return c;
+        }
+        return len - term.length;
+    }
+
+    private final class BlockCursor implements Cursor {
+        private final int[] pos = new int[1];
+        private int ord;
+        private int inBlock = -1;
+        private byte[] term = new byte[32];
+        private int termLen;
+        private int postings;
+        // one term of lookahead, filled by skipBelow
+        private boolean pending;
+
+        BlockCursor(int block) {
+            this.ord = block * BLOCK_SIZE - 1;
+            if (blockCount > 0) pos[0] = blocksStart + buf.getInt(indexStart + block * 4);
+        }
+
+        @Override
+        public boolean next() {
+            if (pending) {
+                pending = false;
+                return true;
+            }
+            if (ord + 1 >= termCount) return false;
+            ord++;
+            inBlock = ord % BLOCK_SIZE;
+            if (inBlock == 0) {
+                // blocks are contiguous, so pos already sits on the next head
+                termLen = VarByteCodec.readVInt(buf, pos);
+                ensure(termLen);
+                buf.get(pos[0], term, 0, termLen);
+                pos[0] += termLen;
+                postings = VarByteCodec.readVInt(buf, pos);
+            } else {
+                int shared = VarByteCodec.readVInt(buf, pos);
+                int suffix = VarByteCodec.readVInt(buf, pos);
+                termLen = shared + suffix;
+                ensure(termLen);
+                buf.get(pos[0], term, shared, suffix);
+                pos[0] += suffix;
+                postings += VarByteCodec.readVInt(buf, pos);
+            }
+            return true;
+        }
+
+        void skipBelow(byte[] from) {
+            while (next()) {
+                if (TermDictionary.compare(term, termLen, from, from.length) >= 0) {
+                    pending = true;
+                    return;
+                }
+            }
+        }
+
+        private void ensure(int len) {
+            if (term.length < len) term = Arrays.copyOf(term, Math.max(len, term.length * 2));
+        }
+
+        @Override
+        public byte[] term() { return term; }
+
+        @Override
+        public int termLength() { return termLen; }
+
+        @Override
+        public int postingsOffset() { return postings; }
+    }
+}
@@ -1,6 +1,12 @@
 
 package com.ksu.indexer.core;
 
+import com.ksu.indexer.analysis.CharArrayMap;
+import com.ksu.indexer.analysis.CharTerm;
+import com.ksu.indexer.analysis.TokenStream;
+import com.ksu.indexer.analysis.Tokens;
+import com.ksu.indexer.codec.BlockPostingsCodec;
+import com.ksu.indexer.codec.PositionsCodec;
 import com.ksu.indexer.codec.VarByteCodec;
 import com.ksu.indexer.structures.BloomFilter;
 import java.io.BufferedInputStream;
@@ -8,64 +14,419 @@ import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeSet;
-
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * A segment is built on the heap (write buffer, merges) and, once persisted, reopened
+ * read-only over a memory-mapped file: postings then stay on disk until a query asks
+ * for a term, so an opened segment costs almost no heap.
+ */
 public class IndexSegment {
     private final Path dir;
     private final String segId;
-    private final Map<String, List<Integer>> postings = new HashMap<>();
-    private final Set<Integer> deletedDocs = new HashSet<>();
+    private final Map<String, IntPostings> postings = new HashMap<>();
+    // the same lists keyed for lookups straight from a token buffer; built on the first addDoc
+    private CharArrayMap<IntPostings> termIndex;
+    // heap segments: the terms as UTF-8 sorted unsigned, built by the first seekTerms and
+    // dropped when addDoc brings a new term
+    private volatile byte[][] sortedTerms;
+    // term chars + 4 per (term, doc) posting added, plus 4 per position kept; the
+    // write buffer's flush-size measure
+    private long heapBytes = 0;
+    // heap segments: whether addDoc records token positions (for phrase queries)
+    private final boolean positions;
+    // replaced copy-on-write when read after deletes; see LiveDocs. Guarded by this.
+    private LiveDocs liveDocs = LiveDocs.NONE;
+    // deletes since liveDocs was last read, folded into one generation by liveDocs()
+    private LiveDocs.Builder pendingDeletes;
+    private long savedLiveGeneration = 0;
+    // reader snapshots holding this segment; a retired segment's files go with the last one
+    private final AtomicInteger refCount = new AtomicInteger();
+    private volatile boolean retired;
     private int maxDocId = 0;
-    private BloomFilter bloom = new BloomFilter(1<<20, 7);
+    // token count per doc id and their sum, for length normalization in scoring
+    private int[] docLengths = new int[16];
+    private long sumDocLengths = 0;
+    // fileId per doc id, persisted as a stored field so hits resolve without the manifest
+    private String[] fileIds = new String[16];
+    // heap segments: docs added without a fileId
+    private int withoutFileId = 0;
+    // event-time range of the docs added here, epoch millis; see SegmentStats
+    private long minTimestamp = SegmentStats.NO_MIN_TIMESTAMP;
+    private long maxTimestamp = SegmentStats.NO_MAX_TIMESTAMP;
+    // non-null once opened from a sectioned file; the heap postings map is then unused
+    private final SegmentReader reader;
+    // decoded onto the heap from a v1 stream file: persisted, so it takes sidecars too
+    private boolean legacy;
 
     public IndexSegment(Path dir, String segId) {
+        this(dir, segId, true);
+    }
+
+    /** A heap segment that keeps token positions only if {@code positions} is set. */
+    public IndexSegment(Path dir, String segId, boolean positions) {
+        this.dir = dir;
+        this.segId = segId;
+        this.reader = null;
+        this.positions = positions;
+    }
+
+    private IndexSegment(Path dir, String segId, SegmentReader reader) {
         this.dir = dir;
         this.segId = segId;
+        this.reader = reader;
+        this.positions = reader.hasPositions();
+        this.maxDocId = reader.maxDocId();
+        this.sumDocLengths = reader.sumDocLengths();
+        this.liveDocs = LiveDocs.of(reader.deletedDocs());
+        this.minTimestamp = reader.minTimestamp();
+        this.maxTimestamp = reader.maxTimestamp();
     }
 
     public String id(){ return segId; }
 
-    public int addDoc(List<String> terms) {
+    public int maxDocId() { return maxDocId; }
+
+    public boolean isEmpty() { return maxDocId == 0; }
+
+    /** Add a doc of already-analyzed terms and remember which file it is a version of. */
+    public int addDoc(List<String> terms, String fileId) {
+        return addDoc(Tokens.of(terms).stream(), fileId, null);
+    }
+
+    /**
+     * Add a doc by draining an analyzed token stream, with the time of the event that
+     * produced it if known. Terms are looked up by their chars, so only a term new to
+     * this segment costs a String.
+     */
+    public int addDoc(TokenStream tokens, String fileId, Instant ts) {
+        if (reader != null) throw new IllegalStateException("segment " + segId + " is read-only");
+        if (termIndex == null) {
+            termIndex = new CharArrayMap<>(Math.max(16, postings.size()));
+            for (var e : postings.entrySet()) termIndex.put(e.getKey(), e.getValue());
+        }
         int docId = ++maxDocId;
-        Set<String> seen = new HashSet<>();
-        for (String t : terms) {
-            if (!seen.add(t)) continue;
-            postings.computeIfAbsent(t, k -> new ArrayList<>()).add(docId);
-            bloom.add(t);
+        int length = 0;
+        CharTerm term = tokens.term();
+        while (tokens.incrementToken()) {
+            IntPostings p = termIndex.get(term.buffer(), term.length());
+            if (p == null) {
+                String t = term.toString();
+                p = new IntPostings(4, positions);
+                postings.put(t, p);
+                termIndex.put(t, p);
+                sortedTerms = null;
+            }
+            // a token's position is its ordinal in the analyzed stream
+            if (p.addOccurrence(docId, length)) heapBytes += term.length() + 4;
+            if (positions) heapBytes += 4;
+            length++;
+        }
+        setDocLength(docId, length);
+        setFileId(docId, fileId);
+        if (fileId == null) withoutFileId++;
+        if (ts != null) {
+            minTimestamp = Math.min(minTimestamp, ts.toEpochMilli());
+            maxTimestamp = Math.max(maxTimestamp, ts.toEpochMilli());
         }
         return docId;
     }
 
-    public void deleteDoc(int docId) {
-        deletedDocs.add(docId);
+    private void setFileId(int docId, String fileId) {
+        if (docId >= fileIds.length) fileIds = Arrays.copyOf(fileIds, Math.max(docId + 1, fileIds.length * 2));
+        fileIds[docId] = fileId;
+    }
+
+    /**
+     * fileId stored with a doc; null if it has none, and always in v1 segments (the
+     * manifest docmap has theirs).
+     */
+    public String fileId(int docId) {
+        if (reader != null) return reader.fileId(docId);
+        return docId >= 0 && docId < fileIds.length ? fileIds[docId] : null;
+    }
+
+    /**
+     * At least as many docs as were stored without a fileId, deleted ones included; for
+     * mapped segments the unused doc id 0 of a flushed buffer counts too. Meaningless
+     * for v1 segments, which store no fileIds at all.
+     */
+    public int docsWithoutFileId() {
+        return reader != null ? reader.docsWithoutFileId() : withoutFileId;
+    }
+
+    /** True for mapped (sectioned) segment files; the write buffer and legacy files live on the heap. */
+    public boolean isMapped() { return reader != null; }
+
+    /** False for v1 files, whose fileIds only the manifest docmap has. */
+    public boolean hasStoredFileIds() { return !legacy; }
+
+    private void setDocLength(int docId, int length) {
+        if (docId >= docLengths.length) docLengths = Arrays.copyOf(docLengths, Math.max(docId + 1, docLengths.length * 2));
+        sumDocLengths += length - docLengths[docId];
+        docLengths[docId] = length;
+    }
+
+    /** Approximate heap taken by postings added here: term chars plus 4 bytes per posting. */
+    public long heapBytes() { return heapBytes; }
+
+    /** Token count of a doc, or 0 in v1 segments, which were written without doc lengths. */
+    public int docLength(int docId) {
+        if (reader != null) return reader.docLength(docId);
+        return docId < docLengths.length ? docLengths[docId] : 0;
+    }
+
+    /** Sum of all doc lengths, deleted docs included; 0 for v1 segments. */
+    public long sumDocLengths() { return sumDocLengths; }
+
+    /**
+     * Delete docs. They take effect as a new live-docs generation the next time the live
+     * docs are read, so readers holding the old one are unaffected and a run of deletes
+     * between two reads shares one copy.
+     */
+    public synchronized void deleteDoc(int... docIds) {
+        if (pendingDeletes == null) pendingDeletes = new LiveDocs.Builder(liveDocs);
+        pendingDeletes.delete(docIds);
+    }
+
+    /** Current live docs; fetch once per query for a consistent view. */
+    public synchronized LiveDocs liveDocs() {
+        if (pendingDeletes != null) {
+            liveDocs = pendingDeletes.build();
+            pendingDeletes = null;
+        }
+        return liveDocs;
+    }
+
+    /**
+     * Save the live docs as a sidecar generation if they changed since the last save
+     * (or since the file was written). Returns true if a sidecar was written.
+     */
+    public synchronized boolean saveLiveDocs() throws IOException {
+        if (reader == null && !legacy) throw new IllegalStateException("segment " + segId + " is not persisted");
+        LiveDocs live = liveDocs();
+        if (live.generation() == savedLiveGeneration) return false;
+        live.write(dir, segId);
+        savedLiveGeneration = live.generation();
+        return true;
+    }
+
+    /** Called by each reader snapshot that includes this segment. */
+    public void incRef() {
+        refCount.incrementAndGet();
+    }
+
+    /** Release one snapshot's reference; the last release of a retired segment removes its files. */
+    public void decRef() {
+        if (refCount.decrementAndGet() == 0 && retired) deleteFilesQuietly();
+    }
+
+    /**
+     * Mark a segment that has left the index (merged away). Its files are removed once
+     * no snapshot references it, so queries that started before the merge finish on it.
+     */
+    public void retire() {
+        retired = true;
+        if (refCount.get() == 0) deleteFilesQuietly();
+    }
+
+    public boolean isRetired() { return retired; }
+
+    // both retire() and the last decRef() may get here; deleting is idempotent
+    private void deleteFilesQuietly() {
+        try {
+            deleteFiles(dir, segId);
+        } catch (IOException ex) {
+            // the segment is out of the manifest, so a leftover file is never loaded again
+        }
+    }
+
+    /** Remove a dropped segment's file and live-docs sidecars. */
+    public static void deleteFiles(Path dir, String segId) throws IOException {
+        Files.deleteIfExists(dir.resolve(segId + ".seg"));
+        LiveDocs.deleteAll(dir, segId);
     }
 
     public boolean mightContainTerm(String term) {
-        return bloom.mightContain(term);
+        // mapped: range check, then the persisted bloom filter, then the dictionary;
+        // heap segments answer exactly from their postings map
+        if (reader != null) return reader.find(term) >= 0;
+        return postings.containsKey(term);
+    }
+
+    /** Terms of this segment; sorted by UTF-8 bytes for persisted segments. */
+    public Iterable<String> terms() {
+        if (reader == null) return postings.keySet();
+        return termsWithPrefix("");
+    }
+
+    /**
+     * Terms starting with {@code prefix}, in byte order. Persisted segments seek the
+     * dictionary to the prefix and stop at the first non-match, so the cost follows
+     * the number of matching terms, not the vocabulary.
+     */
+    public Iterable<String> termsWithPrefix(String prefix) {
+        byte[] p = prefix.getBytes(StandardCharsets.UTF_8);
+        return () -> new Iterator<>() {
+            private final TermsCursor c = seekTerms(prefix.isEmpty() ? null : p);
+            private Boolean ready;
+
+            @Override
+            public boolean hasNext() {
+                if (ready == null) ready = c.next() && c.startsWith(p);
+                return ready;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                ready = null;
+                return c.termString();
+            }
+        };
+    }
+
+    /**
+     * Cursor over the terms {@code >= from} in unsigned UTF-8 byte order ({@code null}
+     * starts at the first). Persisted segments seek the mapped dictionary; heap segments
+     * binary-search a sorted copy of their terms, built once and kept until a new term
+     * is added. Seeking again is cheap, so callers that can rule out a whole prefix jump
+     * past it instead of reading on.
+     */
+    public TermsCursor seekTerms(byte[] from) {
+        if (reader != null) return reader.terms(from);
+        byte[][] sorted = sortedTerms;
+        if (sorted == null) {
+            sorted = new byte[postings.size()][];
+            int i = 0;
+            for (String t : postings.keySet()) sorted[i++] = t.getBytes(StandardCharsets.UTF_8);
+            Arrays.sort(sorted, Arrays::compareUnsigned);
+            sortedTerms = sorted;
+        }
+        int start = 0;
+        if (from != null) {
+            int lo = 0;
+            int hi = sorted.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (Arrays.compareUnsigned(sorted[mid], from) < 0) lo = mid + 1;
+                else hi = mid;
+            }
+            start = lo;
+        }
+        byte[][] terms = sorted;
+        int first = start;
+        return new TermsCursor() {
+            private int i = first - 1;
+
+            @Override
+            public boolean next() {
+                return ++i < terms.length;
+            }
+
+            @Override
+            public byte[] term() { return terms[i]; }
+
+            @Override
+            public int termLength() { return terms[i].length; }
+        };
+    }
+
+    /** Postings of {@code term} without deleted docs. */
+    public PostingsIterator postings(String term) {
+        return postings(term, liveDocs());
     }
 
-    public List<Integer> getPostings(String term) {
-        List<Integer> p = postings.getOrDefault(term, Collections.emptyList());
-        if (p.isEmpty()) return p;
-        List<Integer> filtered = new ArrayList<>(p.size());
-        for (int id : p) if (!deletedDocs.contains(id)) filtered.add(id);
-        return filtered;
+    /** Postings of {@code term} without the docs deleted in {@code live}. */
+    public PostingsIterator postings(String term, LiveDocs live) {
+        PostingsIterator it = rawPostings(term);
+        return it == PostingsIterator.EMPTY ? it : live.filter(it);
+    }
+
+    /** True if phrase positions can be read from this segment (see {@link #positions(String, LiveDocs)}). */
+    public boolean hasPositions() { return positions; }
+
+    /**
+     * Postings of {@code term} without the docs deleted in {@code live}, whose
+     * {@link PostingsIterator#nextPosition()} reads the term's positions. Only for
+     * segments that {@link #hasPositions()}. Mapped segments only touch the positions
+     * of docs they are asked about.
+     */
+    public PostingsIterator positions(String term, LiveDocs live) {
+        PostingsIterator it = rawPositions(term);
+        return it == PostingsIterator.EMPTY ? it : live.filter(it);
+    }
+
+    /** {@link #positions(String, LiveDocs)} with deleted docs included. */
+    public PostingsIterator rawPositions(String term) {
+        if (!positions) throw new IllegalStateException("segment " + segId + " was written without positions");
+        if (reader == null) return rawPostings(term);
+        int offset = reader.find(term);
+        if (offset < 0) return PostingsIterator.EMPTY;
+        return new PositionalPostingsIterator(reader.postings(offset), reader.positions(offset));
+    }
+
+    /** Postings of {@code term}, deleted docs included. */
+    public PostingsIterator rawPostings(String term) {
+        if (reader == null) {
+            IntPostings p = postings.get(term);
+            return p == null ? PostingsIterator.EMPTY : p.iterator();
+        }
+        int offset = reader.find(term);
+        if (offset < 0) return PostingsIterator.EMPTY;
+        return new BlockPostingsIterator(reader.postings(offset));
     }
 
-    public List<Integer> getRawPostings(String term) {
-        return postings.getOrDefault(term, Collections.emptyList());
+    /** Number of docs containing {@code term}, deleted docs included; mapped segments read only the list header. */
+    public int docFreq(String term) {
+        if (reader == null) return rawPostings(term).cost();
+        int offset = reader.find(term);
+        return offset < 0 ? 0 : reader.docFreq(offset);
     }
 
+    /**
+     * Counts, term range and event-time range. Mapped segments answer from the file;
+     * heap segments scan their terms, so on the write buffer this is for diagnostics,
+     * not per query.
+     */
+    public SegmentStats stats() {
+        int live = maxDocId - liveDocs().deletedCount();
+        if (reader != null) {
+            return new SegmentStats(maxDocId, live, reader.termCount(), sumDocLengths, reader.minTerm(), reader.maxTerm(),
+                    minTimestamp, maxTimestamp, reader.sizeBytes());
+        }
+        byte[] min = null;
+        byte[] max = null;
+        for (String t : postings.keySet()) {
+            byte[] b = t.getBytes(StandardCharsets.UTF_8);
+            if (min == null || Arrays.compareUnsigned(b, min) < 0) min = b;
+            if (max == null || Arrays.compareUnsigned(b, max) > 0) max = b;
+        }
+        return new SegmentStats(maxDocId, live, postings.size(), sumDocLengths,
+                min == null ? null : new String(min, StandardCharsets.UTF_8),
+                max == null ? null : new String(max, StandardCharsets.UTF_8),
+                minTimestamp, maxTimestamp, -1);
+    }
+
+    long minTimestamp() { return minTimestamp; }
+
+    long maxTimestamp() { return maxTimestamp; }
+
+    /** Heap estimate while building; the real file size once persisted. */
     public int sizeBytesEstimate() {
+        if (reader != null) return (int) reader.sizeBytes();
         int sum = 0;
         for (var e : postings.entrySet()) {
             sum += e.getKey().length();
@@ -74,195 +435,228 @@ public class IndexSegment {
         return sum;
     }
 
+    /** Point-in-time copy for readers while this segment is still being written. */
+    IndexSegment snapshot() {
+        if (reader != null) return this;
+        IndexSegment s = new IndexSegment(dir, segId, positions);
+        for (var e : postings.entrySet()) s.postings.put(e.getKey(), e.getValue().copy());
+        s.liveDocs = liveDocs();
+        s.maxDocId = maxDocId;
+        s.docLengths = Arrays.copyOf(docLengths, maxDocId + 1);
+        s.sumDocLengths = sumDocLengths;
+        s.fileIds = Arrays.copyOf(fileIds, maxDocId + 1);
+        s.withoutFileId = withoutFileId;
+        s.minTimestamp = minTimestamp;
+        s.maxTimestamp = maxTimestamp;
+        return s;
+    }
+
     public double deletedRatio() {
         if (maxDocId == 0) return 0.0;
-        return (double) deletedDocs.size() / (double) maxDocId;
+        return (double) liveDocs().deletedCount() / (double) maxDocId;
     }
 
+    /** Write this heap segment as a sectioned file; reopen it with {@link #load} to map it. */
     public void persist() throws IOException {
+        persist(BloomFilter.Spec.DEFAULT);
+    }
+
+    /** As above, with a bloom filter built to {@code bloom}. */
+    public void persist(BloomFilter.Spec bloom) throws IOException {
+        persist(null, bloom);
+    }
+
+    // limiter paces the file writes (merges); null writes at full speed
+    private void persist(RateLimiter limiter, BloomFilter.Spec bloomSpec) throws IOException {
+        if (reader != null) throw new IllegalStateException("segment " + segId + " is already persisted");
         Files.createDirectories(dir);
-        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dir.resolve(segId + ".seg"))))) {
+        // a crashed earlier attempt at this id must not leave sidecars behind
+        LiveDocs.deleteAll(dir, segId);
+        String[] terms = postings.keySet().toArray(new String[0]);
+        byte[][] keys = new byte[terms.length][];
+        for (int i = 0; i < terms.length; i++) keys[i] = terms[i].getBytes(StandardCharsets.UTF_8);
+        Integer[] order = new Integer[terms.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+
+        try (SegmentWriter w = new SegmentWriter(dir.resolve(segId + ".seg"), limiter)) {
+            DataOutputStream out = w.beginSection(SegmentFormat.SECTION_META);
             out.writeInt(maxDocId);
-            out.writeInt(postings.size());
-            for (var e : postings.entrySet()) {
-                out.writeUTF(e.getKey());
-                byte[] enc = VarByteCodec.intsToBytes(e.getValue());
-                out.writeInt(enc.length);
-                out.write(enc);
+            out.writeInt(terms.length);
+            w.endSection();
+
+            int[] postingsOffsets = new int[terms.length];
+            out = w.beginSection(SegmentFormat.SECTION_POSTINGS_IMPACTS);
+            int[] lengths = new int[16];
+            for (int i = 0; i < order.length; i++) {
+                IntPostings p = postings.get(terms[order[i]]);
+                if (lengths.length < p.size()) lengths = new int[Math.max(p.size(), lengths.length * 2)];
+                for (int j = 0; j < p.size(); j++) lengths[j] = docLength(p.get(j));
+                postingsOffsets[i] = (int) w.sectionPosition();
+                out.write(BlockPostingsCodec.encode(p.array(), p.freqArray(), lengths, p.size()));
             }
-            out.writeInt(deletedDocs.size());
-            for (int d : deletedDocs) out.writeInt(d);
+            w.endSection();
+
+            if (positions) {
+                int[] positionsOffsets = new int[terms.length];
+                out = w.beginSection(SegmentFormat.SECTION_POSITIONS);
+                PositionsCodec.Writer pw = new PositionsCodec.Writer();
+                for (int i = 0; i < order.length; i++) {
+                    IntPostings p = postings.get(terms[order[i]]);
+                    int[] all = p.positionArray();
+                    for (int j = 0; j < p.size(); j++) {
+                        pw.startDoc();
+                        int start = p.positionStart(j);
+                        for (int k = 0; k < p.freq(j); k++) pw.addPosition(all[start + k]);
+                    }
+                    positionsOffsets[i] = (int) w.sectionPosition();
+                    pw.writeTo(out);
+                }
+                w.endSection();
+                writePositionsIndex(w.beginSection(SegmentFormat.SECTION_POSITIONS_INDEX), postingsOffsets, positionsOffsets, terms.length);
+                w.endSection();
+            }
+
+            byte[][] sorted = new byte[order.length][];
+            for (int i = 0; i < order.length; i++) sorted[i] = keys[order[i]];
+            FrontCodedTermDictionary.write(w.beginSection(SegmentFormat.SECTION_TERM_BLOCKS), sorted, postingsOffsets);
+            w.endSection();
+
+            out = w.beginSection(SegmentFormat.SECTION_DELETES);
+            int[] deleted = liveDocs().toArray();
+            out.writeInt(deleted.length);
+            for (int d : deleted) out.writeInt(d);
+            w.endSection();
+
+            out = w.beginSection(SegmentFormat.SECTION_DOC_LENGTHS);
+            out.writeLong(sumDocLengths);
+            out.writeInt(maxDocId + 1);
+            for (int d = 0; d <= maxDocId; d++) out.writeInt(d < docLengths.length ? docLengths[d] : 0);
+            w.endSection();
+
+            out = w.beginSection(SegmentFormat.SECTION_FILE_IDS);
+            byte[][] ids = new byte[maxDocId + 1][];
+            out.writeInt(ids.length);
+            int end = 0;
+            out.writeInt(end);
+            for (int d = 0; d < ids.length; d++) {
+                String f = fileId(d);
+                ids[d] = f == null ? new byte[0] : f.getBytes(StandardCharsets.UTF_8);
+                end += ids[d].length;
+                out.writeInt(end);
+            }
+            for (byte[] id : ids) out.write(id);
+            w.endSection();
+
+            SegmentStats.write(w.beginSection(SegmentFormat.SECTION_STATS),
+                    sorted.length == 0 ? null : sorted[0], sorted.length == 0 ? null : sorted[sorted.length - 1],
+                    minTimestamp, maxTimestamp);
+            w.endSection();
+
+            // sized to this segment's terms, and mapped in place when the file is opened
+            BloomFilter bloom = BloomFilter.create(sorted.length, bloomSpec);
+            for (byte[] t : sorted) bloom.add(t, t.length);
+            bloom.write(w.beginSection(SegmentFormat.SECTION_BLOOM));
+            w.endSection();
+            w.finish();
         }
     }
 
+    /** Body of {@link SegmentFormat#SECTION_POSITIONS_INDEX}; postings offsets ascend with term order. */
+    static void writePositionsIndex(DataOutputStream out, int[] postingsOffsets, int[] positionsOffsets, int n)
+            throws IOException {
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            out.writeInt(postingsOffsets[i]);
+            out.writeInt(positionsOffsets[i]);
+        }
+    }
+
+    /**
+     * Open a persisted segment. Sectioned files are memory-mapped and read lazily;
+     * files in the original v1 stream format are decoded onto the heap.
+     */
     public static IndexSegment load(Path dir, String segId) throws IOException {
-        IndexSegment s = new IndexSegment(dir, segId);
+        IndexSegment s = open(dir, segId);
+        // deletes made after the file was written live in the newest sidecar
+        s.liveDocs = LiveDocs.readLatest(dir, segId, s.liveDocs);
+        s.savedLiveGeneration = s.liveDocs.generation();
+        return s;
+    }
+
+    private static IndexSegment open(Path dir, String segId) throws IOException {
         Path p = dir.resolve(segId + ".seg");
+        if (SegmentReader.isSectioned(p)) return new IndexSegment(dir, segId, SegmentReader.open(p));
+        IndexSegment s = new IndexSegment(dir, segId, false);
+        s.legacy = true;
         try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(p)))) {
-            s.maxDocId = in.readInt();
+            // v1 files have no header and start with maxDocId
+            int first = in.readInt();
+            if (first == SegmentFormat.MAGIC) throw new IOException("unsupported segment version " + in.readInt() + " in " + p);
+            s.maxDocId = first;
             int terms = in.readInt();
             for (int i=0;i<terms;i++) {
                 String term = in.readUTF();
                 int len = in.readInt();
                 byte[] enc = in.readNBytes(len);
-                List<Integer> postings = VarByteCodec.bytesToInts(enc);
-                s.postings.put(term, new ArrayList<>(postings));
-                s.bloom.add(term);
+                IntPostings postings = new IntPostings();
+                for (int d : VarByteCodec.bytesToInts(enc)) postings.add(d);
+                s.postings.put(term, postings);
             }
-            int dels = in.readInt();
-            for (int i=0;i<dels;i++) s.deletedDocs.add(in.readInt());
+            int[] dels = new int[in.readInt()];
+            for (int i=0;i<dels.length;i++) dels[i] = in.readInt();
+            s.liveDocs = LiveDocs.of(dels);
         }
         return s;
     }
 
-    public static IndexSegment merge(Path dir, String newId, List<IndexSegment> segs) throws IOException {
-        IndexSegment out = new IndexSegment(dir, newId);
-        Map<String, TreeSet<Integer>> agg = new HashMap<>();
-        for (IndexSegment s : segs) {
-            for (var e : s.postings.entrySet()) {
-                agg.computeIfAbsent(e.getKey(), k -> new TreeSet<>()).addAll(e.getValue());
-            }
-        }
-        for (var e : agg.entrySet()) {
-            out.postings.put(e.getKey(), new ArrayList<>(e.getValue()));
-            out.bloom.add(e.getKey());
-        }
-        out.maxDocId = agg.values().stream().mapToInt(TreeSet::size).max().orElse(0);
-        out.persist();
-        return out;
-    }
-
-  /**
-   * Merge that also returns a doc remap: for each NEW docId in the merged segment,
-   * tells which (segId, docId) it originally came from.
-   *
-   * Assumes the existing `merge(dir, id, parts)` concatenates all docs from `parts`
-   * in the same order they're provided, preserving each part's internal doc order.
-   */
-/*  public static MergedResult mergeWithRemap(java.nio.file.Path dir, String id, java.util.List<IndexSegment> parts)
-      throws java.io.IOException {
-
-    // 1) Precompute the remap by concatenation order:
-    // newDocId 0..(N-1) maps to each part's docs in order.
-    java.util.ArrayList<DocPointer> remap = new java.util.ArrayList<>();
-    for (IndexSegment p : parts) {
-      int n = p.maxDocId;              // <-- If your API differs, replace this call.
-      String srcSegId = p.id();
-      for (int d = 0; d < n; d++) {
-        remap.add(new DocPointer(srcSegId, d));
-      }
-    }
-
-    // 2) Use your existing merge implementation to actually write/build the merged segment.
-    IndexSegment merged = merge(dir, id, parts);
-
-    // 3) Return both the merged segment and the precomputed remap.
-    return new MergedResult(merged, remap);
-  }*/
-
-
-  /**
-   * Merge segments and also return a doc remap:
-   * - For each NEW docId in the merged segment (0..N-1),
-   *   tell which (segId, docId) it originally came from.
-   *
-   * This method REMAPS doc IDs so that the merged segment uses a contiguous
-   * 0..N-1 space. It also rebuilds postings and bloom accordingly.
-   */
-  public static MergedResult mergeWithRemap(Path dir, String newId, java.util.List<IndexSegment> parts)
-      throws IOException {
-
-    // 0) Collect live (non-deleted) docs per source segment
-    //    We'll discover live docs by unioning all term postings (filtered).
-    java.util.Map<IndexSegment, java.util.SortedSet<Integer>> livePerSeg = new java.util.HashMap<>();
-    for (IndexSegment s : parts) {
-      java.util.SortedSet<Integer> live = new java.util.TreeSet<>();
-      for (var e : s.postings.entrySet()) {
-        // use filtered postings (skips deleted doc IDs)
-        java.util.List<Integer> p = s.getPostings(e.getKey());
-        live.addAll(p);
-      }
-      livePerSeg.put(s, live);
-    }
-
-    // 1) Assign new contiguous doc IDs (by segment order, then by old docId)
-    //    and build remap[newDocId] -> (srcSegId, oldDocId).
-    java.util.ArrayList<DocPointer> remap = new java.util.ArrayList<>();
-    java.util.Map<IndexSegment, java.util.Map<Integer,Integer>> oldToNew = new java.util.HashMap<>();
-    int nextNewId = 0;
-    for (IndexSegment s : parts) {
-      java.util.Map<Integer,Integer> m = new java.util.HashMap<>();
-      for (int oldId : livePerSeg.get(s)) {
-        m.put(oldId, nextNewId);
-        remap.add(new DocPointer(s.id(), oldId));
-        nextNewId++;
-      }
-      oldToNew.put(s, m);
-    }
-
-    // 2) Build remapped postings: union by term, but IDs are NEW global IDs
-    java.util.Map<String, java.util.SortedSet<Integer>> agg = new java.util.HashMap<>();
-    for (IndexSegment s : parts) {
-      java.util.Map<Integer,Integer> map = oldToNew.get(s);
-      for (var e : s.postings.entrySet()) {
-        String term = e.getKey();
-        java.util.List<Integer> srcPost = s.getPostings(term); // filtered
-        if (srcPost.isEmpty()) continue;
-        java.util.SortedSet<Integer> dst = agg.computeIfAbsent(term, k -> new java.util.TreeSet<>());
-        for (int oldId : srcPost) {
-          int remappedId = map.get(oldId);
-          if (newId != null) dst.add(remappedId);
-        }
-      }
+    /**
+     * Merge segments into one with contiguous doc ids 0..N-1, dropping deleted docs, and
+     * return which (segId, docId) each new doc came from. Postings are streamed into the
+     * new file term by term (see SegmentMerger), so merge memory does not grow with the
+     * size of the inputs. Unthrottled, with each source's own stored fileIds.
+     */
+    public static MergedResult mergeWithRemap(Path dir, String newId, List<IndexSegment> parts) throws IOException {
+        List<IntFunction<String>> fileIds = new ArrayList<>();
+        for (IndexSegment p : parts) fileIds.add(p::fileId);
+        return mergeWithRemap(dir, newId, parts, fileIds, null, BloomFilter.Spec.DEFAULT);
     }
 
-    // 3) Create merged segment with remapped postings
-    IndexSegment out = new IndexSegment(dir, newId);
-
-// Replace postings with remapped lists
-    for (var e : agg.entrySet()) {
-      out.postings.put(e.getKey(), new java.util.ArrayList<>(e.getValue()));
+    /**
+     * As above, reading each source's fileIds through {@code fileIds} (same order as the
+     * sources), so the merged segment stores them even for sources that do not; writing
+     * through {@code limiter} (null = unthrottled); and with the merged segment's bloom
+     * filter built to {@code bloom}.
+     */
+    public static MergedResult mergeWithRemap(Path dir, String newId, List<IndexSegment> parts,
+            List<IntFunction<String>> fileIds, RateLimiter limiter, BloomFilter.Spec bloom) throws IOException {
+        return SegmentMerger.merge(dir, newId, parts, fileIds, limiter, bloom);
     }
 
-// No deletions after merge
-    out.deletedDocs.clear();
+    /** Identifies a source doc by (segmentId, docId). */
+    public static final class DocPointer {
+        public final String segId;
+        public final int docId;
 
-// New contiguous doc id space size
-    out.maxDocId = nextNewId;
-
-// Rebuild bloom
-    out.bloom = new BloomFilter(1<<20, 7);
-    for (String term : agg.keySet()) out.bloom.add(term);
-
-// 4) Persist using the segment's own format
-    out.persist();
-
-// 5) Either return the in-memory object…
-    return new MergedResult(out, remap);
-
-// …or, if you prefer normalization via load():
-// IndexSegment merged = IndexSegment.load(dir, newId);
-// return new MergedResult(merged, remap);
-
-  }
-
-
-
-  /** Identifies a source doc by (segmentId, docId). */
-  public static final class DocPointer {
-    public final String segId;
-    public final int docId;
-    public DocPointer(String segId, int docId) { this.segId = segId; this.docId = docId; }
-  }
-
-  /** Result of a merge: the new segment + mapping newDocId -> source (segId,docId). */
-  public static final class MergedResult {
-    public final IndexSegment segment;
-    public final java.util.List<DocPointer> remap;
-    public MergedResult(IndexSegment segment, java.util.List<DocPointer> remap) {
-      this.segment = segment; this.remap = remap;
+        public DocPointer(String segId, int docId) {
+            this.segId = segId;
+            this.docId = docId;
+        }
     }
-  }
-
 
+    /**
+     * Result of a merge: the new segment + mapping newDocId -> source (segId,docId),
+     * and the live docs each source was read with (same order as the sources).
+     */
+    public static final class MergedResult {
+        public final IndexSegment segment;
+        public final List<DocPointer> remap;
+        public final List<LiveDocs> sourceLiveDocs;
+
+        public MergedResult(IndexSegment segment, List<DocPointer> remap, List<LiveDocs> sourceLiveDocs) {
+            this.segment = segment;
+            this.remap = remap;
+            this.sourceLiveDocs = sourceLiveDocs;
+        }
+    }
 }
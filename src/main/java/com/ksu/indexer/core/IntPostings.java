@@ -0,0 +1,188 @@
+package com.ksu.indexer.core;
+
+import java.util.Arrays;
+
+/**
+ * Growable, ascending {@code int[]} posting list for segments being built on the heap,
+ * with a parallel array of term frequencies and, optionally, the term's positions:
+ * one flat array in doc order, plus where each doc's run of {@code freq} starts.
+ */
+public final class IntPostings {
+    private int[] docs;
+    private int[] freqs;
+    private int size;
+    // null when positions are not kept
+    private int[] positions;
+    private int[] positionStarts;
+    private int positionCount;
+
+    public IntPostings() {
+        this(4);
+    }
+
+    public IntPostings(int capacity) {
+        this(capacity, false);
+    }
+
+    /** With {@code positions}, docs are added through {@link #addOccurrence(int, int)} only. */
+    public IntPostings(int capacity, boolean positions) {
+        this.docs = new int[Math.max(1, capacity)];
+        this.freqs = new int[docs.length];
+        if (positions) {
+            this.positions = new int[docs.length];
+            this.positionStarts = new int[docs.length];
+        }
+    }
+
+    /** Append a doc id; callers add in ascending order. */
+    public void add(int doc) {
+        add(doc, 1);
+    }
+
+    /** Append a doc id with the number of times the term occurs in it. */
+    public void add(int doc, int freq) {
+        if (size == docs.length) {
+            docs = Arrays.copyOf(docs, docs.length * 2);
+            freqs = Arrays.copyOf(freqs, docs.length);
+            if (positionStarts != null) positionStarts = Arrays.copyOf(positionStarts, docs.length);
+        }
+        if (positionStarts != null) positionStarts[size] = positionCount;
+        docs[size] = doc;
+        freqs[size++] = freq;
+    }
+
+    /**
+     * Count one occurrence of the term at {@code position} in {@code doc}, the highest
+     * doc so far: a new entry with freq 1, or one more on the last entry. The position
+     * is dropped unless positions are kept. True if an entry was appended.
+     */
+    public boolean addOccurrence(int doc, int position) {
+        boolean added;
+        if (size > 0 && docs[size - 1] == doc) {
+            freqs[size - 1]++;
+            added = false;
+        } else {
+            add(doc, 1);
+            added = true;
+        }
+        if (positions != null) {
+            if (positionCount == positions.length) positions = Arrays.copyOf(positions, positionCount * 2);
+            positions[positionCount++] = position;
+        }
+        return added;
+    }
+
+    public boolean hasPositions() { return positions != null; }
+
+    /** The {@code freq(i)} positions of entry {@code i} start at this index of {@link #positionArray()}. */
+    int positionStart(int i) { return positionStarts[i]; }
+
+    int[] positionArray() { return positions; }
+
+    public int size() { return size; }
+
+    public int get(int i) { return docs[i]; }
+
+    public int freq(int i) { return freqs[i]; }
+
+    /** Backing arrays; only the first {@link #size()} entries are valid. */
+    int[] array() { return docs; }
+
+    int[] freqArray() { return freqs; }
+
+    IntPostings copy() {
+        IntPostings c = new IntPostings(size);
+        System.arraycopy(docs, 0, c.docs, 0, size);
+        System.arraycopy(freqs, 0, c.freqs, 0, size);
+        c.size = size;
+        if (positions != null) {
+            c.positions = Arrays.copyOf(positions, positionCount);
+            c.positionStarts = Arrays.copyOf(positionStarts, size);
+            c.positionCount = positionCount;
+        }
+        return c;
+    }
+
+    public PostingsIterator iterator() {
+        return new ArrayPostingsIterator(docs, freqs, size, positions, positionStarts);
+    }
+
+    /** Iterator over a sorted array; {@link #advance} gallops then binary-searches. */
+    static final class ArrayPostingsIterator implements PostingsIterator {
+        private final int[] docs;
+        private final int[] freqs;
+        private final int size;
+        private int i = -1;
+        private int doc = -1;
+        private int maxFreq = -1;
+        private final int[] positions;
+        private final int[] positionStarts;
+        private int positionsAt = -1;   // next position to read, for entry positionsOf
+        private int positionsOf = -1;
+
+        ArrayPostingsIterator(int[] docs, int[] freqs, int size, int[] positions, int[] positionStarts) {
+            this.docs = docs;
+            this.freqs = freqs;
+            this.size = size;
+            this.positions = positions;
+            this.positionStarts = positionStarts;
+        }
+
+        @Override
+        public int docID() { return doc; }
+
+        @Override
+        public int nextDoc() {
+            return doc = ++i < size ? docs[i] : NO_MORE_DOCS;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (doc >= target) return doc;
+            int lo = i + 1;
+            if (lo >= size) return doc = NO_MORE_DOCS;
+            // exponential probe from the current position keeps short hops cheap
+            int step = 1;
+            int hi = lo;
+            while (hi < size && docs[hi] < target) {
+                lo = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            hi = Math.min(hi, size - 1);
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (docs[mid] < target) lo = mid + 1;
+                else hi = mid - 1;
+            }
+            i = lo;
+            return doc = i < size ? docs[i] : NO_MORE_DOCS;
+        }
+
+        @Override
+        public int cost() { return size; }
+
+        @Override
+        public int freq() { return freqs[i]; }
+
+        @Override
+        public int nextPosition() {
+            if (positions == null) return -1;
+            if (positionsOf != i) {
+                positionsOf = i;
+                positionsAt = positionStarts[i];
+            }
+            return positions[positionsAt++];
+        }
+
+        // heap lists are small (write buffer, older formats), so a scan is cheap enough
+        @Override
+        public int maxFreq() {
+            if (maxFreq < 0) {
+                maxFreq = 0;
+                for (int j = 0; j < size; j++) maxFreq = Math.max(maxFreq, freqs[j]);
+            }
+            return maxFreq;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.ksu.indexer.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Immutable set of a segment's deleted docs, stamped with a generation. Deleting
+ * produces a new instance (copy-on-write), so a query that picked up one instance
+ * keeps a consistent view while updates continue, and checking a candidate is a
+ * single bit test.
+ *
+ * Segment files are never rewritten for deletes; instead each generation can be
+ * saved as a sidecar {@code <segId>_<generation>.liv}, and the newest sidecar wins
+ * over the deletes stored in the segment itself:
+ * <pre>
+ *   int MAGIC, long generation, int words, words x long   (BitSet.toLongArray)
+ * </pre>
+ */
+public final class LiveDocs {
+    static final int MAGIC = 0x4B4C4956; // "KLIV"
+    private static final String SUFFIX = ".liv";
+
+    static final LiveDocs NONE = new LiveDocs(new BitSet(), 0);
+
+    private final BitSet deleted;
+    private final int deletedCount;
+    private final long generation;
+
+    private LiveDocs(BitSet deleted, long generation) {
+        this.deleted = deleted;
+        this.deletedCount = deleted.cardinality();
+        this.generation = generation;
+    }
+
+    static LiveDocs of(int[] deletedDocs) {
+        if (deletedDocs.length == 0) return NONE;
+        BitSet b = new BitSet();
+        for (int d : deletedDocs) b.set(d);
+        return new LiveDocs(b, 0);
+    }
+
+    public boolean isLive(int docId) { return !deleted.get(docId); }
+
+    public boolean isDeleted(int docId) { return deleted.get(docId); }
+
+    public int deletedCount() { return deletedCount; }
+
+    public boolean hasDeletions() { return deletedCount > 0; }
+
+    public long generation() { return generation; }
+
+    /** {@code it} without the docs deleted here; {@code it} itself if nothing is deleted. */
+    public PostingsIterator filter(PostingsIterator it) {
+        return hasDeletions() ? new DeletedDocsFilter(it, this) : it;
+    }
+
+    /** This set plus {@code docIds}, as the next generation; {@code this} if nothing changes. */
+    public LiveDocs delete(int... docIds) {
+        Builder b = new Builder(this);
+        b.delete(docIds);
+        return b.build();
+    }
+
+    /**
+     * Deletes gathered on top of one generation and published as the next. The bits are
+     * cloned once, on the first doc that is not already deleted, so any number of
+     * deletes between two reads costs a single copy.
+     */
+    static final class Builder {
+        private final LiveDocs base;
+        private BitSet next;
+
+        Builder(LiveDocs base) {
+            this.base = base;
+        }
+
+        void delete(int... docIds) {
+            for (int d : docIds) {
+                if (base.deleted.get(d) || (next != null && next.get(d))) continue;
+                if (next == null) next = (BitSet) base.deleted.clone();
+                next.set(d);
+            }
+        }
+
+        /** The next generation, or the base itself if nothing new was deleted; the builder is spent after this. */
+        LiveDocs build() {
+            return next == null ? base : new LiveDocs(next, base.generation + 1);
+        }
+    }
+
+    /**
+     * This set with every doc of {@code docs} deleted as well, so a query can drop the
+     * docs its NOT clauses match with the same bit test as deleted ones. A private copy
+     * for that query: it keeps this generation and is never saved.
+     */
+    public LiveDocs exclude(PostingsIterator docs) {
+        BitSet next = (BitSet) deleted.clone();
+        for (int d = docs.nextDoc(); d != PostingsIterator.NO_MORE_DOCS; d = docs.nextDoc()) next.set(d);
+        return new LiveDocs(next, generation);
+    }
+
+    /** Docs deleted here but not in {@code older}, ascending. */
+    public int[] deletedSince(LiveDocs older) {
+        BitSet diff = (BitSet) deleted.clone();
+        diff.andNot(older.deleted);
+        return diff.stream().toArray();
+    }
+
+    int[] toArray() {
+        return deleted.stream().toArray();
+    }
+
+    /**
+     * Save this generation as a sidecar of {@code segId}, durably and atomically
+     * (written to a temp file, forced, then renamed), and drop older sidecars.
+     */
+    void write(Path dir, String segId) throws IOException {
+        Path target = dir.resolve(segId + "_" + generation + SUFFIX);
+        Path tmp = dir.resolve(segId + "_" + generation + SUFFIX + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch)));
+            long[] words = deleted.toLongArray();
+            out.writeInt(MAGIC);
+            out.writeLong(generation);
+            out.writeInt(words.length);
+            for (long w : words) out.writeLong(w);
+            out.flush();
+            ch.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (Path p : sidecars(dir, segId)) {
+            if (!p.equals(target)) Files.deleteIfExists(p);
+        }
+    }
+
+    /** The newest sidecar of {@code segId}, or {@code fallback} if there is none. */
+    static LiveDocs readLatest(Path dir, String segId, LiveDocs fallback) throws IOException {
+        Path latest = null;
+        long latestGen = -1;
+        for (Path p : sidecars(dir, segId)) {
+            long gen = generationOf(p, segId);
+            if (gen > latestGen) {
+                latestGen = gen;
+                latest = p;
+            }
+        }
+        if (latest == null) return fallback;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(latest)))) {
+            if (in.readInt() != MAGIC) throw new IOException("not a live-docs file: " + latest);
+            long gen = in.readLong();
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++) words[i] = in.readLong();
+            return new LiveDocs(BitSet.valueOf(words), gen);
+        }
+    }
+
+    /** Remove every sidecar of a segment that is being dropped. */
+    static void deleteAll(Path dir, String segId) throws IOException {
+        for (Path p : sidecars(dir, segId)) Files.deleteIfExists(p);
+    }
+
+    private static List<Path> sidecars(Path dir, String segId) throws IOException {
+        List<Path> out = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return out;
+        try (var files = Files.newDirectoryStream(dir, segId + "_*" + SUFFIX)) {
+            for (Path p : files) {
+                if (generationOf(p, segId) >= 0) out.add(p);
+            }
+        }
+        return out;
+    }
+
+    // -1 unless the name is exactly <segId>_<number>.liv
+    private static long generationOf(Path p, String segId) {
+        String name = p.getFileName().toString();
+        String gen = name.substring(segId.length() + 1, name.length() - SUFFIX.length());
+        try {
+            return Long.parseLong(gen);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.ksu.indexer.core;
+
+import com.ksu.indexer.codec.BlockPostingsCodec;
+import com.ksu.indexer.codec.PositionsCodec;
+
+/**
+ * {@link BlockPostingsIterator} plus the term's positions, which are only sought when
+ * {@link #nextPosition()} is first called on a doc.
+ */
+final class PositionalPostingsIterator implements PostingsIterator {
+    private final BlockPostingsCodec.Reader reader;
+    private final PositionsCodec.Reader positions;
+    private int positionsDoc = -1;
+
+    PositionalPostingsIterator(BlockPostingsCodec.Reader reader, PositionsCodec.Reader positions) {
+        this.reader = reader;
+        this.positions = positions;
+    }
+
+    @Override
+    public int docID() { return reader.docID(); }
+
+    @Override
+    public int nextDoc() { return reader.nextDoc(); }
+
+    @Override
+    public int advance(int target) { return reader.advance(target); }
+
+    @Override
+    public int cost() { return reader.size(); }
+
+    @Override
+    public int freq() { return reader.freq(); }
+
+    @Override
+    public int nextPosition() {
+        int doc = reader.docID();
+        if (doc != positionsDoc) {
+            positions.seek(reader.index());
+            positionsDoc = doc;
+        }
+        return positions.nextPosition();
+    }
+
+    @Override
+    public int maxFreq() { return reader.maxFreq(); }
+
+    @Override
+    public int minLength() { return reader.minLength(); }
+}
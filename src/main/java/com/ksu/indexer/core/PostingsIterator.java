@@ -0,0 +1,82 @@
+package com.ksu.indexer.core;
+
+import java.util.Arrays;
+
+/**
+ * Forward-only cursor over an ascending list of doc ids, with no boxing.
+ * A fresh iterator is positioned before its first doc ({@link #docID()} is -1).
+ */
+public interface PostingsIterator {
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    int docID();
+
+    /** Move to the next doc, or return {@link #NO_MORE_DOCS}. */
+    int nextDoc();
+
+    /** Move to the first doc {@code >= target}; a no-op if already there. */
+    int advance(int target);
+
+    /** Upper bound on the docs this iterator can return; used to order query terms. */
+    int cost();
+
+    /** Occurrences of the term in the current doc; 1 when the source has no frequencies. */
+    default int freq() { return 1; }
+
+    /**
+     * Next position of the term in the current doc, ascending; call at most
+     * {@link #freq()} times per doc. -1 when the list was written without positions.
+     */
+    default int nextPosition() { return -1; }
+
+    /*
+     * Impacts: bounds on freq and doc length that cap the score any doc can reach.
+     * Unknown bounds are reported as the loosest value (Integer.MAX_VALUE freq, 0 length).
+     */
+
+    /** Highest freq of any doc in the list. */
+    default int maxFreq() { return Integer.MAX_VALUE; }
+
+    /** Shortest length of any doc in the list; 0 if unknown. */
+    default int minLength() { return 0; }
+
+    /**
+     * Locate the block holding the first doc {@code >= target} without moving the
+     * iterator and return its last doc; {@link #NO_MORE_DOCS} if it is the last block.
+     * Lists without blocks are one block.
+     */
+    default int shallowAdvance(int target) { return NO_MORE_DOCS; }
+
+    /** Highest freq within the block located by {@link #shallowAdvance}. */
+    default int blockMaxFreq() { return maxFreq(); }
+
+    /** Shortest doc length within the block located by {@link #shallowAdvance}. */
+    default int blockMinLength() { return minLength(); }
+
+    PostingsIterator EMPTY = new PostingsIterator() {
+        private int doc = -1;
+
+        @Override
+        public int docID() { return doc; }
+
+        @Override
+        public int nextDoc() { return doc = NO_MORE_DOCS; }
+
+        @Override
+        public int advance(int target) { return doc = NO_MORE_DOCS; }
+
+        @Override
+        public int cost() { return 0; }
+    };
+
+    /** Remaining docs of {@code it} into a new array. */
+    static int[] toArray(PostingsIterator it) {
+        int[] out = new int[Math.max(4, Math.min(it.cost(), 1 << 20))];
+        int n = 0;
+        for (int d = it.nextDoc(); d != NO_MORE_DOCS; d = it.nextDoc()) {
+            if (n == out.length) out = Arrays.copyOf(out, out.length * 2);
+            out[n++] = d;
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
@@ -0,0 +1,121 @@
+package com.ksu.indexer.core;
+
+/**
+ * fileId → current (segment, docId) head, so an update finds the version it
+ * supersedes without asking the manifest. Open addressing with linear probing over
+ * parallel arrays: one slot costs a key reference, a segment reference and an int,
+ * with no entry objects. Segment ids are interned, so every head in a segment
+ * shares one string.
+ *
+ * Not thread-safe; the index service only touches it under its write lock.
+ */
+public final class PrimaryKeyIndex {
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] keys;
+    private String[] segs;
+    private int[] docs;
+    private int size;
+    private int mask;
+
+    public PrimaryKeyIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    public PrimaryKeyIndex(int expected) {
+        int cap = MIN_CAPACITY;
+        while (cap * 3 / 4 < expected) cap <<= 1;
+        alloc(cap);
+    }
+
+    private void alloc(int cap) {
+        keys = new String[cap];
+        segs = new String[cap];
+        docs = new int[cap];
+        mask = cap - 1;
+    }
+
+    public int size() { return size; }
+
+    /** Segment of the fileId's head, or null if it has none. */
+    public String segment(String fileId) {
+        int slot = find(fileId);
+        return slot < 0 ? null : segs[slot];
+    }
+
+    /** Doc id of the fileId's head; only meaningful when {@link #segment} is non-null. */
+    public int doc(String fileId) {
+        int slot = find(fileId);
+        return slot < 0 ? -1 : docs[slot];
+    }
+
+    /** Point the fileId at a new head, replacing any previous one. */
+    public void put(String fileId, String segId, int docId) {
+        if ((size + 1) * 4 > keys.length * 3) rehash(keys.length << 1);
+        int slot = slotOf(fileId);
+        while (keys[slot] != null) {
+            if (keys[slot].equals(fileId)) {
+                segs[slot] = segId.intern();
+                docs[slot] = docId;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = fileId;
+        segs[slot] = segId.intern();
+        docs[slot] = docId;
+        size++;
+    }
+
+    /** Drop the fileId's head; true if it had one. */
+    public boolean remove(String fileId) {
+        int slot = find(fileId);
+        if (slot < 0) return false;
+        // backward-shift deletion: pull later entries of the probe run into the gap
+        // so lookups never need tombstones
+        int gap = slot;
+        int i = (gap + 1) & mask;
+        while (keys[i] != null) {
+            int home = slotOf(keys[i]);
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                segs[gap] = segs[i];
+                docs[gap] = docs[i];
+                gap = i;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[gap] = null;
+        segs[gap] = null;
+        size--;
+        return true;
+    }
+
+    private int find(String fileId) {
+        int slot = slotOf(fileId);
+        while (keys[slot] != null) {
+            if (keys[slot].equals(fileId)) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slotOf(String key) {
+        int h = key.hashCode() * 0x9E3779B9; // spread String hashes over the low bits
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void rehash(int cap) {
+        String[] oldKeys = keys, oldSegs = segs;
+        int[] oldDocs = docs;
+        alloc(cap);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int slot = slotOf(oldKeys[i]);
+            while (keys[slot] != null) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            segs[slot] = oldSegs[i];
+            docs[slot] = oldDocs[i];
+        }
+    }
+}
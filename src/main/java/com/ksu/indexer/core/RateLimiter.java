@@ -0,0 +1,74 @@
+package com.ksu.indexer.core;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the combined write rate of every stream wrapped by one instance. Writers
+ * reserve time on a shared clock and sleep until their reservation ends, so
+ * concurrent merges share the budget instead of each getting it in full. A rate of
+ * zero or less means unlimited; the rate can be changed while writers are running.
+ */
+public final class RateLimiter {
+    private volatile double mbPerSec;
+    private long nextFreeNanos; // guarded by this
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong pausedNanos = new AtomicLong();
+
+    public RateLimiter(double mbPerSec) {
+        this.mbPerSec = mbPerSec;
+    }
+
+    public double mbPerSec() { return mbPerSec; }
+
+    public void setMbPerSec(double mbPerSec) { this.mbPerSec = mbPerSec; }
+
+    /** Bytes written through this limiter so far. */
+    public long bytes() { return bytes.get(); }
+
+    /** Total time writers spent paused, in nanoseconds. */
+    public long pausedNanos() { return pausedNanos.get(); }
+
+    /** Account for {@code n} bytes, blocking while the writers are ahead of the rate. */
+    public void pause(long n) throws InterruptedIOException {
+        bytes.addAndGet(n);
+        double rate = mbPerSec;
+        if (rate <= 0) return;
+        long cost = (long) (n / (rate * 1024 * 1024) * 1_000_000_000L);
+        long target;
+        synchronized (this) {
+            // idle time is not banked: a burst after a quiet spell still pays its way
+            nextFreeNanos = Math.max(nextFreeNanos, System.nanoTime()) + cost;
+            target = nextFreeNanos;
+        }
+        long wait = target - System.nanoTime();
+        if (wait <= 0) return;
+        pausedNanos.addAndGet(wait);
+        try {
+            Thread.sleep(wait / 1_000_000L, (int) (wait % 1_000_000L));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("throttled write interrupted");
+        }
+    }
+
+    /** {@code out}, paused through this limiter on every write. */
+    public OutputStream wrap(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                pause(1);
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                pause(len);
+                out.write(b, off, len);
+            }
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package com.ksu.indexer.core;
+
+/**
+ * On-disk layout of a sectioned (v3+) segment file. The file is memory-mapped and
+ * every section is read in place:
+ * <pre>
+ *   int MAGIC, int VERSION
+ *   section bodies, in any order
+ *   directory: int n, n x (int tag, long offset, long length)
+ *   trailer:   long directoryOffset, int MAGIC
+ * </pre>
+ * Every section is required except the positions pair, which is written only when
+ * positions are enabled. New sections get a new tag, so older readers skip them.
+ */
+final class SegmentFormat {
+    static final int MAGIC = 0x4B534547; // "KSEG"
+    static final int VERSION_SECTIONED = 3;
+
+    static final int TRAILER_BYTES = 12;
+
+    /** int maxDocId, int termCount. */
+    static final int SECTION_META = 1;
+    // 2, 3 and 6 held interim postings and term layouts that never shipped; tags are not reused
+    /** int count, count x int docId. */
+    static final int SECTION_DELETES = 4;
+    /** Front-coded term blocks; see {@link FrontCodedTermDictionary}. */
+    static final int SECTION_TERM_BLOCKS = 5;
+    /** long sumDocLengths, int n, n x int docLength indexed by docId. */
+    static final int SECTION_DOC_LENGTHS = 7;
+    /** Block postings lists carrying term frequencies and per-list/per-block impacts. */
+    static final int SECTION_POSTINGS_IMPACTS = 8;
+    /**
+     * fileId of each doc as a columnar stored field: int n, (n + 1) x int end offset
+     * into the data (the first is 0), then the UTF-8 data. An empty value means no fileId.
+     */
+    static final int SECTION_FILE_IDS = 9;
+    /**
+     * long minTimestamp, long maxTimestamp (epoch millis of the docs' event times;
+     * {@code Long.MAX_VALUE}/{@code Long.MIN_VALUE} if none had one), then the
+     * smallest and largest term, each as int n and n UTF-8 bytes (n = -1 when there
+     * are no terms). See {@link SegmentStats}.
+     */
+    static final int SECTION_STATS = 10;
+    /** Bloom filter over the term bytes; see {@link com.ksu.indexer.structures.BloomFilter}. */
+    static final int SECTION_BLOOM = 11;
+    /**
+     * {@link com.ksu.indexer.codec.PositionsCodec} lists, one per term with postings, in
+     * term order. Optional: segments without it cannot check phrases.
+     */
+    static final int SECTION_POSITIONS = 12;
+    /**
+     * Where each term's positions list starts: int n, n x (int postingsOffset,
+     * int positionsOffset), ascending by postings offset.
+     */
+    static final int SECTION_POSITIONS_INDEX = 13;
+
+    private SegmentFormat() {}
+}
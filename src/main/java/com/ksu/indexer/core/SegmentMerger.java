@@ -0,0 +1,286 @@
+package com.ksu.indexer.core;
+
+import com.ksu.indexer.codec.BlockPostingsCodec;
+import com.ksu.indexer.codec.PositionsCodec;
+import com.ksu.indexer.structures.BloomFilter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntFunction;
+
+/**
+ * Streaming merge of segments into one sectioned file with contiguous doc ids.
+ * Terms are pulled from every source's sorted dictionary through a priority queue,
+ * and each merged list is encoded block by block straight into the output section.
+ * Heap use is one {@code int[]} old-to-new map per source, the remap, one encoded
+ * posting list, the encoded dictionary and two hash words per merged term (the bloom
+ * filter is sized once the term count is known), never the postings of the whole merge.
+ * When every source has positions, a second pass over the terms writes them the same way.
+ *
+ * New ids are assigned in source order, then old id order, so for any term the
+ * sources' remapped docs are already ascending when appended one source after another.
+ */
+final class SegmentMerger {
+    private final List<IndexSegment> parts;
+    private final List<IntFunction<String>> fileIds;
+    private final BloomFilter.Spec bloomSpec;
+    private final List<LiveDocs> pinned = new ArrayList<>();
+    private final int[][] oldToNew;
+    private final int[] srcOrd;
+    private final int[] srcDoc;
+    private byte[] firstTerm;
+    private byte[] lastTerm;
+    private long[] termHashes = new long[256];
+    // postings offset of each merged term, keyed into the positions index
+    private int[] postingsOffsets = new int[256];
+
+    private SegmentMerger(List<IndexSegment> parts, List<IntFunction<String>> fileIds, BloomFilter.Spec bloomSpec) {
+        this.parts = parts;
+        this.fileIds = fileIds;
+        this.bloomSpec = bloomSpec;
+        // live docs are pinned up front, so deletes that land while the merge runs are
+        // left for the caller to carry over (see MergedResult.sourceLiveDocs)
+        for (IndexSegment s : parts) pinned.add(s.liveDocs());
+        this.oldToNew = new int[parts.size()][];
+        int total = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            int[] m = liveDocs(i);
+            for (int old = 0; old < m.length; old++) {
+                if (m[old] >= 0) m[old] = total++;
+            }
+            oldToNew[i] = m;
+        }
+        this.srcOrd = new int[total];
+        this.srcDoc = new int[total];
+        for (int i = 0; i < parts.size(); i++) {
+            int[] m = oldToNew[i];
+            for (int old = 0; old < m.length; old++) {
+                if (m[old] < 0) continue;
+                srcOrd[m[old]] = i;
+                srcDoc[m[old]] = old;
+            }
+        }
+    }
+
+    static IndexSegment.MergedResult merge(Path dir, String newId, List<IndexSegment> parts,
+                                           List<IntFunction<String>> fileIds, RateLimiter limiter,
+                                           BloomFilter.Spec bloom) throws IOException {
+        SegmentMerger m = new SegmentMerger(parts, fileIds, bloom);
+        // a crashed earlier attempt at this id must not leave sidecars behind
+        LiveDocs.deleteAll(dir, newId);
+        try (SegmentWriter w = new SegmentWriter(dir.resolve(newId + ".seg"), limiter)) {
+            m.write(w);
+        }
+        IndexSegment merged = IndexSegment.load(dir, newId);
+        return new IndexSegment.MergedResult(merged, m.remap(), m.pinned);
+    }
+
+    // 0 marks a live doc, -1 anything else; a doc exists if some live posting names it
+    private int[] liveDocs(int src) {
+        IndexSegment s = parts.get(src);
+        int[] m = new int[s.maxDocId() + 1];
+        Arrays.fill(m, -1);
+        for (String term : s.termsWithPrefix("")) {
+            PostingsIterator p = s.postings(term, pinned.get(src));
+            for (int d = p.nextDoc(); d != PostingsIterator.NO_MORE_DOCS; d = p.nextDoc()) m[d] = 0;
+        }
+        return m;
+    }
+
+    private void write(SegmentWriter w) throws IOException {
+        int maxDocId = srcOrd.length;
+        FrontCodedTermDictionary.Writer dict = new FrontCodedTermDictionary.Writer();
+        DataOutputStream out = w.beginSection(SegmentFormat.SECTION_POSTINGS_IMPACTS);
+        writePostings(w, out, dict);
+        w.endSection();
+
+        dict.finish(w.beginSection(SegmentFormat.SECTION_TERM_BLOCKS));
+        w.endSection();
+
+        // a merge with any source lacking positions yields a segment without them
+        if (parts.stream().allMatch(IndexSegment::hasPositions)) {
+            int[] positionsOffsets = new int[dict.size()];
+            out = w.beginSection(SegmentFormat.SECTION_POSITIONS);
+            writePositions(w, out, positionsOffsets);
+            w.endSection();
+            IndexSegment.writePositionsIndex(w.beginSection(SegmentFormat.SECTION_POSITIONS_INDEX),
+                    postingsOffsets, positionsOffsets, dict.size());
+            w.endSection();
+        }
+
+        out = w.beginSection(SegmentFormat.SECTION_DELETES);
+        out.writeInt(0);
+        w.endSection();
+
+        out = w.beginSection(SegmentFormat.SECTION_DOC_LENGTHS);
+        long sum = 0;
+        for (int d = 0; d < maxDocId; d++) sum += docLength(d);
+        out.writeLong(sum);
+        out.writeInt(maxDocId + 1);
+        for (int d = 0; d <= maxDocId; d++) out.writeInt(d < maxDocId ? docLength(d) : 0);
+        w.endSection();
+
+        // end offsets go first, so fileIds are read twice rather than held
+        out = w.beginSection(SegmentFormat.SECTION_FILE_IDS);
+        out.writeInt(maxDocId + 1);
+        int end = 0;
+        out.writeInt(end);
+        for (int d = 0; d <= maxDocId; d++) {
+            end += fileIdBytes(d).length;
+            out.writeInt(end);
+        }
+        for (int d = 0; d < maxDocId; d++) out.write(fileIdBytes(d));
+        w.endSection();
+
+        long minTimestamp = SegmentStats.NO_MIN_TIMESTAMP;
+        long maxTimestamp = SegmentStats.NO_MAX_TIMESTAMP;
+        for (IndexSegment s : parts) {
+            minTimestamp = Math.min(minTimestamp, s.minTimestamp());
+            maxTimestamp = Math.max(maxTimestamp, s.maxTimestamp());
+        }
+        SegmentStats.write(w.beginSection(SegmentFormat.SECTION_STATS), firstTerm, lastTerm, minTimestamp, maxTimestamp);
+        w.endSection();
+
+        BloomFilter bloom = BloomFilter.create(dict.size(), bloomSpec);
+        for (int i = 0; i < dict.size(); i++) bloom.addHash(termHashes[2 * i], termHashes[2 * i + 1]);
+        bloom.write(w.beginSection(SegmentFormat.SECTION_BLOOM));
+        w.endSection();
+
+        // META goes last because the term count is only known now
+        out = w.beginSection(SegmentFormat.SECTION_META);
+        out.writeInt(maxDocId);
+        out.writeInt(dict.size());
+        w.endSection();
+        w.finish();
+    }
+
+    /** Called once per distinct term, with the sources holding it in source order. */
+    private interface TermVisitor {
+        void visit(List<TermSource> same) throws IOException;
+    }
+
+    private void forEachTerm(TermVisitor visitor) throws IOException {
+        PriorityQueue<TermSource> queue = new PriorityQueue<>();
+        for (int i = 0; i < parts.size(); i++) {
+            TermSource t = new TermSource(i, parts.get(i).termsWithPrefix("").iterator());
+            if (t.next()) queue.add(t);
+        }
+        List<TermSource> same = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            same.clear();
+            same.add(queue.poll());
+            // ties pop in source order, which keeps the remapped docs ascending
+            while (!queue.isEmpty() && Arrays.equals(queue.peek().bytes, same.get(0).bytes)) same.add(queue.poll());
+            visitor.visit(same);
+            for (TermSource t : same) {
+                if (t.next()) queue.add(t);
+            }
+        }
+    }
+
+    private void writePostings(SegmentWriter w, DataOutputStream out, FrontCodedTermDictionary.Writer dict)
+            throws IOException {
+        BlockPostingsCodec.Writer list = new BlockPostingsCodec.Writer(true, true);
+        forEachTerm(same -> {
+            for (TermSource t : same) {
+                IndexSegment s = parts.get(t.src);
+                int[] map = oldToNew[t.src];
+                PostingsIterator p = s.postings(t.term, pinned.get(t.src));
+                for (int d = p.nextDoc(); d != PostingsIterator.NO_MORE_DOCS; d = p.nextDoc()) {
+                    list.add(map[d], p.freq(), s.docLength(d));
+                }
+            }
+            // a term whose docs were all deleted is dropped
+            if (list.size() > 0) {
+                if (firstTerm == null) firstTerm = same.get(0).bytes;
+                lastTerm = same.get(0).bytes;
+                int at = 2 * dict.size();
+                if (at == termHashes.length) termHashes = Arrays.copyOf(termHashes, at * 2);
+                long[] h = BloomFilter.hash(lastTerm, lastTerm.length);
+                termHashes[at] = h[0];
+                termHashes[at + 1] = h[1];
+                if (dict.size() == postingsOffsets.length) postingsOffsets = Arrays.copyOf(postingsOffsets, dict.size() * 2);
+                postingsOffsets[dict.size()] = (int) w.sectionPosition();
+                dict.add(same.get(0).bytes, (int) w.sectionPosition());
+                list.writeTo(out);
+            }
+        });
+    }
+
+    // same term walk and live docs as writePostings, so the n-th kept term is the n-th dictionary term
+    private void writePositions(SegmentWriter w, DataOutputStream out, int[] positionsOffsets) throws IOException {
+        PositionsCodec.Writer list = new PositionsCodec.Writer();
+        int[] ord = {0};
+        forEachTerm(same -> {
+            for (TermSource t : same) {
+                PostingsIterator p = parts.get(t.src).positions(t.term, pinned.get(t.src));
+                for (int d = p.nextDoc(); d != PostingsIterator.NO_MORE_DOCS; d = p.nextDoc()) {
+                    list.startDoc();
+                    for (int i = p.freq(); i > 0; i--) list.addPosition(p.nextPosition());
+                }
+            }
+            if (list.size() > 0) {
+                positionsOffsets[ord[0]++] = (int) w.sectionPosition();
+                list.writeTo(out);
+            }
+        });
+    }
+
+    private int docLength(int newDoc) {
+        return parts.get(srcOrd[newDoc]).docLength(srcDoc[newDoc]);
+    }
+
+    private byte[] fileIdBytes(int newDoc) {
+        if (newDoc >= srcOrd.length) return new byte[0];
+        String f = fileIds.get(srcOrd[newDoc]).apply(srcDoc[newDoc]);
+        return f == null ? new byte[0] : f.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // newDocId -> (segId, oldDocId), backed by the two int arrays
+    private List<IndexSegment.DocPointer> remap() {
+        String[] ids = new String[parts.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = parts.get(i).id();
+        return new AbstractList<>() {
+            @Override
+            public IndexSegment.DocPointer get(int newDoc) {
+                return new IndexSegment.DocPointer(ids[srcOrd[newDoc]], srcDoc[newDoc]);
+            }
+
+            @Override
+            public int size() { return srcOrd.length; }
+        };
+    }
+
+    /** A source's term cursor, ordered by current term bytes, then source index. */
+    private static final class TermSource implements Comparable<TermSource> {
+        final int src;
+        final Iterator<String> terms;
+        String term;
+        byte[] bytes;
+
+        TermSource(int src, Iterator<String> terms) {
+            this.src = src;
+            this.terms = terms;
+        }
+
+        boolean next() {
+            if (!terms.hasNext()) return false;
+            term = terms.next();
+            bytes = term.getBytes(StandardCharsets.UTF_8);
+            return true;
+        }
+
+        @Override
+        public int compareTo(TermSource o) {
+            int c = Arrays.compareUnsigned(bytes, o.bytes);
+            return c != 0 ? c : Integer.compare(src, o.src);
+        }
+    }
+}
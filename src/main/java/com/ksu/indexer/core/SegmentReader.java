@@ -0,0 +1,223 @@
+package com.ksu.indexer.core;
+
+import com.ksu.indexer.codec.BlockPostingsCodec;
+import com.ksu.indexer.codec.PositionsCodec;
+import com.ksu.indexer.structures.BloomFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read-only view of a sectioned segment file over a {@link java.nio.MappedByteBuffer}.
+ * Opening only parses the trailer and directory; terms and postings are read in place
+ * when a query touches them. All reads use absolute offsets, so one reader is safe to
+ * share between threads.
+ */
+final class SegmentReader {
+    private final Path path;
+    private final ByteBuffer buf;
+    private final Map<Integer, long[]> sections = new HashMap<>(); // tag -> {offset, length}
+
+    private final int maxDocId;
+    private final TermDictionary dict;
+    private final int postingsStart;
+    private final int docLengthsStart;
+    private final int fileIdsStart;
+    // docs with an empty stored fileId; counted on first use
+    private volatile int withoutFileId = -1;
+    // recorded ranges; null terms when there are none, NO_* timestamps when no doc had one
+    private final byte[] minTerm;
+    private final byte[] maxTerm;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final BloomFilter bloom;
+    private final int positionsStart;    // -1 when the file has no positions
+    private final int positionsIndexStart;
+
+    private SegmentReader(Path path, ByteBuffer buf) throws IOException {
+        this.path = path;
+        this.buf = buf;
+        int size = buf.limit();
+        if (size < 8 + SegmentFormat.TRAILER_BYTES
+                || buf.getInt(0) != SegmentFormat.MAGIC
+                || buf.getInt(size - 4) != SegmentFormat.MAGIC) {
+            throw new IOException("not a sectioned segment: " + path);
+        }
+        int version = buf.getInt(4);
+        if (version != SegmentFormat.VERSION_SECTIONED) {
+            throw new IOException("unsupported segment version " + version + " in " + path);
+        }
+        int dir = (int) buf.getLong(size - SegmentFormat.TRAILER_BYTES);
+        int n = buf.getInt(dir);
+        for (int i = 0; i < n; i++) {
+            int at = dir + 4 + i * 20;
+            sections.put(buf.getInt(at), new long[]{buf.getLong(at + 4), buf.getLong(at + 12)});
+        }
+        int meta = require(SegmentFormat.SECTION_META);
+        this.maxDocId = buf.getInt(meta);
+        this.dict = new FrontCodedTermDictionary(buf, require(SegmentFormat.SECTION_TERM_BLOCKS));
+        this.postingsStart = require(SegmentFormat.SECTION_POSTINGS_IMPACTS);
+        this.docLengthsStart = require(SegmentFormat.SECTION_DOC_LENGTHS);
+        this.fileIdsStart = require(SegmentFormat.SECTION_FILE_IDS);
+        int at = require(SegmentFormat.SECTION_STATS);
+        this.minTimestamp = buf.getLong(at);
+        this.maxTimestamp = buf.getLong(at + 8);
+        at += 16;
+        this.minTerm = readTerm(at);
+        at += 4 + Math.max(0, buf.getInt(at));
+        this.maxTerm = readTerm(at);
+        this.bloom = BloomFilter.read(buf, require(SegmentFormat.SECTION_BLOOM));
+        // positions are optional (index.positions.enabled), but only as a pair
+        if (sections.containsKey(SegmentFormat.SECTION_POSITIONS)) {
+            this.positionsStart = require(SegmentFormat.SECTION_POSITIONS);
+            this.positionsIndexStart = require(SegmentFormat.SECTION_POSITIONS_INDEX);
+        } else {
+            this.positionsStart = -1;
+            this.positionsIndexStart = -1;
+        }
+    }
+
+    private byte[] readTerm(int at) {
+        int n = buf.getInt(at);
+        if (n < 0) return null;
+        byte[] b = new byte[n];
+        buf.get(at + 4, b);
+        return b;
+    }
+
+    static SegmentReader open(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException("segment too large to map: " + path);
+            // the mapping stays valid after the channel is closed
+            return new SegmentReader(path, ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    /** Peek at the header to tell sectioned files from the v1 stream format. */
+    static boolean isSectioned(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(8);
+            while (head.hasRemaining() && ch.read(head) > 0) { }
+            return head.position() == 8 && head.getInt(0) == SegmentFormat.MAGIC
+                    && head.getInt(4) >= SegmentFormat.VERSION_SECTIONED;
+        }
+    }
+
+    private int require(int tag) throws IOException {
+        long[] s = sections.get(tag);
+        if (s == null) throw new IOException("segment " + path + " lacks section " + tag);
+        return (int) s[0];
+    }
+
+    int maxDocId() { return maxDocId; }
+
+    int termCount() { return dict.size(); }
+
+    String minTerm() { return minTerm == null ? null : new String(minTerm, StandardCharsets.UTF_8); }
+
+    String maxTerm() { return maxTerm == null ? null : new String(maxTerm, StandardCharsets.UTF_8); }
+
+    long minTimestamp() { return minTimestamp; }
+
+    long maxTimestamp() { return maxTimestamp; }
+
+    long sizeBytes() { return buf.limit(); }
+
+    /** Bytes of the persisted bloom filter. */
+    long bloomBytes() { return bloom.sizeBytes(); }
+
+    long sumDocLengths() {
+        return buf.getLong(docLengthsStart);
+    }
+
+    /** Token count of a doc, or 0 for an id outside the segment. */
+    int docLength(int docId) {
+        if (docId < 0 || docId >= buf.getInt(docLengthsStart + 8)) return 0;
+        return buf.getInt(docLengthsStart + 12 + docId * 4);
+    }
+
+    /** Number of docs whose stored fileId is empty. */
+    int docsWithoutFileId() {
+        int count = withoutFileId;
+        if (count < 0) {
+            int n = buf.getInt(fileIdsStart);
+            int offsets = fileIdsStart + 4;
+            count = 0;
+            for (int d = 0; d < n; d++) {
+                if (buf.getInt(offsets + d * 4) == buf.getInt(offsets + d * 4 + 4)) count++;
+            }
+            withoutFileId = count;
+        }
+        return count;
+    }
+
+    /** Stored fileId of a doc, or null if it was indexed without one. */
+    String fileId(int docId) {
+        int n = buf.getInt(fileIdsStart);
+        if (docId < 0 || docId >= n) return null;
+        int offsets = fileIdsStart + 4;
+        int start = buf.getInt(offsets + docId * 4);
+        int end = buf.getInt(offsets + docId * 4 + 4);
+        if (end == start) return null;
+        byte[] b = new byte[end - start];
+        buf.get(offsets + (n + 1) * 4 + start, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    int[] deletedDocs() {
+        long[] s = sections.get(SegmentFormat.SECTION_DELETES);
+        if (s == null) return new int[0];
+        int at = (int) s[0];
+        int[] out = new int[buf.getInt(at)];
+        for (int i = 0; i < out.length; i++) out[i] = buf.getInt(at + 4 + i * 4);
+        return out;
+    }
+
+    /** Offset of the term's postings list, or -1 if the segment lacks the term. */
+    int find(String term) {
+        byte[] b = term.getBytes(StandardCharsets.UTF_8);
+        // outside the recorded term range (or no terms at all): no dictionary search
+        if (minTerm == null || (TermDictionary.compare(b, b.length, minTerm, minTerm.length) < 0
+                || TermDictionary.compare(b, b.length, maxTerm, maxTerm.length) > 0)) return -1;
+        if (!bloom.mightContain(b, b.length)) return -1;
+        return dict.find(b);
+    }
+
+    /** Doc count of the postings list at {@code offset}, deleted docs included. */
+    int docFreq(int offset) {
+        return BlockPostingsCodec.size(buf, postingsStart + offset);
+    }
+
+    /** Terms {@code >= from} in byte order; {@code from == null} starts at the first term. */
+    TermDictionary.Cursor terms(byte[] from) {
+        return dict.seek(from);
+    }
+
+    BlockPostingsCodec.Reader postings(int offset) {
+        return new BlockPostingsCodec.Reader(buf, postingsStart + offset, true, true);
+    }
+
+    boolean hasPositions() { return positionsStart >= 0; }
+
+    /** Positions of the list at postings {@code offset}; only for files that have positions. */
+    PositionsCodec.Reader positions(int offset) {
+        if (positionsStart < 0) throw new IllegalStateException("segment " + path + " has no positions");
+        int lo = 0;
+        int hi = buf.getInt(positionsIndexStart) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int at = positionsIndexStart + 4 + mid * 8;
+            int key = buf.getInt(at);
+            if (key < offset) lo = mid + 1;
+            else if (key > offset) hi = mid - 1;
+            else return new PositionsCodec.Reader(buf, positionsStart + buf.getInt(at + 4));
+        }
+        // every list with postings is written with positions
+        throw new IllegalStateException("segment " + path + " has no positions for the list at " + offset);
+    }
+}
@@ -0,0 +1,63 @@
+package com.ksu.indexer.core;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Summary of one segment for pruning, cost estimates and diagnostics. The term range
+ * and the event-time range are recorded when the segment is written
+ * ({@link SegmentFormat#SECTION_STATS}); the counts are read from the segment, so
+ * {@code liveDocCount} reflects deletes as of the call. A merged segment's event-time
+ * range is the union of its sources', deleted docs included, so it may be wider than
+ * its live docs need.
+ */
+public final class SegmentStats {
+    // timestamp bounds while no doc has carried an event time
+    static final long NO_MIN_TIMESTAMP = Long.MAX_VALUE;
+    static final long NO_MAX_TIMESTAMP = Long.MIN_VALUE;
+
+    public final int docCount;
+    public final int liveDocCount;
+    public final int termCount;
+    public final long sumDocLengths;
+    /** Smallest and largest term in UTF-8 byte order; null if the segment has no terms. */
+    public final String minTerm;
+    public final String maxTerm;
+    /** Earliest and latest {@code FileEvent} time of its docs; null if none carried one (always for v1 segments). */
+    public final Instant minTimestamp;
+    public final Instant maxTimestamp;
+    /** Size of the segment file; -1 while the segment is on the heap. */
+    public final long sizeBytes;
+
+    SegmentStats(int docCount, int liveDocCount, int termCount, long sumDocLengths, String minTerm, String maxTerm,
+                 long minTimestamp, long maxTimestamp, long sizeBytes) {
+        this.docCount = docCount;
+        this.liveDocCount = liveDocCount;
+        this.termCount = termCount;
+        this.sumDocLengths = sumDocLengths;
+        this.minTerm = minTerm;
+        this.maxTerm = maxTerm;
+        this.minTimestamp = minTimestamp == NO_MIN_TIMESTAMP ? null : Instant.ofEpochMilli(minTimestamp);
+        this.maxTimestamp = maxTimestamp == NO_MAX_TIMESTAMP ? null : Instant.ofEpochMilli(maxTimestamp);
+        this.sizeBytes = sizeBytes;
+    }
+
+    public double avgDocLength() {
+        return docCount == 0 ? 0 : (double) sumDocLengths / docCount;
+    }
+
+    /** Body of {@link SegmentFormat#SECTION_STATS}; a null term is written as length -1. */
+    static void write(DataOutputStream out, byte[] minTerm, byte[] maxTerm, long minTimestamp, long maxTimestamp)
+            throws IOException {
+        out.writeLong(minTimestamp);
+        out.writeLong(maxTimestamp);
+        writeTerm(out, minTerm);
+        writeTerm(out, maxTerm);
+    }
+
+    private static void writeTerm(DataOutputStream out, byte[] term) throws IOException {
+        out.writeInt(term == null ? -1 : term.length);
+        if (term != null) out.write(term);
+    }
+}
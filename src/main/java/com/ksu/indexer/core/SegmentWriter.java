@@ -0,0 +1,83 @@
+package com.ksu.indexer.core;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Writes a sectioned segment file; see {@link SegmentFormat} for the layout. */
+final class SegmentWriter implements Closeable {
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private final List<long[]> sections = new ArrayList<>(); // {tag, offset, length}
+    private int openTag = -1;
+    private long openStart;
+
+    SegmentWriter(Path path) throws IOException {
+        this(path, null);
+    }
+
+    /** A writer whose buffered flushes pass through {@code limiter}; null means unthrottled. */
+    SegmentWriter(Path path, RateLimiter limiter) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream sink = Channels.newOutputStream(channel);
+        if (limiter != null) sink = limiter.wrap(sink);
+        this.out = new DataOutputStream(new BufferedOutputStream(sink, 1 << 16));
+        out.writeInt(SegmentFormat.MAGIC);
+        out.writeInt(SegmentFormat.VERSION_SECTIONED);
+    }
+
+    /** Open a section; write its body to the returned stream and call {@link #endSection()}. */
+    DataOutputStream beginSection(int tag) {
+        if (openTag != -1) throw new IllegalStateException("section " + openTag + " still open");
+        openTag = tag;
+        openStart = written();
+        return out;
+    }
+
+    /** Bytes written so far in the open section. */
+    long sectionPosition() {
+        return written() - openStart;
+    }
+
+    void endSection() {
+        sections.add(new long[]{openTag, openStart, written() - openStart});
+        openTag = -1;
+    }
+
+    /** Write the directory and trailer and force the file to disk. */
+    void finish() throws IOException {
+        if (openTag != -1) throw new IllegalStateException("section " + openTag + " still open");
+        long dirOffset = written();
+        out.writeInt(sections.size());
+        for (long[] s : sections) {
+            out.writeInt((int) s[0]);
+            out.writeLong(s[1]);
+            out.writeLong(s[2]);
+        }
+        out.writeLong(dirOffset);
+        out.writeInt(SegmentFormat.MAGIC);
+        out.flush();
+        channel.force(true);
+    }
+
+    // DataOutputStream counts bytes in an int that saturates at Integer.MAX_VALUE
+    private long written() {
+        int n = out.size();
+        if (n == Integer.MAX_VALUE) throw new IllegalStateException("segment exceeds the 2 GB single-mapping limit");
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,30 @@
+package com.ksu.indexer.core;
+
+/**
+ * Sorted term dictionary of a persisted segment, read in place from the mapped file.
+ * Terms are ordered by unsigned UTF-8 bytes; each term points at its postings list.
+ */
+interface TermDictionary {
+
+    int size();
+
+    /** Offset of the term's postings within the postings section, or -1 if absent. */
+    int find(byte[] term);
+
+    /** Cursor over terms {@code >= from} in order; {@code from == null} starts at the first term. */
+    Cursor seek(byte[] from);
+
+    /** Forward-only iteration that also exposes where each term's postings are. */
+    interface Cursor extends TermsCursor {
+        int postingsOffset();
+    }
+
+    static int compare(byte[] a, int aLen, byte[] b, int bLen) {
+        int n = Math.min(aLen, bLen);
+        for (int i = 0; i < n; i++) {
+            int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (c != 0) return c;
+        }
+        return aLen - bLen;
+    }
+}
@@ -0,0 +1,26 @@
+package com.ksu.indexer.core;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Forward-only walk over a segment's terms in unsigned UTF-8 byte order, from
+ * {@link IndexSegment#seekTerms(byte[])}; {@link #term()} reuses its buffer between calls.
+ */
+public interface TermsCursor {
+    boolean next();
+
+    byte[] term();
+
+    int termLength();
+
+    default String termString() {
+        return new String(term(), 0, termLength(), StandardCharsets.UTF_8);
+    }
+
+    default boolean startsWith(byte[] prefix) {
+        if (termLength() < prefix.length) return false;
+        byte[] t = term();
+        for (int i = 0; i < prefix.length; i++) if (t[i] != prefix[i]) return false;
+        return true;
+    }
+}
@@ -0,0 +1,84 @@
+package com.ksu.indexer.core;
+
+import com.ksu.indexer.analysis.TokenStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Mutable in-memory segment that absorbs ingest events until it is flushed
+ * as one immutable {@link IndexSegment}. Readers get a frozen view that is
+ * refreshed lazily on the first read after a write (near-real-time visibility).
+ */
+public class WriteBuffer {
+    private final IndexSegment segment;
+    // docmap for this generation, written to the manifest in one batch on flush
+    private final Map<Integer, String> fileIds = new LinkedHashMap<>();
+    // whether an event here deleted a doc, which must be flushed even with no docs added
+    private boolean superseded;
+    private long firstDocNanos = 0;
+    private IndexSegment view;
+
+    public WriteBuffer(Path dir, String segId) {
+        this(dir, segId, true);
+    }
+
+    /** A buffer whose docs keep token positions (phrase queries) if {@code positions} is set. */
+    public WriteBuffer(Path dir, String segId, boolean positions) {
+        this.segment = new IndexSegment(dir, segId, positions);
+        this.view = segment.snapshot();
+    }
+
+    public String id() { return segment.id(); }
+
+    public synchronized int add(TokenStream tokens, String fileId, Instant ts) {
+        if (!hasPending()) firstDocNanos = System.nanoTime();
+        int docId = segment.addDoc(tokens, fileId, ts);
+        if (fileId != null) fileIds.put(docId, fileId);
+        view = null;
+        return docId;
+    }
+
+    /**
+     * Record that a doc (buffered or flushed) was superseded by an event in this
+     * generation; a buffered doc is deleted from the buffer's live docs right away.
+     */
+    public synchronized void tombstone(String segId, int docId) {
+        if (!hasPending()) firstDocNanos = System.nanoTime();
+        superseded = true;
+        if (segId.equals(segment.id())) {
+            segment.deleteDoc(docId);
+            view = null;
+        }
+    }
+
+    public synchronized Map<Integer, String> docmap() { return new LinkedHashMap<>(fileIds); }
+
+    public synchronized int docCount() { return segment.maxDocId(); }
+
+    public synchronized long sizeBytes() { return segment.heapBytes(); }
+
+    public synchronized boolean isEmpty() { return segment.isEmpty(); }
+
+    /** True if the generation holds anything to flush, docs or tombstones. */
+    public synchronized boolean hasPending() { return !segment.isEmpty() || superseded; }
+
+    /** True once any of the doc-count, byte-size or age thresholds is reached. */
+    public synchronized boolean shouldFlush(int maxDocs, long maxBytes, long maxAgeMillis) {
+        if (!hasPending()) return false;
+        if (segment.maxDocId() >= maxDocs || segment.heapBytes() >= maxBytes) return true;
+        return (System.nanoTime() - firstDocNanos) / 1_000_000L >= maxAgeMillis;
+    }
+
+    /** Frozen view of the buffered docs, safe to search while ingest continues. */
+    public synchronized IndexSegment searchable() {
+        if (view == null) view = segment.snapshot();
+        return view;
+    }
+
+    /** The underlying segment; the buffer must not be written after this is called. */
+    public synchronized IndexSegment seal() {
+        return segment;
+    }
+}
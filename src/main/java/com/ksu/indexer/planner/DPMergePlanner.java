@@ -1,12 +1,25 @@
-
 package com.ksu.indexer.planner;
 
 import com.ksu.indexer.core.IndexSegment;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * 0/1 knapsack over segments: maximise merge benefit within a byte budget. The DP
+ * keeps one rolling row plus one bit per (segment, budget unit) for reconstruction,
+ * and is exact while that table fits {@code maxCells} and the row fits {@link #ROW_CAP}.
+ * Past that, costs are scaled to
+ * coarser units (rounded up, so a plan never exceeds the real budget) and the result
+ * is compared with a benefit-density greedy fill, keeping whichever is better; the
+ * greedy guard bounds the loss from scaling when a few items dominate.
+ */
 public class DPMergePlanner {
+    /** Default table cap: 2^26 bits (8 MB) for reconstruction, whatever the budget. */
+    public static final long DEFAULT_MAX_CELLS = 1L << 26;
+    /** Longest rolling row: 2^20 longs (8 MB), however few the segments. */
+    public static final int ROW_CAP = 1 << 20;
 
     public static class Candidate {
         public final IndexSegment seg;
@@ -20,6 +33,16 @@ public class DPMergePlanner {
         }
     }
 
+    private final long maxCells;
+
+    public DPMergePlanner() {
+        this(DEFAULT_MAX_CELLS);
+    }
+
+    public DPMergePlanner(long maxCells) {
+        this.maxCells = Math.max(1, maxCells);
+    }
+
     public List<IndexSegment> plan(List<IndexSegment> segments, int budget) {
         List<Candidate> items = new ArrayList<>();
         for (IndexSegment s : segments) {
@@ -28,30 +51,104 @@ public class DPMergePlanner {
             items.add(new Candidate(s, cost, benefit));
         }
         int n = items.size();
-        int[][] dp = new int[n+1][budget+1];
-        boolean[][] take = new boolean[n+1][budget+1];
-        for (int i=1;i<=n;i++) {
-            Candidate it = items.get(i-1);
-            for (int w=0; w<=budget; w++) {
-                dp[i][w] = dp[i-1][w];
-                if (it.cost <= w) {
-                    int v = dp[i-1][w - it.cost] + it.benefit;
-                    if (v > dp[i][w]) {
-                        dp[i][w] = v;
-                        take[i][w] = true;
-                    }
+        int[] cost = new int[n];
+        int[] benefit = new int[n];
+        for (int i = 0; i < n; i++) {
+            cost[i] = items.get(i).cost;
+            benefit[i] = items.get(i).benefit;
+        }
+        boolean[] take = select(cost, benefit, budget, maxCells);
+        List<IndexSegment> chosen = new ArrayList<>();
+        for (int i = n - 1; i >= 0; i--) {
+            if (take[i]) chosen.add(items.get(i).seg);
+        }
+        return chosen;
+    }
+
+    /**
+     * Items to take, by index. Exact when {@code n * (budget + 1) <= maxCells} and
+     * {@code budget + 1 <= ROW_CAP}; otherwise the better of the scaled DP and the greedy fill. Costs must be >= 1.
+     */
+    public static boolean[] select(int[] cost, int[] benefit, int budget, long maxCells) {
+        int n = cost.length;
+        if (n == 0 || budget <= 0) return new boolean[n];
+        if (budget + 1L <= ROW_CAP && (long) n * (budget + 1L) <= maxCells) {
+            return knapsack(cost, benefit, budget);
+        }
+
+        // coarser cost units so the table and the row fit; rounding costs up keeps plans feasible
+        int width = (int) Math.max(1, Math.min(ROW_CAP - 1, maxCells / n - 1));
+        long unit = (budget + (long) width - 1) / width;
+        int[] scaled = new int[n];
+        for (int i = 0; i < n; i++) scaled[i] = (int) Math.min(Integer.MAX_VALUE, (cost[i] + unit - 1) / unit);
+        boolean[] dp = knapsack(scaled, benefit, (int) (budget / unit));
+        boolean[] greedy = greedy(cost, benefit, budget);
+        return total(benefit, greedy) > total(benefit, dp) ? greedy : dp;
+    }
+
+    /** Exact 0/1 knapsack: one rolling row, one reconstruction bit per (item, capacity). */
+    static boolean[] knapsack(int[] cost, int[] benefit, int budget) {
+        int n = cost.length;
+        int width = budget + 1;
+        long[] best = new long[width];
+        long[] took = new long[(int) (((long) n * width + 63) >>> 6)];
+        for (int i = 0; i < n; i++) {
+            int c = cost[i];
+            long row = (long) i * width;
+            // descending capacity, so best[w - c] still holds the previous row
+            for (int w = budget; w >= c; w--) {
+                long v = best[w - c] + benefit[i];
+                if (v > best[w]) {
+                    best[w] = v;
+                    long bit = row + w;
+                    took[(int) (bit >>> 6)] |= 1L << bit;
                 }
             }
         }
+        boolean[] take = new boolean[n];
         int w = budget;
-        List<IndexSegment> chosen = new ArrayList<>();
-        for (int i=n;i>=1;i--) {
-            if (take[i][w]) {
-                Candidate it = items.get(i-1);
-                chosen.add(it.seg);
-                w -= it.cost;
+        for (int i = n - 1; i >= 0; i--) {
+            long bit = (long) i * width + w;
+            if ((took[(int) (bit >>> 6)] & (1L << bit)) != 0) {
+                take[i] = true;
+                w -= cost[i];
             }
         }
-        return chosen;
+        return take;
+    }
+
+    /**
+     * Fill by benefit per byte, then keep the single best item instead if it alone
+     * beats the fill; the better of the two is at least half the optimum.
+     */
+    public static boolean[] greedy(int[] cost, int[] benefit, int budget) {
+        int n = cost.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare((double) benefit[b] / cost[b], (double) benefit[a] / cost[a]));
+        boolean[] take = new boolean[n];
+        long left = budget;
+        int single = -1;
+        for (int i : order) {
+            if (cost[i] > budget) continue;
+            if (single < 0 || benefit[i] > benefit[single]) single = i;
+            if (cost[i] <= left) {
+                take[i] = true;
+                left -= cost[i];
+            }
+        }
+        if (single >= 0 && benefit[single] > total(benefit, take)) {
+            take = new boolean[n];
+            take[single] = true;
+        }
+        return take;
+    }
+
+    static long total(int[] benefit, boolean[] take) {
+        long sum = 0;
+        for (int i = 0; i < take.length; i++) {
+            if (take[i]) sum += benefit[i];
+        }
+        return sum;
     }
 }
@@ -0,0 +1,72 @@
+package com.ksu.indexer.planner;
+
+import com.ksu.indexer.core.IndexSegment;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Size-tiered policy for background merging. Segments are bucketed by live size
+ * into tiers that grow by a factor of {@code segmentsPerTier} above a floor; once a
+ * tier holds that many segments, its smallest ones are merged into one segment of a
+ * higher tier. The segment count then stays near {@code segmentsPerTier} per tier,
+ * logarithmic in the index size, and every doc is rewritten about once per tier.
+ *
+ * A segment whose deleted ratio reaches {@code reclaimDeletesRatio} is rewritten on
+ * its own so its deleted docs stop costing disk and postings scans.
+ */
+public class TieredMergePlanner {
+    private final int segmentsPerTier;
+    private final int maxMergeAtOnce;
+    private final long floorBytes;
+    private final double reclaimDeletesRatio;
+
+    public TieredMergePlanner(int segmentsPerTier, int maxMergeAtOnce, long floorBytes, double reclaimDeletesRatio) {
+        if (segmentsPerTier < 2) throw new IllegalArgumentException("segmentsPerTier must be >= 2");
+        if (maxMergeAtOnce < 2) throw new IllegalArgumentException("maxMergeAtOnce must be >= 2");
+        this.segmentsPerTier = segmentsPerTier;
+        this.maxMergeAtOnce = maxMergeAtOnce;
+        this.floorBytes = Math.max(1, floorBytes);
+        this.reclaimDeletesRatio = reclaimDeletesRatio;
+    }
+
+    public TieredMergePlanner() {
+        this(10, 10, 64 * 1024, 0.5);
+    }
+
+    /** Independent merges (no segment appears twice), smallest tier first. */
+    public List<List<IndexSegment>> plan(List<IndexSegment> segments) {
+        List<List<IndexSegment>> merges = new ArrayList<>();
+        Map<Integer, List<IndexSegment>> tiers = new TreeMap<>();
+        for (IndexSegment s : segments) {
+            if (s.maxDocId() > 0 && s.deletedRatio() >= reclaimDeletesRatio) {
+                merges.add(List.of(s));
+                continue;
+            }
+            tiers.computeIfAbsent(tierOf(s), k -> new ArrayList<>()).add(s);
+        }
+        for (List<IndexSegment> tier : tiers.values()) {
+            if (tier.size() < segmentsPerTier) continue;
+            tier.sort(Comparator.comparingLong(TieredMergePlanner::liveBytes));
+            int from = 0;
+            while (tier.size() - from >= segmentsPerTier) {
+                int to = Math.min(tier.size(), from + maxMergeAtOnce);
+                merges.add(new ArrayList<>(tier.subList(from, to)));
+                from = to;
+            }
+        }
+        return merges;
+    }
+
+    int tierOf(IndexSegment s) {
+        double ratio = (double) Math.max(liveBytes(s), floorBytes) / floorBytes;
+        return (int) Math.floor(Math.log(ratio) / Math.log(segmentsPerTier));
+    }
+
+    static long liveBytes(IndexSegment s) {
+        return (long) (s.sizeBytesEstimate() * (1 - s.deletedRatio()));
+    }
+}
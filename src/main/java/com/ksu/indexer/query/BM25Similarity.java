@@ -0,0 +1,46 @@
+package com.ksu.indexer.query;
+
+/**
+ * Okapi BM25. Idf and average doc length come from {@link CollectionStats} so that
+ * scores from different segments are comparable and can share one top-k heap.
+ */
+public final class BM25Similarity {
+    public static final float DEFAULT_K1 = 1.2f;
+    public static final float DEFAULT_B = 0.75f;
+
+    private final float k1;
+    private final float b;
+
+    public BM25Similarity() {
+        this(DEFAULT_K1, DEFAULT_B);
+    }
+
+    public BM25Similarity(float k1, float b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /** Non-negative idf: {@code ln(1 + (N - df + 0.5) / (df + 0.5))}. */
+    public float idf(long docFreq, long docCount) {
+        return (float) Math.log(1 + (docCount - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    /**
+     * Score contribution of one term. A {@code docLength} of 0 means the segment
+     * predates stored lengths; the doc is then treated as average length.
+     */
+    public float score(float idf, int freq, int docLength, float avgDocLength) {
+        float norm = docLength == 0 || avgDocLength == 0 ? 1f : 1 - b + b * docLength / avgDocLength;
+        return idf * freq * (k1 + 1) / (freq + k1 * norm);
+    }
+
+    /**
+     * Upper bound of {@link #score} over docs with freq {@code <= maxFreq} and length
+     * {@code >= minLength}; a {@code minLength} of 0 assumes the shortest possible doc.
+     * Nudged up one ulp so float rounding never puts a real score above it.
+     */
+    public float maxScore(float idf, int maxFreq, int minLength, float avgDocLength) {
+        float norm = avgDocLength == 0 ? 1f : minLength <= 0 ? 1 - b : 1 - b + b * minLength / avgDocLength;
+        return Math.nextUp(idf * (float) maxFreq * (k1 + 1) / ((float) maxFreq + k1 * norm));
+    }
+}
@@ -0,0 +1,110 @@
+package com.ksu.indexer.query;
+
+import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.core.PostingsIterator;
+
+/**
+ * Ranked OR over one segment with Block-Max WAND. Cursors are kept sorted by doc id;
+ * the pivot is the first doc whose preceding terms could, by their list-level max
+ * scores, beat the collector's current threshold. Before scoring the pivot, the
+ * block-level bounds of the blocks holding it are summed, and if even those cannot
+ * compete the whole block range is skipped. Docs that cannot enter the top k are
+ * therefore never decoded or scored, and the threshold carries over from segment
+ * to segment through the shared {@link TopKCollector}.
+ */
+public final class BlockMaxWand {
+    private final BM25Similarity similarity;
+    private final float avgDocLength;
+
+    public BlockMaxWand(BM25Similarity similarity, float avgDocLength) {
+        this.similarity = similarity;
+        this.avgDocLength = avgDocLength;
+    }
+
+    /**
+     * Collect the segment's best docs. {@code its[i]} may be null for a term the
+     * segment lacks; {@code idf[i]} is that term's collection-wide idf.
+     */
+    public void collect(IndexSegment seg, int segOrd, PostingsIterator[] its, float[] idf, TopKCollector top) {
+        PostingsIterator[] cur = new PostingsIterator[its.length];
+        float[] termIdf = new float[its.length];
+        float[] maxScore = new float[its.length];
+        int n = 0;
+        for (int i = 0; i < its.length; i++) {
+            if (its[i] == null || its[i].nextDoc() == PostingsIterator.NO_MORE_DOCS) continue;
+            cur[n] = its[i];
+            termIdf[n] = idf[i];
+            maxScore[n] = similarity.maxScore(idf[i], its[i].maxFreq(), its[i].minLength(), avgDocLength);
+            n++;
+        }
+
+        while (true) {
+            sortByDoc(cur, termIdf, maxScore, n);
+            float threshold = top.minCompetitiveScore();
+
+            // pivot: first cursor at which the running sum of max scores beats the threshold
+            int p = -1;
+            float upper = 0;
+            for (int i = 0; i < n && cur[i].docID() != PostingsIterator.NO_MORE_DOCS; i++) {
+                upper += maxScore[i];
+                if (upper > threshold) {
+                    p = i;
+                    break;
+                }
+            }
+            if (p < 0) return;
+            int pivot = cur[p].docID();
+            while (p + 1 < n && cur[p + 1].docID() == pivot) p++;
+
+            // block-max check over the blocks that hold the pivot
+            float blockUpper = 0;
+            int blockEnd = PostingsIterator.NO_MORE_DOCS;
+            for (int i = 0; i <= p; i++) {
+                blockEnd = Math.min(blockEnd, cur[i].shallowAdvance(pivot));
+                blockUpper += similarity.maxScore(termIdf[i], cur[i].blockMaxFreq(), cur[i].blockMinLength(), avgDocLength);
+            }
+            if (blockUpper <= threshold) {
+                // nothing before the first block end (or the next term's doc) can compete
+                int target = blockEnd == PostingsIterator.NO_MORE_DOCS ? blockEnd : blockEnd + 1;
+                if (p + 1 < n) target = Math.min(target, cur[p + 1].docID());
+                cur[strongest(maxScore, p)].advance(target);
+                continue;
+            }
+
+            if (cur[0].docID() == pivot) {
+                int length = seg.docLength(pivot);
+                float score = 0;
+                for (int i = 0; i <= p; i++) score += similarity.score(termIdf[i], cur[i].freq(), length, avgDocLength);
+                top.collect(segOrd, pivot, score);
+                for (int i = 0; i <= p; i++) cur[i].nextDoc();
+            } else {
+                for (int i = 0; i < p && cur[i].docID() < pivot; i++) cur[i].advance(pivot);
+            }
+        }
+    }
+
+    // the cursor among 0..p with the highest max score; skipping it moves the bound the most
+    private static int strongest(float[] maxScore, int p) {
+        int best = 0;
+        for (int i = 1; i <= p; i++) if (maxScore[i] > maxScore[best]) best = i;
+        return best;
+    }
+
+    // insertion sort: few terms, and the order changes little between steps
+    private static void sortByDoc(PostingsIterator[] its, float[] idf, float[] max, int n) {
+        for (int i = 1; i < n; i++) {
+            PostingsIterator it = its[i];
+            float f = idf[i], m = max[i];
+            int j = i - 1;
+            while (j >= 0 && its[j].docID() > it.docID()) {
+                its[j + 1] = its[j];
+                idf[j + 1] = idf[j];
+                max[j + 1] = max[j];
+                j--;
+            }
+            its[j + 1] = it;
+            idf[j + 1] = f;
+            max[j + 1] = m;
+        }
+    }
+}
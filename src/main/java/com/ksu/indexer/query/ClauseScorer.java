@@ -0,0 +1,303 @@
+package com.ksu.indexer.query;
+
+import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.core.LiveDocs;
+import com.ksu.indexer.core.PostingsIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * A {@link QueryPlan.Clause} evaluated over one segment: its matching docs in order
+ * and, on each, the BM25 score of the terms that matched. Groups score the sum of
+ * their matching clauses, so an AND of terms scores as the flat conjunction does and
+ * an OR rewards docs that match more of it; filters and NOT clauses add nothing.
+ */
+public abstract class ClauseScorer implements PostingsIterator {
+    /** Resolves docs' fileIds as search hits do, for {@code file:} filters. */
+    @FunctionalInterface
+    public interface FileIds {
+        /** fileId by doc id in {@code seg}; taken once per segment a filter runs on. */
+        IntFunction<String> of(IndexSegment seg);
+    }
+
+    /** What every clause of one query scores with. */
+    public record Scoring(BM25Similarity similarity, float avgDocLength, FileIds fileIds) {}
+
+    /** Score of the current doc, whose token count is {@code docLength}. */
+    public abstract float score(int docLength);
+
+    /**
+     * Open {@code c} over {@code seg}, reading {@code live}; null if nothing in the
+     * segment can match. With {@code pushedDown} the clause's bitset NOT clauses are
+     * taken to be in {@code live} already ({@link QueryPlan#exclude}).
+     */
+    static ClauseScorer open(QueryPlan.Clause c, IndexSegment seg, LiveDocs live, Scoring scoring, boolean pushedDown) {
+        return switch (c.kind) {
+            case TERM -> {
+                String t = ((QueryNode.Term) c.source).term();
+                if (!seg.mightContainTerm(t)) yield null;
+                PostingsIterator it = seg.postings(t, live);
+                yield it.cost() == 0 ? null : new Terms(it, new PostingsIterator[] {it}, c.idf, scoring);
+            }
+            case PATTERN -> {
+                PostingsIterator it = c.expansion.postings(seg, live);
+                yield it.cost() == 0 ? null : new Terms(it, new PostingsIterator[] {it}, c.idf, scoring);
+            }
+            case PHRASE -> phrase(c, seg, live, scoring);
+            case FIELD -> new Scan(seg, live, List.of(filter(c, seg, scoring)));
+            case AND, OR -> group(c, seg, live, scoring, pushedDown);
+        };
+    }
+
+    private static ClauseScorer phrase(QueryPlan.Clause c, IndexSegment seg, LiveDocs live, Scoring scoring) {
+        QueryNode.Phrase p = (QueryNode.Phrase) c.source;
+        // segments written without positions match on the conjunction alone
+        boolean positional = seg.hasPositions();
+        PostingsIterator[] its = new PostingsIterator[p.terms().size()];
+        for (int i = 0; i < its.length; i++) {
+            String t = p.terms().get(i);
+            if (!seg.mightContainTerm(t)) return null;
+            its[i] = positional ? seg.positions(t, live) : seg.postings(t, live);
+            if (its[i].cost() == 0) return null;
+        }
+        PostingsIterator match = positional ? PhraseIterator.of(List.of(its), p.slop()) : ConjunctionIterator.of(List.of(its));
+        return new Terms(match, its, c.idf, scoring);
+    }
+
+    private static ClauseScorer group(QueryPlan.Clause c, IndexSegment seg, LiveDocs live, Scoring scoring, boolean pushedDown) {
+        // NOT clauses: bitset ones become this group's own live docs, the rest are probed
+        LiveDocs bits = null;
+        List<PostingsIterator> probes = new ArrayList<>();
+        for (QueryPlan.Clause x : c.excluded) {
+            boolean bitset = x.evaluation == QueryPlan.Evaluation.BITSET;
+            if (bitset && pushedDown) continue;
+            ClauseScorer s = open(x, seg, live, scoring, false);
+            if (s == null) continue;
+            if (bitset) bits = (bits == null ? live : bits).exclude(s);
+            else probes.add(s);
+        }
+        LiveDocs groupLive = bits == null ? live : bits;
+        List<ClauseScorer> clauses = new ArrayList<>(c.required.size());
+        for (QueryPlan.Clause r : c.required) {
+            ClauseScorer s = open(r, seg, groupLive, scoring, false);
+            if (s != null) clauses.add(s);
+            else if (c.kind == QueryPlan.Kind.AND) return null;
+        }
+        List<Filter> filters = new ArrayList<>(c.filters.size());
+        for (QueryPlan.Clause f : c.filters) filters.add(filter(f, seg, scoring));
+        ClauseScorer base;
+        if (c.kind == QueryPlan.Kind.OR) {
+            // the planner only pulls filters out of AND groups; under OR they are FIELD clauses
+            if (clauses.isEmpty()) return null;
+            base = new Group(DisjunctionIterator.heap(clauses), clauses, true, List.of());
+        } else if (clauses.isEmpty()) {
+            base = new Scan(seg, groupLive, filters);
+        } else {
+            base = new Group(ConjunctionIterator.of(new ArrayList<PostingsIterator>(clauses)), clauses, false, filters);
+        }
+        return probes.isEmpty() ? base : new Excluding(base, probes);
+    }
+
+    private static Filter filter(QueryPlan.Clause c, IndexSegment seg, Scoring scoring) {
+        QueryNode.Field f = (QueryNode.Field) c.source;
+        // "file" is the only field; its value is a glob over the whole fileId
+        WildcardQuery glob = new WildcardQuery(f.value());
+        IntFunction<String> fileIds = scoring.fileIds().of(seg);
+        return doc -> {
+            String id = fileIds.apply(doc);
+            return id != null && !id.isEmpty() && glob.matches(id);
+        };
+    }
+
+    /** {@code match} without the docs any of {@code probes} has, each advanced to the candidate. */
+    static PostingsIterator excluding(PostingsIterator match, List<PostingsIterator> probes) {
+        return new Excluding(ClauseScorer.wrap(match), probes);
+    }
+
+    private static ClauseScorer wrap(PostingsIterator it) {
+        return it instanceof ClauseScorer s ? s : new Terms(it, new PostingsIterator[0], new float[0], null);
+    }
+
+    private interface Filter {
+        boolean accept(int doc);
+    }
+
+    /** A match iterator scored by term iterators positioned on its docs. */
+    private static final class Terms extends ClauseScorer {
+        private final PostingsIterator match;
+        private final PostingsIterator[] terms;
+        private final float[] idf;
+        private final Scoring scoring;
+
+        Terms(PostingsIterator match, PostingsIterator[] terms, float[] idf, Scoring scoring) {
+            this.match = match;
+            this.terms = terms;
+            this.idf = idf;
+            this.scoring = scoring;
+        }
+
+        @Override
+        public float score(int docLength) {
+            float s = 0;
+            int doc = match.docID();
+            for (int i = 0; i < terms.length; i++) {
+                terms[i].advance(doc);
+                s += scoring.similarity().score(idf[i], terms[i].freq(), docLength, scoring.avgDocLength());
+            }
+            return s;
+        }
+
+        @Override
+        public int docID() { return match.docID(); }
+
+        @Override
+        public int nextDoc() { return match.nextDoc(); }
+
+        @Override
+        public int advance(int target) { return match.advance(target); }
+
+        @Override
+        public int cost() { return match.cost(); }
+
+        @Override
+        public int freq() { return match.freq(); }
+    }
+
+    /** AND (every clause on the doc, then the filters) or OR (any clause) of clauses. */
+    private static final class Group extends ClauseScorer {
+        private final PostingsIterator approximation;
+        private final ClauseScorer[] clauses;
+        private final boolean any;
+        private final Filter[] filters;
+        private int doc = -1;
+
+        Group(PostingsIterator approximation, List<ClauseScorer> clauses, boolean any, List<Filter> filters) {
+            this.approximation = approximation;
+            this.clauses = clauses.toArray(new ClauseScorer[0]);
+            this.any = any;
+            this.filters = filters.toArray(new Filter[0]);
+        }
+
+        @Override
+        public float score(int docLength) {
+            float s = 0;
+            // under OR only the clauses on this doc matched; the others are past it
+            for (ClauseScorer c : clauses) if (!any || c.docID() == doc) s += c.score(docLength);
+            return s;
+        }
+
+        @Override
+        public int docID() { return doc; }
+
+        @Override
+        public int nextDoc() {
+            return doc = confirm(approximation.nextDoc());
+        }
+
+        @Override
+        public int advance(int target) {
+            if (doc >= target) return doc;
+            return doc = confirm(approximation.advance(target));
+        }
+
+        private int confirm(int d) {
+            outer:
+            while (d != NO_MORE_DOCS) {
+                for (Filter f : filters) {
+                    if (!f.accept(d)) {
+                        d = approximation.nextDoc();
+                        continue outer;
+                    }
+                }
+                return d;
+            }
+            return NO_MORE_DOCS;
+        }
+
+        @Override
+        public int cost() { return approximation.cost(); }
+    }
+
+    /** Every live doc of the segment that passes the filters; scores nothing. */
+    private static final class Scan extends ClauseScorer {
+        private final IndexSegment seg;
+        private final LiveDocs live;
+        private final Filter[] filters;
+        private int doc = -1;
+
+        Scan(IndexSegment seg, LiveDocs live, List<Filter> filters) {
+            this.seg = seg;
+            this.live = live;
+            this.filters = filters.toArray(new Filter[0]);
+        }
+
+        @Override
+        public float score(int docLength) { return 0; }
+
+        @Override
+        public int docID() { return doc; }
+
+        @Override
+        public int nextDoc() { return doc == NO_MORE_DOCS ? doc : advance(doc + 1); }
+
+        @Override
+        public int advance(int target) {
+            if (doc >= target) return doc;
+            outer:
+            for (int d = Math.max(target, 0); d <= seg.maxDocId(); d++) {
+                if (live.isDeleted(d)) continue;
+                for (Filter f : filters) if (!f.accept(d)) continue outer;
+                return doc = d;
+            }
+            return doc = NO_MORE_DOCS;
+        }
+
+        @Override
+        public int cost() { return seg.maxDocId() + 1; }
+    }
+
+    /** Drops the docs any probe has; each probe is only advanced to candidates. */
+    private static final class Excluding extends ClauseScorer {
+        private final ClauseScorer in;
+        private final PostingsIterator[] probes;
+
+        Excluding(ClauseScorer in, List<PostingsIterator> probes) {
+            this.in = in;
+            this.probes = probes.toArray(new PostingsIterator[0]);
+        }
+
+        @Override
+        public float score(int docLength) { return in.score(docLength); }
+
+        @Override
+        public int docID() { return in.docID(); }
+
+        @Override
+        public int nextDoc() { return skipExcluded(in.nextDoc()); }
+
+        @Override
+        public int advance(int target) { return skipExcluded(in.advance(target)); }
+
+        private int skipExcluded(int d) {
+            outer:
+            while (d != NO_MORE_DOCS) {
+                for (PostingsIterator p : probes) {
+                    int at = p.docID() < d ? p.advance(d) : p.docID();
+                    if (at == d) {
+                        d = in.nextDoc();
+                        continue outer;
+                    }
+                }
+                return d;
+            }
+            return NO_MORE_DOCS;
+        }
+
+        @Override
+        public int cost() { return in.cost(); }
+
+        @Override
+        public int freq() { return in.freq(); }
+    }
+}
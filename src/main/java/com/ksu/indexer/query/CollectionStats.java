@@ -0,0 +1,48 @@
+package com.ksu.indexer.query;
+
+import com.ksu.indexer.core.IndexSegment;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Doc count, total doc length and per-term doc frequency summed over a set of
+ * segments. Built over one segment it gives that segment's local stats; built over
+ * the whole snapshot of a query it gives the global stats used for scoring.
+ * Deleted docs are counted, as they are still in the postings.
+ */
+public final class CollectionStats {
+    public final long docCount;
+    public final long sumDocLengths;
+    private final Map<String, Long> docFreqs;
+
+    private CollectionStats(long docCount, long sumDocLengths, Map<String, Long> docFreqs) {
+        this.docCount = docCount;
+        this.sumDocLengths = sumDocLengths;
+        this.docFreqs = docFreqs;
+    }
+
+    public static CollectionStats of(List<IndexSegment> segs, Collection<String> terms) {
+        long docs = 0;
+        long lengths = 0;
+        Map<String, Long> dfs = new HashMap<>();
+        for (String t : terms) dfs.put(t, 0L);
+        for (IndexSegment s : segs) {
+            docs += s.maxDocId();
+            lengths += s.sumDocLengths();
+            // one dictionary lookup and a list-header read per term; 0 if absent
+            for (String t : dfs.keySet()) dfs.merge(t, (long) s.docFreq(t), Long::sum);
+        }
+        return new CollectionStats(docs, lengths, dfs);
+    }
+
+    public long docFreq(String term) {
+        return docFreqs.getOrDefault(term, 0L);
+    }
+
+    /** Mean doc length, or 0 when none of the segments stores lengths. */
+    public float avgDocLength() {
+        return docCount == 0 ? 0f : (float) sumDocLengths / docCount;
+    }
+}
@@ -0,0 +1,65 @@
+package com.ksu.indexer.query;
+
+import com.ksu.indexer.core.PostingsIterator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Doc-at-a-time AND over several postings. Iterators are ordered by cost so the
+ * rarest one leads; every other iterator is only ever asked to {@code advance()} to
+ * the lead's candidate (galloping / skip-table seeks), so the work is proportional
+ * to the rarest list rather than the most common one.
+ */
+public final class ConjunctionIterator implements PostingsIterator {
+    private final PostingsIterator lead;
+    private final PostingsIterator[] others;
+    private int doc = -1;
+
+    private ConjunctionIterator(List<PostingsIterator> byCost) {
+        this.lead = byCost.get(0);
+        this.others = byCost.subList(1, byCost.size()).toArray(new PostingsIterator[0]);
+    }
+
+    /** AND of {@code its}; a single iterator is returned as is. */
+    public static PostingsIterator of(List<PostingsIterator> its) {
+        if (its.isEmpty()) return PostingsIterator.EMPTY;
+        List<PostingsIterator> sorted = new ArrayList<>(its);
+        sorted.sort(Comparator.comparingInt(PostingsIterator::cost));
+        if (sorted.get(0).cost() == 0) return PostingsIterator.EMPTY;
+        return sorted.size() == 1 ? sorted.get(0) : new ConjunctionIterator(sorted);
+    }
+
+    @Override
+    public int docID() { return doc; }
+
+    @Override
+    public int nextDoc() {
+        return doc = align(lead.nextDoc());
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) return doc;
+        return doc = align(lead.advance(target));
+    }
+
+    /** Leapfrog: push every follower to the candidate; on overshoot, re-seek the lead. */
+    private int align(int target) {
+        outer:
+        while (target != NO_MORE_DOCS) {
+            for (PostingsIterator other : others) {
+                int d = other.docID() < target ? other.advance(target) : other.docID();
+                if (d > target) {
+                    target = lead.advance(d);
+                    continue outer;
+                }
+            }
+            return target;
+        }
+        return NO_MORE_DOCS;
+    }
+
+    @Override
+    public int cost() { return lead.cost(); }
+}
@@ -0,0 +1,112 @@
+package com.ksu.indexer.query;
+
+import com.ksu.indexer.core.DocIdSet;
+import com.ksu.indexer.core.PostingsIterator;
+import java.util.List;
+
+/**
+ * Doc-at-a-time OR over several postings, kept in a min-heap on their current doc, so
+ * each step costs {@code log n} in the number of lists. {@link #freq()} sums the
+ * frequencies of the lists on the current doc, which scores a union of expanded terms
+ * (see {@link MultiTermQuery}) as if it were one term.
+ */
+public final class DisjunctionIterator implements PostingsIterator {
+    /** Above this many lists {@link #of} unions into a bitset rather than a heap. */
+    public static final int MAX_HEAP_CLAUSES = 16;
+
+    private final PostingsIterator[] heap;
+    private final int cost;
+    private final int maxFreq;
+    private final int minLength;
+    private int doc = -1;
+
+    private DisjunctionIterator(List<? extends PostingsIterator> its) {
+        this.heap = its.toArray(new PostingsIterator[0]);
+        long c = 0;
+        long f = 0;
+        int l = Integer.MAX_VALUE;
+        for (PostingsIterator it : heap) {
+            c += it.cost();
+            f += it.maxFreq();
+            l = Math.min(l, it.minLength());
+        }
+        this.cost = (int) Math.min(c, Integer.MAX_VALUE);
+        this.maxFreq = (int) Math.min(f, Integer.MAX_VALUE);
+        this.minLength = l;
+    }
+
+    /**
+     * OR of {@code its}. Up to {@link #MAX_HEAP_CLAUSES} lists are merged through the
+     * heap, keeping frequencies; more are drained into a {@link DocIdSet} bitset over
+     * the segment's {@code maxDocId} docs, which costs one pass over each list instead
+     * of a heap step per posting, and reports a freq of 1. One list is returned as is.
+     */
+    public static PostingsIterator of(List<PostingsIterator> its, int maxDocId) {
+        if (its.isEmpty()) return PostingsIterator.EMPTY;
+        if (its.size() == 1) return its.get(0);
+        if (its.size() > MAX_HEAP_CLAUSES) return DocIdSet.union(its, maxDocId).iterator();
+        return new DisjunctionIterator(its);
+    }
+
+    /** OR of {@code its} through the heap whatever their number, so each stays positioned on its own docs. */
+    static PostingsIterator heap(List<? extends PostingsIterator> its) {
+        if (its.isEmpty()) return PostingsIterator.EMPTY;
+        return its.size() == 1 ? its.get(0) : new DisjunctionIterator(its);
+    }
+
+    @Override
+    public int docID() { return doc; }
+
+    @Override
+    public int nextDoc() {
+        if (doc == NO_MORE_DOCS) return doc;
+        // lists still on the current doc (or all of them, before the first call) move on
+        while (heap[0].docID() == doc) {
+            heap[0].nextDoc();
+            siftDown();
+        }
+        return doc = heap[0].docID();
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) return doc;
+        while (heap[0].docID() < target) {
+            heap[0].advance(target);
+            siftDown();
+        }
+        return doc = heap[0].docID();
+    }
+
+    private void siftDown() {
+        PostingsIterator top = heap[0];
+        int d = top.docID();
+        int i = 0;
+        int n = heap.length;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) break;
+            if (child + 1 < n && heap[child + 1].docID() < heap[child].docID()) child++;
+            if (heap[child].docID() >= d) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = top;
+    }
+
+    @Override
+    public int freq() {
+        int f = 0;
+        for (PostingsIterator it : heap) if (it.docID() == doc) f += it.freq();
+        return f;
+    }
+
+    @Override
+    public int cost() { return cost; }
+
+    @Override
+    public int maxFreq() { return maxFreq; }
+
+    @Override
+    public int minLength() { return minLength; }
+}
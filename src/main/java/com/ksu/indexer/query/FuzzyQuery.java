@@ -0,0 +1,119 @@
+package com.ksu.indexer.query;
+
+import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.core.TermsCursor;
+import java.util.Arrays;
+
+/**
+ * Terms within {@code maxEdits} edits of a term, where an edit inserts, deletes or
+ * substitutes one character or swaps two adjacent ones (optimal string alignment).
+ *
+ * The dictionary is walked as a Levenshtein automaton: one row of the edit-distance
+ * table per character of the candidate, stacked by depth, so consecutive terms reuse
+ * the rows of their shared prefix. Once every entry of a row exceeds {@code maxEdits}
+ * no term with that prefix can match, and the walk seeks past the whole prefix instead
+ * of reading on (a few terms are stepped over first, as a seek decodes a dictionary
+ * block). The terms visited are therefore bounded by the prefixes near the query term,
+ * not by the size of the dictionary.
+ */
+public final class FuzzyQuery extends MultiTermQuery {
+    // terms under a dead prefix read one by one before seeking past the rest
+    private static final int SCAN_BEFORE_SEEK = 8;
+
+    private final String term;
+    private final int[] query;
+    private final int maxEdits;
+
+    public FuzzyQuery(String term, int maxEdits) {
+        if (maxEdits < 0 || maxEdits > MAX_EDITS) throw new IllegalArgumentException("maxEdits must be 0.." + MAX_EDITS + ": " + maxEdits);
+        this.term = term;
+        this.query = codePoints(term);
+        this.maxEdits = maxEdits;
+    }
+
+    @Override
+    protected void collect(IndexSegment seg, TermSink sink) {
+        int n = query.length;
+        int[][] rows = new int[16][];
+        rows[0] = new int[n + 1];
+        for (int j = 0; j <= n; j++) rows[0][j] = j;
+        // the current term's code points and the byte offset where each ends
+        int[] chars = new int[16];
+        int[] ends = new int[16];
+        // rows[1..valid] hold the prefix chars[0, valid) of the previous term
+        int valid = 0;
+        // the prefix found dead last, and how many terms under it were stepped over
+        byte[] dead = null;
+        int skipped = 0;
+        TermsCursor c = seg.seekTerms(null);
+        terms:
+        while (c.next()) {
+            byte[] t = c.term();
+            int len = c.termLength();
+            if (dead != null) {
+                if (c.startsWith(dead)) {
+                    if (++skipped < SCAN_BEFORE_SEEK) continue;
+                    byte[] next = successor(dead, dead.length);
+                    if (next == null) break;
+                    c = seg.seekTerms(next);
+                    dead = null;
+                    continue;
+                }
+                dead = null;
+            }
+            int depth = 0;
+            for (int b = 0; b < len; depth++) {
+                int cp;
+                int lead = t[b] & 0xFF;
+                int size = lead < 0x80 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : 4;
+                cp = size == 1 ? lead : lead & (0xFF >>> (size + 1));
+                for (int k = 1; k < size && b + k < len; k++) cp = (cp << 6) | (t[b + k] & 0x3F);
+                b += size;
+                if (depth == chars.length) {
+                    chars = Arrays.copyOf(chars, depth * 2);
+                    ends = Arrays.copyOf(ends, depth * 2);
+                }
+                if (depth < valid && chars[depth] != cp) valid = depth;
+                chars[depth] = cp;
+                ends[depth] = Math.min(b, len);
+            }
+            valid = Math.min(valid, depth);
+            for (int i = valid + 1; i <= depth; i++) {
+                if (i == rows.length) rows = Arrays.copyOf(rows, i * 2);
+                if (rows[i] == null) rows[i] = new int[n + 1];
+                if (!step(rows, chars, i)) {
+                    // nothing starting with chars[0, i) is within reach: skip that prefix
+                    valid = i - 1;
+                    dead = Arrays.copyOf(t, ends[i - 1]);
+                    skipped = 0;
+                    continue terms;
+                }
+            }
+            valid = depth;
+            if (rows[depth][n] <= maxEdits) sink.accept(t, len, rows[depth][n]);
+        }
+    }
+
+    // fill rows[i] from the rows above it for term char chars[i - 1]; false if every
+    // entry exceeds maxEdits
+    private boolean step(int[][] rows, int[] chars, int i) {
+        int[] prev = rows[i - 1];
+        int[] row = rows[i];
+        int ch = chars[i - 1];
+        row[0] = i;
+        int min = i;
+        for (int j = 1; j < row.length; j++) {
+            int d = Math.min(prev[j] + 1, row[j - 1] + 1);
+            d = Math.min(d, prev[j - 1] + (query[j - 1] == ch ? 0 : 1));
+            if (i > 1 && j > 1 && ch == query[j - 2] && chars[i - 2] == query[j - 1]) {
+                d = Math.min(d, rows[i - 2][j - 2] + 1);
+            }
+            row[j] = d;
+            min = Math.min(min, d);
+        }
+        return min <= maxEdits;
+    }
+
+    @Override
+    public String toString() { return term + "~" + maxEdits; }
+}
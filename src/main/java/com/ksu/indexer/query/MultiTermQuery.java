@@ -0,0 +1,150 @@
+package com.ksu.indexer.query;
+
+import com.ksu.indexer.analysis.Analyzer;
+import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.core.LiveDocs;
+import com.ksu.indexer.core.PostingsIterator;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A query word that stands for many terms: a wildcard ({@code conf*}, {@code c?t},
+ * see {@link WildcardQuery}) or a fuzzy term ({@code colour~}, {@code colour~1}, see
+ * {@link FuzzyQuery}). It is expanded against the sorted term dictionaries of a
+ * snapshot's segments, each seeking straight to the candidates rather than scanning
+ * the vocabulary, and the expansion is then searched as one term: the union of the
+ * expanded terms' postings ({@link DisjunctionIterator}).
+ */
+public abstract class MultiTermQuery {
+    /** Most edits a fuzzy term may ask for; beyond 2 nearly every short term matches. */
+    public static final int MAX_EDITS = 2;
+
+    /** Receives a segment's matching terms; the term buffer is only valid during the call. */
+    protected interface TermSink {
+        void accept(byte[] term, int length, int distance);
+    }
+
+    /**
+     * Pass the terms of {@code seg} this query matches to {@code sink}, with their edit
+     * distance (0 for wildcards), in term order.
+     */
+    protected abstract void collect(IndexSegment seg, TermSink sink);
+
+    /** The query word as written, after normalization. */
+    @Override
+    public abstract String toString();
+
+    /**
+     * {@code word} as a multi-term query, or null if it is a plain word for the analyzer.
+     * A word with {@code *} or {@code ?} is a wildcard; one ending in {@code ~} or
+     * {@code ~N} ({@code N} up to {@link #MAX_EDITS}, default 2) is fuzzy. Their literal
+     * characters get the analyzer's case and accent normalization only.
+     */
+    public static MultiTermQuery parse(String word, Analyzer analyzer) {
+        int tilde = word.lastIndexOf('~');
+        if (tilde > 0 && (tilde == word.length() - 1 || isDigits(word, tilde + 1))) {
+            int edits = tilde == word.length() - 1 ? MAX_EDITS : Integer.parseInt(word.substring(tilde + 1));
+            if (edits > MAX_EDITS) throw new IllegalArgumentException("fuzzy edits must be at most " + MAX_EDITS + ": " + word);
+            String term = analyzer.normalize(word.substring(0, tilde));
+            return term.isEmpty() ? null : new FuzzyQuery(term, edits);
+        }
+        if (word.indexOf('*') >= 0 || word.indexOf('?') >= 0) return new WildcardQuery(analyzer.normalize(word));
+        return null;
+    }
+
+    private static boolean isDigits(String s, int from) {
+        if (from >= s.length() || s.length() - from > 2) return false;
+        for (int i = from; i < s.length(); i++) if (s.charAt(i) < '0' || s.charAt(i) > '9') return false;
+        return true;
+    }
+
+    /**
+     * Expand over {@code segs}, keeping at most {@code maxExpansions} distinct terms:
+     * the closest first, then those in the most docs, so a capped expansion keeps the
+     * bulk of the matches. Work and memory follow the number of matching terms.
+     */
+    public Expansion expand(List<IndexSegment> segs, int maxExpansions) {
+        // term -> {distance, doc freq summed over segments}
+        Map<String, long[]> found = new HashMap<>();
+        for (IndexSegment seg : segs) {
+            collect(seg, (term, length, distance) -> {
+                String t = new String(term, 0, length, StandardCharsets.UTF_8);
+                long[] e = found.computeIfAbsent(t, x -> new long[] {distance, 0});
+                e[1] += seg.docFreq(t);
+            });
+        }
+        List<Map.Entry<String, long[]>> ranked = new ArrayList<>(found.entrySet());
+        ranked.sort((a, b) -> {
+            int c = Long.compare(a.getValue()[0], b.getValue()[0]);
+            if (c == 0) c = Long.compare(b.getValue()[1], a.getValue()[1]);
+            return c != 0 ? c : a.getKey().compareTo(b.getKey());
+        });
+        int n = Math.min(ranked.size(), Math.max(1, maxExpansions));
+        List<String> terms = new ArrayList<>(n);
+        long docFreq = 0;
+        long cost = 0;
+        for (int i = 0; i < n; i++) {
+            terms.add(ranked.get(i).getKey());
+            docFreq = Math.max(docFreq, ranked.get(i).getValue()[1]);
+            cost += ranked.get(i).getValue()[1];
+        }
+        return new Expansion(this, List.copyOf(terms), docFreq, cost, ranked.size() > n);
+    }
+
+    /**
+     * The terms a query expanded to over one snapshot. {@code docFreq} is the largest
+     * doc freq among them, the union's df for scoring: a lower bound on the docs it
+     * matches, so the clause ranks like its most common term. {@code cost}, the doc
+     * freqs summed, bounds it from above.
+     */
+    public record Expansion(MultiTermQuery query, List<String> terms, long docFreq, long cost, boolean truncated) {
+        /** Union of the terms' postings in {@code seg} without the docs deleted in {@code live}. */
+        public PostingsIterator postings(IndexSegment seg, LiveDocs live) {
+            List<PostingsIterator> its = new ArrayList<>();
+            for (String t : terms) {
+                if (!seg.mightContainTerm(t)) continue;
+                PostingsIterator it = seg.postings(t, live);
+                if (it.cost() > 0) its.add(it);
+            }
+            return DisjunctionIterator.of(its, seg.maxDocId());
+        }
+    }
+
+    /** Code points of {@code s}. */
+    static int[] codePoints(String s) {
+        return s.codePoints().toArray();
+    }
+
+    /**
+     * Decode UTF-8 {@code term[0, len)} into {@code out}, which must hold {@code len}
+     * entries; returns the number of code points.
+     */
+    static int decode(byte[] term, int len, int[] out) {
+        int n = 0;
+        for (int b = 0; b < len; ) {
+            int lead = term[b] & 0xFF;
+            int size = lead < 0x80 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : 4;
+            int cp = size == 1 ? lead : lead & (0xFF >>> (size + 1));
+            for (int k = 1; k < size && b + k < len; k++) cp = (cp << 6) | (term[b + k] & 0x3F);
+            b += size;
+            out[n++] = cp;
+        }
+        return n;
+    }
+
+    /** The smallest key above every term starting with {@code prefix[0, len)}; null if there is none. */
+    static byte[] successor(byte[] prefix, int len) {
+        byte[] next = Arrays.copyOf(prefix, len);
+        for (int i = len - 1; i >= 0; i--) {
+            if (next[i] != (byte) 0xFF) {
+                next[i]++;
+                return Arrays.copyOf(next, i + 1);
+            }
+        }
+        return null;
+    }
+}
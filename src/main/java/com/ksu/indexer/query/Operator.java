@@ -0,0 +1,14 @@
+package com.ksu.indexer.query;
+
+/** How the terms of a flat query combine. */
+public enum Operator {
+    /** Every term must match. */
+    AND,
+    /** Any term may match; more and rarer matching terms rank higher. */
+    OR,
+    /**
+     * The terms must occur in order and adjacent, or within the query's slop (see
+     * {@link PhraseIterator}); ranked like AND.
+     */
+    PHRASE
+}
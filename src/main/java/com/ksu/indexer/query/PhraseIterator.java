@@ -0,0 +1,94 @@
+package com.ksu.indexer.query;
+
+import com.ksu.indexer.core.PostingsIterator;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Docs where the terms occur as a phrase. A {@link ConjunctionIterator} proposes
+ * docs holding every term, and only those have their positions read and checked, so
+ * the position work is bounded by the AND matches rather than by any term's list.
+ *
+ * With {@code slop} 0 the terms must be adjacent and in order. Otherwise a doc
+ * matches if positions {@code p_i} exist with the spread of {@code p_i - i} at most
+ * {@code slop}: each word may sit that many positions away from where the exact
+ * phrase would put it, so a small slop allows gaps ("quick brown fox" for "quick
+ * fox" at slop 1) and, at 2 or more, swapped words. A term repeated in the phrase
+ * may match the same occurrence for both slots when the slop spans their distance.
+ */
+public final class PhraseIterator implements PostingsIterator {
+    private final PostingsIterator approximation;
+    private final PostingsIterator[] terms;
+    private final int slop;
+    private final int[][] positions;
+    private final int[] counts;
+    private final int[] at;
+    private int doc = -1;
+
+    private PhraseIterator(PostingsIterator approximation, PostingsIterator[] terms, int slop) {
+        this.approximation = approximation;
+        this.terms = terms;
+        this.slop = slop;
+        this.positions = new int[terms.length][8];
+        this.counts = new int[terms.length];
+        this.at = new int[terms.length];
+    }
+
+    /**
+     * Phrase of {@code its} in phrase order; each must read positions
+     * ({@link PostingsIterator#nextPosition()}) and be used by nothing else while
+     * this iterates, other than being read on the current doc.
+     */
+    public static PostingsIterator of(List<PostingsIterator> its, int slop) {
+        if (slop < 0) throw new IllegalArgumentException("slop must be >= 0: " + slop);
+        PostingsIterator approximation = ConjunctionIterator.of(its);
+        if (approximation == PostingsIterator.EMPTY || its.size() == 1) return approximation;
+        return new PhraseIterator(approximation, its.toArray(new PostingsIterator[0]), slop);
+    }
+
+    @Override
+    public int docID() { return doc; }
+
+    @Override
+    public int nextDoc() {
+        return doc = confirm(approximation.nextDoc());
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) return doc;
+        return doc = confirm(approximation.advance(target));
+    }
+
+    private int confirm(int d) {
+        while (d != NO_MORE_DOCS && !matches()) d = approximation.nextDoc();
+        return d;
+    }
+
+    @Override
+    public int cost() { return approximation.cost(); }
+
+    // every term iterator sits on the candidate doc
+    private boolean matches() {
+        for (int i = 0; i < terms.length; i++) {
+            int n = terms[i].freq();
+            if (positions[i].length < n) positions[i] = new int[Math.max(n, positions[i].length * 2)];
+            // shifted by the slot, so an exact phrase has the same value in every slot
+            for (int j = 0; j < n; j++) positions[i][j] = terms[i].nextPosition() - i;
+            counts[i] = n;
+        }
+        Arrays.fill(at, 0);
+        // smallest window holding one shifted position per slot; each step moves the lowest slot forward
+        for (;;) {
+            int lo = 0;
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < terms.length; i++) {
+                int v = positions[i][at[i]];
+                if (v < positions[lo][at[lo]]) lo = i;
+                if (v > max) max = v;
+            }
+            if (max - positions[lo][at[lo]] <= slop) return true;
+            if (++at[lo] == counts[lo]) return false;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.ksu.indexer.query;
+
+import com.ksu.indexer.core.DocIdSet;
+import com.ksu.indexer.core.IndexSegment;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of per-segment match sets, keyed by segment id and normalized query and
+ * bounded by the sets' heap footprint. A set holds every doc of the segment that
+ * matches, deleted docs included: segments are immutable, so a set stays valid until
+ * its segment is retired, and deletes are applied when the set is read, from the
+ * querying searcher's own live docs. Only mapped segments are cached; the write
+ * buffer's view changes with every acquisition.
+ */
+public final class QueryCache {
+    private final long maxBytes;
+    private final LinkedHashMap<Key, DocIdSet> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public QueryCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    public boolean enabled() { return maxBytes > 0; }
+
+    /** The cached set, or null; counts a hit or a miss. */
+    public synchronized DocIdSet get(IndexSegment seg, String query) {
+        DocIdSet docs = entries.get(new Key(seg.id(), query));
+        if (docs != null) hits++; else misses++;
+        return docs;
+    }
+
+    /** Cache a set, evicting least recently used ones; sets of retired segments and oversized sets are dropped. */
+    public synchronized void put(IndexSegment seg, String query, DocIdSet docs) {
+        long size = docs.ramBytes();
+        // checked under the lock, so an invalidation never precedes a put for the same segment
+        if (seg.isRetired() || size > maxBytes) return;
+        DocIdSet old = entries.put(new Key(seg.id(), query), docs);
+        bytes += size - (old == null ? 0 : old.ramBytes());
+        Iterator<DocIdSet> lru = entries.values().iterator();
+        while (bytes > maxBytes && lru.hasNext()) {
+            bytes -= lru.next().ramBytes();
+            lru.remove();
+            evictions++;
+        }
+    }
+
+    /** Drop every set of a segment that left the index. */
+    public synchronized void invalidate(IndexSegment seg) {
+        Iterator<Map.Entry<Key, DocIdSet>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, DocIdSet> e = it.next();
+            if (!e.getKey().segId.equals(seg.id())) continue;
+            bytes -= e.getValue().ramBytes();
+            it.remove();
+            invalidations++;
+        }
+    }
+
+    public synchronized long hits() { return hits; }
+
+    public synchronized long misses() { return misses; }
+
+    public synchronized long evictions() { return evictions; }
+
+    public synchronized long invalidations() { return invalidations; }
+
+    public synchronized long bytes() { return bytes; }
+
+    public synchronized int size() { return entries.size(); }
+
+    private record Key(String segId, String query) {}
+}
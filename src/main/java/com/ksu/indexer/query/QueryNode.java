@@ -0,0 +1,64 @@
+package com.ksu.indexer.query;
+
+import java.util.List;
+
+/**
+ * Parsed query ({@link QueryParser}): analyzed terms, wildcard/fuzzy words, phrases
+ * and field filters combined by AND/OR groups, any clause of which may be negated.
+ * {@link #toString()} renders the canonical form shown by explain.
+ */
+public sealed interface QueryNode {
+
+    /** One analyzed term. */
+    record Term(String term) implements QueryNode {
+        @Override
+        public String toString() { return term; }
+    }
+
+    /** A wildcard or fuzzy word, expanded when planned. */
+    record Pattern(MultiTermQuery query) implements QueryNode {
+        @Override
+        public String toString() { return query.toString(); }
+    }
+
+    /** Analyzed terms in order, within {@code slop} (see {@link PhraseIterator}). */
+    record Phrase(List<String> terms, int slop) implements QueryNode {
+        @Override
+        public String toString() {
+            return "\"" + String.join(" ", terms) + "\"" + (slop == 0 ? "" : "~" + slop);
+        }
+    }
+
+    /**
+     * A filter on a stored field rather than on terms: matches without scoring. The
+     * only field so far is {@code file}, the doc's fileId, matched as a glob.
+     */
+    record Field(String name, String value) implements QueryNode {
+        @Override
+        public String toString() { return name + ":" + value; }
+    }
+
+    /** Docs the clause matches are removed from the group it sits in. */
+    record Not(QueryNode clause) implements QueryNode {
+        @Override
+        public String toString() { return "-" + clause; }
+    }
+
+    /** {@link Operator#AND} or {@link Operator#OR} of two or more clauses. */
+    record Group(Operator op, List<QueryNode> clauses) implements QueryNode {
+        public Group {
+            if (op == Operator.PHRASE) throw new IllegalArgumentException("a group is AND or OR");
+            clauses = List.copyOf(clauses);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("(");
+            for (int i = 0; i < clauses.size(); i++) {
+                if (i > 0) sb.append(' ').append(op).append(' ');
+                sb.append(clauses.get(i));
+            }
+            return sb.append(')').toString();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.ksu.indexer.query;
+
+import com.ksu.indexer.analysis.Analyzer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Parses the query language into a {@link QueryNode}:
+ * <pre>
+ *   query   := or
+ *   or      := and  (("OR"  | default OR)  and)*
+ *   and     := unary (("AND" | default AND) unary)*
+ *   unary   := ("NOT" | "-") unary | primary
+ *   primary := "(" or ")" | '"' words '"' ["~" N] | field ":" value | word
+ * </pre>
+ * Operators are upper case; words next to each other combine with the default
+ * operator, so NOT binds tighter than AND, which binds tighter than OR. A word is a
+ * wildcard or fuzzy term if {@link MultiTermQuery#parse} says so and is analyzed
+ * otherwise; words and quoted phrases the analyzer drops entirely (stop words) drop
+ * out of their group. Malformed input throws {@link IllegalArgumentException}.
+ */
+public final class QueryParser {
+    /** Stored fields a {@code field:value} word can filter on. */
+    public static final Set<String> FIELDS = Set.of("file");
+
+    private final Analyzer analyzer;
+    private final Operator defaultOp;
+    private final String text;
+    private int pos;
+    // the token read by peek(), or null; quoted tokens keep their quotes
+    private String token;
+    private int tokenStart;
+
+    private QueryParser(String text, Operator defaultOp, Analyzer analyzer) {
+        this.text = text;
+        this.defaultOp = defaultOp;
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * Parse {@code q}, with {@code defaultOp} joining adjacent words. For
+     * {@link Operator#PHRASE} the whole text is one phrase within {@code slop} and no
+     * operators apply. Returns null if nothing searchable is left.
+     */
+    public static QueryNode parse(String q, Operator defaultOp, int slop, Analyzer analyzer) {
+        if (slop < 0) throw new IllegalArgumentException("slop must be >= 0");
+        if (q == null || q.isBlank()) return null;
+        if (defaultOp == Operator.PHRASE) {
+            for (String word : q.trim().split("\\s+")) {
+                if (MultiTermQuery.parse(word, analyzer) != null) {
+                    throw new IllegalArgumentException("wildcard and fuzzy words cannot be used in a phrase: " + word);
+                }
+            }
+            return phrase(analyzer.terms(q), slop);
+        }
+        QueryParser p = new QueryParser(q, defaultOp, analyzer);
+        QueryNode node = p.or();
+        if (p.peek() != null) throw p.error("unexpected '" + p.token + "'");
+        return node;
+    }
+
+    private QueryNode or() {
+        List<QueryNode> clauses = new ArrayList<>();
+        add(clauses, and(), Operator.OR);
+        while (true) {
+            String t = peek();
+            if ("OR".equals(t)) {
+                next();
+                if (!startsClause(peek())) throw error("expected a clause after OR");
+            } else if (defaultOp != Operator.OR || !startsClause(t)) {
+                break;
+            }
+            add(clauses, and(), Operator.OR);
+        }
+        return group(Operator.OR, clauses);
+    }
+
+    private QueryNode and() {
+        List<QueryNode> clauses = new ArrayList<>();
+        add(clauses, unary(), Operator.AND);
+        while (true) {
+            String t = peek();
+            if ("AND".equals(t)) {
+                next();
+                if (!startsClause(peek())) throw error("expected a clause after AND");
+            } else if (defaultOp != Operator.AND || !startsClause(t)) {
+                break;
+            }
+            add(clauses, unary(), Operator.AND);
+        }
+        return group(Operator.AND, clauses);
+    }
+
+    private QueryNode unary() {
+        String t = peek();
+        if ("NOT".equals(t) || "-".equals(t)) {
+            next();
+            if (!startsClause(peek())) throw error("expected a clause after " + t);
+            QueryNode c = unary();
+            if (c == null) return null;
+            // a double negation is the clause itself
+            return c instanceof QueryNode.Not n ? n.clause() : new QueryNode.Not(c);
+        }
+        return primary();
+    }
+
+    private QueryNode primary() {
+        String t = next();
+        if (t == null || t.equals("AND") || t.equals("OR")) throw error("expected a clause");
+        if (t.equals("(")) {
+            QueryNode inner = startsClause(peek()) ? or() : null;
+            if (!")".equals(next())) throw error("missing ')'");
+            return inner;
+        }
+        if (t.startsWith("\"")) {
+            int close = t.lastIndexOf('"');
+            int slop = close + 1 < t.length() ? Integer.parseInt(t.substring(close + 2)) : 0;
+            return phrase(analyzer.terms(t.substring(1, close)), slop);
+        }
+        int colon = t.indexOf(':');
+        if (colon > 0 && FIELDS.contains(t.substring(0, colon).toLowerCase(Locale.ROOT))) {
+            if (colon == t.length() - 1) throw error("missing value for field " + t);
+            return new QueryNode.Field(t.substring(0, colon).toLowerCase(Locale.ROOT), t.substring(colon + 1));
+        }
+        MultiTermQuery pattern = MultiTermQuery.parse(t, analyzer);
+        if (pattern != null) return new QueryNode.Pattern(pattern);
+        List<QueryNode> terms = new ArrayList<>();
+        for (String term : analyzer.terms(t)) terms.add(new QueryNode.Term(term));
+        return group(defaultOp, terms);
+    }
+
+    private static QueryNode phrase(List<String> terms, int slop) {
+        if (terms.isEmpty()) return null;
+        return terms.size() == 1 ? new QueryNode.Term(terms.get(0)) : new QueryNode.Phrase(List.copyOf(terms), slop);
+    }
+
+    // skips dropped clauses and splices in groups of the same operator, unless they
+    // have NOT clauses: those only exclude from their own group
+    private static void add(List<QueryNode> clauses, QueryNode c, Operator op) {
+        if (c == null) return;
+        if (c instanceof QueryNode.Group g && g.op() == op && g.clauses().stream().noneMatch(x -> x instanceof QueryNode.Not)) {
+            clauses.addAll(g.clauses());
+        } else {
+            clauses.add(c);
+        }
+    }
+
+    private static QueryNode group(Operator op, List<QueryNode> clauses) {
+        if (clauses.isEmpty()) return null;
+        return clauses.size() == 1 ? clauses.get(0) : new QueryNode.Group(op, clauses);
+    }
+
+    private static boolean startsClause(String t) {
+        return t != null && !t.equals(")") && !t.equals("AND") && !t.equals("OR");
+    }
+
+    private String peek() {
+        if (token != null) return token;
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        if (pos == text.length()) return null;
+        tokenStart = pos;
+        char c = text.charAt(pos);
+        if (c == '(' || c == ')') {
+            pos++;
+        } else if (c == '-' && pos + 1 < text.length() && !Character.isWhitespace(text.charAt(pos + 1))) {
+            // a leading '-' negates what follows; inside a word it is just a character
+            pos++;
+        } else if (c == '"') {
+            int close = text.indexOf('"', pos + 1);
+            if (close < 0) throw error("unterminated quote");
+            pos = close + 1;
+            if (pos < text.length() && text.charAt(pos) == '~') {
+                int end = pos + 1;
+                while (end < text.length() && Character.isDigit(text.charAt(end))) end++;
+                if (end == pos + 1) throw error("expected a slop after ~");
+                pos = end;
+            }
+        } else {
+            while (pos < text.length()) {
+                char d = text.charAt(pos);
+                if (Character.isWhitespace(d) || d == '(' || d == ')' || d == '"') break;
+                pos++;
+            }
+        }
+        return token = text.substring(tokenStart, pos);
+    }
+
+    private String next() {
+        String t = peek();
+        token = null;
+        return t;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at " + tokenStart + " in query: " + text);
+    }
+}
@@ -0,0 +1,221 @@
+package com.ksu.indexer.query;
+
+import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.core.LiveDocs;
+import com.ksu.indexer.core.PostingsIterator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How one query is evaluated over one snapshot, as chosen by {@link QueryPlanner}: a
+ * tree of clauses with their estimated cost (docs they can match, summed over the
+ * snapshot) and evaluation, plus the strategy for the whole query. {@link #explain()}
+ * renders it for tuning.
+ *
+ * Flat queries keep the specialized paths of the search service: a conjunction of
+ * terms (match-set cached), a WAND disjunction, a phrase. Anything else is evaluated as
+ * a {@link ClauseScorer} tree. Either way NOT clauses of the top-level group planned as
+ * {@link Evaluation#BITSET} are folded into the segment's live docs up front
+ * ({@link #exclude}), so excluded docs are skipped like deleted ones; the rest are
+ * probed per candidate ({@link #filter}).
+ */
+public final class QueryPlan {
+    public enum Strategy {
+        /** Nothing can match (no positive clause, or a required term missing everywhere). */
+        NONE,
+        /** AND of terms and wildcard/fuzzy words. */
+        CONJUNCTION,
+        /** OR of terms and wildcard/fuzzy words, with Block-Max WAND. */
+        WAND,
+        /** One phrase. */
+        PHRASE,
+        /** Any other tree, through {@link ClauseScorer}. */
+        BOOLEAN
+    }
+
+    public enum Kind { TERM, PATTERN, PHRASE, FIELD, AND, OR }
+
+    public enum Evaluation {
+        /** Postings read doc by doc, skipping ahead with advance(). */
+        ITERATOR,
+        /** Several postings merged through a min-heap, keeping frequencies. */
+        HEAP,
+        /** Docs marked in a bitset first: unions of many postings, and NOT clauses. */
+        BITSET,
+        /** Checked on each candidate of its group (stored fields). */
+        FILTER,
+        /** Every doc of the segment is checked (a filter with nothing to narrow it). */
+        SCAN
+    }
+
+    /** One node of the plan. Groups list their clauses cheapest first. */
+    public static final class Clause {
+        final Kind kind;
+        final QueryNode source;
+        final long cost;
+        Evaluation evaluation;
+        // TERM: [idf]; PHRASE: idf per term
+        float[] idf;
+        MultiTermQuery.Expansion expansion;
+        final List<Clause> required = new ArrayList<>();
+        final List<Clause> filters = new ArrayList<>();
+        final List<Clause> excluded = new ArrayList<>();
+
+        Clause(Kind kind, QueryNode source, long cost, Evaluation evaluation) {
+            this.kind = kind;
+            this.source = source;
+            this.cost = cost;
+            this.evaluation = evaluation;
+        }
+
+        public Kind kind() { return kind; }
+
+        public long cost() { return cost; }
+
+        public Evaluation evaluation() { return evaluation; }
+
+        Map<String, Object> explain() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("clause", source.toString());
+            m.put("kind", kind);
+            m.put("cost", cost);
+            m.put("evaluation", evaluation);
+            if (expansion != null) {
+                m.put("expandedTerms", expansion.terms().size());
+                m.put("truncated", expansion.truncated());
+            }
+            if (!required.isEmpty()) m.put("clauses", explain(required));
+            if (!filters.isEmpty()) m.put("filters", explain(filters));
+            if (!excluded.isEmpty()) m.put("excluded", explain(excluded));
+            return m;
+        }
+
+        private static List<Map<String, Object>> explain(List<Clause> clauses) {
+            List<Map<String, Object>> out = new ArrayList<>(clauses.size());
+            for (Clause c : clauses) out.add(c.explain());
+            return out;
+        }
+    }
+
+    private final Strategy strategy;
+    private final Clause root;
+    private final long docCount;
+    private final ClauseScorer.Scoring scoring;
+
+    QueryPlan(Strategy strategy, Clause root, long docCount, ClauseScorer.Scoring scoring) {
+        this.strategy = strategy;
+        this.root = root;
+        this.docCount = docCount;
+        this.scoring = scoring;
+    }
+
+    public Strategy strategy() { return strategy; }
+
+    public Clause root() { return root; }
+
+    public float avgDocLength() { return scoring.avgDocLength(); }
+
+    // the term-level clauses of a flat strategy, in order
+    private List<Clause> leaves() {
+        if (strategy == Strategy.PHRASE) {
+            for (Clause c : root.kind == Kind.PHRASE ? List.of(root) : root.required) if (c.kind == Kind.PHRASE) return List.of(c);
+        }
+        return root.kind == Kind.AND || root.kind == Kind.OR ? root.required : List.of(root);
+    }
+
+    /**
+     * Terms of a flat strategy in query order: analyzed terms, or the string form of a
+     * wildcard/fuzzy word (see {@link #expansions()}); a phrase's terms for PHRASE.
+     */
+    public List<String> terms() {
+        List<String> out = new ArrayList<>();
+        for (Clause c : leaves()) {
+            if (c.source instanceof QueryNode.Phrase p) out.addAll(p.terms());
+            else out.add(c.source.toString());
+        }
+        return out;
+    }
+
+    /** Per {@link #terms()} entry: the expansion of a wildcard/fuzzy word, else null. */
+    public MultiTermQuery.Expansion[] expansions() {
+        List<MultiTermQuery.Expansion> out = new ArrayList<>();
+        for (Clause c : leaves()) {
+            if (c.kind == Kind.PHRASE) for (int i = 0; i < c.idf.length; i++) out.add(null);
+            else out.add(c.expansion);
+        }
+        return out.toArray(new MultiTermQuery.Expansion[0]);
+    }
+
+    /** Per {@link #terms()} entry, its collection-wide idf. */
+    public float[] idf() {
+        List<Clause> leaves = leaves();
+        int n = 0;
+        for (Clause c : leaves) n += c.idf.length;
+        float[] out = new float[n];
+        int i = 0;
+        for (Clause c : leaves) for (float f : c.idf) out[i++] = f;
+        return out;
+    }
+
+    /** Slop of the phrase of a PHRASE plan. */
+    public int slop() {
+        return leaves().get(0).source instanceof QueryNode.Phrase p ? p.slop() : 0;
+    }
+
+    /** Wildcard/fuzzy clauses anywhere in the plan whose expansion hit the cap. */
+    public int truncatedExpansions() {
+        return root == null ? 0 : truncated(root);
+    }
+
+    private static int truncated(Clause c) {
+        int n = c.expansion != null && c.expansion.truncated() ? 1 : 0;
+        for (Clause r : c.required) n += truncated(r);
+        for (Clause x : c.excluded) n += truncated(x);
+        return n;
+    }
+
+    /**
+     * {@code live} with the docs of the top-level NOT clauses planned as bitsets also
+     * deleted; {@code live} itself if there are none.
+     */
+    public LiveDocs exclude(IndexSegment seg, LiveDocs live) {
+        LiveDocs out = live;
+        for (Clause c : root.excluded) {
+            if (c.evaluation != Evaluation.BITSET) continue;
+            ClauseScorer s = ClauseScorer.open(c, seg, live, scoring, false);
+            if (s != null) out = out.exclude(s);
+        }
+        return out;
+    }
+
+    /** {@code match} without the docs of the top-level NOT clauses probed per candidate. */
+    public PostingsIterator filter(IndexSegment seg, LiveDocs live, PostingsIterator match) {
+        List<PostingsIterator> probes = new ArrayList<>();
+        for (Clause c : root.excluded) {
+            if (c.evaluation != Evaluation.ITERATOR) continue;
+            ClauseScorer s = ClauseScorer.open(c, seg, live, scoring, false);
+            if (s != null) probes.add(s);
+        }
+        return probes.isEmpty() ? match : ClauseScorer.excluding(match, probes);
+    }
+
+    /**
+     * The BOOLEAN tree over one segment, reading {@code live} (from {@link #exclude});
+     * null if nothing in the segment can match.
+     */
+    public ClauseScorer scorer(IndexSegment seg, LiveDocs live) {
+        return ClauseScorer.open(root, seg, live, scoring, true);
+    }
+
+    /** The plan as nested maps: strategy, the parsed query, and per clause its cost and evaluation. */
+    public Map<String, Object> explain() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("strategy", strategy);
+        m.put("query", root == null ? null : root.source.toString());
+        m.put("docCount", docCount);
+        m.put("plan", root == null ? null : root.explain());
+        return m;
+    }
+}
@@ -0,0 +1,161 @@
+package com.ksu.indexer.query;
+
+import com.ksu.indexer.core.IndexSegment;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Turns a {@link QueryNode} into a {@link QueryPlan} for one snapshot. Costs are doc
+ * counts estimated from the collection's doc freqs, deleted docs included: a term its
+ * df, a wildcard/fuzzy word the dfs of its expansion summed, a phrase its rarest
+ * term, an AND its cheapest clause and an OR the sum of its clauses. With them the
+ * planner
+ * <ul>
+ *   <li>orders every group's clauses cheapest first, so an AND is led by the clause
+ *       that bounds it;</li>
+ *   <li>evaluates a NOT clause as a bitset (a live-docs style exclusion, built
+ *       once per segment) when it matches no more docs than its group, and otherwise
+ *       probes it per candidate, which skips most of a large exclusion's postings;</li>
+ *   <li>unions a wildcard/fuzzy expansion through a heap up to
+ *       {@link DisjunctionIterator#MAX_HEAP_CLAUSES} terms and a bitset beyond;</li>
+ *   <li>checks field filters on their group's candidates, scanning the segment only
+ *       when nothing else narrows it down;</li>
+ *   <li>and picks the specialized flat strategy when the query has that shape.</li>
+ * </ul>
+ *
+ * @see com.ksu.indexer.core.LiveDocs#exclude(com.ksu.indexer.core.PostingsIterator)
+ */
+public final class QueryPlanner {
+    private final BM25Similarity similarity;
+    private final int maxExpansions;
+
+    public QueryPlanner(BM25Similarity similarity, int maxExpansions) {
+        this.similarity = similarity;
+        this.maxExpansions = Math.max(1, maxExpansions);
+    }
+
+    /** Plan {@code query} (null: nothing to search) over {@code segs}. */
+    public QueryPlan plan(QueryNode query, List<IndexSegment> segs, ClauseScorer.FileIds fileIds) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (query != null) collectTerms(query, terms);
+        CollectionStats stats = CollectionStats.of(segs, terms);
+        ClauseScorer.Scoring scoring = new ClauseScorer.Scoring(similarity, stats.avgDocLength(), fileIds);
+        if (query == null) return new QueryPlan(QueryPlan.Strategy.NONE, null, stats.docCount, scoring);
+        // a bare NOT is a group with nothing to exclude from
+        if (query instanceof QueryNode.Not) query = new QueryNode.Group(Operator.AND, List.of(query));
+        QueryPlan.Clause root = build(query, segs, stats);
+        QueryPlan.Strategy strategy = strategy(root);
+        if (strategy == QueryPlan.Strategy.WAND) {
+            // WAND reads the term postings directly, so exclusions must be in the live docs
+            for (QueryPlan.Clause x : root.excluded) x.evaluation = QueryPlan.Evaluation.BITSET;
+        }
+        return new QueryPlan(strategy, root, stats.docCount, scoring);
+    }
+
+    private static void collectTerms(QueryNode n, Set<String> out) {
+        if (n instanceof QueryNode.Term t) out.add(t.term());
+        else if (n instanceof QueryNode.Phrase p) out.addAll(p.terms());
+        else if (n instanceof QueryNode.Not not) collectTerms(not.clause(), out);
+        else if (n instanceof QueryNode.Group g) g.clauses().forEach(c -> collectTerms(c, out));
+    }
+
+    private QueryPlan.Clause build(QueryNode n, List<IndexSegment> segs, CollectionStats stats) {
+        if (n instanceof QueryNode.Term t) {
+            long df = stats.docFreq(t.term());
+            QueryPlan.Clause c = new QueryPlan.Clause(QueryPlan.Kind.TERM, n, df, QueryPlan.Evaluation.ITERATOR);
+            c.idf = new float[] {similarity.idf(df, stats.docCount)};
+            return c;
+        }
+        if (n instanceof QueryNode.Pattern p) {
+            MultiTermQuery.Expansion e = p.query().expand(segs, maxExpansions);
+            int size = e.terms().size();
+            QueryPlan.Evaluation ev = size > DisjunctionIterator.MAX_HEAP_CLAUSES ? QueryPlan.Evaluation.BITSET
+                    : size > 1 ? QueryPlan.Evaluation.HEAP : QueryPlan.Evaluation.ITERATOR;
+            QueryPlan.Clause c = new QueryPlan.Clause(QueryPlan.Kind.PATTERN, n, Math.min(e.cost(), stats.docCount), ev);
+            c.expansion = e;
+            c.idf = new float[] {similarity.idf(e.docFreq(), stats.docCount)};
+            return c;
+        }
+        if (n instanceof QueryNode.Phrase p) {
+            long cost = Long.MAX_VALUE;
+            float[] idf = new float[p.terms().size()];
+            for (int i = 0; i < idf.length; i++) {
+                long df = stats.docFreq(p.terms().get(i));
+                cost = Math.min(cost, df);
+                idf[i] = similarity.idf(df, stats.docCount);
+            }
+            QueryPlan.Clause c = new QueryPlan.Clause(QueryPlan.Kind.PHRASE, n, cost, QueryPlan.Evaluation.ITERATOR);
+            c.idf = idf;
+            return c;
+        }
+        if (n instanceof QueryNode.Field) {
+            return new QueryPlan.Clause(QueryPlan.Kind.FIELD, n, stats.docCount, QueryPlan.Evaluation.SCAN);
+        }
+        if (n instanceof QueryNode.Group g) return group(g, segs, stats);
+        throw new IllegalStateException("NOT outside a group: " + n);
+    }
+
+    private QueryPlan.Clause group(QueryNode.Group g, List<IndexSegment> segs, CollectionStats stats) {
+        boolean and = g.op() == Operator.AND;
+        QueryPlan.Clause tmp = new QueryPlan.Clause(and ? QueryPlan.Kind.AND : QueryPlan.Kind.OR, g, 0, null);
+        for (QueryNode child : g.clauses()) {
+            if (child instanceof QueryNode.Not not) {
+                tmp.excluded.add(build(not.clause(), segs, stats));
+            } else if (and && child instanceof QueryNode.Field) {
+                tmp.filters.add(build(child, segs, stats));
+            } else {
+                tmp.required.add(build(child, segs, stats));
+            }
+        }
+        Comparator<QueryPlan.Clause> byCost = Comparator.comparingLong(QueryPlan.Clause::cost);
+        tmp.required.sort(byCost);
+        tmp.excluded.sort(byCost);
+        long cost;
+        if (and) {
+            // nothing positive matches nothing; filters alone keep every doc they accept
+            cost = !tmp.required.isEmpty() ? tmp.required.get(0).cost : tmp.filters.isEmpty() ? 0 : stats.docCount;
+            QueryPlan.Evaluation fe = tmp.required.isEmpty() ? QueryPlan.Evaluation.SCAN : QueryPlan.Evaluation.FILTER;
+            for (QueryPlan.Clause f : tmp.filters) f.evaluation = fe;
+        } else {
+            long sum = 0;
+            for (QueryPlan.Clause c : tmp.required) sum += c.cost;
+            cost = Math.min(sum, stats.docCount);
+        }
+        QueryPlan.Clause c = new QueryPlan.Clause(tmp.kind, g, cost, and ? QueryPlan.Evaluation.ITERATOR : QueryPlan.Evaluation.HEAP);
+        c.required.addAll(tmp.required);
+        c.filters.addAll(tmp.filters);
+        c.excluded.addAll(tmp.excluded);
+        // marking an exclusion's docs costs its postings; probing costs one seek per
+        // candidate of the group, which wins once the exclusion is the larger side
+        for (QueryPlan.Clause x : c.excluded) {
+            x.evaluation = x.cost <= cost ? QueryPlan.Evaluation.BITSET : QueryPlan.Evaluation.ITERATOR;
+        }
+        return c;
+    }
+
+    private static QueryPlan.Strategy strategy(QueryPlan.Clause root) {
+        if (root.cost == 0) return QueryPlan.Strategy.NONE;
+        switch (root.kind) {
+            case TERM, PATTERN -> {
+                return QueryPlan.Strategy.CONJUNCTION;
+            }
+            case PHRASE -> {
+                return QueryPlan.Strategy.PHRASE;
+            }
+            case AND, OR -> {
+                if (!root.filters.isEmpty()) return QueryPlan.Strategy.BOOLEAN;
+                boolean flat = true;
+                for (QueryPlan.Clause c : root.required) flat &= c.kind == QueryPlan.Kind.TERM || c.kind == QueryPlan.Kind.PATTERN;
+                if (flat) return root.kind == QueryPlan.Kind.AND ? QueryPlan.Strategy.CONJUNCTION : QueryPlan.Strategy.WAND;
+                if (root.kind == QueryPlan.Kind.AND && root.required.size() == 1
+                        && root.required.get(0).kind == QueryPlan.Kind.PHRASE) return QueryPlan.Strategy.PHRASE;
+                return QueryPlan.Strategy.BOOLEAN;
+            }
+            default -> {
+                return QueryPlan.Strategy.BOOLEAN;
+            }
+        }
+    }
+}
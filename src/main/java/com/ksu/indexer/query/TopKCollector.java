@@ -0,0 +1,123 @@
+package com.ksu.indexer.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the {@code k} best hits in a bounded min-heap over primitive arrays, so
+ * collecting a hit that cannot make the cut is one comparison against the root.
+ * Ties are broken by (segment ordinal, doc id) ascending, which keeps results
+ * stable across runs. The arrays grow with the hits collected, so a large {@code k}
+ * costs nothing until that many docs match.
+ */
+public final class TopKCollector {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int k;
+    private float[] scores;
+    private int[] segs;
+    private int[] docs;
+    private int size;
+
+    public TopKCollector(int k) {
+        if (k <= 0) throw new IllegalArgumentException("k must be positive: " + k);
+        this.k = k;
+        int capacity = Math.min(k, INITIAL_CAPACITY);
+        this.scores = new float[capacity];
+        this.segs = new int[capacity];
+        this.docs = new int[capacity];
+    }
+
+    /** Offer a hit; {@code seg} is the ordinal of its segment in the query's snapshot. */
+    public void collect(int seg, int doc, float score) {
+        if (size < k) {
+            if (size == scores.length) grow();
+            scores[size] = score;
+            segs[size] = seg;
+            docs[size] = doc;
+            siftUp(size++);
+        } else if (worse(0, score, seg, doc)) {
+            scores[0] = score;
+            segs[0] = seg;
+            docs[0] = doc;
+            siftDown(0);
+        }
+    }
+
+    /** Score a hit must beat to enter once the heap is full; -infinity before that. */
+    public float minCompetitiveScore() {
+        return size < k ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public int size() { return size; }
+
+    private void grow() {
+        int capacity = (int) Math.min(k, scores.length * 2L);
+        scores = Arrays.copyOf(scores, capacity);
+        segs = Arrays.copyOf(segs, capacity);
+        docs = Arrays.copyOf(docs, capacity);
+    }
+
+    /** The collected hits, best first. Empties the collector. */
+    public List<ScoreDoc> drain() {
+        ScoreDoc[] out = new ScoreDoc[size];
+        for (int i = size - 1; i >= 0; i--) {
+            out[i] = new ScoreDoc(segs[0], docs[0], scores[0]);
+            size--;
+            swap(0, size);
+            siftDown(0);
+        }
+        return new ArrayList<>(List.of(out));
+    }
+
+    // true if heap entry i ranks below the given hit
+    private boolean worse(int i, float score, int seg, int doc) {
+        if (scores[i] != score) return scores[i] < score;
+        if (segs[i] != seg) return segs[i] > seg;
+        return docs[i] > doc;
+    }
+
+    private boolean worse(int i, int j) {
+        return worse(i, scores[j], segs[j], docs[j]);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(i, parent)) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int l = 2 * i + 1;
+            if (l >= size) break;
+            int c = l + 1 < size && worse(l + 1, l) ? l + 1 : l;
+            if (!worse(c, i)) break;
+            swap(i, c);
+            i = c;
+        }
+    }
+
+    private void swap(int i, int j) {
+        float s = scores[i]; scores[i] = scores[j]; scores[j] = s;
+        int g = segs[i]; segs[i] = segs[j]; segs[j] = g;
+        int d = docs[i]; docs[i] = docs[j]; docs[j] = d;
+    }
+
+    /** One ranked hit. */
+    public static final class ScoreDoc {
+        public final int seg;
+        public final int doc;
+        public final float score;
+
+        public ScoreDoc(int seg, int doc, float score) {
+            this.seg = seg;
+            this.doc = doc;
+            this.score = score;
+        }
+    }
+}
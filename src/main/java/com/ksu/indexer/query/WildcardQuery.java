@@ -0,0 +1,76 @@
+package com.ksu.indexer.query;
+
+import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.core.TermsCursor;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Terms matching a pattern where {@code *} is any run of characters (none included)
+ * and {@code ?} exactly one. The dictionary is seeked to the literal prefix before the
+ * first wildcard and read only while terms keep that prefix, so {@code conf*} costs the
+ * terms starting with "conf"; a pattern that starts with a wildcard reads every term.
+ */
+public final class WildcardQuery extends MultiTermQuery {
+    private final String pattern;
+    private final int[] chars;
+    private final byte[] prefix;
+    // true if the pattern is a literal prefix followed by one trailing *
+    private final boolean prefixOnly;
+
+    public WildcardQuery(String pattern) {
+        this.pattern = pattern;
+        this.chars = codePoints(pattern);
+        int literal = 0;
+        while (literal < chars.length && chars[literal] != '*' && chars[literal] != '?') literal++;
+        this.prefix = new String(chars, 0, literal).getBytes(StandardCharsets.UTF_8);
+        this.prefixOnly = literal == chars.length - 1 && chars[literal] == '*';
+    }
+
+    @Override
+    protected void collect(IndexSegment seg, TermSink sink) {
+        TermsCursor c = seg.seekTerms(prefix.length == 0 ? null : prefix);
+        int[] buf = new int[32];
+        while (c.next() && c.startsWith(prefix)) {
+            if (prefixOnly) {
+                sink.accept(c.term(), c.termLength(), 0);
+                continue;
+            }
+            if (buf.length < c.termLength()) buf = new int[c.termLength()];
+            int n = decode(c.term(), c.termLength(), buf);
+            if (matches(buf, n)) sink.accept(c.term(), c.termLength(), 0);
+        }
+    }
+
+    /** True if the pattern matches all of {@code s}, taken as is (no normalization). */
+    boolean matches(String s) {
+        int[] t = codePoints(s);
+        return matches(t, t.length);
+    }
+
+    /** Glob match of the code points {@code t[0, n)}, backtracking to the last {@code *} only. */
+    private boolean matches(int[] t, int n) {
+        int ti = 0;
+        int pi = 0;
+        int star = -1;
+        int mark = 0;
+        while (ti < n) {
+            if (pi < chars.length && (chars[pi] == '?' || chars[pi] == t[ti])) {
+                pi++;
+                ti++;
+            } else if (pi < chars.length && chars[pi] == '*') {
+                star = pi++;
+                mark = ti;
+            } else if (star >= 0) {
+                pi = star + 1;
+                ti = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (pi < chars.length && chars[pi] == '*') pi++;
+        return pi == chars.length;
+    }
+
+    @Override
+    public String toString() { return pattern; }
+}
@@ -0,0 +1,194 @@
+package com.ksu.indexer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ksu.indexer.analysis.Tokens;
+import com.ksu.indexer.model.FileEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Streaming bulk ingest. NDJSON lines are read incrementally and cut into batches;
+ * each batch is parsed and analyzed on a worker pool, then applied to the index in
+ * arrival order. A global cap on in-flight batches makes the reader block (and so
+ * stop draining the request body) whenever indexing falls behind.
+ */
+@Service
+public class BulkIngestService {
+    private static final int MAX_ERRORS_PER_BATCH = 10;
+
+    private final IndexService indexService;
+    private final ObjectMapper mapper;
+    private final ExecutorService workers;
+    private final Semaphore inFlight;
+    private final Timer batchLatency;
+
+    public BulkIngestService(IndexService indexService, ObjectMapper mapper, MeterRegistry registry,
+                             @Value("${index.bulk.threads:0}") int threads,
+                             @Value("${index.bulk.max-in-flight-batches:4}") int maxInFlight) {
+        this.indexService = indexService;
+        this.mapper = mapper;
+        int n = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger ids = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(n, r -> {
+            Thread t = new Thread(r, "bulk-ingest-" + ids.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.batchLatency = Timer.builder("index.bulk_batch")
+                .publishPercentiles(0.95, 0.99)
+                .distributionStatisticExpiry(Duration.ofMinutes(10))
+                .register(registry);
+    }
+
+    /** One batch after parse + analysis, ready to apply. */
+    private static final class Prepared {
+        final int batch;
+        final int firstLine;
+        final List<FileEvent> events = new ArrayList<>();
+        final List<Integer> eventLines = new ArrayList<>();
+        final List<Tokens> tokens = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        int failed = 0;
+        final long startNanos = System.nanoTime();
+
+        Prepared(int batch, int firstLine) {
+            this.batch = batch;
+            this.firstLine = firstLine;
+        }
+    }
+
+    public Map<String, Object> ingestNdjson(InputStream body, int batchSize) throws IOException {
+        long start = System.nanoTime();
+        int size = Math.max(1, batchSize);
+        List<CompletableFuture<Map<String, Object>>> summaries = new ArrayList<>();
+        CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            List<String> lines = new ArrayList<>(size);
+            List<Integer> lineNos = new ArrayList<>(size);
+            int lineNo = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) continue;
+                lines.add(line);
+                lineNos.add(lineNo);
+                if (lines.size() >= size) {
+                    tail = submit(summaries, tail, lines, lineNos);
+                    lines = new ArrayList<>(size);
+                    lineNos = new ArrayList<>(size);
+                }
+            }
+            if (!lines.isEmpty()) tail = submit(summaries, tail, lines, lineNos);
+        }
+
+        List<Map<String, Object>> batches = new ArrayList<>();
+        long accepted = 0;
+        long failed = 0;
+        for (var f : summaries) {
+            Map<String, Object> s = f.join();
+            accepted += (Integer) s.get("accepted");
+            failed += (Integer) s.get("failed");
+            batches.add(s);
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("accepted", accepted);
+        out.put("failed", failed);
+        out.put("tookMs", (System.nanoTime() - start) / 1_000_000L);
+        out.put("batches", batches);
+        return out;
+    }
+
+    /**
+     * Queue one batch: parse/analysis runs on the pool while earlier batches apply; the
+     * apply step waits for its predecessor so events land in request order. Blocks the
+     * reader while the in-flight cap is reached.
+     */
+    private CompletableFuture<?> submit(List<CompletableFuture<Map<String, Object>>> summaries,
+                                        CompletableFuture<?> tail, List<String> lines, List<Integer> lineNos) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("bulk ingest interrupted", ex);
+        }
+        int batchNo = summaries.size();
+        CompletableFuture<Prepared> prepared =
+                CompletableFuture.supplyAsync(() -> prepare(batchNo, lines, lineNos), workers);
+        CompletableFuture<Map<String, Object>> applied = tail
+                .handle((ignored, ex) -> null)
+                .thenCombine(prepared, (ignored, p) -> apply(p))
+                .whenComplete((r, ex) -> inFlight.release());
+        summaries.add(applied);
+        return applied;
+    }
+
+    private Prepared prepare(int batchNo, List<String> lines, List<Integer> lineNos) {
+        Prepared p = new Prepared(batchNo, lineNos.get(0));
+        for (int i = 0; i < lines.size(); i++) {
+            try {
+                FileEvent e = mapper.readValue(lines.get(i), FileEvent.class);
+                if (e.getType() == null) throw new IllegalArgumentException("missing type");
+                p.events.add(e);
+                p.eventLines.add(lineNos.get(i));
+                p.tokens.add(indexService.analyze(e));
+            } catch (Exception ex) {
+                p.failed++;
+                if (p.errors.size() < MAX_ERRORS_PER_BATCH) {
+                    p.errors.add("line " + lineNos.get(i) + ": " + ex.getMessage());
+                }
+            }
+        }
+        return p;
+    }
+
+    private Map<String, Object> apply(Prepared p) {
+        int accepted = p.events.size();
+        int failed = p.failed;
+        List<String> errors = p.errors;
+        try {
+            indexService.applyBatch(p.events, p.tokens);
+        } catch (IndexService.PartialBatchException ex) {
+            // the events before the failing one are in the index; it and the rest are not
+            failed += accepted - ex.applied();
+            accepted = ex.applied();
+            errors = new ArrayList<>(errors);
+            errors.add("line " + p.eventLines.get(Math.min(accepted, p.eventLines.size() - 1))
+                    + ": apply failed, this and later events of the batch not applied: " + ex.getMessage());
+        }
+        long tookNanos = System.nanoTime() - p.startNanos;
+        batchLatency.record(Duration.ofNanos(tookNanos));
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("batch", p.batch);
+        s.put("firstLine", p.firstLine);
+        s.put("accepted", accepted);
+        s.put("failed", failed);
+        s.put("tookMs", tookNanos / 1_000_000L);
+        if (!errors.isEmpty()) s.put("errors", errors);
+        return s;
+    }
+
+    @PreDestroy
+    public void close() {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,37 @@
+package com.ksu.indexer.service;
+
+import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.core.LiveDocs;
+import java.util.List;
+
+/**
+ * A query's point-in-time view of the index: the flushed segments, the write buffer
+ * and every segment's live docs of one published generation. Flushes, merges and deletes that happen afterwards are
+ * invisible to it, and segment files it reads stay on disk until it is closed.
+ *
+ * Acquire one per query from {@link IndexService#acquireSearcher()} and close it
+ * (try-with-resources); it is not meant to be shared between queries.
+ */
+public final class IndexSearcher implements AutoCloseable {
+    private final SegmentSnapshot snapshot;
+    private boolean closed;
+
+    IndexSearcher(SegmentSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /** Segments to search, each id at most once; hit ordinals index this list. */
+    public List<IndexSegment> segments() { return snapshot.searchable; }
+
+    public IndexSegment segment(int ord) { return snapshot.searchable.get(ord); }
+
+    /** Live docs of {@code segment(ord)} as of acquisition. */
+    public LiveDocs liveDocs(int ord) { return snapshot.liveDocs[ord]; }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        snapshot.decRef();
+    }
+}
@@ -1,143 +1,634 @@
 
 package com.ksu.indexer.service;
 
+import com.ksu.indexer.analysis.Analyzer;
+import com.ksu.indexer.analysis.Tokens;
 import com.ksu.indexer.core.IndexSegment;
-import com.ksu.indexer.core.Tokenizer;
+import com.ksu.indexer.core.LiveDocs;
+import com.ksu.indexer.core.PrimaryKeyIndex;
+import com.ksu.indexer.core.RateLimiter;
+import com.ksu.indexer.core.WriteBuffer;
 import com.ksu.indexer.model.FileEvent;
 import com.ksu.indexer.planner.DPMergePlanner;
 import com.ksu.indexer.planner.GreedyMergePlanner;
 import com.ksu.indexer.storage.ManifestStore;
+import com.ksu.indexer.storage.WriteAheadLog;
+import com.ksu.indexer.structures.BloomFilter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
 public class IndexService {
+    static final String ANALYZER_SETTING = "analyzer";
+
     private final Path segDir;
     private final ManifestStore manifestStore;
     private final MeterRegistry registry;
+    private final Analyzer analyzer;
 
     private final List<IndexSegment> liveSegments = new CopyOnWriteArrayList<>();
+    // liveSegments by id, for tombstoning a head without a scan; changed with it under writeLock
+    private final Map<String, IndexSegment> liveById = new HashMap<>();
+    // v1 segments: how many of their docs the docmap has no fileId for, counted at startup
+    private final Map<String, Integer> legacyUnmapped = new ConcurrentHashMap<>();
+    // liveSegments, buffer view and live docs as published to readers; see publish()
+    private volatile SegmentSnapshot snapshot = new SegmentSnapshot(List.of(), null);
+    // guards what a snapshot captures; taken inside writeLock, held only for in-memory work
+    private final Object viewLock = new Object();
+    // set by every applied event, cleared by publish(); the next reader republishes
+    private volatile boolean stale = true;
+    // sources of merges in flight, so no segment is picked by two merges at once
+    private final Set<String> merging = new HashSet<>();
+    private final List<Consumer<IndexSegment>> retireListeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger mergeSeq = new AtomicInteger();
+    // current head of every fileId, buffered or flushed; guarded by writeLock
+    private final PrimaryKeyIndex heads = new PrimaryKeyIndex();
     private final AtomicInteger seq = new AtomicInteger();
 
+    // write buffer: events land here and are flushed as one segment per threshold hit
+    private final Object writeLock = new Object();
+    private volatile WriteBuffer buffer;
+    private final int bufferMaxDocs;
+    private final long bufferMaxBytes;
+    private final long bufferMaxAgeMs;
+    private final ScheduledExecutorService flusher;
+    private final WriteAheadLog wal;
+
     private final Timer ingestToVisible;
-    public IndexService(@Value("${index.dir:segments}") String dir, ManifestStore manifestStore, MeterRegistry registry) throws IOException {
+    private final BloomFilter.Spec bloomSpec;
+    private final boolean positions;
+    public IndexService(@Value("${index.dir:segments}") String dir,
+                        @Value("${index.buffer.max-docs:1000}") int bufferMaxDocs,
+                        @Value("${index.buffer.max-bytes:4194304}") long bufferMaxBytes,
+                        @Value("${index.buffer.max-age-ms:1000}") long bufferMaxAgeMs,
+                        @Value("${index.bloom.fpp:0.01}") double bloomFpp,
+                        @Value("${index.bloom.blocked:true}") boolean bloomBlocked,
+                        @Value("${index.positions.enabled:true}") boolean positions,
+                        @Value("${index.analysis.accept-existing:false}") boolean acceptExistingAnalysis,
+                        ManifestStore manifestStore, Analyzer analyzer, MeterRegistry registry) throws IOException {
         this.segDir = Path.of(dir);
         Files.createDirectories(segDir);
         this.manifestStore = manifestStore;
+        this.analyzer = analyzer;
         this.registry = registry;
+        this.bufferMaxDocs = bufferMaxDocs;
+        this.bufferMaxBytes = bufferMaxBytes;
+        this.bufferMaxAgeMs = bufferMaxAgeMs;
+        this.bloomSpec = new BloomFilter.Spec(bloomFpp, bloomBlocked);
+        this.positions = positions;
         this.ingestToVisible = Timer.builder("index.ingest_visible")
                 .publishPercentiles(0.95, 0.99)
                 .distributionStatisticExpiry(Duration.ofMinutes(10))
                 .register(registry);
+        checkAnalyzer(acceptExistingAnalysis);
         reloadFromManifest();
+        foldLegacyTombstones();
+        publish();
+        rebuildHeads();
+        this.wal = new WriteAheadLog(segDir.resolve("wal"));
+        recoverFromWal();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "index-buffer-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(10, bufferMaxAgeMs / 2);
+        flusher.scheduleWithFixedDelay(this::flushIfDue, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Refuse to open segments indexed by a different analysis chain: their terms would
+     * not match what queries now produce. An index without segments adopts the current
+     * chain; one whose segments predate recorded chains needs a reindex as well, since
+     * the earlier chain folded and split text differently. {@code acceptExisting} records
+     * the current chain anyway, for content both chains analyze alike (e.g. plain ASCII).
+     */
+    private void checkAnalyzer(boolean acceptExisting) {
+        String recorded = manifestStore.setting(ANALYZER_SETTING);
+        String current = analyzer.signature();
+        if (current.equals(recorded)) return;
+        if (!acceptExisting && !manifestStore.listIds().isEmpty()) {
+            throw new IllegalStateException("index in " + segDir + " was built with analyzer ["
+                    + (recorded == null ? "unrecorded, pre-chain" : recorded) + "] but [" + current
+                    + "] is configured; restore the earlier index.analysis settings, or reindex with a new index.dir and manifest database");
+        }
+        manifestStore.putSetting(ANALYZER_SETTING, current);
     }
 
     private void reloadFromManifest() {
         for (String id : manifestStore.listIds()) {
+            // keep new delta ids clear of the ones already on disk
+            bumpSeq(id);
             try {
-                liveSegments.add(IndexSegment.load(segDir, id));
+                addLive(IndexSegment.load(segDir, id));
             } catch (Exception e) {
                 // ignore for brevity
             }
         }
     }
 
+    /**
+     * Apply deletes that versions before live docs kept only in the manifest. They are
+     * saved as sidecars before the rows are dropped, so a crash in between folds the
+     * same deletes in again.
+     */
+    private void foldLegacyTombstones() throws IOException {
+        Map<String, List<Integer>> legacy = manifestStore.legacyTombstones();
+        if (legacy.isEmpty()) return;
+        for (IndexSegment s : liveSegments) {
+            List<Integer> docs = legacy.get(s.id());
+            if (docs == null) continue;
+            s.deleteDoc(docs.stream().mapToInt(Integer::intValue).filter(d -> d <= s.maxDocId()).toArray());
+            s.saveLiveDocs();
+        }
+        manifestStore.clearLegacyTombstones();
+    }
+
+    /**
+     * Fill the primary-key index from the live docs of every flushed segment. Segments
+     * carry their fileIds, so this is a scan of mapped data; only v1 segments need
+     * their docmap from the manifest. WAL replay then moves heads
+     * into the recovered buffer like any other event.
+     */
+    private void rebuildHeads() {
+        for (IndexSegment s : liveSegments) {
+            LiveDocs live = s.liveDocs();
+            if (s.hasStoredFileIds()) {
+                for (int doc = 0; doc <= s.maxDocId(); doc++) {
+                    String fileId = s.fileId(doc);
+                    if (fileId != null && live.isLive(doc)) heads.put(fileId, s.id(), doc);
+                }
+            } else {
+                Map<Integer, String> docmap = manifestStore.docmapForSegment(s.id());
+                docmap.forEach((doc, fileId) -> {
+                    if (live.isLive(doc)) heads.put(fileId, s.id(), doc);
+                });
+                legacyUnmapped.put(s.id(), Math.max(0, s.maxDocId() - docmap.size()));
+            }
+        }
+    }
+
+    /**
+     * Replay logs left by a previous run. A log whose segment already made it into the
+     * manifest is stale; older generations are flushed right away and the newest one
+     * becomes the live write buffer again. A commit that crashed after writing its
+     * docmap leaves rows under the replayed id; they are dropped first so the replay
+     * starts from nothing and rewrites them on its own commit.
+     */
+    private void recoverFromWal() throws IOException {
+        Set<String> registered = new HashSet<>(manifestStore.listIds());
+        List<String> pending = new ArrayList<>();
+        for (String id : wal.pendingIds()) {
+            bumpSeq(id);
+            if (registered.contains(id)) wal.delete(id);
+            else pending.add(id);
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            String id = pending.get(i);
+            manifestStore.deleteDocmapBySegment(id);
+            WriteBuffer b = new WriteBuffer(segDir, id, positions);
+            boolean newest = i == pending.size() - 1;
+            if (newest) wal.open(id);
+            for (FileEvent ev : wal.replay(id)) apply(b, ev, analyze(ev));
+            if (newest) buffer = b;
+            else commit(b, null);
+        }
+        if (buffer == null) buffer = newBuffer();
+    }
+
     public void applyEvent(FileEvent e) {
         Instant start = Instant.now();
-        IndexSegment delta = new IndexSegment(segDir, "delta-" + seq.incrementAndGet());
-
-        // tombstone any existing docs for this fileId
-        if (e.getFileId() != null) {
-            var previous = manifestStore.findDocsByFileId(e.getFileId());
-            for (var row : previous) {
-                String seg = (String) row.get("SEG_ID");
-                int doc = ((Number) row.get("DOC_ID")).intValue();
-                manifestStore.addTombstone(seg, doc);
+        try {
+            Tokens tokens = analyze(e);
+            long seqNo;
+            synchronized (writeLock) {
+                seqNo = wal.append(e);
+                apply(buffer, e, tokens);
+                if (buffer.shouldFlush(bufferMaxDocs, bufferMaxBytes, bufferMaxAgeMs)) {
+                    flushLocked();
+                }
             }
+            // outside the lock, so concurrent ingests pile up behind one fsync
+            wal.sync(seqNo);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            ingestToVisible.record(Duration.between(start, Instant.now()));
         }
+    }
 
-        if (e.getType() != FileEvent.Type.DELETE) {
-            var terms = Tokenizer.tokenize(e.getText());
-            int docId = delta.addDoc(terms);
-            if (e.getFileId() != null) {
-                manifestStore.mapDoc(delta.id(), docId, e.getFileId());
+    /**
+     * Apply a pre-analyzed batch in order under one lock hold, sharing a single fsync.
+     * {@code tokens.get(i)} must be the tokens of {@code events.get(i)}. A failure stops
+     * the batch at the event it hit: the events before it stay applied and are synced,
+     * and the {@link PartialBatchException} says how many they were.
+     */
+    public void applyBatch(List<FileEvent> events, List<Tokens> tokens) {
+        if (events.isEmpty()) return;
+        int applied = 0;
+        long seqNo = 0;
+        try {
+            synchronized (writeLock) {
+                for (int i = 0; i < events.size(); i++) {
+                    long next = wal.append(events.get(i));
+                    apply(buffer, events.get(i), tokens.get(i));
+                    applied = i + 1;
+                    seqNo = next;
+                    if (buffer.shouldFlush(bufferMaxDocs, bufferMaxBytes, bufferMaxAgeMs)) {
+                        flushLocked();
+                    }
+                }
             }
+            wal.sync(seqNo);
+        } catch (IOException | RuntimeException ex) {
+            throw new PartialBatchException(syncApplied(applied, seqNo), ex);
         }
+    }
+
+    // the durable prefix of a failed batch: all of it once synced, none if the sync fails too
+    private int syncApplied(int applied, long seqNo) {
+        if (applied == 0) return 0;
         try {
-            delta.persist();
-            liveSegments.add(delta);
-            manifestStore.upsert(delta.id(), segDir.resolve(delta.id() + ".seg").toString());
+            wal.sync(seqNo);
+            return applied;
+        } catch (IOException | RuntimeException ex) {
+            return 0;
+        }
+    }
+
+    /** A batch that failed partway; the first {@link #applied()} events are applied and durable. */
+    public static class PartialBatchException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int applied;
+
+        PartialBatchException(int applied, Throwable cause) {
+            super(cause.getMessage(), cause);
+            this.applied = applied;
+        }
+
+        public int applied() { return applied; }
+    }
+
+    /** Analyze an event's text; done before taking the write lock so ingest threads analyze in parallel. */
+    Tokens analyze(FileEvent e) {
+        return e.getType() == FileEvent.Type.DELETE ? Tokens.EMPTY : analyzer.analyze(e.getText());
+    }
+
+    /** The analyzer documents are indexed with; queries must go through the same one. */
+    public Analyzer analyzer() { return analyzer; }
+
+    // caller holds writeLock (or owns b exclusively during recovery)
+    private void apply(WriteBuffer b, FileEvent e, Tokens tokens) {
+        // tombstone the fileId's current head: a flushed one gets a new live-docs
+        // generation now, and it is saved as a sidecar when this buffer is committed.
+        // Delete and add happen under viewLock so no snapshot sees one without the other.
+        String fileId = e.getFileId();
+        synchronized (viewLock) {
+            if (fileId != null) {
+                String seg = heads.segment(fileId);
+                if (seg != null) {
+                    int doc = heads.doc(fileId);
+                    IndexSegment live = seg.equals(b.id()) ? null : liveSegment(seg);
+                    if (live != null) live.deleteDoc(doc);
+                    b.tombstone(seg, doc);
+                }
+            }
+            if (e.getType() != FileEvent.Type.DELETE) {
+                int doc = b.add(tokens.stream(), fileId, e.getTs());
+                if (fileId != null) heads.put(fileId, b.id(), doc);
+            } else if (fileId != null) {
+                heads.remove(fileId);
+            }
+            stale = true;
+        }
+    }
+
+    private IndexSegment liveSegment(String segId) {
+        return liveById.get(segId);
+    }
+
+    private void addLive(IndexSegment s) {
+        liveSegments.add(s);
+        liveById.put(s.id(), s);
+    }
+
+    /**
+     * fileId of a hit, read from the segment's stored field; only v1 segments, which
+     * have none, look it up in the manifest docmap.
+     */
+    public String resolveFileId(IndexSegment seg, int docId) {
+        return seg.hasStoredFileIds() ? seg.fileId(docId) : manifestStore.resolveFileId(seg.id(), docId);
+    }
+
+    /**
+     * fileIds of {@code seg}'s docs for passes over many of them, such as {@code file:}
+     * filters: the stored field, or for v1 segments their docmap, read in one query
+     * instead of one per doc.
+     */
+    public IntFunction<String> fileIds(IndexSegment seg) {
+        if (seg.hasStoredFileIds()) return seg::fileId;
+        Map<Integer, String> docmap = manifestStore.docmapForSegment(seg.id());
+        return docmap::get;
+    }
+
+    /**
+     * At least as many of {@code seg}'s docs as {@link #resolveFileId} returns null for,
+     * so a search can rank that many extra hits and still fill its page in one pass.
+     */
+    public int unresolvableDocs(IndexSegment seg) {
+        if (seg.hasStoredFileIds()) return seg.docsWithoutFileId();
+        return legacyUnmapped.getOrDefault(seg.id(), seg.maxDocId());
+    }
+
+    /** Flush the write buffer into an immutable segment, whatever its size. */
+    public void flush() throws IOException {
+        synchronized (writeLock) {
+            flushLocked();
+        }
+    }
+
+    private void flushIfDue() {
+        try {
+            synchronized (writeLock) {
+                if (buffer.shouldFlush(bufferMaxDocs, bufferMaxBytes, bufferMaxAgeMs)) flushLocked();
+            }
         } catch (Exception ex) {
-            throw new RuntimeException(ex);
-        } finally {
-            ingestToVisible.record(Duration.between(start, Instant.now()));
+            // keep the schedule alive; the next ingest or tick retries
         }
     }
 
+    private void flushLocked() throws IOException {
+        if (!buffer.hasPending()) return;
+        WriteBuffer next = nextBuffer();
+        commit(buffer, next);
+        wal.open(next.id());
+    }
+
+    /**
+     * Make a buffer generation durable: segment file, then live-docs sidecars for the
+     * segments its events deleted from, then docmap and the manifest entry, and only
+     * then drop its log. A crash anywhere before the manifest entry replays the log into
+     * the same segment id, overwriting any partial file and docmap rows and re-applying
+     * the deletes; saving the deletes first means a registered segment never leaves an
+     * old version of one of its fileIds live.
+     *
+     * {@code next} replaces {@code b} as the write buffer in the same publish that adds
+     * b's segment, so readers see b's docs exactly once; it is null during recovery.
+     */
+    private void commit(WriteBuffer b, WriteBuffer next) throws IOException {
+        IndexSegment seg = b.seal();
+        if (!seg.isEmpty()) seg.persist(bloomSpec);
+        for (IndexSegment s : liveSegments) s.saveLiveDocs();
+        IndexSegment mapped = null;
+        if (!seg.isEmpty()) {
+            manifestStore.mapDocs(seg.id(), b.docmap());
+            manifestStore.upsert(seg.id(), segDir.resolve(seg.id() + ".seg").toString());
+            // swap the heap copy for the mapped file so flushed docs stop costing heap;
+            // heads keep pointing at the same (segId, docId)
+            mapped = IndexSegment.load(segDir, seg.id());
+        }
+        synchronized (viewLock) {
+            if (mapped != null) addLive(mapped);
+            if (next != null) buffer = next;
+            publish();
+        }
+        wal.delete(seg.id());
+    }
+
+    private WriteBuffer newBuffer() throws IOException {
+        WriteBuffer b = nextBuffer();
+        wal.open(b.id());
+        return b;
+    }
+
+    // a fresh generation whose log is not opened yet
+    private WriteBuffer nextBuffer() {
+        return new WriteBuffer(segDir, "delta-" + seq.incrementAndGet(), positions);
+    }
+
+    private void bumpSeq(String segId) {
+        if (!segId.startsWith("delta-")) return;
+        try {
+            seq.accumulateAndGet(Integer.parseInt(segId.substring(6)), Math::max);
+        } catch (NumberFormatException ignored) {
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        flusher.shutdownNow();
+        synchronized (writeLock) {
+            flushLocked();
+            // the fresh generation is empty; nothing to replay next time
+            wal.delete(buffer.id());
+        }
+        wal.close();
+    }
+
+    /** Called with each segment a merge takes out of the index, after it is retired. */
+    public void addRetireListener(Consumer<IndexSegment> listener) {
+        retireListeners.add(listener);
+    }
+
+    /**
+     * Pin the current segments, buffer view and live docs for one query; close the
+     * searcher when done so merged-away segment files can be deleted.
+     */
+    public IndexSearcher acquireSearcher() {
+        for (;;) {
+            if (stale) refresh();
+            SegmentSnapshot s = snapshot;
+            if (s.tryIncRef()) return new IndexSearcher(s);
+            // lost a race with publish(); the next read sees the newer generation
+        }
+    }
+
+    // near-real-time visibility: the first reader after a write publishes it for all readers
+    private void refresh() {
+        synchronized (viewLock) {
+            if (stale) publish();
+        }
+    }
+
+    /** Flushed segments plus a frozen view of the write buffer, for listing; queries use {@link #acquireSearcher()}. */
     public List<IndexSegment> currentSegments() {
+        try (IndexSearcher searcher = acquireSearcher()) {
+            return searcher.segments();
+        }
+    }
+
+    // caller holds viewLock (or is the constructor); readers of the old generation keep it
+    private void publish() {
+        stale = false;
+        SegmentSnapshot old = snapshot;
+        snapshot = new SegmentSnapshot(liveSegments, buffer == null ? null : buffer.searchable());
+        old.decRef();
+    }
+
+    /** Flushed, immutable segments only; these are the merge candidates. */
+    public List<IndexSegment> flushedSegments() {
         return new ArrayList<>(liveSegments);
     }
 
+    /** Flushed segments that no running merge has reserved. */
+    public List<IndexSegment> mergeableSegments() {
+        synchronized (merging) {
+            List<IndexSegment> out = new ArrayList<>();
+            for (IndexSegment s : liveSegments) {
+                if (!merging.contains(s.id())) out.add(s);
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Reserve segments as the sources of one merge. False, reserving nothing, if any
+     * of them was merged away meanwhile or is already reserved.
+     */
+    public boolean reserveForMerge(List<IndexSegment> segs) {
+        synchronized (merging) {
+            for (IndexSegment s : segs) {
+                if (merging.contains(s.id()) || !liveSegments.contains(s)) return false;
+            }
+            for (IndexSegment s : segs) merging.add(s.id());
+            return true;
+        }
+    }
+
+    public void releaseMerge(List<IndexSegment> segs) {
+        synchronized (merging) {
+            for (IndexSegment s : segs) merging.remove(s.id());
+        }
+    }
+
+    /**
+     * Merge reserved segments into one, writing through {@code limiter} (null =
+     * unthrottled), and swap it in. A failed merge leaves the sources untouched and
+     * removes its partial output. The caller still releases the reservation.
+     */
+    public void merge(List<IndexSegment> choice, RateLimiter limiter) throws IOException {
+        String id = "merge-" + System.currentTimeMillis() + "-" + mergeSeq.incrementAndGet();
+        IndexSegment.MergedResult result;
+        try {
+            // sources without stored fileIds have theirs copied from the docmap, so the
+            // merged segment always stores them and needs no docmap of its own
+            List<IntFunction<String>> fileIds = new ArrayList<>();
+            for (IndexSegment s : choice) fileIds.add(fileIds(s));
+            result = IndexSegment.mergeWithRemap(segDir, id, choice, fileIds, limiter, bloomSpec);
+        } catch (IOException | RuntimeException ex) {
+            IndexSegment.deleteFiles(segDir, id);
+            throw ex;
+        }
+        installMerge(choice, result);
+    }
+
     public int mergeWithDPBudget(int budgetBytes) throws IOException {
         DPMergePlanner dp = new DPMergePlanner();
-        List<IndexSegment> choice = dp.plan(currentSegments(), budgetBytes);
-        if (choice.isEmpty()) return 0;
-        String id = "merge-" + System.currentTimeMillis();
-      var result  = IndexSegment.mergeWithRemap(segDir, id, choice);
-      IndexSegment merged = result.segment;
-      // rebuild docmap for the merged segment
-      for (int newDocId = 0; newDocId < result.remap.size(); newDocId++) {
-        var src = result.remap.get(newDocId);
-        String fileId = manifestStore.resolveFileId(src.segId, src.docId);
-        if (fileId != null) {
-          manifestStore.upsertDocmap(merged.id(), newDocId, fileId);
-        }
-      }
-        for (IndexSegment s : choice) {
-            liveSegments.remove(s);
-            manifestStore.remove(s.id());
-            manifestStore.deleteDocmapBySegment(s.id()); // <--- important
-            Files.deleteIfExists(segDir.resolve(s.id()+".seg"));
-        }
-        liveSegments.add(merged);
-        manifestStore.upsert(merged.id(), segDir.resolve(merged.id()+".seg").toString());
-        return choice.size();
+        return mergeNow(dp.plan(mergeableSegments(), budgetBytes));
     }
 
     public int mergeGreedy(int maxPick) throws IOException {
         GreedyMergePlanner g = new GreedyMergePlanner();
-        List<IndexSegment> choice = g.plan(currentSegments(), maxPick);
-        if (choice.isEmpty()) return 0;
-        String id = "merge-" + System.currentTimeMillis();
-      var result  = IndexSegment.mergeWithRemap(segDir, id, choice);
-      IndexSegment merged = result.segment;
-      // rebuild docmap for the merged segment
-      for (int newDocId = 0; newDocId < result.remap.size(); newDocId++) {
-        var src = result.remap.get(newDocId);
-        String fileId = manifestStore.resolveFileId(src.segId, src.docId);
-        if (fileId != null) {
-          manifestStore.upsertDocmap(merged.id(), newDocId, fileId);
-        }
-      }
-        for (IndexSegment s : choice) {
-            liveSegments.remove(s);
-            manifestStore.remove(s.id());
-           manifestStore.deleteDocmapBySegment(s.id());
-            Files.deleteIfExists(segDir.resolve(s.id()+".seg"));
-        }
-        liveSegments.add(merged);
-        manifestStore.upsert(merged.id(), segDir.resolve(merged.id()+".seg").toString());
+        return mergeNow(g.plan(mergeableSegments(), maxPick));
+    }
+
+    // on-demand merges run on the caller's thread, unthrottled
+    private int mergeNow(List<IndexSegment> choice) throws IOException {
+        if (choice.isEmpty() || !reserveForMerge(choice)) return 0;
+        try {
+            merge(choice, null);
+        } finally {
+            releaseMerge(choice);
+        }
         return choice.size();
     }
+
+    /**
+     * Swap merge sources for their merged segment. Runs under the write lock so no
+     * delete can land on a source in between; deletes that landed while the merge was
+     * reading are carried over to the merged doc ids and saved before the sources go.
+     * Heads of the surviving docs move to the merged segment in the same critical section,
+     * read from the fileIds it stores.
+     * When no doc survives, the sources are only dropped and the merged file never
+     * enters the index.
+     */
+    private void installMerge(List<IndexSegment> choice, IndexSegment.MergedResult result) throws IOException {
+        IndexSegment merged = result.segment;
+        synchronized (writeLock) {
+            carryOverDeletes(choice, result);
+            boolean empty = merged.liveDocs().deletedCount() >= result.remap.size();
+            if (!empty) {
+                merged.saveLiveDocs();
+                LiveDocs live = merged.liveDocs();
+                for (int doc = 0; doc < result.remap.size(); doc++) {
+                    String fileId = merged.fileId(doc);
+                    if (fileId != null && live.isLive(doc)) heads.put(fileId, merged.id(), doc);
+                }
+            }
+            for (IndexSegment s : choice) {
+                manifestStore.remove(s.id());
+                manifestStore.deleteDocmapBySegment(s.id());
+            }
+            if (!empty) manifestStore.upsert(merged.id(), segDir.resolve(merged.id()+".seg").toString());
+            synchronized (viewLock) {
+                liveSegments.removeAll(choice);
+                for (IndexSegment s : choice) {
+                    liveById.remove(s.id());
+                    legacyUnmapped.remove(s.id());
+                }
+                if (!empty) addLive(merged);
+                publish();
+            }
+            // files stay until the last searcher that may read them is closed
+            for (IndexSegment s : choice) {
+                s.retire();
+                for (Consumer<IndexSegment> l : retireListeners) l.accept(s);
+            }
+            // never published, so nothing holds it and its file goes right away
+            if (empty) merged.retire();
+        }
+    }
+
+    private static void carryOverDeletes(List<IndexSegment> sources, IndexSegment.MergedResult result) {
+        Map<String, int[]> oldToNew = new HashMap<>();
+        for (IndexSegment s : sources) {
+            int[] m = new int[s.maxDocId() + 1];
+            Arrays.fill(m, -1);
+            oldToNew.put(s.id(), m);
+        }
+        for (int newDocId = 0; newDocId < result.remap.size(); newDocId++) {
+            var src = result.remap.get(newDocId);
+            oldToNew.get(src.segId)[src.docId] = newDocId;
+        }
+        for (int i = 0; i < sources.size(); i++) {
+            IndexSegment s = sources.get(i);
+            int[] m = oldToNew.get(s.id());
+            int[] gone = Arrays.stream(s.liveDocs().deletedSince(result.sourceLiveDocs.get(i)))
+                    .map(old -> m[old]).filter(d -> d >= 0).toArray();
+            result.segment.deleteDoc(gone);
+        }
+    }
 }
@@ -0,0 +1,130 @@
+package com.ksu.indexer.service;
+
+import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.core.RateLimiter;
+import com.ksu.indexer.planner.TieredMergePlanner;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the segment count bounded without anyone calling the merge endpoints. A
+ * planner tick asks {@link TieredMergePlanner} for merges among the segments no merge
+ * has reserved, reserves each one and hands it to a bounded pool, so several merges
+ * run at once but never over the same segment. All merge output shares one
+ * {@link RateLimiter}, which keeps merge writes from starving query I/O.
+ */
+@Service
+public class MergeScheduler {
+    private final IndexService indexService;
+    private final TieredMergePlanner planner;
+    private final RateLimiter limiter;
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService mergers;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final Timer mergeTime;
+    private final Counter failed;
+
+    public MergeScheduler(IndexService indexService, MeterRegistry registry,
+                          @Value("${index.merge.enabled:true}") boolean enabled,
+                          @Value("${index.merge.threads:2}") int threads,
+                          @Value("${index.merge.interval-ms:1000}") long intervalMs,
+                          @Value("${index.merge.max-mb-per-sec:20}") double maxMbPerSec,
+                          @Value("${index.merge.segments-per-tier:10}") int segmentsPerTier,
+                          @Value("${index.merge.max-merge-at-once:10}") int maxMergeAtOnce,
+                          @Value("${index.merge.floor-bytes:65536}") long floorBytes,
+                          @Value("${index.merge.reclaim-deletes-ratio:0.5}") double reclaimDeletesRatio) {
+        this.indexService = indexService;
+        this.planner = new TieredMergePlanner(segmentsPerTier, maxMergeAtOnce, floorBytes, reclaimDeletesRatio);
+        this.limiter = new RateLimiter(maxMbPerSec);
+        AtomicInteger ids = new AtomicInteger();
+        this.mergers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "index-merge-" + ids.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "index-merge-planner");
+            t.setDaemon(true);
+            return t;
+        });
+        this.mergeTime = Timer.builder("index.merge.latency")
+                .publishPercentiles(0.5, 0.95)
+                .distributionStatisticExpiry(Duration.ofMinutes(10))
+                .register(registry);
+        this.failed = Counter.builder("index.merge.failed").register(registry);
+        Gauge.builder("index.merge.pending", pending, AtomicInteger::get).register(registry);
+        Gauge.builder("index.merge.running", running, AtomicInteger::get).register(registry);
+        Gauge.builder("index.segments", indexService, s -> s.flushedSegments().size()).register(registry);
+        FunctionCounter.builder("index.merge.bytes_written", limiter, RateLimiter::bytes).register(registry);
+        FunctionCounter.builder("index.merge.throttled_seconds", limiter, l -> l.pausedNanos() / 1e9).register(registry);
+        if (enabled) {
+            long period = Math.max(10, intervalMs);
+            ticker.scheduleWithFixedDelay(this::tick, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Plan once and queue every merge found; returns how many were queued. */
+    public int tick() {
+        int queued = 0;
+        try {
+            for (List<IndexSegment> spec : planner.plan(indexService.mergeableSegments())) {
+                if (!indexService.reserveForMerge(spec)) continue;
+                pending.incrementAndGet();
+                mergers.execute(() -> run(spec));
+                queued++;
+            }
+        } catch (RuntimeException ex) {
+            // keep the schedule alive; the next tick plans again
+        }
+        return queued;
+    }
+
+    private void run(List<IndexSegment> spec) {
+        pending.decrementAndGet();
+        running.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            indexService.merge(spec, limiter);
+        } catch (Exception ex) {
+            // sources stay live and unreserved, so a later tick retries them
+            failed.increment();
+        } finally {
+            mergeTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            running.decrementAndGet();
+            indexService.releaseMerge(spec);
+        }
+    }
+
+    public int pendingMerges() { return pending.get(); }
+
+    public int runningMerges() { return running.get(); }
+
+    /** Change the merge write budget at runtime; 0 or less lifts it. */
+    public void setMaxMbPerSec(double mbPerSec) { limiter.setMbPerSec(mbPerSec); }
+
+    @PreDestroy
+    public void close() {
+        ticker.shutdownNow();
+        // interrupts throttled merges; they drop their partial output and leave sources intact
+        mergers.shutdownNow();
+        try {
+            mergers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
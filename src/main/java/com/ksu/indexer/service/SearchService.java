@@ -1,133 +1,409 @@
 
 package com.ksu.indexer.service;
 
+import com.ksu.indexer.core.DocIdSet;
 import com.ksu.indexer.core.IndexSegment;
-import com.ksu.indexer.storage.ManifestStore;
+import com.ksu.indexer.core.LiveDocs;
+import com.ksu.indexer.core.PostingsIterator;
+import com.ksu.indexer.query.BM25Similarity;
+import com.ksu.indexer.query.BlockMaxWand;
+import com.ksu.indexer.query.ClauseScorer;
+import com.ksu.indexer.query.ConjunctionIterator;
+import com.ksu.indexer.query.MultiTermQuery;
+import com.ksu.indexer.query.Operator;
+import com.ksu.indexer.query.PhraseIterator;
+import com.ksu.indexer.query.QueryCache;
+import com.ksu.indexer.query.QueryNode;
+import com.ksu.indexer.query.QueryParser;
+import com.ksu.indexer.query.QueryPlan;
+import com.ksu.indexer.query.QueryPlanner;
+import com.ksu.indexer.query.TopKCollector;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+/**
+ * Ranked search over a snapshot of the index. A query's segments are cut into up to
+ * {@code index.search.max-slices-per-query} slices of similar doc count; the calling
+ * thread evaluates the first and the shared search pool the rest, each into its own
+ * top-k, and the slices' hits are then merged into one top-k. Small snapshots stay on
+ * one slice. When the pool's queue is full a slice runs on the calling thread instead,
+ * so under load queries degrade to sequential evaluation rather than wait.
+ *
+ * A query string is parsed ({@link QueryParser}: AND/OR/NOT, grouping, phrases,
+ * field filters) and planned once per request against the snapshot
+ * ({@link QueryPlanner}); flat shapes run the paths below, anything else a
+ * {@link ClauseScorer} tree, and {@link #explain} shows the plan chosen.
+ *
+ * AND queries of two or more distinct terms look up each mapped segment's match set
+ * in a {@link QueryCache} before intersecting postings; a cached empty set skips the
+ * segment outright. Sets of merged-away segments are invalidated as they are retired.
+ * Phrase queries are cached the same way, keyed by their terms in order and slop, so
+ * a repeated phrase reads no positions at all.
+ *
+ * Wildcard ({@code conf*}) and fuzzy ({@code colour~1}) words are expanded when the
+ * query is planned, against the snapshot's term dictionaries, capped at
+ * {@code index.search.max-expansions} terms (see {@link MultiTermQuery}), and each is
+ * then matched and scored as one term. Queries with such words bypass the cache.
+ */
 @Service
 public class SearchService {
     private final IndexService indexService;
-    private final ManifestStore manifest;
     private final Timer searchLatency;
-    public SearchService(IndexService indexService, ManifestStore manifest, MeterRegistry registry) {
+    private final BM25Similarity similarity = new BM25Similarity();
+    private final ThreadPoolExecutor pool;
+    private final int maxSlices;
+    private final long minDocsPerSlice;
+    private final QueryCache cache;
+    private final QueryPlanner planner;
+    private final Counter truncatedExpansions;
+
+    public SearchService(IndexService indexService, MeterRegistry registry,
+                         @Value("${index.search.threads:0}") int threads,
+                         @Value("${index.search.max-slices-per-query:4}") int maxSlices,
+                         @Value("${index.search.min-docs-per-slice:50000}") long minDocsPerSlice,
+                         @Value("${index.search.cache.max-bytes:33554432}") long cacheMaxBytes,
+                         @Value("${index.search.max-expansions:128}") int maxExpansions) {
         this.indexService = indexService;
-        this.manifest = manifest;
         this.searchLatency = Timer.builder("index.search_latency")
                 .publishPercentiles(0.95, 0.99)
                 .distributionStatisticExpiry(Duration.ofMinutes(10))
                 .register(registry);
+        int n = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger ids = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(n, n, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(n * 2), r -> {
+            Thread t = new Thread(r, "index-search-" + ids.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.maxSlices = Math.max(1, maxSlices);
+        this.minDocsPerSlice = Math.max(1, minDocsPerSlice);
+        Gauge.builder("index.search.pool.active", pool, ThreadPoolExecutor::getActiveCount).register(registry);
+        Gauge.builder("index.search.pool.queued", pool, p -> p.getQueue().size()).register(registry);
+        this.cache = new QueryCache(cacheMaxBytes);
+        indexService.addRetireListener(cache::invalidate);
+        FunctionCounter.builder("index.search.cache.hits", cache, QueryCache::hits).register(registry);
+        FunctionCounter.builder("index.search.cache.misses", cache, QueryCache::misses).register(registry);
+        FunctionCounter.builder("index.search.cache.evictions", cache, QueryCache::evictions).register(registry);
+        FunctionCounter.builder("index.search.cache.invalidations", cache, QueryCache::invalidations).register(registry);
+        Gauge.builder("index.search.cache.bytes", cache, QueryCache::bytes).register(registry);
+        Gauge.builder("index.search.cache.entries", cache, QueryCache::size).register(registry);
+        this.planner = new QueryPlanner(similarity, maxExpansions);
+        this.truncatedExpansions = Counter.builder("index.search.expansions.truncated").register(registry);
+    }
+
+    public List<String> searchFileIdsLegacy(String q, int k, Operator op) {
+        return searchFileIdsLegacy(q, k, op, 0);
     }
 
-  // SearchService.java
-  public List<String> searchFileIdsLegacy(String q) {
-    long start = System.nanoTime();
-    try {
-      String[] terms = q.toLowerCase().trim().split("\\s+");
-      Map<String, Set<Integer>> segToDocs = null;
-
-      // boolean AND across terms
-      for (String t : terms) {
-        if (t.isBlank()) continue;
-        Map<String, Set<Integer>> local = new HashMap<>();
-        for (IndexSegment seg : indexService.currentSegments()) {
-          if (!seg.mightContainTerm(t)) continue;
-          Set<Integer> docs = new HashSet<>(seg.getRawPostings(t));
-          if (!docs.isEmpty()) local.put(seg.id(), new HashSet<>(docs));
+    /** {@code slop} only applies to {@link Operator#PHRASE}. */
+    public List<String> searchFileIdsLegacy(String q, int k, Operator op, int slop) {
+        // best k distinct files by BM25
+        LinkedHashSet<String> fileIds = new LinkedHashSet<>();
+        try (IndexSearcher searcher = indexService.acquireSearcher()) {
+            // same analysis chain the docs were indexed with
+            QueryPlan plan = plan(searcher, q, op, slop);
+            if (plan.strategy() == QueryPlan.Strategy.NONE) return List.of();
+            for (TopKCollector.ScoreDoc hit : topK(searcher, plan, want(searcher, k))) {
+                String fid = indexService.resolveFileId(searcher.segment(hit.seg), hit.doc);
+                if (fid != null) fileIds.add(fid);
+                if (fileIds.size() == k) break;
+            }
         }
-        if (segToDocs == null) {
-          segToDocs = local;
+        return new ArrayList<>(fileIds);
+    }
+
+    public List<Map<String,Object>> searchV2(String query, int k, Operator op) {
+        return searchV2(query, k, op, 0);
+    }
+
+    /** {@code slop} only applies to {@link Operator#PHRASE}. */
+    public List<Map<String,Object>> searchV2(String query, int k, Operator op, int slop) {
+        long start = System.nanoTime();
+        try {
+            List<Map<String,Object>> hits = new ArrayList<>();
+            try (IndexSearcher searcher = indexService.acquireSearcher()) {
+                QueryPlan plan = plan(searcher, query, op, slop);
+                if (plan.strategy() == QueryPlan.Strategy.NONE) return List.of();
+                // superseded and deleted docs were already skipped by the live-docs bit test
+                for (TopKCollector.ScoreDoc hit : topK(searcher, plan, want(searcher, k))) {
+                    String seg = searcher.segment(hit.seg).id();
+                    // resolve fileId: an array lookup in the hit's segment
+                    String fileId = indexService.resolveFileId(searcher.segment(hit.seg), hit.doc);
+                    // docs indexed without a fileId cannot be returned
+                    if (fileId == null) continue;
+
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("segId", seg);
+                    row.put("docId", hit.doc);
+                    row.put("fileId", fileId);
+                    row.put("score", hit.score);
+                    hits.add(row);
+                    if (hits.size() == k) break;
+                }
+            }
+            return hits;
+        } finally {
+            searchLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * How many hits to rank for a page of {@code k}: deleted and superseded docs never
+     * reach the ranking, so the only gaps are hits without a fileId, and ranking that
+     * many extra fills the page in one pass. Capped at the snapshot's doc count.
+     */
+    private int want(IndexSearcher searcher, int k) {
+        long want = Math.max(1, k);
+        long docs = 0;
+        for (IndexSegment s : searcher.segments()) {
+            want += indexService.unresolvableDocs(s);
+            docs += s.maxDocId() + 1L;
+        }
+        return (int) Math.max(1, Math.min(Math.min(want, docs), Integer.MAX_VALUE));
+    }
+
+    /**
+     * Parse {@code q} (see {@link QueryParser}, {@code op} joining adjacent words) and
+     * plan it over the searcher's snapshot.
+     */
+    private QueryPlan plan(IndexSearcher searcher, String q, Operator op, int slop) {
+        QueryNode node = QueryParser.parse(q, op, slop, indexService.analyzer());
+        QueryPlan plan = planner.plan(node, searcher.segments(), indexService::fileIds);
+        truncatedExpansions.increment(plan.truncatedExpansions());
+        return plan;
+    }
+
+    /**
+     * The plan {@code q} gets over the current snapshot: strategy, the query as parsed,
+     * and each clause's estimated cost and evaluation (see {@link QueryPlanner}).
+     */
+    public Map<String, Object> explain(String q, Operator op, int slop) {
+        try (IndexSearcher searcher = indexService.acquireSearcher()) {
+            Map<String, Object> out = new LinkedHashMap<>(plan(searcher, q, op, slop).explain());
+            out.put("segments", searcher.segments().size());
+            return out;
+        }
+    }
+
+    /**
+     * The {@code k} best docs for {@code plan}, ranked by BM25 with stats summed over
+     * the whole snapshot, evaluated slice by slice (see the class comment). Flat plans
+     * run every term (AND), any term (OR) or the terms as a phrase; others run their
+     * clause tree. {@code ScoreDoc.seg} indexes {@code searcher.segments()}.
+     */
+    private List<TopKCollector.ScoreDoc> topK(IndexSearcher searcher, QueryPlan plan, int k) {
+        List<IndexSegment> segs = searcher.segments();
+        Query q;
+        if (plan.strategy() == QueryPlan.Strategy.BOOLEAN) {
+            q = new Query(plan, List.of(), new MultiTermQuery.Expansion[0], Operator.AND, 0, new float[0], plan.avgDocLength(), null);
         } else {
-          // intersect per-segment
-          segToDocs.keySet().retainAll(local.keySet());
-          for (var e : new ArrayList<>(segToDocs.entrySet())) {
-            Set<Integer> keep = local.getOrDefault(e.getKey(), Set.of());
-            e.getValue().retainAll(keep);
-            if (e.getValue().isEmpty()) segToDocs.remove(e.getKey());
-          }
+            Operator op = plan.strategy() == QueryPlan.Strategy.WAND ? Operator.OR
+                    : plan.strategy() == QueryPlan.Strategy.PHRASE ? Operator.PHRASE : Operator.AND;
+            List<String> terms = plan.terms();
+            MultiTermQuery.Expansion[] expansions = plan.expansions();
+            boolean expands = false;
+            for (MultiTermQuery.Expansion e : expansions) expands |= e != null;
+            q = new Query(plan, terms, expansions, op, plan.slop(), plan.idf(), plan.avgDocLength(),
+                    expands ? null : cacheKey(terms, op, plan.slop()));
         }
-        if (segToDocs == null || segToDocs.isEmpty()) return List.of();
-      }
-
-      // map (segId, docId) -> fileId and de-dup
-      java.util.LinkedHashSet<String> fileIds = new java.util.LinkedHashSet<>();
-      for (var e : segToDocs.entrySet()) {
-        String seg = e.getKey();
-        for (int docId : e.getValue()) {
-          String fid = manifest.resolveFileId(seg, docId);
-          if (fid != null) fileIds.add(fid);
+
+        List<int[]> slices = slices(segs);
+        if (slices.size() == 1) return collect(searcher, slices.get(0), q, k).drain();
+        List<CompletableFuture<TopKCollector>> rest = new ArrayList<>();
+        for (int i = 1; i < slices.size(); i++) {
+            int[] slice = slices.get(i);
+            rest.add(CompletableFuture.supplyAsync(() -> collect(searcher, slice, q, k), pool));
         }
-      }
-      return new ArrayList<>(fileIds);
-    } finally {
-      // keep your timer logic here
+        TopKCollector top = collect(searcher, slices.get(0), q, k);
+        for (CompletableFuture<TopKCollector> f : rest) {
+            TopKCollector part;
+            try {
+                part = f.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                throw e;
+            }
+            // ties break on (segment ordinal, doc), so the merged order matches a sequential run
+            for (TopKCollector.ScoreDoc hit : part.drain()) top.collect(hit.seg, hit.doc, hit.score);
+        }
+        return top.drain();
     }
-  }
 
+    /**
+     * Segment ordinals per slice, at most {@code maxSlices} slices and roughly
+     * {@code minDocsPerSlice} docs or more each. Largest segments are placed first,
+     * each on the slice with the fewest docs so far; each slice then lists its ordinals
+     * ascending, so it visits segments in the order a sequential run would.
+     */
+    private List<int[]> slices(List<IndexSegment> segs) {
+        long docs = 0;
+        for (IndexSegment s : segs) docs += s.maxDocId();
+        int n = (int) Math.max(1, Math.min(Math.min(maxSlices, segs.size()), docs / minDocsPerSlice));
+        if (n == 1) {
+            int[] all = new int[segs.size()];
+            for (int i = 0; i < all.length; i++) all[i] = i;
+            return List.of(all);
+        }
+        Integer[] order = new Integer[segs.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt((Integer i) -> segs.get(i).maxDocId()).reversed());
+        long[] load = new long[n];
+        int[][] members = new int[n][segs.size()];
+        int[] count = new int[n];
+        for (int ord : order) {
+            int least = 0;
+            for (int j = 1; j < n; j++) if (load[j] < load[least]) least = j;
+            load[least] += segs.get(ord).maxDocId();
+            members[least][count[least]++] = ord;
+        }
+        List<int[]> out = new ArrayList<>(n);
+        for (int j = 0; j < n; j++) {
+            int[] slice = Arrays.copyOf(members[j], count[j]);
+            Arrays.sort(slice);
+            out.add(slice);
+        }
+        return out;
+    }
 
-    public List<Map<String,Object>> searchV2(String query) {
-        long start = System.nanoTime();
-        try {
-            String[] terms = query.toLowerCase().split("\s+");
-            Map<String, Set<Integer>> segToDocSet = new HashMap<>();
-            for (String t : terms) {
-                Map<String, Set<Integer>> local = new HashMap<>();
-                for (IndexSegment s : indexService.currentSegments()) {
-                    if (s.mightContainTerm(t)) {
-                        for (int id : s.getRawPostings(t)) {
-                            local.computeIfAbsent(s.id(), k->new HashSet<>()).add(id);
-                        }
-                    }
+    /**
+     * What every slice of one query evaluation shares; {@code expansions[i]} is set for
+     * wildcard and fuzzy words, and {@code cacheKey} is null if the query is not cached.
+     * The term fields are empty for a BOOLEAN plan.
+     */
+    private record Query(QueryPlan plan, List<String> terms, MultiTermQuery.Expansion[] expansions, Operator op,
+                         int slop, float[] idf, float avgDocLength, String cacheKey) {}
+
+    // AND: operator plus sorted distinct terms, as term order and repeats do not change
+    // the matches; a phrase depends on both, and on the slop
+    private String cacheKey(List<String> terms, Operator op, int slop) {
+        if (!cache.enabled()) return null;
+        if (op == Operator.PHRASE) return op + "/" + slop + ":" + String.join(" ", terms);
+        if (op != Operator.AND) return null;
+        TreeSet<String> distinct = new TreeSet<>(terms);
+        return distinct.size() < 2 ? null : op + ":" + String.join(" ", distinct);
+    }
+
+    /**
+     * One slice's top {@code k}, evaluated doc-at-a-time per segment. For AND a segment
+     * is dropped as soon as one term is missing from it, otherwise a
+     * {@link ConjunctionIterator} led by the rarest term (or the cached match set)
+     * yields the matches, which are scored from the term iterators advanced to them.
+     * PHRASE runs the same conjunction and checks positions of its matches only
+     * ({@link PhraseIterator}); segments written without positions match on the
+     * conjunction alone. OR goes through {@link BlockMaxWand}, which skips docs that cannot enter the
+     * slice's top k. An expanded word reads as the union of its terms' postings.
+     */
+    private TopKCollector collect(IndexSearcher searcher, int[] slice, Query q, int k) {
+        TopKCollector top = new TopKCollector(k);
+        BlockMaxWand wand = new BlockMaxWand(similarity, q.avgDocLength);
+        List<String> terms = q.terms;
+        segments:
+        for (int s : slice) {
+            IndexSegment seg = searcher.segment(s);
+            // live docs pinned by the searcher keep the whole query consistent; NOT clauses
+            // planned as bitsets drop their docs the same way
+            LiveDocs live = q.plan.exclude(seg, searcher.liveDocs(s));
+            if (q.plan.strategy() == QueryPlan.Strategy.BOOLEAN) {
+                ClauseScorer scorer = q.plan.scorer(seg, live);
+                if (scorer == null) continue;
+                for (int doc = scorer.nextDoc(); doc != PostingsIterator.NO_MORE_DOCS; doc = scorer.nextDoc()) {
+                    top.collect(s, doc, scorer.score(seg.docLength(doc)));
+                }
+                continue;
+            }
+            if (q.cacheKey != null && seg.isMapped()) {
+                DocIdSet docs = cache.get(seg, q.cacheKey);
+                if (docs == null) {
+                    docs = matches(seg, q);
+                    cache.put(seg, q.cacheKey, docs);
                 }
-                if (segToDocSet.isEmpty()) segToDocSet = local;
-                else {
-                    for (String seg : new HashSet<>(segToDocSet.keySet())) {
-                        Set<Integer> current = segToDocSet.get(seg);
-                        Set<Integer> next = local.getOrDefault(seg, Set.of());
-                        current.retainAll(next);
-                        if (current.isEmpty()) segToDocSet.remove(seg);
-                    }
+                if (docs.isEmpty()) continue;
+                PostingsIterator[] its = new PostingsIterator[terms.size()];
+                for (int i = 0; i < its.length; i++) its[i] = seg.rawPostings(terms.get(i));
+                score(seg, s, q.plan.filter(seg, live, live.filter(docs.iterator())), its, q, top);
+                continue;
+            }
+            PostingsIterator[] its = new PostingsIterator[terms.size()];
+            boolean any = false;
+            for (int i = 0; i < its.length; i++) {
+                String t = terms.get(i);
+                if (q.expansions[i] != null) its[i] = q.expansions[i].postings(seg, live);
+                else if (!seg.mightContainTerm(t)) its[i] = PostingsIterator.EMPTY;
+                else its[i] = positional(seg, q) ? seg.positions(t, live) : seg.postings(t, live);
+                if (its[i].cost() == 0) {
+                    if (q.op != Operator.OR) continue segments;
+                    its[i] = null;
+                } else {
+                    any = true;
                 }
             }
-          // SearchService.java (inside searchV2)
-          List<Map<String,Object>> hits = new ArrayList<>();
-          for (var e : segToDocSet.entrySet()) {
-            String seg = e.getKey();
-            for (int docId : e.getValue()) {
-              // resolve fileId first
-              String fileId = manifest.resolveFileId(seg, docId);
-              if (fileId == null) {
-                // either skip or log; better to ensure docmap is complete at ingest
+            if (!any) continue;
+            if (q.op == Operator.OR) {
+                wand.collect(seg, s, its, q.idf, top);
                 continue;
-              }
-              // filter by file-level tombstone
-              if (manifest.isTombstonedFileId(fileId)) continue;
-
-              // (Optional) also filter by legacy seg/doc tombstones if you keep them:
-              // if (manifest.isTombstoned(seg, docId)) continue;
-
-              Map<String, Object> row = new LinkedHashMap<>();
-              row.put("segId", seg);
-              row.put("docId", docId);
-              row.put("fileId", fileId);
-              hits.add(row);
             }
-          }
-          return hits;
+            PostingsIterator match = positional(seg, q)
+                    ? PhraseIterator.of(List.of(its), q.slop) : ConjunctionIterator.of(List.of(its));
+            score(seg, s, q.plan.filter(seg, live, match), its, q, top);
+        }
+        return top;
+    }
 
-        } finally {
-            searchLatency.record(System.nanoTime() - start, java.util.concurrent.TimeUnit.NANOSECONDS);
+    private static boolean positional(IndexSegment seg, Query q) {
+        return q.op == Operator.PHRASE && seg.hasPositions();
+    }
+
+    /** Every doc of {@code seg} containing all terms (as a phrase for PHRASE), deleted docs included. */
+    private static DocIdSet matches(IndexSegment seg, Query q) {
+        boolean positional = positional(seg, q);
+        List<PostingsIterator> its = new ArrayList<>(q.terms.size());
+        for (String t : q.terms) {
+            if (!seg.mightContainTerm(t)) return DocIdSet.EMPTY;
+            PostingsIterator it = positional ? seg.rawPositions(t) : seg.rawPostings(t);
+            if (it.cost() == 0) return DocIdSet.EMPTY;
+            its.add(it);
         }
+        PostingsIterator match = positional ? PhraseIterator.of(its, q.slop) : ConjunctionIterator.of(its);
+        return DocIdSet.of(match, seg.maxDocId());
+    }
+
+    // BM25 of each doc of match, summed over the term iterators advanced to it
+    private void score(IndexSegment seg, int segOrd, PostingsIterator match, PostingsIterator[] its,
+                       Query q, TopKCollector top) {
+        for (int doc = match.nextDoc(); doc != PostingsIterator.NO_MORE_DOCS; doc = match.nextDoc()) {
+            int length = seg.docLength(doc);
+            float score = 0;
+            for (int i = 0; i < its.length; i++) {
+                its[i].advance(doc);
+                score += similarity.score(q.idf[i], its[i].freq(), length, q.avgDocLength);
+            }
+            top.collect(segOrd, doc, score);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.shutdown();
     }
 }
@@ -2,6 +2,7 @@
 package com.ksu.indexer.service;
 
 import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.core.PostingsIterator;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
@@ -34,7 +35,8 @@ public class SearchService_backup {
         Map<String, Set<Integer>> local = new HashMap<>();
         for (IndexSegment s : indexService.currentSegments()) {
           if (s.mightContainTerm(t)) {
-            for (int id : s.getPostings(t)) {
+            PostingsIterator it = s.postings(t);
+            for (int id = it.nextDoc(); id != PostingsIterator.NO_MORE_DOCS; id = it.nextDoc()) {
               local.computeIfAbsent(s.id(), k -> new HashSet<>()).add(id);
             }
           }
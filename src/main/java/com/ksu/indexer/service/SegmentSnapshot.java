@@ -0,0 +1,54 @@
+package com.ksu.indexer.service;
+
+import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.core.LiveDocs;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One published generation of the index as readers see it: the flushed segments, a
+ * frozen view of the write buffer and every segment's live docs, all captured
+ * together so an update is either wholly in the generation or wholly out of it.
+ * The index service holds one reference while the generation is current and each
+ * open {@link IndexSearcher} holds another; when the count drops to zero the
+ * generation lets go of its segments, which deletes the files of any that were
+ * retired by a merge meanwhile.
+ */
+final class SegmentSnapshot {
+    // flushed segments, the ones this generation holds a reference on
+    final List<IndexSegment> segments;
+    // segments plus the buffer view if it has docs; hit ordinals index this list
+    final List<IndexSegment> searchable;
+    final LiveDocs[] liveDocs;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    /** {@code buffered} is the write buffer's frozen view, or null while there is no buffer yet. */
+    SegmentSnapshot(List<IndexSegment> segments, IndexSegment buffered) {
+        this.segments = List.copyOf(segments);
+        List<IndexSegment> all = new ArrayList<>(this.segments);
+        if (buffered != null && !buffered.isEmpty()) all.add(buffered);
+        this.searchable = List.copyOf(all);
+        this.liveDocs = new LiveDocs[searchable.size()];
+        for (int i = 0; i < liveDocs.length; i++) liveDocs[i] = searchable.get(i).liveDocs();
+        for (IndexSegment s : this.segments) s.incRef();
+    }
+
+    /** False once the generation has been fully released; the caller re-reads the current one. */
+    boolean tryIncRef() {
+        for (;;) {
+            int n = refCount.get();
+            if (n <= 0) return false;
+            if (refCount.compareAndSet(n, n + 1)) return true;
+        }
+    }
+
+    void decRef() {
+        int n = refCount.decrementAndGet();
+        if (n == 0) {
+            for (IndexSegment s : segments) s.decRef();
+        } else if (n < 0) {
+            throw new IllegalStateException("snapshot released too often");
+        }
+    }
+}
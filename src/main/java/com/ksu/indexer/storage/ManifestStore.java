@@ -1,6 +1,9 @@
 
 package com.ksu.indexer.storage;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -14,10 +17,7 @@ public class ManifestStore {
         this.jdbc = jdbc;
         this.jdbc.execute("CREATE TABLE IF NOT EXISTS segments(id VARCHAR(128) PRIMARY KEY, path VARCHAR(512), created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
         this.jdbc.execute("CREATE TABLE IF NOT EXISTS docmap(seg_id VARCHAR(128), doc_id INT, file_id VARCHAR(256), PRIMARY KEY(seg_id, doc_id))");
-        this.jdbc.execute("CREATE TABLE IF NOT EXISTS file_tombstones(\n"
-            + "  file_id VARCHAR(256) PRIMARY KEY,\n"
-            + "  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP\n"
-            + ");");
+        // only read, for deletes recorded before live docs; see legacyTombstones()
         this.jdbc.execute("CREATE TABLE IF NOT EXISTS tombstones(seg_id VARCHAR(128), doc_id INT, PRIMARY KEY(seg_id, doc_id))");
         this.jdbc.execute("CREATE TABLE IF NOT EXISTS file_versions(\n"
             + "  file_id VARCHAR(256) NOT NULL,\n"
@@ -31,7 +31,7 @@ public class ManifestStore {
             + "  doc_id  INT NOT NULL,\n"
             + "  updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP\n"
             + ");");
-        this.jdbc.execute("CREATE INDEX IF NOT EXISTS idx_docmap_file_id ON docmap(file_id)");
+        this.jdbc.execute("CREATE TABLE IF NOT EXISTS settings(name VARCHAR(64) PRIMARY KEY, val VARCHAR(4096))");
     }
 
 
@@ -52,8 +52,21 @@ public class ManifestStore {
         jdbc.update("MERGE INTO docmap KEY(seg_id, doc_id) VALUES(?, ?, ?)", segId, docId, fileId);
     }
 
-    public List<Map<String,Object>> findDocsByFileId(String fileId) {
-        return jdbc.queryForList("SELECT seg_id, doc_id FROM docmap WHERE file_id=?", fileId);
+    /** Batch form of {@link #mapDoc} for a flushed write buffer. */
+    public void mapDocs(String segId, Map<Integer, String> docToFileId) {
+        if (docToFileId.isEmpty()) return;
+        List<Object[]> rows = new ArrayList<>(docToFileId.size());
+        for (var e : docToFileId.entrySet()) rows.add(new Object[]{segId, e.getKey(), e.getValue()});
+        jdbc.batchUpdate("MERGE INTO docmap KEY(seg_id, doc_id) VALUES(?, ?, ?)", rows);
+    }
+
+    /** docId -> fileId for every mapped doc of one segment, in doc id order. */
+    public Map<Integer, String> docmapForSegment(String segId) {
+        Map<Integer, String> out = new LinkedHashMap<>();
+        jdbc.query("SELECT doc_id, file_id FROM docmap WHERE seg_id=? ORDER BY doc_id", rs -> {
+            out.put(rs.getInt(1), rs.getString(2));
+        }, segId);
+        return out;
     }
 
     public String resolveFileId(String segId, int docId) {
@@ -64,34 +77,32 @@ public class ManifestStore {
         return ids.isEmpty()? null : ids.get(0);
     }
 
-    public void addTombstone(String segId, int docId) {
-        jdbc.update("MERGE INTO tombstones KEY(seg_id, doc_id) VALUES(?, ?)", segId, docId);
+    /**
+     * (segId, docId) deletes that versions before live docs recorded only here, by
+     * segment. Nothing writes them any more; startup folds them into live docs once.
+     */
+    public Map<String, List<Integer>> legacyTombstones() {
+        Map<String, List<Integer>> out = new HashMap<>();
+        jdbc.query("SELECT seg_id, doc_id FROM tombstones", rs -> {
+            out.computeIfAbsent(rs.getString(1), k -> new ArrayList<>()).add(rs.getInt(2));
+        });
+        return out;
     }
 
-    public boolean isTombstoned(String segId, int docId) {
-        Integer n = jdbc.queryForObject("SELECT COUNT(*) FROM tombstones WHERE seg_id=? AND doc_id=?", Integer.class, segId, docId);
-        return n != null && n > 0;
+    /** Drop legacy tombstones once their deletes are saved with the segments. */
+    public void clearLegacyTombstones() {
+        jdbc.update("DELETE FROM tombstones");
     }
 
-  public void addTombstoneByFileId(String fileId) {
-    jdbc.update("MERGE INTO file_tombstones (file_id) KEY(file_id) VALUES (?)", fileId);
-  }
-
-  public boolean isTombstonedFileId(String fileId) {
-    Integer n = jdbc.queryForObject(
-        "SELECT COUNT(*) FROM file_tombstones WHERE file_id = ?",
-        Integer.class, fileId
-    );
-    return n != null && n > 0;
-  }
+    /** A recorded index-wide setting, or null if none was recorded. */
+    public String setting(String name) {
+        List<String> vals = jdbc.queryForList("SELECT val FROM settings WHERE name = ?", String.class, name);
+        return vals.isEmpty() ? null : vals.get(0);
+    }
 
-  /** Map (segId, docId) -> fileId (idempotent). */
-  public void upsertDocmap(String segId, int docId, String fileId) {
-    jdbc.update(
-        "MERGE INTO docmap (seg_id, doc_id, file_id) KEY (seg_id, doc_id) VALUES (?,?,?)",
-        segId, docId, fileId
-    );
-  }
+    public void putSetting(String name, String value) {
+        jdbc.update("MERGE INTO settings (name, val) KEY(name) VALUES(?, ?)", name, value);
+    }
 
   /** Remove all (segId, *) rows after a merge removes that segment. */
   public void deleteDocmapBySegment(String segId) {
@@ -0,0 +1,243 @@
+package com.ksu.indexer.storage;
+
+import com.ksu.indexer.model.FileEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, checksummed log of ingest events. There is one log file per write
+ * buffer generation, named after the segment the buffer will be flushed to, so a log
+ * whose segment is already in the manifest is known to be stale.
+ *
+ * Record layout: [int payloadLen][int crc32(payload)][payload].
+ * Appends are buffered by the OS; {@link #sync(long)} makes them durable with group
+ * commit: one fsync covers every record appended before it started.
+ */
+public class WriteAheadLog implements AutoCloseable {
+    private static final String SUFFIX = ".wal";
+
+    private final Path dir;
+    private final Object syncLock = new Object();
+
+    // guarded by this
+    private FileChannel channel;
+    private String segId;
+    private long written = 0;   // logical sequence number: bytes appended across all generations
+
+    private volatile long synced = 0;
+
+    public WriteAheadLog(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+    }
+
+    /** Segment ids with a log on disk, oldest first. */
+    public List<String> pendingIds() throws IOException {
+        List<String> ids = new ArrayList<>();
+        try (var files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.endsWith(SUFFIX))
+                    .forEach(n -> ids.add(n.substring(0, n.length() - SUFFIX.length())));
+        }
+        ids.sort((a, b) -> Long.compare(generation(a), generation(b)));
+        return ids;
+    }
+
+    /**
+     * Read every intact record of a log. A torn or corrupt tail (a crash mid-append)
+     * ends the replay and is cut off, so later appends continue from a clean record.
+     */
+    public List<FileEvent> replay(String segId) throws IOException {
+        List<FileEvent> out = new ArrayList<>();
+        Path p = path(segId);
+        if (!Files.exists(p)) return out;
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            long pos = 0;
+            long size = ch.size();
+            while (pos + 8 <= size) {
+                header.clear();
+                if (readFully(ch, header, pos) < 8) break;
+                int len = header.getInt(0);
+                int crc = header.getInt(4);
+                if (len < 0 || pos + 8 + len > size) break;
+                ByteBuffer payload = ByteBuffer.allocate(len);
+                if (readFully(ch, payload, pos + 8) < len) break;
+                if (crc(payload.array()) != crc) break;
+                out.add(decode(payload.flip()));
+                pos += 8 + len;
+            }
+            if (pos < size) ch.truncate(pos);
+        }
+        return out;
+    }
+
+    /** Start (or continue) the log for a new buffer generation; the previous one is synced and closed. */
+    public void open(String segId) throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                closeChannel();
+                this.channel = FileChannel.open(path(segId),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                this.segId = segId;
+            }
+        }
+    }
+
+    /** Append one event and return its sequence number for {@link #sync(long)}. */
+    public synchronized long append(FileEvent e) throws IOException {
+        if (channel == null) throw new IllegalStateException("write-ahead log is not open");
+        byte[] payload = encode(e);
+        ByteBuffer buf = ByteBuffer.allocate(8 + payload.length);
+        buf.putInt(payload.length).putInt(crc(payload)).put(payload).flip();
+        while (buf.hasRemaining()) channel.write(buf);
+        written += buf.limit();
+        return written;
+    }
+
+    /**
+     * Block until everything up to {@code seqNo} is on stable storage. Callers that
+     * arrive while an fsync is in flight wait for it and usually find their record
+     * already covered, so concurrent ingests share a single fsync.
+     */
+    public void sync(long seqNo) throws IOException {
+        if (synced >= seqNo) return;
+        synchronized (syncLock) {
+            if (synced >= seqNo) return;
+            FileChannel ch;
+            long target;
+            synchronized (this) {
+                ch = channel;
+                target = written;
+            }
+            if (ch != null) ch.force(false);
+            synced = target;
+        }
+    }
+
+    /** Drop the log of a generation whose segment is durable and registered. */
+    public void delete(String segId) throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (segId.equals(this.segId)) closeChannel();
+            }
+        }
+        Files.deleteIfExists(path(segId));
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                closeChannel();
+            }
+        }
+    }
+
+    // caller holds syncLock and this
+    private void closeChannel() throws IOException {
+        if (channel == null) return;
+        channel.force(false);
+        channel.close();
+        channel = null;
+        segId = null;
+        synced = written;
+    }
+
+    private Path path(String segId) {
+        return dir.resolve(segId + SUFFIX);
+    }
+
+    private static long generation(String segId) {
+        int dash = segId.lastIndexOf('-');
+        try {
+            return Long.parseLong(segId.substring(dash + 1));
+        } catch (NumberFormatException ex) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static int readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        int total = 0;
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos + total);
+            if (n < 0) break;
+            total += n;
+        }
+        return total;
+    }
+
+    private static int crc(byte[] data) {
+        CRC32 c = new CRC32();
+        c.update(data);
+        return (int) c.getValue();
+    }
+
+    private static byte[] encode(FileEvent e) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeByte(e.getType() == null ? -1 : e.getType().ordinal());
+        writeString(out, e.getFileId());
+        writeString(out, e.getText());
+        Map<String, String> meta = e.getMetadata();
+        out.writeInt(meta == null ? -1 : meta.size());
+        if (meta != null) {
+            for (var m : meta.entrySet()) {
+                writeString(out, m.getKey());
+                writeString(out, m.getValue());
+            }
+        }
+        out.writeLong(e.getTs() == null ? Long.MIN_VALUE : e.getTs().toEpochMilli());
+        out.flush();
+        return baos.toByteArray();
+    }
+
+    private static FileEvent decode(ByteBuffer in) {
+        byte type = in.get();
+        FileEvent e = new FileEvent();
+        e.setType(type < 0 ? null : FileEvent.Type.values()[type]);
+        e.setFileId(readString(in));
+        e.setText(readString(in));
+        int metaSize = in.getInt();
+        if (metaSize >= 0) {
+            Map<String, String> meta = new LinkedHashMap<>();
+            for (int i = 0; i < metaSize; i++) meta.put(readString(in), readString(in));
+            e.setMetadata(meta);
+        }
+        long ts = in.getLong();
+        e.setTs(ts == Long.MIN_VALUE ? null : Instant.ofEpochMilli(ts));
+        return e;
+    }
+
+    // length-prefixed UTF-8; writeUTF would cap documents at 64 KB
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int len = in.getInt();
+        if (len < 0) return null;
+        String s = new String(in.array(), in.position(), len, StandardCharsets.UTF_8);
+        in.position(in.position() + len);
+        return s;
+    }
+}
@@ -1,42 +1,254 @@
-
 package com.ksu.indexer.structures;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.BitSet;
 
-public class BloomFilter {
-    private final BitSet bits;
-    private final int m;
+/**
+ * Bloom filter over term bytes, sized from the expected key count and a target false
+ * positive rate. One murmur3 x64 128-bit hash is computed per key and its two halves
+ * drive all probes (double hashing). The blocked variant keeps every probe of a key
+ * inside one 512-bit block, so a lookup touches a single cache line; blocks fill
+ * unevenly, so it takes a few more bits per key for the same false positive rate.
+ *
+ * Serialized form, read in place from a mapped buffer:
+ * <pre>
+ *   int blocked (0/1), int k, int words, words x long
+ * </pre>
+ */
+public final class BloomFilter {
+    private static final int BLOCK_WORDS = 8;  // 512 bits, one cache line
+    // keeps the bit count below 2^32, so probes map hashes to bits with multiply-shift
+    private static final int MAX_WORDS = (1 << 26) - BLOCK_WORDS;
+
+    /** Target false positive rate and variant used when a filter is built. */
+    public record Spec(double fpp, boolean blocked) {
+        public static final Spec DEFAULT = new Spec(0.01, true);
+    }
+
+    private final boolean blocked;
     private final int k;
+    private final int words;
+    private final long[] bits;      // heap form, or null
+    private final ByteBuffer buf;   // mapped form, or null
+    private final int dataStart;
 
-    public BloomFilter(int m, int k) {
-        this.m = m;
+    private BloomFilter(boolean blocked, int k, int words, long[] bits, ByteBuffer buf, int dataStart) {
+        this.blocked = blocked;
         this.k = k;
-        this.bits = new BitSet(m);
+        this.words = words;
+        this.bits = bits;
+        this.buf = buf;
+        this.dataStart = dataStart;
     }
 
-    private int hash(byte[] data, int seed) {
-        int h = seed;
-        for (byte b : data) {
-            h = h * 31 + b;
+    /** An empty filter for {@code expectedKeys} keys at {@code spec.fpp}. */
+    public static BloomFilter create(int expectedKeys, Spec spec) {
+        double fpp = Math.min(0.5, Math.max(1e-9, spec.fpp()));
+        long n = Math.max(1, expectedKeys);
+        double ln2 = Math.log(2);
+        double bitsPerKey = -Math.log(fpp) / (ln2 * ln2);
+        int k = (int) Math.max(1, Math.min(16, Math.round(bitsPerKey * ln2)));
+        if (spec.blocked()) {
+            // blocks fill unevenly, the more so the fewer keys each holds; grow until the modeled rate meets the target
+            while (bitsPerKey < 128 && blockedFpp(bitsPerKey, k) > fpp) {
+                bitsPerKey *= 1.05;
+                k = bestBlockedK(bitsPerKey);
+            }
         }
-        return (h & 0x7fffffff) % m;
+        long m = (long) Math.ceil(n * bitsPerKey);
+        int unit = spec.blocked() ? BLOCK_WORDS : 1;
+        long units = Math.max(1, (m + 64L * unit - 1) / (64L * unit));
+        int words = (int) Math.min(MAX_WORDS, units * unit);
+        return new BloomFilter(spec.blocked(), k, words, new long[words], null, 0);
     }
 
-    public void add(String s) {
-        byte[] data = s.getBytes(StandardCharsets.UTF_8);
-        for (int i = 0; i < k; i++) {
-            int idx = hash(data, 1337 + i * 101);
-            bits.set(idx);
+    // probe count with the lowest modeled blocked rate at this density
+    private static int bestBlockedK(double bitsPerKey) {
+        int best = 1;
+        for (int k = 2; k <= 16; k++) if (blockedFpp(bitsPerKey, k) < blockedFpp(bitsPerKey, best)) best = k;
+        return best;
+    }
+
+    /**
+     * False positive rate of the blocked variant: keys per block are Poisson distributed
+     * around the mean, and a block holding i keys answers yes with the classic rate of a
+     * 512-bit filter over i keys.
+     */
+    private static double blockedFpp(double bitsPerKey, int k) {
+        double bitsPerBlock = 64.0 * BLOCK_WORDS;
+        double lambda = bitsPerBlock / bitsPerKey;
+        double miss = Math.log1p(-1 / bitsPerBlock);
+        double rate = 0;
+        double p = Math.exp(-lambda);  // Poisson probability of i keys, updated in place
+        int last = (int) Math.ceil(lambda + 10 * Math.sqrt(lambda) + 10);
+        for (int i = 0; i <= last; i++) {
+            if (i > 0) p *= lambda / i;
+            rate += p * Math.pow(-Math.expm1((double) k * i * miss), k);
         }
+        return rate;
+    }
+
+    /** A filter serialized at {@code offset} of {@code buf}, read without copying. */
+    public static BloomFilter read(ByteBuffer buf, int offset) {
+        return new BloomFilter(buf.getInt(offset) != 0, buf.getInt(offset + 4), buf.getInt(offset + 8), null, buf, offset + 12);
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(blocked ? 1 : 0);
+        out.writeInt(k);
+        out.writeInt(words);
+        for (int i = 0; i < words; i++) out.writeLong(word(i));
+    }
+
+    public long sizeBytes() { return 12 + 8L * words; }
+
+    public void add(String key) {
+        byte[] b = key.getBytes(StandardCharsets.UTF_8);
+        add(b, b.length);
+    }
+
+    public void add(byte[] key, int len) {
+        murmur3(key, len, this, true, null);
+    }
+
+    /** Add a key by the two halves returned by {@link #hash}. */
+    public void addHash(long h1, long h2) {
+        if (bits == null) throw new IllegalStateException("mapped bloom filter is read-only");
+        if (blocked) {
+            int base = block(h1);
+            for (int i = 0; i < k; i++) {
+                int bit = bitInBlock(h1, h2, i);
+                bits[base + (bit >>> 6)] |= 1L << bit;
+            }
+        } else {
+            long bitCount = 64L * words;
+            for (int i = 0; i < k; i++) {
+                long bit = bit(h1 + i * h2, bitCount);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+    }
+
+    public boolean mightContain(String key) {
+        byte[] b = key.getBytes(StandardCharsets.UTF_8);
+        return mightContain(b, b.length);
+    }
+
+    public boolean mightContain(byte[] key, int len) {
+        return murmur3(key, len, this, false, null);
     }
 
-    public boolean mightContain(String s) {
-        byte[] data = s.getBytes(StandardCharsets.UTF_8);
+    private boolean mightContainHash(long h1, long h2) {
+        if (blocked) {
+            int base = block(h1);
+            for (int i = 0; i < k; i++) {
+                int bit = bitInBlock(h1, h2, i);
+                if ((word(base + (bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+        long bitCount = 64L * words;
         for (int i = 0; i < k; i++) {
-            int idx = hash(data, 1337 + i * 101);
-            if (!bits.get(idx)) return false;
+            long bit = bit(h1 + i * h2, bitCount);
+            if ((word((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
         }
         return true;
     }
+
+    /** The two 64-bit halves of the key's murmur3 x64 128-bit hash, for {@link #addHash}. */
+    public static long[] hash(byte[] key, int len) {
+        long[] out = new long[2];
+        murmur3(key, len, null, false, out);
+        return out;
+    }
+
+    private long word(int i) {
+        return bits != null ? bits[i] : buf.getLong(dataStart + 8 * i);
+    }
+
+    // high 32 bits of h scaled to [0, n) without a division; n < 2^32
+    private static long bit(long h, long n) {
+        return ((h >>> 32) * n) >>> 32;
+    }
+
+    // first word of the key's block, from the low half of h1
+    private int block(long h1) {
+        return (int) (((h1 & 0xffffffffL) * (words / BLOCK_WORDS)) >>> 32) * BLOCK_WORDS;
+    }
+
+    // the block is picked from the low bits of h1, so probes take high bits of the mix; the
+    // xor-shift and multiply spread each probe over all 9 bits, where a plain h2 + i * h1
+    // steps through the block in a progression that repeats bits across keys of a block
+    private static int bitInBlock(long h1, long h2, int i) {
+        long x = h2 + i * h1;
+        x ^= x >>> 31;
+        return (int) ((x * 0x9e3779b97f4a7c15L) >>> 55);
+    }
+
+    /*
+     * MurmurHash3 x64 128 (seed 0), computed once per key. The halves are handed
+     * straight to the probe loop of {@code filter} (add or test) as two longs, so a
+     * lookup allocates nothing; with {@code out} set they are stored there instead.
+     */
+    private static boolean murmur3(byte[] key, int len, BloomFilter filter, boolean add, long[] out) {
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
+        long h1 = 0;
+        long h2 = 0;
+        int blocks = len >>> 4;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = getLong(key, i << 4);
+            long k2 = getLong(key, (i << 4) + 8);
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+        }
+        int tail = blocks << 4;
+        long k1 = 0;
+        long k2 = 0;
+        int rem = len & 15;
+        if (rem > 8) {
+            for (int i = rem - 1; i >= 8; i--) k2 ^= (long) (key[tail + i] & 0xff) << ((i - 8) << 3);
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+        }
+        if (rem > 0) {
+            for (int i = Math.min(rem, 8) - 1; i >= 0; i--) k1 ^= (long) (key[tail + i] & 0xff) << (i << 3);
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+        }
+        h1 ^= len;
+        h2 ^= len;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        if (out != null) {
+            out[0] = h1;
+            out[1] = h2;
+            return true;
+        }
+        if (add) {
+            filter.addHash(h1, h2);
+            return true;
+        }
+        return filter.mightContainHash(h1, h2);
+    }
+
+    private static long getLong(byte[] b, int i) {
+        return (b[i] & 0xffL) | (b[i + 1] & 0xffL) << 8 | (b[i + 2] & 0xffL) << 16 | (b[i + 3] & 0xffL) << 24
+                | (b[i + 4] & 0xffL) << 32 | (b[i + 5] & 0xffL) << 40 | (b[i + 6] & 0xffL) << 48 | (b[i + 7] & 0xffL) << 56;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb53a9ded5323L;
+        k ^= k >>> 33;
+        return k;
+    }
 }
@@ -2,6 +2,7 @@
 package com.ksu.indexer.web;
 
 import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.core.SegmentStats;
 import com.ksu.indexer.model.FileEvent;
 import com.ksu.indexer.service.IndexService;
 import java.util.ArrayList;
@@ -28,10 +29,21 @@ public class DebugController {
     public List<Map<String,Object>> segments() {
         List<Map<String,Object>> out = new ArrayList<>();
         for (IndexSegment s : indexService.currentSegments()) {
+            SegmentStats st = s.stats();
             Map<String,Object> row = new LinkedHashMap<>();
             row.put("segId", s.id());
-            row.put("sizeBytesEstimate", s.sizeBytesEstimate());
+            row.put("mapped", s.isMapped());
+            // file size of mapped segments; null for the write buffer
+            row.put("sizeBytes", st.sizeBytes < 0 ? null : st.sizeBytes);
+            row.put("docCount", st.docCount);
+            row.put("liveDocCount", st.liveDocCount);
             row.put("deletedRatio", s.deletedRatio());
+            row.put("termCount", st.termCount);
+            row.put("avgDocLength", st.avgDocLength());
+            row.put("minTerm", st.minTerm);
+            row.put("maxTerm", st.maxTerm);
+            row.put("minTimestamp", st.minTimestamp);
+            row.put("maxTimestamp", st.maxTimestamp);
             out.add(row);
         }
         return out;
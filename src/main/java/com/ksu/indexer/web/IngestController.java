@@ -2,7 +2,10 @@
 package com.ksu.indexer.web;
 
 import com.ksu.indexer.model.FileEvent;
+import com.ksu.indexer.service.BulkIngestService;
 import com.ksu.indexer.service.IndexService;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.Map;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -10,9 +13,11 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/api/ingest")
 public class IngestController {
     private final IndexService indexService;
+    private final BulkIngestService bulkIngestService;
 
-    public IngestController(IndexService indexService) {
+    public IngestController(IndexService indexService, BulkIngestService bulkIngestService) {
         this.indexService = indexService;
+        this.bulkIngestService = bulkIngestService;
     }
 
     @PostMapping
@@ -21,6 +26,13 @@ public class IngestController {
         return ResponseEntity.accepted().build();
     }
 
+    /** Newline-delimited FileEvent JSON, streamed; responds with a per-batch summary. */
+    @PostMapping(value = "/bulk", consumes = {"application/x-ndjson", "application/json", "text/plain"})
+    public ResponseEntity<Map<String, Object>> bulk(HttpServletRequest request,
+                                                    @RequestParam(defaultValue = "500") int batchSize) throws Exception {
+        return ResponseEntity.ok(bulkIngestService.ingestNdjson(request.getInputStream(), batchSize));
+    }
+
     @PostMapping("/merge/dp")
     public ResponseEntity<?> mergeDP(@RequestParam(defaultValue = "50000") int budgetBytes) throws Exception {
         int merged = indexService.mergeWithDPBudget(budgetBytes);
@@ -1,28 +1,61 @@
 
 package com.ksu.indexer.web;
 
+import com.ksu.indexer.query.Operator;
 import com.ksu.indexer.service.SearchService;
 import java.util.List;
 import java.util.Map;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 @RestController
 @RequestMapping("/api/search")
 public class SearchController {
+    // most hits one request may ask for; k sizes the per-slice top-k heaps
+    static final int MAX_K = 1000;
+
     private final SearchService searchService;
     public SearchController(SearchService searchService) {
         this.searchService = searchService;
     }
 
   @GetMapping
-  public List<String> search(@RequestParam String q) {
-    return searchService.searchFileIdsLegacy(q); // change to strings
+  public List<String> search(@RequestParam String q, @RequestParam(defaultValue = "10") int k,
+                             @RequestParam(defaultValue = "AND") Operator op,
+                             @RequestParam(defaultValue = "0") int slop) {
+    return searchService.searchFileIdsLegacy(q, checkK(k), op, slop); // change to strings
   }
     @GetMapping("/v2")
-    public List<Map<String,Object>> searchV2(@RequestParam String q) {
-        return searchService.searchV2(q);
+    public List<Map<String,Object>> searchV2(@RequestParam String q, @RequestParam(defaultValue = "10") int k,
+                                             @RequestParam(defaultValue = "AND") Operator op,
+                                             @RequestParam(defaultValue = "0") int slop) {
+        return searchService.searchV2(q, checkK(k), op, slop);
+    }
+
+    private static int checkK(int k) {
+        if (k < 1 || k > MAX_K) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "k must be between 1 and " + MAX_K + ": " + k);
+        }
+        return k;
+    }
+
+    /** The plan {@code q} would run with: strategy, parsed query, per-clause cost and evaluation. */
+    @GetMapping("/explain")
+    public Map<String,Object> explain(@RequestParam String q,
+                                      @RequestParam(defaultValue = "AND") Operator op,
+                                      @RequestParam(defaultValue = "0") int slop) {
+        return searchService.explain(q, op, slop);
+    }
+
+    /** Malformed queries (unbalanced parentheses, too many fuzzy edits, negative slop) are the caller's error. */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ProblemDetail badQuery(IllegalArgumentException ex) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, ex.getMessage());
     }
 }
@@ -0,0 +1,126 @@
+package com.ksu.indexer.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class BlockPostingsCodecTest {
+    private static final int B = BlockPostingsCodec.BLOCK_SIZE;
+
+    // strictly ascending ids from 0 up, mostly dense with the odd long jump
+    private static int[] docs(Random rnd, int n) {
+        int[] docs = new int[n];
+        int d = rnd.nextBoolean() ? 0 : rnd.nextInt(50);
+        for (int i = 0; i < n; i++) {
+            docs[i] = d;
+            d += 1 + (rnd.nextInt(10) == 0 ? rnd.nextInt(100_000) : rnd.nextInt(4));
+        }
+        return docs;
+    }
+
+    private static int[] between(Random rnd, int n, int lo, int hi) {
+        int[] out = new int[n];
+        for (int i = 0; i < n; i++) out[i] = lo + rnd.nextInt(hi - lo + 1);
+        return out;
+    }
+
+    // offset the list so absolute offsets are exercised, as inside a segment file
+    private static BlockPostingsCodec.Reader reader(byte[] enc, boolean freqs, boolean impacts) {
+        ByteBuffer buf = ByteBuffer.allocate(enc.length + 7);
+        buf.position(7);
+        buf.put(enc);
+        return new BlockPostingsCodec.Reader(buf, 7, freqs, impacts);
+    }
+
+    @Test
+    void roundTripsAroundBlockBoundaries() {
+        Random rnd = new Random(4);
+        for (int n : new int[]{0, 1, B - 1, B, B + 1, 2 * B, 5 * B + 17}) {
+            int[] docs = docs(rnd, n);
+            int[] freqs = between(rnd, n, 1, 40);
+            int[] lengths = between(rnd, n, 1, 500);
+
+            BlockPostingsCodec.Reader plain = reader(BlockPostingsCodec.encode(docs, n), false, false);
+            BlockPostingsCodec.Reader full = reader(BlockPostingsCodec.encode(docs, freqs, lengths, n), true, true);
+            assertEquals(n, plain.size());
+            assertEquals(n, full.size());
+            for (int i = 0; i < n; i++) {
+                assertEquals(docs[i], plain.nextDoc(), "n=" + n + " i=" + i);
+                assertEquals(1, plain.freq());
+                assertEquals(docs[i], full.nextDoc(), "n=" + n + " i=" + i);
+                assertEquals(i, full.index());
+                assertEquals(freqs[i], full.freq(), "n=" + n + " i=" + i);
+            }
+            assertEquals(BlockPostingsCodec.NO_MORE_DOCS, plain.nextDoc());
+            assertEquals(BlockPostingsCodec.NO_MORE_DOCS, full.nextDoc());
+        }
+    }
+
+    @Test
+    void advanceMatchesALinearScanAcrossBlocks() {
+        Random rnd = new Random(5);
+        int n = 7 * B + 40;
+        int[] docs = docs(rnd, n);
+        int[] freqs = between(rnd, n, 1, 9);
+        byte[] enc = BlockPostingsCodec.encode(docs, freqs, n);
+        for (int round = 0; round < 200; round++) {
+            BlockPostingsCodec.Reader r = reader(enc, true, false);
+            int target = -1;
+            while (true) {
+                // block ends, the doc right after them, and random jumps of any length
+                int pick = rnd.nextInt(4);
+                int b = rnd.nextInt(n / B + 1) * B - 1;
+                if (pick == 0 && b >= 0 && docs[b] > target) target = docs[b];
+                else if (pick == 1 && b >= 0 && docs[b] >= target) target = docs[b] + 1;
+                else target += 1 + rnd.nextInt(rnd.nextBoolean() ? 5 : 50_000);
+                int expect = Arrays.binarySearch(docs, target);
+                if (expect < 0) expect = -expect - 1;
+                int got = r.advance(target);
+                if (expect == n) {
+                    assertEquals(BlockPostingsCodec.NO_MORE_DOCS, got, "target " + target);
+                    break;
+                }
+                assertEquals(docs[expect], got, "target " + target);
+                assertEquals(freqs[expect], r.freq(), "freq at " + got);
+                // a target at or before the current doc stays put
+                assertEquals(got, r.advance(target - 1));
+                if (rnd.nextBoolean()) {
+                    int next = r.nextDoc();
+                    assertEquals(expect + 1 < n ? docs[expect + 1] : BlockPostingsCodec.NO_MORE_DOCS, next);
+                    if (next == BlockPostingsCodec.NO_MORE_DOCS) break;
+                    target = next;
+                }
+            }
+        }
+    }
+
+    @Test
+    void impactsBoundEveryBlock() {
+        Random rnd = new Random(6);
+        int n = 3 * B + 50;
+        int[] docs = docs(rnd, n);
+        int[] freqs = between(rnd, n, 1, 30);
+        int[] lengths = between(rnd, n, 5, 400);
+        BlockPostingsCodec.Reader r = reader(BlockPostingsCodec.encode(docs, freqs, lengths, n), true, true);
+        assertEquals(Arrays.stream(freqs).max().getAsInt(), r.maxFreq());
+        assertEquals(Arrays.stream(lengths).min().getAsInt(), r.minLength());
+
+        for (int start = 0; start < n; start += B) {
+            int end = Math.min(n, start + B);
+            int last = r.shallowAdvance(docs[start]);
+            assertEquals(end == n && end - start < B ? BlockPostingsCodec.NO_MORE_DOCS : docs[end - 1], last);
+            int maxFreq = 0;
+            int minLength = Integer.MAX_VALUE;
+            for (int i = start; i < end; i++) {
+                maxFreq = Math.max(maxFreq, freqs[i]);
+                minLength = Math.min(minLength, lengths[i]);
+            }
+            assertEquals(maxFreq, r.blockMaxFreq(), "block at " + start);
+            assertEquals(minLength, r.blockMinLength(), "block at " + start);
+        }
+        assertEquals(-1, r.docID(), "shallowAdvance never moves the cursor");
+    }
+}
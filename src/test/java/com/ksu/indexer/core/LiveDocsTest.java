@@ -0,0 +1,98 @@
+package com.ksu.indexer.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LiveDocsTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void deleteIsCopyOnWrite() {
+        LiveDocs none = LiveDocs.NONE;
+        LiveDocs one = none.delete(3);
+        assertTrue(none.isLive(3));
+        assertTrue(one.isDeleted(3));
+        assertEquals(1, one.generation());
+        assertSame(one, one.delete(3), "deleting a deleted doc keeps the generation");
+        LiveDocs two = one.delete(3, 5, 5);
+        assertEquals(2, two.generation());
+        assertEquals(2, two.deletedCount());
+        assertArrayEquals(new int[]{5}, two.deletedSince(one));
+    }
+
+    @Test
+    void segmentDeletesBetweenReadsShareOneGeneration() {
+        IndexSegment seg = new IndexSegment(dir, "seg");
+        for (int i = 0; i < 5; i++) seg.addDoc(List.of("t"), "f" + i);
+        LiveDocs pinned = seg.liveDocs();
+        seg.deleteDoc(1);
+        seg.deleteDoc(2);
+        seg.deleteDoc(2, 3);
+        assertTrue(pinned.isLive(1), "a pinned generation never sees later deletes");
+        LiveDocs next = seg.liveDocs();
+        assertEquals(pinned.generation() + 1, next.generation());
+        assertArrayEquals(new int[]{1, 2, 3}, next.deletedSince(pinned));
+        assertSame(next, seg.liveDocs(), "no deletes, no new generation");
+    }
+
+    @Test
+    void newestSidecarWinsAndOlderOnesAreDropped() throws IOException {
+        LiveDocs one = LiveDocs.NONE.delete(1);
+        LiveDocs two = one.delete(7);
+        one.write(dir, "delta-1");
+        two.write(dir, "delta-1");
+        // a segment whose id extends this one must not be mistaken for it
+        LiveDocs.NONE.delete(2).delete(4).delete(6).write(dir, "delta-10");
+
+        assertEquals(List.of("delta-10_3.liv", "delta-1_2.liv"), sidecarNames());
+        LiveDocs read = LiveDocs.readLatest(dir, "delta-1", LiveDocs.NONE);
+        assertEquals(2, read.generation());
+        assertTrue(read.isDeleted(1) && read.isDeleted(7));
+        assertEquals(2, read.deletedCount());
+
+        LiveDocs.deleteAll(dir, "delta-1");
+        assertEquals(List.of("delta-10_3.liv"), sidecarNames());
+        assertSame(LiveDocs.NONE, LiveDocs.readLatest(dir, "delta-1", LiveDocs.NONE));
+    }
+
+    @Test
+    void segmentDeletesSurviveReloadThroughSidecars() throws IOException {
+        IndexSegment heap = new IndexSegment(dir, "seg");
+        for (int i = 0; i < 5; i++) heap.addDoc(List.of("t"), "f" + i);
+        heap.persist();
+        IndexSegment seg = IndexSegment.load(dir, "seg");
+        assertFalse(seg.saveLiveDocs(), "nothing to save before a delete");
+
+        seg.deleteDoc(2, 4);
+        assertTrue(seg.saveLiveDocs());
+        assertFalse(seg.saveLiveDocs(), "a saved generation is not written twice");
+
+        IndexSegment reloaded = IndexSegment.load(dir, "seg");
+        assertEquals(2, reloaded.liveDocs().deletedCount());
+        assertTrue(reloaded.liveDocs().isDeleted(2) && reloaded.liveDocs().isDeleted(4));
+        PostingsIterator it = reloaded.postings("t", reloaded.liveDocs());
+        int live = 0;
+        for (int d = it.nextDoc(); d != PostingsIterator.NO_MORE_DOCS; d = it.nextDoc()) {
+            assertTrue(reloaded.liveDocs().isLive(d));
+            live++;
+        }
+        assertEquals(3, live);
+    }
+
+    private List<String> sidecarNames() throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).filter(n -> n.endsWith(".liv")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.ksu.indexer.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PrimaryKeyIndexTest {
+
+    @Test
+    void putReplacesTheHead() {
+        PrimaryKeyIndex heads = new PrimaryKeyIndex();
+        heads.put("a.txt", "delta-1", 3);
+        heads.put("a.txt", "delta-2", 1);
+        assertEquals(1, heads.size());
+        assertEquals("delta-2", heads.segment("a.txt"));
+        assertEquals(1, heads.doc("a.txt"));
+        assertNull(heads.segment("b.txt"));
+        assertEquals(-1, heads.doc("b.txt"));
+    }
+
+    @Test
+    void matchesAHashMapThroughGrowthAndRemovals() {
+        PrimaryKeyIndex heads = new PrimaryKeyIndex();
+        Map<String, Integer> expected = new HashMap<>();
+        Random r = new Random(13);
+        for (int i = 0; i < 200_000; i++) {
+            // a small key space keeps probe runs long, so removals shift entries back often
+            String key = "f" + r.nextInt(5_000);
+            if (r.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, heads.remove(key), key);
+            } else {
+                heads.put(key, "seg-" + (i % 7), i);
+                expected.put(key, i);
+            }
+        }
+        assertEquals(expected.size(), heads.size());
+        for (int k = 0; k < 5_000; k++) {
+            String key = "f" + k;
+            Integer doc = expected.get(key);
+            if (doc == null) {
+                assertNull(heads.segment(key), key);
+            } else {
+                assertEquals(doc, heads.doc(key), key);
+                assertEquals("seg-" + (doc % 7), heads.segment(key), key);
+            }
+        }
+    }
+
+    @Test
+    void removeOfAMissingKeyChangesNothing() {
+        PrimaryKeyIndex heads = new PrimaryKeyIndex(1_000);
+        heads.put("a", "s", 1);
+        assertFalse(heads.remove("b"));
+        assertTrue(heads.remove("a"));
+        assertEquals(0, heads.size());
+        assertNull(heads.segment("a"));
+    }
+}
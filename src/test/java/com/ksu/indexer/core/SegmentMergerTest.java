@@ -0,0 +1,113 @@
+package com.ksu.indexer.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SegmentMergerTest {
+    private static final List<String> VOCAB = List.of(
+            "alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta", "iota", "kappa", "lambda", "mu");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mergedDocsKeepTheirPostingsPositionsAndStoredFields() throws IOException {
+        Random rnd = new Random(42);
+        List<IndexSegment> parts = new ArrayList<>();
+        for (int s = 0; s < 3; s++) {
+            IndexSegment heap = new IndexSegment(dir, "delta-" + s);
+            for (int d = 0; d < 150; d++) {
+                List<String> words = new ArrayList<>();
+                int len = 1 + rnd.nextInt(30);
+                for (int i = 0; i < len; i++) words.add(VOCAB.get(rnd.nextInt(rnd.nextBoolean() ? 3 : VOCAB.size())));
+                heap.addDoc(words, "s" + s + "/d" + d);
+            }
+            IndexSegment seg = s == 2 ? heap : persisted(heap);
+            for (int d = 0; d <= seg.maxDocId(); d++) if (rnd.nextInt(5) == 0) seg.deleteDoc(d);
+            parts.add(seg);
+        }
+
+        IndexSegment.MergedResult result = IndexSegment.mergeWithRemap(dir, "merge-1", parts);
+        IndexSegment merged = result.segment;
+        Map<String, IndexSegment> byId = new HashMap<>();
+        for (IndexSegment p : parts) byId.put(p.id(), p);
+
+        int live = 0;
+        for (IndexSegment p : parts) {
+            for (int d = 0; d <= p.maxDocId(); d++) if (p.fileId(d) != null && p.liveDocs().isLive(d)) live++;
+        }
+        assertEquals(live, result.remap.size());
+        for (int nd = 0; nd < result.remap.size(); nd++) {
+            IndexSegment.DocPointer src = result.remap.get(nd);
+            IndexSegment p = byId.get(src.segId);
+            assertTrue(p.liveDocs().isLive(src.docId));
+            assertEquals(p.fileId(src.docId), merged.fileId(nd));
+            assertEquals(p.docLength(src.docId), merged.docLength(nd));
+        }
+
+        TreeSet<String> liveTerms = new TreeSet<>();
+        for (String term : VOCAB) {
+            Map<String, List<Integer>> expected = new HashMap<>();
+            for (IndexSegment p : parts) {
+                read(p.positions(term, p.liveDocs())).forEach((d, v) -> expected.put(p.id() + "/" + d, v));
+            }
+            Map<String, List<Integer>> actual = new HashMap<>();
+            read(merged.rawPositions(term)).forEach((nd, v) -> {
+                IndexSegment.DocPointer src = result.remap.get(nd);
+                actual.put(src.segId + "/" + src.docId, v);
+            });
+            assertEquals(expected, actual, term);
+            for (List<Integer> v : expected.values()) assertTrue(v.subList(1, v.size()).stream().allMatch(pos -> pos >= 0), term);
+            assertEquals(expected.size(), merged.docFreq(term), term);
+            if (!expected.isEmpty()) liveTerms.add(term);
+        }
+        TreeSet<String> mergedTerms = new TreeSet<>();
+        merged.terms().forEach(mergedTerms::add);
+        assertEquals(liveTerms, mergedTerms);
+    }
+
+    @Test
+    void deletedDocsAndTheirTermsAreDropped() throws IOException {
+        IndexSegment a = new IndexSegment(dir, "delta-1");
+        int gone = a.addDoc(List.of("only", "here"), "a.txt");
+        a.addDoc(List.of("here", "too"), "b.txt");
+        a = persisted(a);
+        a.deleteDoc(gone);
+
+        IndexSegment.MergedResult result = IndexSegment.mergeWithRemap(dir, "merge-1", List.of(a));
+        IndexSegment merged = result.segment;
+        assertEquals(1, result.remap.size());
+        assertEquals("b.txt", merged.fileId(0));
+        assertEquals(0, merged.docFreq("only"));
+        assertEquals(1, merged.docFreq("here"));
+        assertEquals(0, merged.liveDocs().deletedCount());
+    }
+
+    private IndexSegment persisted(IndexSegment heap) throws IOException {
+        heap.persist();
+        return IndexSegment.load(dir, heap.id());
+    }
+
+    // doc -> [freq, positions...]
+    private static Map<Integer, List<Integer>> read(PostingsIterator it) {
+        Map<Integer, List<Integer>> out = new HashMap<>();
+        for (int d = it.nextDoc(); d != PostingsIterator.NO_MORE_DOCS; d = it.nextDoc()) {
+            List<Integer> v = new ArrayList<>();
+            v.add(it.freq());
+            for (int i = 0; i < it.freq(); i++) v.add(it.nextPosition());
+            out.put(d, v);
+        }
+        return out;
+    }
+}
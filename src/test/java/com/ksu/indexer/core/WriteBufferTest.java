@@ -0,0 +1,84 @@
+package com.ksu.indexer.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ksu.indexer.analysis.Analyzer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WriteBufferTest {
+    @TempDir
+    Path dir;
+
+    private final Analyzer analyzer = Analyzer.standard();
+
+    private int add(WriteBuffer buffer, String text, String fileId) {
+        return buffer.add(analyzer.tokenStream(text), fileId, Instant.EPOCH);
+    }
+
+    private static int[] live(IndexSegment view, String term) {
+        return PostingsIterator.toArray(view.postings(term, view.liveDocs()));
+    }
+
+    @Test
+    void viewsAreFrozenAndRefreshedOnTheFirstReadAfterAWrite() {
+        WriteBuffer buffer = new WriteBuffer(dir, "buf-1");
+        int a = add(buffer, "alpha beta", "a.txt");
+        IndexSegment first = buffer.searchable();
+        assertSame(first, buffer.searchable(), "no write, same view");
+
+        int b = add(buffer, "alpha", "b.txt");
+        buffer.tombstone("buf-1", a);
+        IndexSegment second = buffer.searchable();
+        assertNotSame(first, second);
+        assertArrayEquals(new int[]{a}, live(first, "alpha"), "a view never sees later writes");
+        assertArrayEquals(new int[]{b}, live(second, "alpha"));
+        assertArrayEquals(new int[0], live(second, "beta"));
+        assertEquals(b, second.maxDocId());
+    }
+
+    @Test
+    void docmapKeepsOnlyDocsWithFileIds() {
+        WriteBuffer buffer = new WriteBuffer(dir, "buf-1");
+        int a = add(buffer, "alpha", "a.txt");
+        add(buffer, "beta", null);
+        int c = add(buffer, "gamma", "c.txt");
+        assertEquals(Map.of(a, "a.txt", c, "c.txt"), buffer.docmap());
+        assertEquals(3, buffer.docCount());
+        assertSame(buffer.seal(), buffer.seal());
+        assertEquals("c.txt", buffer.seal().fileId(c));
+    }
+
+    @Test
+    void aTombstoneOfAnotherSegmentIsPendingWithoutDocs() {
+        WriteBuffer buffer = new WriteBuffer(dir, "buf-2");
+        assertFalse(buffer.hasPending());
+        assertFalse(buffer.shouldFlush(1, 1, 0), "nothing to flush however low the thresholds");
+
+        buffer.tombstone("delta-1", 4);
+        assertTrue(buffer.isEmpty());
+        assertTrue(buffer.hasPending());
+        assertEquals(0, buffer.searchable().maxDocId());
+    }
+
+    @Test
+    void flushesOnDocsBytesOrAge() {
+        WriteBuffer buffer = new WriteBuffer(dir, "buf-1");
+        add(buffer, "alpha beta gamma", "a.txt");
+        add(buffer, "delta", "b.txt");
+        long hour = 3_600_000L;
+        assertFalse(buffer.shouldFlush(3, Long.MAX_VALUE, hour));
+        assertTrue(buffer.shouldFlush(2, Long.MAX_VALUE, hour));
+        assertTrue(buffer.shouldFlush(3, buffer.sizeBytes(), hour));
+        assertFalse(buffer.shouldFlush(3, buffer.sizeBytes() + 1, hour));
+        assertTrue(buffer.shouldFlush(3, Long.MAX_VALUE, 0), "aged since the first event");
+    }
+}
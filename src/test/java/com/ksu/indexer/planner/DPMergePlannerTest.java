@@ -0,0 +1,80 @@
+package com.ksu.indexer.planner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class DPMergePlannerTest {
+
+    @Test
+    void exactWhileTheTableFits() {
+        Random rnd = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            int n = 1 + rnd.nextInt(10);
+            int[] cost = new int[n];
+            int[] benefit = new int[n];
+            for (int i = 0; i < n; i++) {
+                cost[i] = 1 + rnd.nextInt(50);
+                benefit[i] = rnd.nextInt(100);
+            }
+            int budget = rnd.nextInt(200);
+            boolean[] take = DPMergePlanner.select(cost, benefit, budget, DPMergePlanner.DEFAULT_MAX_CELLS);
+            assertTrue(weight(cost, take) <= budget);
+            assertEquals(bruteForce(cost, benefit, budget), DPMergePlanner.total(benefit, take));
+        }
+    }
+
+    @Test
+    void scaledPlansStayWithinBudgetAndNearTheOptimum() {
+        Random rnd = new Random(11);
+        for (int round = 0; round < 200; round++) {
+            int n = 1 + rnd.nextInt(10);
+            int[] cost = new int[n];
+            int[] benefit = new int[n];
+            for (int i = 0; i < n; i++) {
+                cost[i] = 1 + rnd.nextInt(1000);
+                benefit[i] = rnd.nextInt(1000);
+            }
+            int budget = rnd.nextInt(3000);
+            boolean[] take = DPMergePlanner.select(cost, benefit, budget, 64);
+            assertTrue(weight(cost, take) <= budget);
+            assertTrue(2 * DPMergePlanner.total(benefit, take) >= bruteForce(cost, benefit, budget));
+        }
+    }
+
+    @Test
+    void hugeBudgetWithFewSegmentsKeepsTheRowBounded() {
+        int[] cost = {1_500_000_000, 400_000_000, 300_000_000};
+        int[] benefit = {10, 6, 5};
+        // n * (budget + 1) fits the cells cap, but one row of budget + 1 longs would not fit the heap
+        boolean[] take = DPMergePlanner.select(cost, benefit, Integer.MAX_VALUE - 1, Long.MAX_VALUE);
+        assertTrue(weight(cost, take) <= Integer.MAX_VALUE - 1);
+        assertEquals(16, DPMergePlanner.total(benefit, take));
+    }
+
+    private static long weight(int[] cost, boolean[] take) {
+        long sum = 0;
+        for (int i = 0; i < take.length; i++) {
+            if (take[i]) sum += cost[i];
+        }
+        return sum;
+    }
+
+    private static long bruteForce(int[] cost, int[] benefit, int budget) {
+        long best = 0;
+        for (int mask = 0; mask < 1 << cost.length; mask++) {
+            long c = 0;
+            long b = 0;
+            for (int i = 0; i < cost.length; i++) {
+                if ((mask & 1 << i) != 0) {
+                    c += cost[i];
+                    b += benefit[i];
+                }
+            }
+            if (c <= budget) best = Math.max(best, b);
+        }
+        return best;
+    }
+}
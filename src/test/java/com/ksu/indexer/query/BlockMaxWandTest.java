@@ -0,0 +1,111 @@
+package com.ksu.indexer.query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.core.LiveDocs;
+import com.ksu.indexer.core.PostingsIterator;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Block-Max WAND against scoring every doc of the same mapped segments. */
+class BlockMaxWandTest {
+    private static final List<List<String>> QUERIES = List.of(
+            List.of("common"), List.of("common", "mid"), List.of("mid", "rare"),
+            List.of("common", "mid", "rare"), List.of("rare", "absent"), List.of("common", "common2", "mid", "rare"));
+
+    @TempDir
+    Path dir;
+
+    private final BM25Similarity similarity = new BM25Similarity();
+
+    // several blocks per frequent term, with freqs and lengths spread so block bounds differ
+    private IndexSegment segment(String id, Random rnd) throws IOException {
+        IndexSegment heap = new IndexSegment(dir, id);
+        for (int d = 0; d < 1500; d++) {
+            List<String> words = new ArrayList<>();
+            if (rnd.nextInt(10) < 8) repeat(words, "common", 1 + rnd.nextInt(rnd.nextInt(20) == 0 ? 12 : 3));
+            if (rnd.nextInt(10) < 5) repeat(words, "common2", 1 + rnd.nextInt(3));
+            if (rnd.nextInt(10) < 2) repeat(words, "mid", 1 + rnd.nextInt(5));
+            if (rnd.nextInt(100) < 3) repeat(words, "rare", 1 + rnd.nextInt(3));
+            repeat(words, "filler", rnd.nextInt(rnd.nextInt(8) == 0 ? 200 : 20));
+            heap.addDoc(words, "f" + d);
+        }
+        for (int d = 1; d <= heap.maxDocId(); d++) if (rnd.nextInt(7) == 0) heap.deleteDoc(d);
+        heap.persist();
+        return IndexSegment.load(dir, id);
+    }
+
+    private static void repeat(List<String> words, String w, int n) {
+        for (int i = 0; i < n; i++) words.add(w);
+    }
+
+    @Test
+    void matchesExhaustiveScoringAcrossSegments() throws IOException {
+        Random rnd = new Random(10);
+        List<IndexSegment> segs = List.of(segment("a", rnd), segment("b", rnd), segment("c", rnd));
+        for (List<String> terms : QUERIES) {
+            CollectionStats stats = CollectionStats.of(segs, terms);
+            float[] idf = new float[terms.size()];
+            for (int i = 0; i < idf.length; i++) idf[i] = similarity.idf(stats.docFreq(terms.get(i)), stats.docCount);
+            for (int k : new int[]{1, 10, 100, 5000}) {
+                TopKCollector wand = new TopKCollector(k);
+                TopKCollector all = new TopKCollector(k);
+                BlockMaxWand bmw = new BlockMaxWand(similarity, stats.avgDocLength());
+                for (int s = 0; s < segs.size(); s++) {
+                    IndexSegment seg = segs.get(s);
+                    LiveDocs live = seg.liveDocs();
+                    PostingsIterator[] its = new PostingsIterator[terms.size()];
+                    for (int i = 0; i < its.length; i++) {
+                        PostingsIterator it = seg.postings(terms.get(i), live);
+                        its[i] = it.cost() == 0 ? null : it;
+                    }
+                    bmw.collect(seg, s, its, idf, wand);
+                    exhaustive(seg, s, live, terms, idf, stats.avgDocLength(), all);
+                }
+                List<TopKCollector.ScoreDoc> expected = all.drain();
+                List<TopKCollector.ScoreDoc> got = wand.drain();
+                Map<Long, Float> truth = new HashMap<>();
+                for (TopKCollector.ScoreDoc h : expected) truth.put(key(h), h.score);
+                String what = terms + " k=" + k;
+                assertEquals(expected.size(), got.size(), what);
+                // summing in cursor order may swap ties by an ulp, so ranks are compared by score
+                for (int i = 0; i < got.size(); i++) {
+                    TopKCollector.ScoreDoc h = got.get(i);
+                    assertEquals(expected.get(i).score, h.score, 1e-4f, what + " rank " + i);
+                    Float exact = truth.get(key(h));
+                    if (exact != null) assertEquals(exact, h.score, 1e-4f, what + " doc " + h.doc);
+                    else assertEquals(expected.get(expected.size() - 1).score, h.score, 1e-4f, what + " doc " + h.doc);
+                }
+            }
+        }
+    }
+
+    private static long key(TopKCollector.ScoreDoc h) {
+        return (long) h.seg << 32 | h.doc;
+    }
+
+    // every live doc of the segment scored in full, terms in query order
+    private void exhaustive(IndexSegment seg, int ord, LiveDocs live, List<String> terms, float[] idf,
+                            float avgDocLength, TopKCollector top) {
+        float[] scores = new float[seg.maxDocId() + 1];
+        boolean[] hit = new boolean[scores.length];
+        for (int i = 0; i < terms.size(); i++) {
+            PostingsIterator it = seg.rawPostings(terms.get(i));
+            for (int d = it.nextDoc(); d != PostingsIterator.NO_MORE_DOCS; d = it.nextDoc()) {
+                scores[d] += similarity.score(idf[i], it.freq(), seg.docLength(d), avgDocLength);
+                hit[d] = true;
+            }
+        }
+        for (int d = 0; d < scores.length; d++) {
+            if (hit[d] && live.isLive(d)) top.collect(ord, d, scores[d]);
+        }
+    }
+}
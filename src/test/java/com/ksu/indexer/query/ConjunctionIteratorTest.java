@@ -0,0 +1,121 @@
+package com.ksu.indexer.query;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ksu.indexer.core.PostingsIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class ConjunctionIteratorTest {
+    // sorted doc ids in [0, bound), each kept with probability p
+    private static int[] docs(Random rnd, int bound, double p) {
+        return IntStream.range(0, bound).filter(d -> rnd.nextDouble() < p).toArray();
+    }
+
+    private static int[] intersect(List<int[]> lists) {
+        IntStream docs = Arrays.stream(lists.get(0));
+        for (int[] l : lists.subList(1, lists.size())) docs = docs.filter(d -> Arrays.binarySearch(l, d) >= 0);
+        return docs.toArray();
+    }
+
+    @Test
+    void matchesTheSetIntersection() {
+        Random rnd = new Random(8);
+        for (int round = 0; round < 200; round++) {
+            List<int[]> lists = new ArrayList<>();
+            int n = 2 + rnd.nextInt(4);
+            for (int i = 0; i < n; i++) lists.add(docs(rnd, 2000, 0.02 + rnd.nextDouble() * 0.9));
+            List<PostingsIterator> its = new ArrayList<>();
+            for (int[] l : lists) its.add(new ArrayIterator(l));
+            assertArrayEquals(intersect(lists), PostingsIterator.toArray(ConjunctionIterator.of(its)), "round " + round);
+        }
+    }
+
+    @Test
+    void advanceLandsOnTheFirstCommonDocAtOrAfterTarget() {
+        Random rnd = new Random(88);
+        for (int round = 0; round < 50; round++) {
+            List<int[]> lists = List.of(docs(rnd, 5000, 0.3), docs(rnd, 5000, 0.5), docs(rnd, 5000, 0.7));
+            int[] want = intersect(lists);
+            PostingsIterator and = ConjunctionIterator.of(lists.stream().<PostingsIterator>map(ArrayIterator::new).toList());
+            int target = 0;
+            while (true) {
+                target += 1 + rnd.nextInt(200);
+                int i = Arrays.binarySearch(want, target);
+                int expected = i >= 0 ? want[i] : -i - 1 < want.length ? want[-i - 1] : PostingsIterator.NO_MORE_DOCS;
+                int got = and.advance(target);
+                assertEquals(expected, got, "round " + round + " target " + target);
+                assertEquals(got, and.advance(target), "advancing to a passed target stays put");
+                if (got == PostingsIterator.NO_MORE_DOCS) break;
+                target = got;
+            }
+        }
+    }
+
+    @Test
+    void rarestListLeadsAndOthersOnlySeek() {
+        Random rnd = new Random(808);
+        ArrayIterator rare = new ArrayIterator(docs(rnd, 100_000, 0.0005));
+        ArrayIterator common = new ArrayIterator(docs(rnd, 100_000, 0.6));
+        ArrayIterator mid = new ArrayIterator(docs(rnd, 100_000, 0.1));
+        PostingsIterator and = ConjunctionIterator.of(List.of(common, mid, rare));
+        assertEquals(rare.cost(), and.cost());
+        PostingsIterator.toArray(and);
+        assertEquals(0, common.nextDocs + mid.nextDocs, "followers are never stepped one doc at a time");
+        // each follower is sought at most once per candidate the lead produces
+        int candidates = rare.nextDocs + rare.advances;
+        assertTrue(candidates <= rare.cost() + 1, "lead visited " + candidates);
+        assertTrue(common.advances <= candidates && mid.advances <= candidates,
+                "common " + common.advances + ", mid " + mid.advances + ", lead " + candidates);
+    }
+
+    @Test
+    void degenerateInputs() {
+        assertSame(PostingsIterator.EMPTY, ConjunctionIterator.of(List.of()));
+        PostingsIterator one = new ArrayIterator(new int[]{1, 5});
+        assertSame(one, ConjunctionIterator.of(List.of(one)));
+        PostingsIterator none = ConjunctionIterator.of(List.of(new ArrayIterator(new int[]{1, 5}), new ArrayIterator(new int[0])));
+        assertEquals(PostingsIterator.NO_MORE_DOCS, none.nextDoc());
+    }
+
+    /** Array postings that count how they are moved. */
+    private static final class ArrayIterator implements PostingsIterator {
+        private final int[] docs;
+        private int i = -1;
+        int nextDocs;
+        int advances;
+
+        ArrayIterator(int[] docs) {
+            this.docs = docs;
+        }
+
+        @Override
+        public int docID() { return i < 0 ? -1 : i < docs.length ? docs[i] : NO_MORE_DOCS; }
+
+        @Override
+        public int nextDoc() {
+            nextDocs++;
+            i++;
+            return docID();
+        }
+
+        @Override
+        public int advance(int target) {
+            advances++;
+            if (docID() >= target) return docID();
+            int j = Arrays.binarySearch(docs, Math.max(i, 0), docs.length, target);
+            i = j >= 0 ? j : -j - 1;
+            return docID();
+        }
+
+        @Override
+        public int cost() { return docs.length; }
+    }
+}
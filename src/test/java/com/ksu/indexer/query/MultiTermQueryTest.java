@@ -0,0 +1,147 @@
+package com.ksu.indexer.query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ksu.indexer.analysis.Analyzer;
+import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.core.PostingsIterator;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MultiTermQueryTest {
+    private static final String ALPHABET = "abcdé";
+
+    @TempDir
+    Path dir;
+
+    private final TreeSet<String> vocab = new TreeSet<>();
+    private List<IndexSegment> segs;
+
+    // two mapped segments and a heap one, sharing part of a random vocabulary
+    @BeforeEach
+    void index() throws IOException {
+        Random rnd = new Random(5);
+        segs = new ArrayList<>();
+        for (int s = 0; s < 3; s++) {
+            IndexSegment seg = new IndexSegment(dir, "delta-" + s);
+            for (int d = 0; d < 80; d++) {
+                List<String> words = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    StringBuilder w = new StringBuilder();
+                    int len = 1 + rnd.nextInt(6);
+                    for (int c = 0; c < len; c++) w.append(ALPHABET.charAt(rnd.nextInt(ALPHABET.length())));
+                    words.add(w.toString());
+                }
+                vocab.addAll(words);
+                seg.addDoc(words, "s" + s + "/d" + d);
+            }
+            if (s < 2) {
+                seg.persist();
+                seg = IndexSegment.load(dir, seg.id());
+            }
+            segs.add(seg);
+        }
+    }
+
+    private TreeSet<String> expand(MultiTermQuery q) {
+        return new TreeSet<>(q.expand(segs, Integer.MAX_VALUE).terms());
+    }
+
+    @Test
+    void wildcardsMatchTheirGlob() {
+        for (String glob : List.of("a*", "ab*", "*b", "a?c*", "?", "*", "é*", "*é?", "a*b*c", "bbb", "zz*")) {
+            Pattern regex = Pattern.compile(glob.replace("?", ".").replace("*", ".*"));
+            TreeSet<String> want = new TreeSet<>();
+            for (String t : vocab) if (regex.matcher(t).matches()) want.add(t);
+            assertEquals(want, expand(new WildcardQuery(glob)), glob);
+        }
+    }
+
+    @Test
+    void fuzzyTermsMatchWithinTheirEdits() {
+        for (String term : List.of("abc", "a", "dédé", "bacd", "eeeee")) {
+            for (int edits = 0; edits <= MultiTermQuery.MAX_EDITS; edits++) {
+                TreeSet<String> want = new TreeSet<>();
+                for (String t : vocab) if (distance(term, t) <= edits) want.add(t);
+                assertEquals(want, expand(new FuzzyQuery(term, edits)), term + "~" + edits);
+            }
+        }
+    }
+
+    @Test
+    void cappedExpansionsKeepTheClosestThenTheMostFrequentTerms() {
+        MultiTermQuery.Expansion all = new FuzzyQuery("abc", 2).expand(segs, Integer.MAX_VALUE);
+        MultiTermQuery.Expansion capped = new FuzzyQuery("abc", 2).expand(segs, 3);
+        assertFalse(all.truncated());
+        assertTrue(capped.truncated());
+        assertEquals(all.terms().subList(0, 3), capped.terms());
+        for (int i = 1; i < all.terms().size(); i++) {
+            String prev = all.terms().get(i - 1);
+            String cur = all.terms().get(i);
+            assertTrue(distance("abc", prev) < distance("abc", cur)
+                    || distance("abc", prev) == distance("abc", cur) && docFreq(prev) >= docFreq(cur));
+        }
+    }
+
+    @Test
+    void expansionsSearchAsTheUnionOfTheirTerms() {
+        MultiTermQuery.Expansion e = new WildcardQuery("a*").expand(segs, Integer.MAX_VALUE);
+        for (IndexSegment seg : segs) {
+            TreeSet<Integer> want = new TreeSet<>();
+            for (String t : e.terms()) for (int d : PostingsIterator.toArray(seg.postings(t))) want.add(d);
+            TreeSet<Integer> got = new TreeSet<>();
+            for (int d : PostingsIterator.toArray(e.postings(seg, seg.liveDocs()))) got.add(d);
+            assertEquals(want, got, seg.id());
+        }
+    }
+
+    @Test
+    void parse() {
+        Analyzer analyzer = Analyzer.standard();
+        assertInstanceOf(WildcardQuery.class, MultiTermQuery.parse("conf*", analyzer));
+        assertEquals("cafe*", MultiTermQuery.parse("Café*", analyzer).toString());
+        assertEquals("colour~2", MultiTermQuery.parse("colour~", analyzer).toString());
+        assertEquals("colour~1", MultiTermQuery.parse("Colour~1", analyzer).toString());
+        assertNull(MultiTermQuery.parse("colour", analyzer));
+        assertNull(MultiTermQuery.parse("a~b", analyzer));
+        assertThrows(IllegalArgumentException.class, () -> MultiTermQuery.parse("colour~3", analyzer));
+    }
+
+    private long docFreq(String term) {
+        long df = 0;
+        for (IndexSegment seg : segs) df += seg.docFreq(term);
+        return df;
+    }
+
+    // optimal string alignment distance over code points
+    private static int distance(String a, String b) {
+        int[] s = a.codePoints().toArray();
+        int[] t = b.codePoints().toArray();
+        int[][] d = new int[s.length + 1][t.length + 1];
+        for (int i = 0; i <= s.length; i++) d[i][0] = i;
+        for (int j = 0; j <= t.length; j++) d[0][j] = j;
+        for (int i = 1; i <= s.length; i++) {
+            for (int j = 1; j <= t.length; j++) {
+                int cost = s[i - 1] == t[j - 1] ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && s[i - 1] == t[j - 2] && s[i - 2] == t[j - 1]) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[s.length][t.length];
+    }
+}
@@ -0,0 +1,120 @@
+package com.ksu.indexer.query;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.core.PostingsIterator;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PhraseIteratorTest {
+    @TempDir
+    Path dir;
+
+    private static int[] match(IndexSegment seg, List<String> phrase, int slop) {
+        List<PostingsIterator> its = new ArrayList<>();
+        for (String t : phrase) its.add(seg.positions(t, seg.liveDocs()));
+        return PostingsIterator.toArray(PhraseIterator.of(its, slop));
+    }
+
+    @Test
+    void gapsAndSwapsNeedSlop() {
+        IndexSegment seg = new IndexSegment(dir, "delta-1");
+        int exact = seg.addDoc(List.of("quick", "fox", "jumps"), "exact");
+        int gap = seg.addDoc(List.of("quick", "brown", "fox"), "gap");
+        int swapped = seg.addDoc(List.of("fox", "quick"), "swapped");
+        List<String> phrase = List.of("quick", "fox");
+        assertArrayEquals(new int[] {exact}, match(seg, phrase, 0));
+        assertArrayEquals(new int[] {exact, gap}, match(seg, phrase, 1));
+        assertArrayEquals(new int[] {exact, gap, swapped}, match(seg, phrase, 2));
+    }
+
+    @Test
+    void repeatedTermsMayShareAnOccurrenceWithinTheSlop() {
+        IndexSegment seg = new IndexSegment(dir, "delta-1");
+        int once = seg.addDoc(List.of("to", "be"), "once");
+        int twice = seg.addDoc(List.of("to", "to"), "twice");
+        List<String> phrase = List.of("to", "to");
+        assertArrayEquals(new int[] {twice}, match(seg, phrase, 0));
+        assertArrayEquals(new int[] {once, twice}, match(seg, phrase, 1));
+    }
+
+    @Test
+    void agreesWithBruteForceOnHeapAndMappedSegments() throws IOException {
+        Random rnd = new Random(3);
+        List<String> vocab = List.of("a", "b", "c", "d");
+        IndexSegment heap = new IndexSegment(dir, "delta-1");
+        List<List<String>> texts = new ArrayList<>();
+        texts.add(null); // heap doc ids start at 1
+        for (int d = 0; d < 300; d++) {
+            List<String> words = new ArrayList<>();
+            int len = 1 + rnd.nextInt(12);
+            for (int i = 0; i < len; i++) words.add(vocab.get(rnd.nextInt(vocab.size())));
+            assertEquals(texts.size(), heap.addDoc(words, "d" + d));
+            texts.add(words);
+        }
+        heap.persist();
+        IndexSegment mapped = IndexSegment.load(dir, "delta-1");
+        for (int round = 0; round < 200; round++) {
+            List<String> phrase = new ArrayList<>();
+            int n = 2 + rnd.nextInt(3);
+            for (int i = 0; i < n; i++) phrase.add(vocab.get(rnd.nextInt(vocab.size())));
+            int slop = rnd.nextInt(4);
+            List<Integer> expected = new ArrayList<>();
+            for (int d = 1; d < texts.size(); d++) if (matches(texts.get(d), phrase, slop)) expected.add(d);
+            int[] want = expected.stream().mapToInt(Integer::intValue).toArray();
+            String what = phrase + "~" + slop;
+            assertArrayEquals(want, match(heap, phrase, slop), what);
+            assertArrayEquals(want, match(mapped, phrase, slop), what);
+        }
+    }
+
+    // some window [b, b + slop] holds p_i - i for a position p_i of every phrase term i
+    private static boolean matches(List<String> text, List<String> phrase, int slop) {
+        for (int j = 0; j < phrase.size(); j++) {
+            for (int p = 0; p < text.size(); p++) {
+                if (!text.get(p).equals(phrase.get(j))) continue;
+                int b = p - j;
+                boolean all = true;
+                for (int i = 0; i < phrase.size() && all; i++) {
+                    all = false;
+                    for (int q = 0; q < text.size(); q++) {
+                        int off = q - i;
+                        if (off >= b && off <= b + slop && text.get(q).equals(phrase.get(i))) {
+                            all = true;
+                            break;
+                        }
+                    }
+                }
+                if (all) return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void segmentsWithoutPositionsRefuseToReadThem() throws IOException {
+        IndexSegment heap = new IndexSegment(dir, "delta-1", false);
+        heap.addDoc(List.of("a", "b"), "x");
+        heap.persist();
+        IndexSegment seg = IndexSegment.load(dir, "delta-1");
+        assertFalse(seg.hasPositions());
+        assertEquals(1, seg.postings("a", seg.liveDocs()).cost());
+        assertThrows(IllegalStateException.class, () -> seg.positions("a", seg.liveDocs()));
+    }
+
+    @Test
+    void slopMustNotBeNegative() {
+        IndexSegment seg = new IndexSegment(dir, "delta-1");
+        seg.addDoc(List.of("a", "b"), "x");
+        assertThrows(IllegalArgumentException.class, () -> match(seg, List.of("a", "b"), -1));
+    }
+}
@@ -0,0 +1,89 @@
+package com.ksu.indexer.query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.ksu.indexer.core.DocIdSet;
+import com.ksu.indexer.core.IndexSegment;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class QueryCacheTest {
+    @TempDir
+    Path dir;
+
+    private IndexSegment segment(String id) {
+        IndexSegment seg = new IndexSegment(dir, id);
+        for (int i = 0; i < 20; i++) seg.addDoc(List.of(i % 2 == 0 ? "even" : "odd", "all"), id + i);
+        return seg;
+    }
+
+    private static DocIdSet docs(IndexSegment seg, String term) {
+        return DocIdSet.of(seg.rawPostings(term), seg.maxDocId());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedByBytes() {
+        IndexSegment seg = segment("a");
+        DocIdSet even = docs(seg, "even");
+        DocIdSet odd = docs(seg, "odd");
+        DocIdSet all = docs(seg, "all");
+        QueryCache cache = new QueryCache(even.ramBytes() + odd.ramBytes() + all.ramBytes() - 1);
+        cache.put(seg, "even", even);
+        cache.put(seg, "odd", odd);
+        assertEquals(even.ramBytes() + odd.ramBytes(), cache.bytes());
+
+        assertSame(even, cache.get(seg, "even"), "a read makes the entry recent");
+        cache.put(seg, "all", all);
+        assertNull(cache.get(seg, "odd"));
+        assertNotNull(cache.get(seg, "even"));
+        assertNotNull(cache.get(seg, "all"));
+        assertEquals(1, cache.evictions());
+        assertEquals(even.ramBytes() + all.ramBytes(), cache.bytes());
+        assertEquals(3, cache.hits());
+        assertEquals(1, cache.misses());
+
+        // replacing an entry accounts for the old set once
+        cache.put(seg, "all", docs(seg, "all"));
+        assertEquals(even.ramBytes() + all.ramBytes(), cache.bytes());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void dropsSetsLargerThanTheBudget() {
+        IndexSegment seg = segment("a");
+        DocIdSet even = docs(seg, "even");
+        QueryCache cache = new QueryCache(even.ramBytes() - 1);
+        cache.put(seg, "even", even);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+        assertEquals(0, cache.evictions());
+    }
+
+    @Test
+    void retiredSegmentsAreInvalidatedAndNeverCachedAgain() {
+        IndexSegment a = segment("a");
+        IndexSegment b = segment("b");
+        QueryCache cache = new QueryCache(1 << 20);
+        cache.put(a, "even", docs(a, "even"));
+        cache.put(a, "odd", docs(a, "odd"));
+        DocIdSet kept = docs(b, "even");
+        cache.put(b, "even", kept);
+
+        a.retire();
+        cache.invalidate(a);
+        assertEquals(2, cache.invalidations());
+        assertEquals(1, cache.size());
+        assertEquals(kept.ramBytes(), cache.bytes());
+        assertNull(cache.get(a, "even"));
+
+        // a query that started before the merge finishes on the retired segment
+        cache.put(a, "all", docs(a, "all"));
+        assertEquals(1, cache.size());
+        assertSame(kept, cache.get(b, "even"));
+    }
+}
@@ -0,0 +1,87 @@
+package com.ksu.indexer.query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.ksu.indexer.analysis.Analyzer;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class QueryParserTest {
+    private static final Analyzer ANALYZER = new Analyzer(List.of("lowercase", "asciifolding", "stop"), List.of("the"));
+
+    private static String parse(String q, Operator op) {
+        return String.valueOf(QueryParser.parse(q, op, 0, ANALYZER));
+    }
+
+    @Test
+    void notBindsTighterThanAndWhichBindsTighterThanOr() {
+        assertEquals("((a AND b) OR (c AND d))", parse("a b OR c d", Operator.AND));
+        assertEquals("((a AND b) OR (c AND d))", parse("a AND b OR c AND d", Operator.OR));
+        assertEquals("(a OR (b AND c) OR d)", parse("a b AND c d", Operator.OR));
+        assertEquals("(-a AND b)", parse("NOT a b", Operator.AND));
+        assertEquals("(a AND -(b OR c))", parse("a -(b OR c)", Operator.AND));
+        assertEquals("(a AND (b OR c))", parse("a (b OR c)", Operator.AND));
+    }
+
+    @Test
+    void groupsSpliceUnlessTheyExclude() {
+        assertEquals("(a AND b AND c)", parse("a (b c)", Operator.AND));
+        // the NOT only excludes from its own group, so it keeps its parentheses
+        assertEquals("(a AND (b AND -c))", parse("a (b -c)", Operator.AND));
+    }
+
+    @Test
+    void negation() {
+        assertEquals("a", parse("NOT NOT a", Operator.AND));
+        assertEquals("a", parse("- -a", Operator.AND));
+        assertInstanceOf(QueryNode.Not.class, QueryParser.parse("-a", Operator.AND, 0, ANALYZER));
+        // inside a word '-' is a character, which the analyzer splits on
+        assertEquals("(e AND mail)", parse("e-mail", Operator.AND));
+        assertEquals("(e OR mail)", parse("e-mail", Operator.OR));
+    }
+
+    @Test
+    void quotedPhrases() {
+        assertEquals("\"quick brown fox\"", parse("\"Quick brown fox\"", Operator.OR));
+        assertEquals("(\"quick brown\"~2 AND fox)", parse("\"quick brown\"~2 fox", Operator.AND));
+        assertEquals("cafe", parse("\"Café\"", Operator.AND));
+        // stop words drop out of phrases, and a phrase of only stop words drops out of its group
+        assertEquals("\"quick fox\"", parse("\"the quick the fox\"", Operator.AND));
+        assertEquals("fox", parse("\"the\" fox", Operator.AND));
+        // operators inside quotes are words
+        assertEquals("\"a or b\"", parse("\"a OR b\"", Operator.AND));
+    }
+
+    @Test
+    void phraseOperatorTakesTheWholeText() {
+        assertEquals("\"a or b c\"~3", String.valueOf(QueryParser.parse("a OR b -c", Operator.PHRASE, 3, ANALYZER)));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("a b*", Operator.PHRASE, 0, ANALYZER));
+    }
+
+    @Test
+    void fieldsAndPatterns() {
+        assertEquals("(a AND file:docs/*.txt)", parse("a FILE:docs/*.txt", Operator.AND));
+        assertInstanceOf(QueryNode.Pattern.class, QueryParser.parse("conf*", Operator.AND, 0, ANALYZER));
+        // unknown fields are ordinary words
+        assertEquals("(title AND x)", parse("title:x", Operator.AND));
+    }
+
+    @Test
+    void nothingSearchable() {
+        assertNull(QueryParser.parse("  ", Operator.AND, 0, ANALYZER));
+        assertNull(QueryParser.parse("the", Operator.AND, 0, ANALYZER));
+        assertNull(QueryParser.parse("()", Operator.AND, 0, ANALYZER));
+        assertEquals("a", parse("a (the)", Operator.AND));
+    }
+
+    @Test
+    void malformedInput() {
+        for (String q : List.of("(a", "a)", "\"a b", "a AND", "OR a", "a OR OR b", "-", "NOT", "\"a b\"~", "file:")) {
+            assertThrows(IllegalArgumentException.class, () -> QueryParser.parse(q, Operator.AND, 0, ANALYZER), q);
+        }
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("a", Operator.AND, -1, ANALYZER));
+    }
+}
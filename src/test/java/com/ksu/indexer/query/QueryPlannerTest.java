@@ -0,0 +1,114 @@
+package com.ksu.indexer.query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.ksu.indexer.analysis.Analyzer;
+import com.ksu.indexer.core.IndexSegment;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class QueryPlannerTest {
+    @TempDir
+    Path dir;
+
+    private List<IndexSegment> segs;
+    private final QueryPlanner planner = new QueryPlanner(new BM25Similarity(), 64);
+
+    // 100 docs: "common" in 80, "mid" in 20, "rare" in 2, "other" in 5
+    @BeforeEach
+    void index() {
+        IndexSegment seg = new IndexSegment(dir, "delta-1");
+        for (int i = 0; i < 100; i++) {
+            List<String> terms = new ArrayList<>();
+            if (i < 80) terms.add("common");
+            if (i % 5 == 0) terms.add("mid");
+            if (i < 2) terms.add("rare");
+            if (i >= 95) terms.add("other");
+            terms.add("filler");
+            seg.addDoc(terms, i + ".txt");
+        }
+        segs = List.of(seg);
+    }
+
+    private QueryPlan plan(String q, Operator op) {
+        return planner.plan(QueryParser.parse(q, op, 0, Analyzer.standard()), segs, s -> s::fileId);
+    }
+
+    @Test
+    void smallExclusionsBecomeBitsetsAndLargeOnesAreProbed() {
+        QueryPlan.Clause root = plan("common -rare", Operator.AND).root();
+        assertEquals(QueryPlan.Evaluation.BITSET, root.excluded.get(0).evaluation());
+        root = plan("rare -common", Operator.AND).root();
+        assertEquals(QueryPlan.Evaluation.ITERATOR, root.excluded.get(0).evaluation());
+        // nested groups choose against their own cost, not the query's
+        QueryPlan nested = plan("common (mid -rare) (rare -mid)", Operator.AND);
+        assertEquals(QueryPlan.Strategy.BOOLEAN, nested.strategy());
+        root = nested.root();
+        assertEquals(2, root.required.get(0).cost());
+        assertEquals(QueryPlan.Evaluation.ITERATOR, root.required.get(0).excluded.get(0).evaluation());
+        assertEquals(QueryPlan.Evaluation.BITSET, root.required.get(1).excluded.get(0).evaluation());
+    }
+
+    @Test
+    void wandReadsExclusionsFromTheLiveDocs() {
+        QueryPlan plan = plan("rare other -common", Operator.OR);
+        assertEquals(QueryPlan.Strategy.WAND, plan.strategy());
+        assertEquals(QueryPlan.Evaluation.BITSET, plan.root().excluded.get(0).evaluation());
+    }
+
+    @Test
+    void strategies() {
+        assertEquals(QueryPlan.Strategy.CONJUNCTION, plan("common mid", Operator.AND).strategy());
+        assertEquals(QueryPlan.Strategy.CONJUNCTION, plan("comm*", Operator.AND).strategy());
+        assertEquals(QueryPlan.Strategy.WAND, plan("common mid", Operator.OR).strategy());
+        assertEquals(QueryPlan.Strategy.PHRASE, plan("\"common mid\"", Operator.AND).strategy());
+        assertEquals(QueryPlan.Strategy.PHRASE, plan("\"common mid\" -rare", Operator.AND).strategy());
+        assertEquals(QueryPlan.Strategy.BOOLEAN, plan("common (mid OR rare)", Operator.AND).strategy());
+        assertEquals(QueryPlan.Strategy.BOOLEAN, plan("common file:1*", Operator.AND).strategy());
+        assertEquals(QueryPlan.Strategy.NONE, plan("common missing", Operator.AND).strategy());
+        assertEquals(QueryPlan.Strategy.NONE, plan("-common", Operator.AND).strategy());
+    }
+
+    @Test
+    void costsAndClauseOrder() {
+        QueryPlan.Clause and = plan("common mid rare", Operator.AND).root();
+        assertEquals(2, and.cost());
+        assertEquals(List.of(2L, 20L, 80L), and.required.stream().map(QueryPlan.Clause::cost).toList());
+        assertEquals(87, plan("common rare other", Operator.OR).root().cost());
+        assertEquals(100, plan("common mid filler", Operator.OR).root().cost());
+        assertEquals(2, plan("\"rare common\"", Operator.AND).root().cost());
+    }
+
+    @Test
+    void filtersCheckCandidatesAndScanOnlyAlone() {
+        QueryPlan.Clause root = plan("mid file:1*", Operator.AND).root();
+        assertEquals(QueryPlan.Evaluation.FILTER, root.filters.get(0).evaluation());
+        root = plan("file:1* -rare", Operator.AND).root();
+        assertEquals(100, root.cost());
+        assertEquals(QueryPlan.Evaluation.SCAN, root.filters.get(0).evaluation());
+        // under OR a filter is a clause of its own
+        root = plan("rare OR file:1*", Operator.AND).root();
+        assertEquals(QueryPlan.Kind.FIELD, root.required.get(1).kind());
+        assertEquals(QueryPlan.Evaluation.SCAN, root.required.get(1).evaluation());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void explainShowsThePlan() {
+        Map<String, Object> explain = plan("common -rare (mid OR other)", Operator.AND).explain();
+        assertEquals(QueryPlan.Strategy.BOOLEAN, explain.get("strategy"));
+        assertEquals("(common AND -rare AND (mid OR other))", explain.get("query"));
+        assertEquals(100L, explain.get("docCount"));
+        Map<String, Object> root = (Map<String, Object>) explain.get("plan");
+        List<Map<String, Object>> clauses = (List<Map<String, Object>>) root.get("clauses");
+        assertEquals(List.of("(mid OR other)", "common"), clauses.stream().map(c -> c.get("clause")).toList());
+        Map<String, Object> excluded = ((List<Map<String, Object>>) root.get("excluded")).get(0);
+        assertEquals("rare", excluded.get("clause"));
+        assertEquals(QueryPlan.Evaluation.BITSET, excluded.get("evaluation"));
+    }
+}
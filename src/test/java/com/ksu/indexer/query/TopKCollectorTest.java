@@ -0,0 +1,47 @@
+package com.ksu.indexer.query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TopKCollectorTest {
+
+    @Test
+    void keepsTheBestKPastTheInitialCapacity() {
+        Random r = new Random(42);
+        List<TopKCollector.ScoreDoc> all = new ArrayList<>();
+        for (int i = 0; i < 500; i++) all.add(new TopKCollector.ScoreDoc(r.nextInt(3), i, r.nextInt(50)));
+        for (int k : new int[]{1, 16, 17, 100, 499, 500, 100_000}) {
+            TopKCollector top = new TopKCollector(k);
+            for (TopKCollector.ScoreDoc d : all) top.collect(d.seg, d.doc, d.score);
+            List<TopKCollector.ScoreDoc> expected = new ArrayList<>(all);
+            expected.sort(Comparator.comparingDouble((TopKCollector.ScoreDoc d) -> -d.score)
+                    .thenComparingInt(d -> d.seg).thenComparingInt(d -> d.doc));
+            expected = expected.subList(0, Math.min(k, expected.size()));
+            List<TopKCollector.ScoreDoc> got = top.drain();
+            assertEquals(expected.size(), got.size(), "k=" + k);
+            for (int i = 0; i < got.size(); i++) {
+                assertEquals(expected.get(i).doc, got.get(i).doc, "k=" + k + " rank " + i);
+                assertEquals(expected.get(i).seg, got.get(i).seg, "k=" + k + " rank " + i);
+            }
+        }
+    }
+
+    @Test
+    void hugeKDoesNotAllocateUpFront() {
+        TopKCollector top = new TopKCollector(Integer.MAX_VALUE);
+        top.collect(0, 1, 1f);
+        assertEquals(Float.NEGATIVE_INFINITY, top.minCompetitiveScore());
+        assertEquals(1, top.drain().size());
+    }
+
+    @Test
+    void rejectsNonPositiveK() {
+        assertThrows(IllegalArgumentException.class, () -> new TopKCollector(0));
+    }
+}
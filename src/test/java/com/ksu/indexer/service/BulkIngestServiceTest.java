@@ -0,0 +1,171 @@
+package com.ksu.indexer.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ksu.indexer.analysis.Analyzer;
+import com.ksu.indexer.analysis.Tokens;
+import com.ksu.indexer.model.FileEvent;
+import com.ksu.indexer.query.Operator;
+import com.ksu.indexer.storage.ManifestStore;
+import com.ksu.indexer.storage.TestManifests;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BulkIngestServiceTest {
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+    private static String line(String type, String fileId, String text) {
+        return "{\"type\":\"" + type + "\",\"fileId\":\"" + fileId + "\",\"text\":\"" + text + "\"}\n";
+    }
+
+    private static InputStream body(String ndjson) {
+        return new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void appliesBatchesInRequestOrderAndReportsBadLines() throws IOException {
+        IndexService index = TestIndexes.open(dir, TestManifests.create());
+        BulkIngestService bulk = new BulkIngestService(index, mapper, new SimpleMeterRegistry(), 4, 2);
+        String ndjson = line("ADD", "a.txt", "alpha")
+                + "not json\n"
+                + "\n"
+                + line("ADD", "b.txt", "beta")
+                + "{\"fileId\":\"c.txt\",\"text\":\"gamma\"}\n"
+                + line("UPDATE", "a.txt", "delta")
+                + line("DELETE", "b.txt", "");
+        Map<String, Object> out = bulk.ingestNdjson(body(ndjson), 2);
+
+        assertEquals(4L, out.get("accepted"));
+        assertEquals(2L, out.get("failed"));
+        List<Map<String, Object>> batches = (List<Map<String, Object>>) out.get("batches");
+        assertEquals(3, batches.size());
+        assertEquals(1, batches.get(0).get("firstLine"));
+        assertTrue(((List<String>) batches.get(0).get("errors")).get(0).startsWith("line 2: "));
+        assertEquals(List.of("line 5: missing type"), batches.get(1).get("errors"));
+        assertFalse(batches.get(2).containsKey("errors"));
+
+        // later batches saw the earlier ones: the update superseded alpha, the delete removed beta
+        SearchService search = TestIndexes.search(index);
+        assertEquals(List.of(), search.searchFileIdsLegacy("alpha", 10, Operator.AND));
+        assertEquals(List.of("a.txt"), search.searchFileIdsLegacy("delta", 10, Operator.AND));
+        assertEquals(List.of(), search.searchFileIdsLegacy("beta", 10, Operator.AND));
+        search.close();
+        bulk.close();
+        index.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reportsTheAppliedPrefixOfAFailedBatch() throws IOException {
+        GatedIndex index = new GatedIndex(dir, TestManifests.create());
+        index.gate.countDown();
+        BulkIngestService bulk = new BulkIngestService(index, mapper, new SimpleMeterRegistry(), 2, 2);
+        String ndjson = line("ADD", "a.txt", "alpha")
+                + line("ADD", "poison.txt", "beta")
+                + line("ADD", "c.txt", "gamma")
+                + line("ADD", "d.txt", "delta");
+        Map<String, Object> out = bulk.ingestNdjson(body(ndjson), 3);
+
+        assertEquals(2L, out.get("accepted"));
+        assertEquals(2L, out.get("failed"));
+        Map<String, Object> first = ((List<Map<String, Object>>) out.get("batches")).get(0);
+        assertEquals(1, first.get("accepted"));
+        assertEquals(2, first.get("failed"));
+        String error = ((List<String>) first.get("errors")).get(0);
+        assertTrue(error.startsWith("line 2: apply failed"), error);
+
+        SearchService search = TestIndexes.search(index);
+        assertEquals(List.of("a.txt"), search.searchFileIdsLegacy("alpha", 10, Operator.AND));
+        assertEquals(List.of(), search.searchFileIdsLegacy("gamma", 10, Operator.AND));
+        assertEquals(List.of("d.txt"), search.searchFileIdsLegacy("delta", 10, Operator.AND), "later batches still apply");
+        search.close();
+        bulk.close();
+        index.close();
+    }
+
+    @Test
+    void stopsReadingTheBodyWhileBatchesAreInFlight() throws Exception {
+        GatedIndex index = new GatedIndex(dir, TestManifests.create());
+        BulkIngestService bulk = new BulkIngestService(index, mapper, new SimpleMeterRegistry(), 2, 2);
+        String text = "word ".repeat(2000);
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 40; i++) ndjson.append(line("ADD", i + ".txt", text));
+        int lineBytes = line("ADD", "0.txt", text).length();
+        AtomicLong read = new AtomicLong();
+        InputStream counted = new FilterInputStream(body(ndjson.toString())) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) read.addAndGet(n);
+                return n;
+            }
+        };
+
+        CompletableFuture<Map<String, Object>> done = CompletableFuture.supplyAsync(() -> {
+            try {
+                return bulk.ingestNdjson(counted, 1);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        // wait for the reader to stall on the in-flight cap
+        long last = -1;
+        while (read.get() != last) {
+            last = read.get();
+            Thread.sleep(200);
+        }
+        assertFalse(done.isDone());
+        // two batches in flight, the one waiting to be submitted and the reader's own buffer
+        assertTrue(last <= 4L * lineBytes + 16384, "read " + last + " of " + ndjson.length() + " bytes");
+
+        index.gate.countDown();
+        assertEquals(40L, done.get().get("accepted"));
+        bulk.close();
+        index.close();
+    }
+
+    /** Holds every batch until the gate opens, and fails a batch at a doc named poison. */
+    private static final class GatedIndex extends IndexService {
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        GatedIndex(Path dir, ManifestStore manifest) throws IOException {
+            super(dir.toString(), Integer.MAX_VALUE, Long.MAX_VALUE, 3_600_000L, 0.01, true, true, false,
+                    manifest, Analyzer.standard(), new SimpleMeterRegistry());
+        }
+
+        @Override
+        public void applyBatch(List<FileEvent> events, List<Tokens> tokens) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            for (int i = 0; i < events.size(); i++) {
+                if (!events.get(i).getFileId().startsWith("poison")) continue;
+                super.applyBatch(events.subList(0, i), tokens.subList(0, i));
+                throw new PartialBatchException(i, new IllegalStateException("poisoned"));
+            }
+            super.applyBatch(events, tokens);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.ksu.indexer.service;
+
+import static com.ksu.indexer.service.TestIndexes.add;
+import static com.ksu.indexer.service.TestIndexes.update;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ksu.indexer.query.Operator;
+import com.ksu.indexer.storage.TestManifests;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IndexSearcherConsistencyTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void updatesRacingAcquisitionNeverHideOrDoubleADoc() throws Exception {
+        IndexService index = TestIndexes.open(dir, TestManifests.create());
+        SearchService search = TestIndexes.search(index);
+        List<String> files = new ArrayList<>();
+        for (int f = 0; f < 4; f++) {
+            files.add("f" + f + ".txt");
+            index.applyEvent(add("f" + f + ".txt", "common v0"));
+        }
+        index.flush();
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int v = 1; v <= 3000; v++) {
+                    index.applyEvent(update(files.get(v % files.size()), "common v" + v));
+                    if (v % 250 == 0) index.flush();
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            } finally {
+                done.set(true);
+            }
+        });
+        writer.start();
+        int checks = 0;
+        while (!done.get() || checks == 0) {
+            List<String> hits = new ArrayList<>();
+            for (var row : search.searchV2("common", 100, Operator.AND)) hits.add((String) row.get("fileId"));
+            hits.sort(null);
+            assertEquals(files, hits, "check " + checks);
+            checks++;
+        }
+        writer.join();
+        assertNull(failure.get());
+        assertTrue(checks > 0);
+        search.close();
+        index.close();
+    }
+}
@@ -0,0 +1,70 @@
+package com.ksu.indexer.service;
+
+import static com.ksu.indexer.service.TestIndexes.add;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ksu.indexer.analysis.Analyzer;
+import com.ksu.indexer.query.Operator;
+import com.ksu.indexer.storage.ManifestStore;
+import com.ksu.indexer.storage.TestManifests;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class IndexServiceAnalyzerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void segmentsOfAnotherChainAreRefused() throws IOException {
+        ManifestStore manifest = TestManifests.create();
+        IndexService index = TestIndexes.open(dir, manifest);
+        index.applyEvent(add("a.txt", "café crème"));
+        index.flush();
+        index.close();
+
+        Analyzer stemming = new Analyzer(List.of("lowercase", "asciifolding", "stem"), List.of());
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+                () -> TestIndexes.open(dir, manifest, stemming, false));
+        assertTrue(ex.getMessage().contains(stemming.signature()));
+
+        index = TestIndexes.open(dir, manifest);
+        SearchService search = TestIndexes.search(index);
+        assertEquals(List.of("a.txt"), search.searchFileIdsLegacy("cafe", 10, Operator.AND));
+        search.close();
+        index.close();
+    }
+
+    @Test
+    void segmentsOfAnUnrecordedChainAreRefusedUnlessAccepted() throws IOException {
+        JdbcTemplate jdbc = TestManifests.jdbc();
+        ManifestStore manifest = new ManifestStore(jdbc);
+        IndexService index = TestIndexes.open(dir, manifest);
+        index.applyEvent(add("a.txt", "alpha"));
+        index.flush();
+        index.close();
+        // as left by versions that did not record their chain
+        jdbc.update("DELETE FROM settings");
+
+        assertThrows(IllegalStateException.class, () -> TestIndexes.open(dir, manifest));
+        TestIndexes.open(dir, manifest, Analyzer.standard(), true).close();
+        assertEquals(Analyzer.standard().signature(), manifest.setting(IndexService.ANALYZER_SETTING));
+        TestIndexes.open(dir, manifest).close();
+    }
+
+    @Test
+    void signatureCoversFiltersAndStopWords() {
+        assertEquals(Analyzer.standard().signature(),
+                new Analyzer(List.of(" LowerCase", "asciifolding"), List.of("the")).signature());
+        Analyzer stop = new Analyzer(List.of("lowercase", "stop"), List.of("the", "A"));
+        assertEquals(stop.signature(), new Analyzer(List.of("lowercase", "stop"), List.of("a", "the")).signature());
+        assertNotEquals(stop.signature(), new Analyzer(List.of("lowercase", "stop"), List.of("the")).signature());
+        assertNotEquals(stop.signature(), new Analyzer(List.of("stop", "lowercase"), List.of("a", "the")).signature());
+    }
+}
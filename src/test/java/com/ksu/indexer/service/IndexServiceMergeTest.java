@@ -0,0 +1,71 @@
+package com.ksu.indexer.service;
+
+import static com.ksu.indexer.service.TestIndexes.add;
+import static com.ksu.indexer.service.TestIndexes.delete;
+import static com.ksu.indexer.service.TestIndexes.update;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.query.Operator;
+import com.ksu.indexer.storage.ManifestStore;
+import com.ksu.indexer.storage.TestManifests;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IndexServiceMergeTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void mergeKeepsLatestVersionsAndMovesHeads() throws IOException {
+        ManifestStore manifest = TestManifests.create();
+        IndexService index = TestIndexes.open(dir, manifest);
+        SearchService search = TestIndexes.search(index);
+        index.applyEvent(add("a.txt", "alpha one"));
+        index.applyEvent(add("b.txt", "beta one"));
+        index.flush();
+        index.applyEvent(update("a.txt", "alpha two"));
+        index.applyEvent(add("c.txt", "gamma one"));
+        index.flush();
+
+        assertEquals(2, index.mergeGreedy(2));
+        List<IndexSegment> segs = index.flushedSegments();
+        assertEquals(1, segs.size());
+        assertEquals(List.of(segs.get(0).id()), manifest.listIds());
+        assertEquals(List.of("a.txt"), search.searchFileIdsLegacy("two", 10, Operator.AND));
+        assertEquals(List.of(), search.searchFileIdsLegacy("alpha one", 10, Operator.AND));
+
+        // heads point into the merged segment, so later updates still supersede
+        index.applyEvent(update("b.txt", "beta two"));
+        assertEquals(List.of(), search.searchFileIdsLegacy("beta one", 10, Operator.AND));
+        assertEquals(List.of("b.txt"), search.searchFileIdsLegacy("beta two", 10, Operator.AND));
+        search.close();
+        index.close();
+    }
+
+    @Test
+    void mergeOfOnlyDeletedDocsDropsTheSourcesWithoutWritingASegment() throws IOException {
+        ManifestStore manifest = TestManifests.create();
+        IndexService index = TestIndexes.open(dir, manifest);
+        index.applyEvent(add("a.txt", "alpha"));
+        index.flush();
+        index.applyEvent(add("b.txt", "beta"));
+        index.flush();
+        index.applyEvent(delete("a.txt"));
+        index.applyEvent(delete("b.txt"));
+        index.flush();
+
+        assertEquals(2, index.mergeGreedy(2));
+        assertTrue(index.flushedSegments().isEmpty());
+        assertTrue(manifest.listIds().isEmpty());
+        try (var files = Files.list(dir)) {
+            assertEquals(List.of("wal"), files.map(p -> p.getFileName().toString()).toList());
+        }
+        index.close();
+    }
+}
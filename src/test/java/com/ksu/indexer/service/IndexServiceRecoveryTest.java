@@ -0,0 +1,76 @@
+package com.ksu.indexer.service;
+
+import static com.ksu.indexer.service.TestIndexes.add;
+import static com.ksu.indexer.service.TestIndexes.update;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ksu.indexer.query.Operator;
+import com.ksu.indexer.storage.ManifestStore;
+import com.ksu.indexer.storage.TestManifests;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class IndexServiceRecoveryTest {
+    @TempDir
+    Path dir;
+
+    /** Fails the manifest entry of a commit, as a crash right after the docmap would. */
+    static class CrashingManifest extends ManifestStore {
+        volatile boolean crashOnUpsert;
+
+        CrashingManifest(JdbcTemplate jdbc) { super(jdbc); }
+
+        @Override
+        public void upsert(String id, String path) {
+            if (crashOnUpsert) throw new IllegalStateException("crash before manifest entry of " + id);
+            super.upsert(id, path);
+        }
+    }
+
+    @Test
+    void replayAfterCrashBetweenDocmapAndUpsertKeepsBufferedDocs() throws IOException {
+        CrashingManifest manifest = new CrashingManifest(TestManifests.jdbc());
+        IndexService crashed = TestIndexes.open(dir, manifest);
+        crashed.applyEvent(add("a.txt", "alpha"));
+        crashed.applyEvent(add("b.txt", "beta"));
+        crashed.applyEvent(update("a.txt", "gamma"));
+        manifest.crashOnUpsert = true;
+        assertThrows(IllegalStateException.class, crashed::flush);
+        assertFalse(manifest.docmapForSegment("delta-1").isEmpty(), "docmap rows written before the crash");
+        assertTrue(manifest.listIds().isEmpty());
+        manifest.crashOnUpsert = false;
+
+        IndexService recovered = TestIndexes.open(dir, manifest);
+        SearchService search = TestIndexes.search(recovered);
+        assertTrue(manifest.docmapForSegment("delta-1").isEmpty(), "partial docmap dropped before replay");
+        assertLatest(search);
+
+        recovered.flush();
+        assertEquals(List.of("delta-1"), manifest.listIds());
+        assertLatest(search);
+        search.close();
+        recovered.close();
+
+        IndexService reopened = TestIndexes.open(dir, manifest);
+        search = TestIndexes.search(reopened);
+        assertLatest(search);
+        reopened.applyEvent(update("b.txt", "delta"));
+        assertEquals(List.of(), search.searchFileIdsLegacy("beta", 10, Operator.AND));
+        assertEquals(List.of("b.txt"), search.searchFileIdsLegacy("delta", 10, Operator.AND));
+        search.close();
+        reopened.close();
+    }
+
+    private static void assertLatest(SearchService search) {
+        assertEquals(List.of(), search.searchFileIdsLegacy("alpha", 10, Operator.AND));
+        assertEquals(List.of("b.txt"), search.searchFileIdsLegacy("beta", 10, Operator.AND));
+        assertEquals(List.of("a.txt"), search.searchFileIdsLegacy("gamma", 10, Operator.AND));
+    }
+}
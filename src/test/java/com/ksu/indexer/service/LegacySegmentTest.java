@@ -0,0 +1,157 @@
+package com.ksu.indexer.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ksu.indexer.analysis.Analyzer;
+import com.ksu.indexer.codec.VarByteCodec;
+import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.query.Operator;
+import com.ksu.indexer.storage.ManifestStore;
+import com.ksu.indexer.storage.TestManifests;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/** Segments and manifest rows as the version before this series left them. */
+class LegacySegmentTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void manifestTombstonesAreFoldedIntoLiveDocsOnce() throws IOException {
+        JdbcTemplate jdbc = TestManifests.jdbc();
+        ManifestStore manifest = new ManifestStore(jdbc);
+        // docs 1 and 3 are two versions of a.txt; the old one was tombstoned in the manifest
+        writeV1(dir.resolve("delta-1.seg"), 3, Map.of("alpha", List.of(1), "beta", List.of(2), "gamma", List.of(3)));
+        manifest.upsert("delta-1", dir.resolve("delta-1.seg").toString());
+        manifest.mapDocs("delta-1", Map.of(1, "a.txt", 2, "b.txt", 3, "a.txt"));
+        jdbc.update("INSERT INTO tombstones(seg_id, doc_id) VALUES(?, ?)", "delta-1", 1);
+
+        // ASCII-only terms analyze alike under the unrecorded chain and the current one
+        IndexService index = TestIndexes.open(dir, manifest, Analyzer.standard(), true);
+        SearchService search = TestIndexes.search(index);
+        assertEquals(List.of(), search.searchFileIdsLegacy("alpha", 10, Operator.AND));
+        assertEquals(List.of("a.txt"), search.searchFileIdsLegacy("gamma", 10, Operator.AND));
+        assertEquals(List.of("b.txt"), search.searchFileIdsLegacy("beta", 10, Operator.AND));
+        assertTrue(manifest.legacyTombstones().isEmpty());
+        search.close();
+        index.close();
+
+        // the delete now lives in a sidecar of the v1 segment
+        index = TestIndexes.open(dir, manifest);
+        search = TestIndexes.search(index);
+        assertEquals(List.of(), search.searchFileIdsLegacy("alpha", 10, Operator.AND));
+        search.close();
+        index.close();
+    }
+
+    @Test
+    void updatesSupersedeDocsOfV1Segments() throws IOException {
+        ManifestStore manifest = TestManifests.create();
+        writeV1(dir.resolve("delta-1.seg"), 2, Map.of("alpha", List.of(1), "beta", List.of(2)));
+        manifest.upsert("delta-1", dir.resolve("delta-1.seg").toString());
+        manifest.mapDocs("delta-1", Map.of(1, "a.txt", 2, "b.txt"));
+
+        // ASCII-only terms analyze alike under the unrecorded chain and the current one
+        IndexService index = TestIndexes.open(dir, manifest, Analyzer.standard(), true);
+        SearchService search = TestIndexes.search(index);
+        index.applyEvent(TestIndexes.update("a.txt", "gamma"));
+        index.applyEvent(TestIndexes.delete("b.txt"));
+        assertEquals(List.of(), search.searchFileIdsLegacy("alpha", 10, Operator.AND));
+        assertEquals(List.of(), search.searchFileIdsLegacy("beta", 10, Operator.AND));
+        assertEquals(List.of("a.txt"), search.searchFileIdsLegacy("gamma", 10, Operator.AND));
+        index.flush();
+        search.close();
+        index.close();
+
+        index = TestIndexes.open(dir, manifest);
+        search = TestIndexes.search(index);
+        assertEquals(List.of(), search.searchFileIdsLegacy("alpha OR beta", 10, Operator.AND));
+        assertEquals(List.of("a.txt"), search.searchFileIdsLegacy("gamma", 10, Operator.AND));
+        search.close();
+        index.close();
+    }
+
+    @Test
+    void mergingV1SegmentsStoresTheirFileIds() throws IOException {
+        ManifestStore manifest = TestManifests.create();
+        writeV1(dir.resolve("delta-1.seg"), 2, Map.of("alpha", List.of(1), "beta", List.of(2)));
+        manifest.upsert("delta-1", dir.resolve("delta-1.seg").toString());
+        manifest.mapDocs("delta-1", Map.of(1, "a.txt", 2, "b.txt"));
+        IndexService index = TestIndexes.open(dir, manifest, Analyzer.standard(), true);
+        SearchService search = TestIndexes.search(index);
+        index.applyEvent(TestIndexes.add("c.txt", "gamma"));
+        index.flush();
+
+        assertEquals(2, index.mergeGreedy(2));
+        IndexSegment merged = index.flushedSegments().get(0);
+        assertEquals(Set.of("a.txt", "b.txt", "c.txt"),
+                Set.of(merged.fileId(0), merged.fileId(1), merged.fileId(2)));
+        assertTrue(manifest.docmapForSegment(merged.id()).isEmpty());
+        assertTrue(manifest.docmapForSegment("delta-1").isEmpty());
+
+        // heads were read from the stored fileIds
+        index.applyEvent(TestIndexes.update("a.txt", "delta"));
+        assertEquals(List.of(), search.searchFileIdsLegacy("alpha", 10, Operator.AND));
+        assertEquals(List.of("b.txt"), search.searchFileIdsLegacy("beta", 10, Operator.AND));
+        search.close();
+        index.close();
+    }
+
+    @Test
+    void fileFiltersReadTheDocmapOncePerSegment() throws IOException {
+        AtomicInteger lookups = new AtomicInteger();
+        ManifestStore manifest = new ManifestStore(TestManifests.jdbc()) {
+            @Override
+            public String resolveFileId(String segId, int docId) {
+                lookups.incrementAndGet();
+                return super.resolveFileId(segId, docId);
+            }
+        };
+        Map<String, List<Integer>> postings = new HashMap<>();
+        Map<Integer, String> docmap = new HashMap<>();
+        for (int doc = 1; doc <= 50; doc++) {
+            postings.computeIfAbsent(doc % 2 == 0 ? "even" : "odd", k -> new ArrayList<>()).add(doc);
+            docmap.put(doc, (doc <= 10 ? "a/" : "b/") + doc + ".txt");
+        }
+        writeV1(dir.resolve("delta-1.seg"), 50, postings);
+        manifest.upsert("delta-1", dir.resolve("delta-1.seg").toString());
+        manifest.mapDocs("delta-1", docmap);
+
+        IndexService index = TestIndexes.open(dir, manifest, Analyzer.standard(), true);
+        SearchService search = TestIndexes.search(index);
+        assertEquals(10, search.searchFileIdsLegacy("file:a/*", 50, Operator.AND).size());
+        assertEquals(Set.of("a/2.txt", "a/4.txt", "a/6.txt", "a/8.txt", "a/10.txt"),
+                Set.copyOf(search.searchFileIdsLegacy("even file:a/*", 50, Operator.AND)));
+        // only the hits were resolved one by one, not every doc the filters looked at
+        assertEquals(15, lookups.get());
+        search.close();
+        index.close();
+    }
+
+    // v1 stream layout: maxDocId, term count, (UTF term, VarByte doc ids), deleted docs
+    static void writeV1(Path file, int maxDocId, Map<String, List<Integer>> postings) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(maxDocId);
+            out.writeInt(postings.size());
+            for (var e : postings.entrySet()) {
+                out.writeUTF(e.getKey());
+                byte[] enc = VarByteCodec.intsToBytes(e.getValue());
+                out.writeInt(enc.length);
+                out.write(enc);
+            }
+            out.writeInt(0);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.ksu.indexer.service;
+
+import static com.ksu.indexer.service.TestIndexes.add;
+import static com.ksu.indexer.service.TestIndexes.delete;
+import static com.ksu.indexer.service.TestIndexes.update;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.ksu.indexer.model.FileEvent;
+import com.ksu.indexer.query.Operator;
+import com.ksu.indexer.storage.TestManifests;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Clause trees against a brute-force reading of the same docs, over flushed and buffered segments. */
+class SearchServiceBooleanTest {
+    @TempDir
+    Path dir;
+
+    private IndexService index;
+    private SearchService search;
+    // current text of every live fileId
+    private final Map<String, Set<String>> docs = new HashMap<>();
+
+    @BeforeEach
+    void index() throws IOException {
+        index = TestIndexes.open(dir, TestManifests.create());
+        search = TestIndexes.search(index);
+        for (int i = 0; i < 30; i++) {
+            List<String> words = new ArrayList<>();
+            if (i % 2 == 0) words.add("a");
+            if (i % 3 == 0) words.add("b");
+            if (i % 5 == 0) words.add("c");
+            for (int x = 0; x < i % 4; x++) words.add("x");
+            put(add("d" + i + ".txt", String.join(" ", words)));
+            if (i == 9 || i == 19) index.flush();
+        }
+        index.applyEvent(delete("d6.txt"));
+        docs.remove("d6.txt");
+        put(update("d12.txt", "a c"));
+    }
+
+    private void put(FileEvent e) throws IOException {
+        index.applyEvent(e);
+        docs.put(e.getFileId(), new HashSet<>(List.of(e.getText().split(" "))));
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        search.close();
+        index.close();
+    }
+
+    private Set<String> expected(Predicate<Map.Entry<String, Set<String>>> p) {
+        return docs.entrySet().stream().filter(p).map(Map.Entry::getKey).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private Set<String> matches(String q) {
+        return new TreeSet<>(scores(q).keySet());
+    }
+
+    private Map<String, Object> scores(String q) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (Map<String, Object> row : search.searchV2(q, 100, Operator.AND)) out.put((String) row.get("fileId"), row.get("score"));
+        return out;
+    }
+
+    private static boolean has(Map.Entry<String, Set<String>> d, String term) {
+        return d.getValue().contains(term);
+    }
+
+    @Test
+    void treesMatchTheirBruteForceReading() {
+        assertEquals(expected(d -> has(d, "a") && (has(d, "b") || has(d, "c"))), matches("a (b OR c)"));
+        assertEquals(expected(d -> has(d, "a") && !has(d, "b") || has(d, "c")), matches("(a -b) OR c"));
+        assertEquals(expected(d -> has(d, "a") && !has(d, "b") && !has(d, "c")), matches("a -(b OR c)"));
+        assertEquals(expected(d -> has(d, "a") && has(d, "b") || has(d, "b") && has(d, "c")), matches("(a b) OR (b c)"));
+        assertEquals(expected(d -> d.getKey().startsWith("d1") && (has(d, "a") || has(d, "b"))), matches("file:d1* (a OR b)"));
+        assertEquals(expected(d -> d.getKey().startsWith("d2") && !has(d, "a")), matches("file:d2* -a"));
+        assertEquals(expected(d -> has(d, "c") || d.getKey().equals("d7.txt")), matches("c OR file:d7.txt"));
+    }
+
+    @Test
+    void treesScoreAsTheFlatPathsDo() {
+        // the file:* filter keeps every doc but turns the query into a clause tree
+        for (String[] pair : new String[][] {
+                {"a b", "a b file:*"},
+                {"a -c", "a -c file:*"},
+                {"(a OR b)", "(a OR b) file:*"},
+                {"\"a b\"", "\"a b\" file:*"}}) {
+            String flat = search.explain(pair[0], Operator.AND, 0).get("strategy").toString();
+            assertEquals("BOOLEAN", search.explain(pair[1], Operator.AND, 0).get("strategy").toString(), pair[1]);
+            assertEquals(pair[0].startsWith("(") ? "WAND" : pair[0].startsWith("\"") ? "PHRASE" : "CONJUNCTION", flat, pair[0]);
+            assertEquals(scores(pair[0]), scores(pair[1]), pair[1]);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.ksu.indexer.service;
+
+import static com.ksu.indexer.service.TestIndexes.add;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.ksu.indexer.model.FileEvent;
+import com.ksu.indexer.query.Operator;
+import com.ksu.indexer.storage.TestManifests;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SearchServicePageTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void docsWithoutFileIdsDoNotShortenThePage() throws IOException {
+        IndexService index = TestIndexes.open(dir, TestManifests.create());
+        SearchService search = TestIndexes.search(index);
+        // the unnamed docs repeat the term, so they outrank every named one
+        for (int i = 0; i < 4; i++) {
+            index.applyEvent(new FileEvent(null, FileEvent.Type.ADD, "hit hit hit", null, Instant.now()));
+            index.applyEvent(add("f" + i + ".txt", "hit filler words here"));
+            if (i == 1) index.flush();
+        }
+
+        List<Map<String, Object>> rows = search.searchV2("hit", 3, Operator.AND);
+        assertEquals(3, rows.size());
+        assertEquals(3, search.searchFileIdsLegacy("hit", 3, Operator.AND).size());
+        assertEquals(4, search.searchFileIdsLegacy("hit", 10, Operator.AND).size());
+        search.close();
+        index.close();
+    }
+}
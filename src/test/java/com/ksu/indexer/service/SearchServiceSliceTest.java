@@ -0,0 +1,51 @@
+package com.ksu.indexer.service;
+
+import static com.ksu.indexer.service.TestIndexes.add;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.ksu.indexer.query.Operator;
+import com.ksu.indexer.storage.TestManifests;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SearchServiceSliceTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void slicedTopKBreaksTiesLikeASequentialRun() throws IOException {
+        IndexService index = TestIndexes.open(dir, TestManifests.create());
+        // every doc scores the same; segment sizes are out of ordinal order so the
+        // size-balanced slices do not visit segments in ordinal order on their own
+        int n = 0;
+        for (int size : new int[]{3, 12, 5, 9, 2, 7}) {
+            for (int i = 0; i < size; i++) index.applyEvent(add("d" + n++ + ".txt", "tie knot"));
+            index.flush();
+        }
+        SearchService sequential = new SearchService(index, new SimpleMeterRegistry(), 1, 1, 1, 0, 128);
+        SearchService sliced = new SearchService(index, new SimpleMeterRegistry(), 4, 4, 1, 0, 128);
+        for (String q : new String[]{"tie", "tie knot"}) {
+            for (Operator op : new Operator[]{Operator.OR, Operator.AND}) {
+                for (int k : new int[]{1, 4, 10, 25}) {
+                    assertEquals(fileIds(sequential.searchV2(q, k, op)), fileIds(sliced.searchV2(q, k, op)),
+                            q + " " + op + " k=" + k);
+                }
+            }
+        }
+        sequential.close();
+        sliced.close();
+        index.close();
+    }
+
+    private static List<Object> fileIds(List<Map<String, Object>> rows) {
+        List<Object> out = new ArrayList<>();
+        for (Map<String, Object> row : rows) out.add(row.get("fileId"));
+        return out;
+    }
+}
@@ -0,0 +1,90 @@
+package com.ksu.indexer.service;
+
+import static com.ksu.indexer.service.TestIndexes.add;
+import static com.ksu.indexer.service.TestIndexes.delete;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ksu.indexer.core.IndexSegment;
+import com.ksu.indexer.core.PostingsIterator;
+import com.ksu.indexer.storage.TestManifests;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SegmentSnapshotTest {
+    @TempDir
+    Path dir;
+
+    private Path file(IndexSegment seg) {
+        return dir.resolve(seg.id() + ".seg");
+    }
+
+    private static int[] live(IndexSearcher searcher, int ord, String term) {
+        return PostingsIterator.toArray(searcher.segment(ord).postings(term, searcher.liveDocs(ord)));
+    }
+
+    @Test
+    void mergedAwaySegmentsOutliveTheSearchersThatPinnedThem() throws IOException {
+        IndexService index = TestIndexes.open(dir, TestManifests.create());
+        index.applyEvent(add("a.txt", "alpha"));
+        index.flush();
+        index.applyEvent(add("b.txt", "alpha beta"));
+        index.flush();
+        List<IndexSegment> sources = index.flushedSegments();
+
+        IndexSearcher before = index.acquireSearcher();
+        index.applyEvent(delete("a.txt"));
+        assertEquals(2, index.mergeGreedy(2));
+        assertTrue(sources.stream().allMatch(IndexSegment::isRetired));
+        assertTrue(sources.stream().allMatch(s -> Files.exists(file(s))), "pinned files stay on disk");
+
+        // the old generation still reads its segments, deletes included, as of acquisition
+        assertEquals(2, before.segments().size());
+        assertArrayEquals(new int[]{1}, live(before, 0, "alpha"));
+        assertArrayEquals(new int[]{1}, live(before, 1, "beta"));
+        try (IndexSearcher after = index.acquireSearcher()) {
+            assertEquals(1, after.segments().size());
+            assertFalse(after.segment(0).isRetired());
+            assertEquals(1, live(after, 0, "alpha").length);
+        }
+
+        before.close();
+        assertTrue(sources.stream().noneMatch(s -> Files.exists(file(s))), "the last release deletes them");
+        before.close();
+        index.close();
+    }
+
+    @Test
+    void bufferedWritesAfterAcquisitionStayInvisible() throws IOException {
+        IndexService index = TestIndexes.open(dir, TestManifests.create());
+        index.applyEvent(add("a.txt", "alpha"));
+        try (IndexSearcher searcher = index.acquireSearcher()) {
+            index.applyEvent(add("b.txt", "alpha"));
+            index.applyEvent(delete("a.txt"));
+            assertEquals(1, searcher.segments().size());
+            assertArrayEquals(new int[]{1}, live(searcher, 0, "alpha"));
+        }
+        try (IndexSearcher searcher = index.acquireSearcher()) {
+            assertArrayEquals(new int[]{2}, live(searcher, 0, "alpha"));
+        }
+        index.close();
+    }
+
+    @Test
+    void aReleasedGenerationCannotBePinnedAgain() {
+        IndexSegment seg = new IndexSegment(dir, "seg");
+        SegmentSnapshot snapshot = new SegmentSnapshot(List.of(seg), null);
+        assertTrue(snapshot.tryIncRef());
+        snapshot.decRef();
+        snapshot.decRef();
+        assertFalse(snapshot.tryIncRef());
+        assertThrows(IllegalStateException.class, snapshot::decRef);
+    }
+}
@@ -0,0 +1,43 @@
+package com.ksu.indexer.service;
+
+import com.ksu.indexer.analysis.Analyzer;
+import com.ksu.indexer.model.FileEvent;
+import com.ksu.indexer.storage.ManifestStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Services wired the way the application wires them, except that the write buffer
+ * only flushes when a test says so.
+ */
+final class TestIndexes {
+    private TestIndexes() {}
+
+    static IndexService open(Path dir, ManifestStore manifest) throws IOException {
+        return open(dir, manifest, Analyzer.standard(), false);
+    }
+
+    static IndexService open(Path dir, ManifestStore manifest, Analyzer analyzer, boolean acceptExistingAnalysis)
+            throws IOException {
+        return new IndexService(dir.toString(), Integer.MAX_VALUE, Long.MAX_VALUE, 3_600_000L,
+                0.01, true, true, acceptExistingAnalysis, manifest, analyzer, new SimpleMeterRegistry());
+    }
+
+    static SearchService search(IndexService index) {
+        return new SearchService(index, new SimpleMeterRegistry(), 1, 1, 1, 1 << 20, 128);
+    }
+
+    static FileEvent add(String fileId, String text) {
+        return new FileEvent(fileId, FileEvent.Type.ADD, text, null, Instant.now());
+    }
+
+    static FileEvent update(String fileId, String text) {
+        return new FileEvent(fileId, FileEvent.Type.UPDATE, text, null, Instant.now());
+    }
+
+    static FileEvent delete(String fileId) {
+        return new FileEvent(fileId, FileEvent.Type.DELETE, null, null, Instant.now());
+    }
+}
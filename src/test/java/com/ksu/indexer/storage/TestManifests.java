@@ -0,0 +1,21 @@
+package com.ksu.indexer.storage;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/** Manifests over a private in-memory H2 database per call, so tests never share rows. */
+public final class TestManifests {
+    private static final AtomicInteger SEQ = new AtomicInteger();
+
+    private TestManifests() {}
+
+    public static JdbcTemplate jdbc() {
+        String url = "jdbc:h2:mem:manifest-" + SEQ.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+        return new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+    }
+
+    public static ManifestStore create() {
+        return new ManifestStore(jdbc());
+    }
+}
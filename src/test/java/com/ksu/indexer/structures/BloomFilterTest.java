@@ -0,0 +1,89 @@
+package com.ksu.indexer.structures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+    private static final int KEYS = 20_000;
+    private static final int PROBES = 200_000;
+
+    // lengths 1..40 so every murmur3 tail length is hashed
+    private static String key(int i) {
+        return "k" + i + "-".repeat(i % 32);
+    }
+
+    private static double falsePositiveRate(BloomFilter filter) {
+        int fp = 0;
+        for (int i = 0; i < PROBES; i++) if (filter.mightContain("absent" + i)) fp++;
+        return (double) fp / PROBES;
+    }
+
+    @Test
+    void staysNearTheTargetRateWithoutFalseNegatives() {
+        for (boolean blocked : new boolean[]{false, true}) {
+            for (double fpp : new double[]{0.05, 0.01, 0.001}) {
+                BloomFilter filter = BloomFilter.create(KEYS, new BloomFilter.Spec(fpp, blocked));
+                for (int i = 0; i < KEYS; i++) filter.add(key(i));
+                for (int i = 0; i < KEYS; i++) assertTrue(filter.mightContain(key(i)), "false negative " + key(i));
+                double rate = falsePositiveRate(filter);
+                assertTrue(rate <= fpp * 1.25, (blocked ? "blocked" : "classic") + " fpp " + fpp + " measured " + rate);
+            }
+        }
+    }
+
+    @Test
+    void hashHalvesAddTheSameBitsAsTheKey() {
+        BloomFilter byKey = BloomFilter.create(100, BloomFilter.Spec.DEFAULT);
+        BloomFilter byHash = BloomFilter.create(100, BloomFilter.Spec.DEFAULT);
+        // only the first len bytes of the array are the key
+        byte[] buf = new byte[64];
+        for (int i = 0; i < 100; i++) {
+            byte[] b = key(i).getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(b, 0, buf, 0, b.length);
+            buf[b.length] = 'x';
+            byKey.add(key(i));
+            long[] h = BloomFilter.hash(buf, b.length);
+            byHash.addHash(h[0], h[1]);
+            assertTrue(byKey.mightContain(buf, b.length));
+        }
+        assertEquals(serialize(byKey, 0).remaining(), serialize(byHash, 0).remaining());
+        assertEquals(serialize(byKey, 0), serialize(byHash, 0));
+    }
+
+    @Test
+    void mappedFilterAnswersLikeTheOneWritten() {
+        for (boolean blocked : new boolean[]{false, true}) {
+            BloomFilter heap = BloomFilter.create(KEYS, new BloomFilter.Spec(0.01, blocked));
+            for (int i = 0; i < KEYS; i++) heap.add(key(i));
+            // read in place behind other data, as from a segment section
+            ByteBuffer buf = serialize(heap, 12);
+            assertEquals(12 + heap.sizeBytes(), buf.remaining());
+            BloomFilter mapped = BloomFilter.read(buf, 12);
+            assertEquals(heap.sizeBytes(), mapped.sizeBytes());
+            for (int i = 0; i < KEYS; i++) assertTrue(mapped.mightContain(key(i)));
+            for (int i = 0; i < PROBES; i += 7) {
+                assertEquals(heap.mightContain("absent" + i), mapped.mightContain("absent" + i));
+            }
+            assertThrows(IllegalStateException.class, () -> mapped.add("new"));
+        }
+    }
+
+    private static ByteBuffer serialize(BloomFilter filter, int offset) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(new byte[offset]);
+            filter.write(out);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+}
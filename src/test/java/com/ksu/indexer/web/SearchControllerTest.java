@@ -0,0 +1,44 @@
+package com.ksu.indexer.web;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.ksu.indexer.query.Operator;
+import com.ksu.indexer.service.SearchService;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+class SearchControllerTest {
+    private final SearchService searchService = mock(SearchService.class);
+    private final MockMvc mvc = MockMvcBuilders.standaloneSetup(new SearchController(searchService)).build();
+
+    @Test
+    void malformedQueriesAreBadRequests() throws Exception {
+        when(searchService.searchFileIdsLegacy(eq("(a"), anyInt(), eq(Operator.AND), eq(0)))
+                .thenThrow(new IllegalArgumentException("missing ) at 2 in query: (a"));
+        mvc.perform(get("/api/search").param("q", "(a"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.detail").value("missing ) at 2 in query: (a"));
+    }
+
+    @Test
+    void kOutsideItsRangeIsABadRequest() throws Exception {
+        mvc.perform(get("/api/search").param("q", "a").param("k", "1001")).andExpect(status().isBadRequest());
+        mvc.perform(get("/api/search/v2").param("q", "a").param("k", "0")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void wellFormedQueriesAreServed() throws Exception {
+        when(searchService.searchFileIdsLegacy("a", 10, Operator.AND, 0)).thenReturn(List.of("a.txt"));
+        mvc.perform(get("/api/search").param("q", "a"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value("a.txt"));
+    }
+}